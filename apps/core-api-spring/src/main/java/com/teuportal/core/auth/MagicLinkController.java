@@ -1,6 +1,7 @@
 package com.teuportal.core.auth;
 
 import com.teuportal.core.company.CompanyUserSummary;
+import com.teuportal.core.datasource.ReadOnlyRequest;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
@@ -60,6 +61,7 @@ public class MagicLinkController {
     }
 
     @GetMapping(path = "/magic")
+    @ReadOnlyRequest(false)
     public ResponseEntity<?> consumeMagicLink(@RequestParam("token") String token,
                                               HttpServletRequest request,
                                               HttpServletResponse response) {
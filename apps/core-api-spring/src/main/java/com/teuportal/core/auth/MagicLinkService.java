@@ -21,6 +21,9 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 import org.springframework.web.util.UriComponentsBuilder;
@@ -36,6 +39,7 @@ public class MagicLinkService {
     private final EmailProperties emailProperties;
     private final TenantContextService tenantContextService;
     private final CompanyUserService companyUserService;
+    private final TransactionTemplate transactionTemplate;
     private final Clock clock;
     private final Duration ttl;
     private final String appBaseUrl;
@@ -45,6 +49,7 @@ public class MagicLinkService {
                             EmailProperties emailProperties,
                             TenantContextService tenantContextService,
                             CompanyUserService companyUserService,
+                            PlatformTransactionManager transactionManager,
                             Clock clock,
                             @Value("${app.base-url}") String appBaseUrl,
                             @Value("${auth.magic-link.ttl-minutes:15}") long ttlMinutes) {
@@ -53,6 +58,7 @@ public class MagicLinkService {
         this.emailProperties = emailProperties;
         this.tenantContextService = tenantContextService;
         this.companyUserService = companyUserService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
         this.clock = clock;
         this.ttl = Duration.ofMinutes(ttlMinutes);
         Assert.hasText(appBaseUrl, "app.base-url must be configured");
@@ -73,7 +79,8 @@ public class MagicLinkService {
             log.info("Magic link requested for non-existent user '{}'; skipping issuance", normalizedEmail);
             return;
         }
-        LoginToken token = createToken(normalizedEmail);
+        // Commit the token before talking to SMTP so the connection is not held during delivery
+        LoginToken token = transactionTemplate.execute(status -> createToken(normalizedEmail));
         String link = buildMagicLink(token.nonce());
         log.debug("Issued magic link token {} for {} expiring at {}", token.id(), normalizedEmail, token.expiresAt());
 
@@ -86,6 +93,7 @@ public class MagicLinkService {
         }
     }
 
+    @Transactional
     public String consumeMagicLink(String tokenValue) {
         String nonce = tokenValue == null ? "" : tokenValue.trim();
         if (nonce.isEmpty()) {
@@ -3,7 +3,10 @@ package com.teuportal.core.auth;
 import com.teuportal.core.company.CompanyUserService;
 import com.teuportal.core.company.CompanyUserSummary;
 import com.teuportal.core.tenancy.CompanyContextResolver;
+import com.teuportal.core.tenancy.TenantContext;
+import com.teuportal.core.tenancy.TenantContextHolder;
 import com.teuportal.core.tenancy.TenantContextService;
+import com.teuportal.core.tenancy.UnknownCompanyException;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -13,6 +16,7 @@ import java.time.OffsetDateTime;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,6 +28,8 @@ import org.springframework.security.oauth2.client.authentication.OAuth2Authentic
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.security.web.authentication.SimpleUrlAuthenticationSuccessHandler;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 
 @Component
@@ -32,25 +38,31 @@ public class OAuth2LoginSuccessHandler extends SimpleUrlAuthenticationSuccessHan
     private static final Logger log = LoggerFactory.getLogger(OAuth2LoginSuccessHandler.class);
 
     private final TenantContextService tenantContextService;
+    private final TenantContextHolder contextHolder;
     private final CompanyContextResolver companyContextResolver;
     private final CompanyUserService companyUserService;
     private final ExternalAccountRepository externalAccountRepository;
     private final SessionAuthenticationService sessionAuthenticationService;
+    private final TransactionTemplate transactionTemplate;
     private final Clock clock;
     private final String appBaseUrl;
 
     public OAuth2LoginSuccessHandler(TenantContextService tenantContextService,
+                                     TenantContextHolder contextHolder,
                                      CompanyContextResolver companyContextResolver,
                                      CompanyUserService companyUserService,
                                      ExternalAccountRepository externalAccountRepository,
                                      SessionAuthenticationService sessionAuthenticationService,
+                                     PlatformTransactionManager transactionManager,
                                      Clock clock,
                                      @Value("${app.base-url}") String appBaseUrl) {
         this.tenantContextService = tenantContextService;
+        this.contextHolder = contextHolder;
         this.companyContextResolver = companyContextResolver;
         this.companyUserService = companyUserService;
         this.externalAccountRepository = externalAccountRepository;
         this.sessionAuthenticationService = sessionAuthenticationService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
         this.clock = clock;
         this.appBaseUrl = appBaseUrl;
         setDefaultTargetUrl(appBaseUrl + "/app");
@@ -76,26 +88,27 @@ public class OAuth2LoginSuccessHandler extends SimpleUrlAuthenticationSuccessHan
             return;
         }
 
-        UUID companyId = tenantContextService.currentCompanyId()
-                .orElseGet(() -> companyContextResolver.resolveCompanyId(request));
+        UUID companyId;
+        try {
+            companyId = tenantContextService.currentCompanyId()
+                    .orElseGet(() -> companyContextResolver.resolveCompanyId(request));
+        } catch (UnknownCompanyException ex) {
+            log.warn("OAuth2 login rejected for {}: {}", email, ex.getMessage());
+            handleFailureResponse(request, response);
+            return;
+        }
 
-        Optional<CompanyUserSummary> user = companyUserService.findByEmail(companyId, email);
+        // The security chain runs ahead of TenantContextFilter, so bind the tenant for this transaction here
+        TenantContext context = new TenantContext(companyId, null, Set.of());
+        Optional<CompanyUserSummary> user = contextHolder.callWith(context, () -> transactionTemplate.execute(status ->
+                linkExternalAccount(companyId, email, token.getAuthorizedClientRegistrationId(), providerUserId)));
         if (user.isEmpty()) {
             log.warn("OAuth2 login rejected for unknown user {}", email);
             handleFailureResponse(request, response);
             return;
         }
 
-        CompanyUserSummary summary = user.get();
-        companyUserService.updateLastSignIn(summary.id());
-        externalAccountRepository.upsert(companyId,
-                summary.id(),
-                token.getAuthorizedClientRegistrationId(),
-                providerUserId,
-                email,
-                OffsetDateTime.now(clock));
-
-        sessionAuthenticationService.storeAuthentication(summary, request, response);
+        sessionAuthenticationService.storeAuthentication(companyId, user.get(), request, response);
 
         if (expectsJson(request)) {
             response.setStatus(HttpServletResponse.SC_OK);
@@ -107,6 +120,23 @@ public class OAuth2LoginSuccessHandler extends SimpleUrlAuthenticationSuccessHan
         }
     }
 
+    private Optional<CompanyUserSummary> linkExternalAccount(UUID companyId,
+                                                             String email,
+                                                             String provider,
+                                                             String providerUserId) {
+        Optional<CompanyUserSummary> user = companyUserService.findByEmail(companyId, email);
+        user.ifPresent(summary -> {
+            companyUserService.updateLastSignIn(summary.id());
+            externalAccountRepository.upsert(companyId,
+                    summary.id(),
+                    provider,
+                    providerUserId,
+                    email,
+                    OffsetDateTime.now(clock));
+        });
+        return user;
+    }
+
     private static String extractEmail(OAuth2User user) {
         Object email = user.getAttributes().get("email");
         return email == null ? null : email.toString().trim().toLowerCase(Locale.ROOT);
@@ -18,6 +18,7 @@ import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 
 @Component
 public class SessionAuthenticationService {
@@ -35,13 +36,14 @@ public class SessionAuthenticationService {
         this.securityContextRepository = new HttpSessionSecurityContextRepository();
     }
 
+    @Transactional
     public Optional<CompanyUserSummary> signInByEmail(String email, HttpServletRequest request, HttpServletResponse response) {
         UUID companyId = tenantContextService.currentCompanyId()
                 .orElseThrow(() -> new IllegalStateException("Company context must be available"));
         Optional<CompanyUserSummary> user = companyUserService.findByEmail(companyId, email);
         user.ifPresent(summary -> {
             companyUserService.updateLastSignIn(summary.id());
-            storeAuthentication(summary, request, response);
+            storeAuthentication(companyId, summary, request, response);
         });
         if (user.isEmpty()) {
             log.warn("Attempted sign-in for unknown user '{}' in company {}", email, companyId);
@@ -49,9 +51,9 @@ public class SessionAuthenticationService {
         return user;
     }
 
-    public void storeAuthentication(CompanyUserSummary user, HttpServletRequest request, HttpServletResponse response) {
+    public void storeAuthentication(UUID companyId, CompanyUserSummary user, HttpServletRequest request, HttpServletResponse response) {
         Authentication authentication = new UsernamePasswordAuthenticationToken(
-                new TenantPrincipal(user.id()),
+                new TenantPrincipal(user.id(), companyId),
                 null,
                 Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + user.role()))
         );
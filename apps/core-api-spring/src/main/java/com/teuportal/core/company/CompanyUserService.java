@@ -7,6 +7,7 @@ import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 @Service
@@ -21,6 +22,7 @@ public class CompanyUserService {
         this.clock = clock;
     }
 
+    @Transactional(readOnly = true)
     public Optional<CompanyUserSummary> findByEmail(UUID companyId, String email) {
         String normalizedEmail = normalizeEmail(email);
         if (!StringUtils.hasText(normalizedEmail)) {
@@ -29,10 +31,12 @@ public class CompanyUserService {
         return repository.findByEmail(companyId, normalizedEmail);
     }
 
+    @Transactional(readOnly = true)
     public Optional<CompanyUserSummary> findUser(UUID companyId, UUID userId) {
         return repository.findById(companyId, userId);
     }
 
+    @Transactional
     public void updateLastSignIn(UUID userId) {
         repository.updateLastSignIn(userId, OffsetDateTime.now(clock));
     }
@@ -9,6 +9,8 @@ import org.springframework.security.config.annotation.web.configurers.AbstractHt
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
+import org.springframework.security.web.csrf.CsrfTokenRequestAttributeHandler;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 
 @Configuration
@@ -29,7 +31,8 @@ public class SecurityConfig {
             "/setup/**",
             "/oauth2/authorization/**",
             "/oauth2/**",
-            "/_nuxt_icon/**"
+            "/_nuxt_icon/**",
+            "/s/**"
     };
 
     private final OAuth2LoginSuccessHandler oAuth2LoginSuccessHandler;
@@ -40,12 +43,20 @@ public class SecurityConfig {
 
     @Bean
     SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+        // Load the token on every request so the XSRF-TOKEN cookie is always there for the web app to echo
+        CsrfTokenRequestAttributeHandler csrfRequestHandler = new CsrfTokenRequestAttributeHandler();
+        csrfRequestHandler.setCsrfRequestAttributeName(null);
         http
-                .csrf(csrf -> csrf.ignoringRequestMatchers(
-                        new AntPathRequestMatcher("/auth/email"),
-                        new AntPathRequestMatcher("/auth/magic"),
-                        new AntPathRequestMatcher("/auth/logout")
-                ))
+                .csrf(csrf -> csrf
+                        .csrfTokenRepository(CookieCsrfTokenRepository.withHttpOnlyFalse())
+                        .csrfTokenRequestHandler(csrfRequestHandler)
+                        .ignoringRequestMatchers(
+                                new AntPathRequestMatcher("/auth/email"),
+                                new AntPathRequestMatcher("/auth/magic"),
+                                new AntPathRequestMatcher("/auth/logout"),
+                                // Public links carry no session to ride on; the passcode is the credential
+                                new AntPathRequestMatcher("/s/**")
+                        ))
                 .authorizeHttpRequests(authorize -> authorize
                         .requestMatchers(PUBLIC_ENDPOINTS).permitAll()
                         .anyRequest().authenticated()
@@ -0,0 +1,12 @@
+package com.teuportal.core.datasource;
+
+/**
+ * Connection pools behind {@link RoutingDataSource}. Pools that are not configured fall back to
+ * {@link #PRIMARY}.
+ */
+public enum DataSourceRoute {
+    PRIMARY,
+    REPLICA,
+    AUTH,
+    BACKGROUND
+}
@@ -0,0 +1,84 @@
+package com.teuportal.core.datasource;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Carries the routing decision from the transaction manager to {@link RoutingDataSource}, plus the
+ * read-only preference and {@link Workload} of the work currently running on this thread.
+ */
+@Component
+public class DataSourceRouteHolder {
+
+    private final ThreadLocal<DataSourceRoute> transactionRoute = new ThreadLocal<>();
+    private final ThreadLocal<Boolean> readOnlyRequest = new ThreadLocal<>();
+    private final ThreadLocal<Workload> workload = new ThreadLocal<>();
+
+    public Optional<DataSourceRoute> transactionRoute() {
+        return Optional.ofNullable(transactionRoute.get());
+    }
+
+    public void setTransactionRoute(DataSourceRoute route) {
+        transactionRoute.set(route);
+    }
+
+    public void clearTransactionRoute() {
+        transactionRoute.remove();
+    }
+
+    public boolean isReadOnlyRequest() {
+        return Boolean.TRUE.equals(readOnlyRequest.get());
+    }
+
+    public void setReadOnlyRequest(boolean readOnly) {
+        readOnlyRequest.set(readOnly);
+    }
+
+    public void clearReadOnlyRequest() {
+        readOnlyRequest.remove();
+    }
+
+    public Workload currentWorkload() {
+        Workload current = workload.get();
+        return current == null ? Workload.INTERACTIVE : current;
+    }
+
+    public void setWorkload(Workload value) {
+        workload.set(value);
+    }
+
+    public void clearWorkload() {
+        workload.remove();
+    }
+
+    /**
+     * Runs {@code action} with its transactions drawn from the {@code value} pool, for work that does
+     * not come through a request (scheduled sweeps, exports on executor threads).
+     */
+    public <T> T callAs(Workload value, Supplier<T> action) {
+        Workload previous = workload.get();
+        workload.set(value);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                workload.remove();
+            } else {
+                workload.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Picks the pool for a transaction that is about to begin.
+     */
+    public DataSourceRoute routeFor(boolean readOnly) {
+        return switch (currentWorkload()) {
+            case AUTH -> DataSourceRoute.AUTH;
+            case BACKGROUND -> DataSourceRoute.BACKGROUND;
+            case INTERACTIVE -> readOnly ? DataSourceRoute.REPLICA : DataSourceRoute.PRIMARY;
+        };
+    }
+}
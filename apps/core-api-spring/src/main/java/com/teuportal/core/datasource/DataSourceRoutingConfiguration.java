@@ -0,0 +1,136 @@
+package com.teuportal.core.datasource;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.session.jdbc.config.annotation.SpringSessionDataSource;
+import org.springframework.session.jdbc.config.annotation.SpringSessionTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@EnableConfigurationProperties(DataSourceRoutingProperties.class)
+public class DataSourceRoutingConfiguration implements WebMvcConfigurer {
+
+    private final DataSourceRouteHolder routeHolder;
+
+    public DataSourceRoutingConfiguration(DataSourceRouteHolder routeHolder) {
+        this.routeHolder = routeHolder;
+    }
+
+    @Bean
+    @SpringSessionDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @ConditionalOnExpression("!'${app.datasource.replica.url:}'.isEmpty()")
+    public HikariDataSource replicaDataSource(DataSourceRoutingProperties routingProperties,
+                                              DataSourceProperties properties) {
+        DataSourceRoutingProperties.Replica replica = routingProperties.getReplica();
+        HikariConfig config = poolConfig("replica", replica, properties);
+        config.setJdbcUrl(replica.getUrl());
+        // Each credential falls back to the primary's on its own, so a replica may set just one
+        config.setUsername(StringUtils.hasText(replica.getUsername()) ? replica.getUsername() : properties.determineUsername());
+        config.setPassword(StringUtils.hasText(replica.getPassword()) ? replica.getPassword() : properties.determinePassword());
+        config.setReadOnly(true);
+        return new HikariDataSource(config);
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "app.datasource.auth.enabled", havingValue = "true", matchIfMissing = true)
+    public HikariDataSource authDataSource(DataSourceRoutingProperties routingProperties,
+                                           DataSourceProperties properties) {
+        return new HikariDataSource(poolConfig("auth", routingProperties.getAuth(), properties));
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "app.datasource.background.enabled", havingValue = "true", matchIfMissing = true)
+    public HikariDataSource backgroundDataSource(DataSourceRoutingProperties routingProperties,
+                                                 DataSourceProperties properties) {
+        return new HikariDataSource(poolConfig("background", routingProperties.getBackground(), properties));
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") ObjectProvider<DataSource> replicaDataSource,
+                                 @Qualifier("authDataSource") ObjectProvider<DataSource> authDataSource,
+                                 @Qualifier("backgroundDataSource") ObjectProvider<DataSource> backgroundDataSource) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(DataSourceRoute.PRIMARY, primaryDataSource);
+        replicaDataSource.ifAvailable(replica -> targets.put(DataSourceRoute.REPLICA, replica));
+        authDataSource.ifAvailable(auth -> targets.put(DataSourceRoute.AUTH, auth));
+        backgroundDataSource.ifAvailable(background -> targets.put(DataSourceRoute.BACKGROUND, background));
+
+        RoutingDataSource routing = new RoutingDataSource(routeHolder);
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(primaryDataSource);
+        routing.afterPropertiesSet();
+        return routing;
+    }
+
+    /**
+     * Session reads must not lag behind sign-in, so Spring Session bypasses routing and tenant GUCs.
+     */
+    @Bean
+    @SpringSessionTransactionManager
+    public PlatformTransactionManager springSessionTransactionManager(@Qualifier("primaryDataSource") DataSource primaryDataSource) {
+        return new JdbcTransactionManager(primaryDataSource);
+    }
+
+    @Bean
+    public FilterRegistrationBean<WorkloadFilter> workloadFilter(DataSourceRoutingProperties routingProperties) {
+        Map<Workload, List<String>> paths = new EnumMap<>(Workload.class);
+        paths.put(Workload.AUTH, routingProperties.getAuth().getPaths());
+        paths.put(Workload.BACKGROUND, routingProperties.getBackground().getPaths());
+        FilterRegistrationBean<WorkloadFilter> registration =
+                new FilterRegistrationBean<>(new WorkloadFilter(routeHolder, paths));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ReadOnlyRequestInterceptor(routeHolder));
+        registry.addInterceptor(new RequestWorkloadInterceptor(routeHolder));
+    }
+
+    private static HikariConfig poolConfig(String name, DataSourceRoutingProperties.Pool pool, DataSourceProperties properties) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(name);
+        config.setJdbcUrl(properties.determineUrl());
+        config.setUsername(properties.determineUsername());
+        config.setPassword(properties.determinePassword());
+        config.setDriverClassName(properties.determineDriverClassName());
+        config.setMaximumPoolSize(pool.getMaximumPoolSize());
+        config.setMinimumIdle(pool.getMinimumIdle());
+        config.setConnectionTimeout(pool.getConnectionTimeout().toMillis());
+        config.setAutoCommit(false);
+        return config;
+    }
+}
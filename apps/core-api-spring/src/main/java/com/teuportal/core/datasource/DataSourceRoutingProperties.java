@@ -0,0 +1,126 @@
+package com.teuportal.core.datasource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "app.datasource")
+public class DataSourceRoutingProperties {
+
+    private final Replica replica = new Replica();
+    private final WorkloadPool auth = new WorkloadPool(4, 1, Duration.ofSeconds(5), List.of("/auth/**", "/oauth2/**"));
+    private final WorkloadPool background = new WorkloadPool(3, 0, Duration.ofSeconds(60), List.of());
+
+    public Replica getReplica() {
+        return replica;
+    }
+
+    public WorkloadPool getAuth() {
+        return auth;
+    }
+
+    public WorkloadPool getBackground() {
+        return background;
+    }
+
+    public static class Pool {
+        private int maximumPoolSize;
+        private int minimumIdle;
+        private Duration connectionTimeout;
+
+        Pool(int maximumPoolSize, int minimumIdle, Duration connectionTimeout) {
+            this.maximumPoolSize = maximumPoolSize;
+            this.minimumIdle = minimumIdle;
+            this.connectionTimeout = connectionTimeout;
+        }
+
+        public int getMaximumPoolSize() {
+            return maximumPoolSize;
+        }
+
+        public void setMaximumPoolSize(int maximumPoolSize) {
+            this.maximumPoolSize = maximumPoolSize;
+        }
+
+        public int getMinimumIdle() {
+            return minimumIdle;
+        }
+
+        public void setMinimumIdle(int minimumIdle) {
+            this.minimumIdle = minimumIdle;
+        }
+
+        public Duration getConnectionTimeout() {
+            return connectionTimeout;
+        }
+
+        public void setConnectionTimeout(Duration connectionTimeout) {
+            this.connectionTimeout = connectionTimeout;
+        }
+    }
+
+    public static class Replica extends Pool {
+        private String url = "";
+        private String username = "";
+        private String password = "";
+
+        Replica() {
+            super(10, 1, Duration.ofSeconds(30));
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+    }
+
+    /**
+     * A bulkhead pool against the primary database for one {@link Workload}.
+     */
+    public static class WorkloadPool extends Pool {
+        private boolean enabled = true;
+        private List<String> paths;
+
+        WorkloadPool(int maximumPoolSize, int minimumIdle, Duration connectionTimeout, List<String> paths) {
+            super(maximumPoolSize, minimumIdle, connectionTimeout);
+            this.paths = new ArrayList<>(paths);
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public List<String> getPaths() {
+            return paths;
+        }
+
+        public void setPaths(List<String> paths) {
+            this.paths = paths;
+        }
+    }
+}
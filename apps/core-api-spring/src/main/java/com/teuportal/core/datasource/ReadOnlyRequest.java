@@ -0,0 +1,20 @@
+package com.teuportal.core.datasource;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Overrides the default read-only routing of a handler. GET and HEAD handlers are read-only
+ * unless annotated with {@code @ReadOnlyRequest(false)}; other methods may opt in with
+ * {@code @ReadOnlyRequest}.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface ReadOnlyRequest {
+
+    boolean value() default true;
+}
@@ -0,0 +1,55 @@
+package com.teuportal.core.datasource;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+/**
+ * Marks the transactions of safe handlers read-only so they can be served by the replica pool.
+ */
+public class ReadOnlyRequestInterceptor implements AsyncHandlerInterceptor {
+
+    private final DataSourceRouteHolder routeHolder;
+
+    public ReadOnlyRequestInterceptor(DataSourceRouteHolder routeHolder) {
+        this.routeHolder = routeHolder;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        routeHolder.setReadOnlyRequest(isReadOnly(request, handler));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        routeHolder.clearReadOnlyRequest();
+    }
+
+    /**
+     * {@code afterCompletion} is not called on the container thread that starts async processing;
+     * the async dispatch runs {@code preHandle} again.
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        routeHolder.clearReadOnlyRequest();
+    }
+
+    private static boolean isReadOnly(HttpServletRequest request, Object handler) {
+        if (handler instanceof HandlerMethod handlerMethod) {
+            ReadOnlyRequest annotation = AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getMethod(), ReadOnlyRequest.class);
+            if (annotation == null) {
+                annotation = AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getBeanType(), ReadOnlyRequest.class);
+            }
+            if (annotation != null) {
+                return annotation.value();
+            }
+        }
+        String method = request.getMethod();
+        return HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method);
+    }
+}
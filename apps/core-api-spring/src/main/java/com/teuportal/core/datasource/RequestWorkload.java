@@ -0,0 +1,19 @@
+package com.teuportal.core.datasource;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Assigns a handler to a {@link Workload} pool. Paths handled before the dispatcher (for example
+ * the OAuth callback) are matched by {@link WorkloadFilter} via {@code app.datasource.<pool>.paths}.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface RequestWorkload {
+
+    Workload value();
+}
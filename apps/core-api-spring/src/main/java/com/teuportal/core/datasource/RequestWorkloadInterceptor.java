@@ -0,0 +1,35 @@
+package com.teuportal.core.datasource;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Applies {@link RequestWorkload} from the handler method or its controller. The binding is
+ * cleared by {@link WorkloadFilter}, which wraps the whole request.
+ */
+public class RequestWorkloadInterceptor implements HandlerInterceptor {
+
+    private final DataSourceRouteHolder routeHolder;
+
+    public RequestWorkloadInterceptor(DataSourceRouteHolder routeHolder) {
+        this.routeHolder = routeHolder;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod handlerMethod) {
+            RequestWorkload annotation = AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getMethod(), RequestWorkload.class);
+            if (annotation == null) {
+                annotation = AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getBeanType(), RequestWorkload.class);
+            }
+            if (annotation != null) {
+                routeHolder.setWorkload(annotation.value());
+            }
+        }
+        return true;
+    }
+}
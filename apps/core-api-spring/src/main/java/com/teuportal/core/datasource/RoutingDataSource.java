@@ -0,0 +1,21 @@
+package com.teuportal.core.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Sends connections to the pool chosen by the transaction manager; falls back to the primary pool
+ * outside transactions or when no replica is configured.
+ */
+public class RoutingDataSource extends AbstractRoutingDataSource {
+
+    private final DataSourceRouteHolder routeHolder;
+
+    public RoutingDataSource(DataSourceRouteHolder routeHolder) {
+        this.routeHolder = routeHolder;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return routeHolder.transactionRoute().orElse(DataSourceRoute.PRIMARY);
+    }
+}
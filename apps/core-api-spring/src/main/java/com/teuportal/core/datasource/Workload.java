@@ -0,0 +1,13 @@
+package com.teuportal.core.datasource;
+
+/**
+ * Traffic classes that get their own connection pool, so one class cannot starve another.
+ */
+public enum Workload {
+    /** Regular API traffic; uses the primary pool or the replica for read-only work. */
+    INTERACTIVE,
+    /** Sign-in paths (magic links, OAuth callbacks). */
+    AUTH,
+    /** Sweeps, exports and other bulk jobs. */
+    BACKGROUND
+}
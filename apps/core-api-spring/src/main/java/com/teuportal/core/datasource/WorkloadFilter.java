@@ -0,0 +1,66 @@
+package com.teuportal.core.datasource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+/**
+ * Chooses the request's {@link Workload} from the configured path patterns. Runs ahead of Spring
+ * Security so sign-in work done inside the security chain is covered too.
+ */
+public class WorkloadFilter extends OncePerRequestFilter {
+
+    private final DataSourceRouteHolder routeHolder;
+    private final Map<Workload, List<PathPattern>> patterns;
+
+    public WorkloadFilter(DataSourceRouteHolder routeHolder, Map<Workload, List<String>> paths) {
+        this.routeHolder = routeHolder;
+        this.patterns = paths.entrySet().stream()
+                .collect(Collectors.toMap(
+                        Map.Entry::getKey,
+                        entry -> entry.getValue().stream().map(PathPatternParser.defaultInstance::parse).toList(),
+                        (first, second) -> first,
+                        () -> new EnumMap<>(Workload.class)));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        routeHolder.setWorkload(resolve(request));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            routeHolder.clearWorkload();
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    private Workload resolve(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        PathContainer container = PathContainer.parsePath(path);
+        for (Map.Entry<Workload, List<PathPattern>> entry : patterns.entrySet()) {
+            for (PathPattern pattern : entry.getValue()) {
+                if (pattern.matches(container)) {
+                    return entry.getKey();
+                }
+            }
+        }
+        return Workload.INTERACTIVE;
+    }
+}
@@ -0,0 +1,27 @@
+package com.teuportal.core.expiry;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * One table whose expired rows {@link ExpirySweeper} deletes. Contribute a bean to have another
+ * table swept.
+ */
+public interface ExpiredRowSweep {
+
+    /**
+     * The swept table; names the sweep in logs and metrics.
+     */
+    String table();
+
+    /**
+     * How long a row stays after it expired.
+     */
+    Duration retention();
+
+    /**
+     * Deletes up to {@code maxRows} rows that expired before {@code expiredBefore} in the caller's
+     * transaction, and returns how many were deleted.
+     */
+    int deleteBatch(Instant expiredBefore, int maxRows);
+}
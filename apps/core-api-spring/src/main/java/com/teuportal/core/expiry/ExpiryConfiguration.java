@@ -0,0 +1,55 @@
+package com.teuportal.core.expiry;
+
+import com.teuportal.core.datasource.DataSourceRouteHolder;
+
+import java.time.Clock;
+import java.util.List;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@Configuration
+@EnableConfigurationProperties(ExpiryProperties.class)
+public class ExpiryConfiguration {
+
+    @Bean
+    public ExpiredRowSweep fileShareSweep(NamedParameterJdbcTemplate jdbcTemplate, ExpiryProperties properties) {
+        return new FunctionRowSweep("file_share", "app.sweep_expired_file_shares",
+                properties.getFileShareRetention(), jdbcTemplate);
+    }
+
+    @Bean
+    public ExpiredRowSweep loginTokenSweep(NamedParameterJdbcTemplate jdbcTemplate, ExpiryProperties properties) {
+        return new FunctionRowSweep("login_token", "app.sweep_expired_login_tokens",
+                properties.getLoginTokenRetention(), jdbcTemplate);
+    }
+
+    /**
+     * Replaces Spring Session's own cleanup, a single unbounded DELETE on every node; it is switched
+     * off with {@code spring.session.jdbc.cleanup-cron=-}.
+     */
+    @Bean
+    public ExpiredRowSweep sessionSweep(NamedParameterJdbcTemplate jdbcTemplate, ExpiryProperties properties) {
+        return new FunctionRowSweep("spring_session", "app.sweep_expired_sessions",
+                properties.getSessionRetention(), jdbcTemplate);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "app.expiry", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public ExpirySweeper expirySweeper(List<ExpiredRowSweep> sweeps,
+                                       DataSourceProperties dataSourceProperties,
+                                       DataSourceRouteHolder routeHolder,
+                                       PlatformTransactionManager transactionManager,
+                                       MeterRegistry meterRegistry,
+                                       Clock clock,
+                                       ExpiryProperties properties) {
+        return new ExpirySweeper(sweeps, dataSourceProperties, routeHolder, transactionManager, meterRegistry,
+                clock, properties);
+    }
+}
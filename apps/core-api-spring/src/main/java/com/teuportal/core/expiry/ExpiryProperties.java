@@ -0,0 +1,81 @@
+package com.teuportal.core.expiry;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Expiry sweeper ({@code app.expiry.*}). Every {@code interval} one node deletes expired rows,
+ * at most {@code batchSize} per transaction with {@code batchPause} between batches. A row is
+ * deleted once it has been expired for its table's retention.
+ */
+@ConfigurationProperties(prefix = "app.expiry")
+public class ExpiryProperties {
+
+    private boolean enabled = true;
+    private Duration interval = Duration.ofMinutes(10);
+    private int batchSize = 500;
+    private Duration batchPause = Duration.ofMillis(100);
+    private Duration fileShareRetention = Duration.ofDays(7);
+    private Duration loginTokenRetention = Duration.ofDays(1);
+    private Duration sessionRetention = Duration.ZERO;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Duration getBatchPause() {
+        return batchPause;
+    }
+
+    public void setBatchPause(Duration batchPause) {
+        this.batchPause = batchPause;
+    }
+
+    /**
+     * Expired links stay listed to their owners this long before they are deleted.
+     */
+    public Duration getFileShareRetention() {
+        return fileShareRetention;
+    }
+
+    public void setFileShareRetention(Duration fileShareRetention) {
+        this.fileShareRetention = fileShareRetention;
+    }
+
+    public Duration getLoginTokenRetention() {
+        return loginTokenRetention;
+    }
+
+    public void setLoginTokenRetention(Duration loginTokenRetention) {
+        this.loginTokenRetention = loginTokenRetention;
+    }
+
+    public Duration getSessionRetention() {
+        return sessionRetention;
+    }
+
+    public void setSessionRetention(Duration sessionRetention) {
+        this.sessionRetention = sessionRetention;
+    }
+}
@@ -0,0 +1,194 @@
+package com.teuportal.core.expiry;
+
+import com.teuportal.core.datasource.DataSourceRouteHolder;
+import com.teuportal.core.datasource.Workload;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Deletes the expired rows of every {@link ExpiredRowSweep} on one background thread. A pass runs
+ * on one node at a time: it holds a session-level advisory lock on a connection of its own, which
+ * the database releases should the node die mid-pass. Rows go in batches of {@code batchSize},
+ * each in its own short transaction, with {@code batchPause} between them, so a backlog is worked
+ * off without long-held locks or WAL bursts, and autovacuum keeps up with the dead tuples.
+ * <p>
+ * Per table it records deleted rows ({@code expiry.sweep.deleted}), batch durations
+ * ({@code expiry.sweep.batch}) and when the table was last swept clean
+ * ({@code expiry.sweep.last.completed}, epoch seconds).
+ */
+public class ExpirySweeper implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpirySweeper.class);
+    private static final String TRY_LOCK_SQL = "SELECT pg_try_advisory_lock(hashtextextended('expiry_sweeper', 0))";
+
+    private final List<ExpiredRowSweep> sweeps;
+    private final DataSourceProperties dataSourceProperties;
+    private final DataSourceRouteHolder routeHolder;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final Duration interval;
+    private final int batchSize;
+    private final Duration batchPause;
+    private final Map<String, SweepMeters> meters = new LinkedHashMap<>();
+
+    private volatile boolean running;
+    private volatile Thread worker;
+
+    public ExpirySweeper(List<ExpiredRowSweep> sweeps,
+                         DataSourceProperties dataSourceProperties,
+                         DataSourceRouteHolder routeHolder,
+                         PlatformTransactionManager transactionManager,
+                         MeterRegistry meterRegistry,
+                         Clock clock,
+                         ExpiryProperties properties) {
+        this.sweeps = List.copyOf(sweeps);
+        this.dataSourceProperties = dataSourceProperties;
+        this.routeHolder = routeHolder;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.interval = properties.getInterval();
+        this.batchSize = properties.getBatchSize();
+        this.batchPause = properties.getBatchPause();
+        for (ExpiredRowSweep sweep : this.sweeps) {
+            meters.put(sweep.table(), new SweepMeters(sweep.table(), meterRegistry));
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        worker = Thread.ofPlatform()
+                .name("expiry-sweeper")
+                .daemon(true)
+                .start(() -> routeHolder.callAs(Workload.BACKGROUND, () -> {
+                    workLoop();
+                    return null;
+                }));
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread current = worker;
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void workLoop() {
+        while (running) {
+            try {
+                sweepIfUnclaimed();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (SQLException | RuntimeException ex) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Expiry sweep failed; retrying in {}", interval, ex);
+            }
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void sweepIfUnclaimed() throws SQLException, InterruptedException {
+        // Not pooled: the lock lives as long as this connection, and closing it releases the lock
+        try (Connection lockConnection = DriverManager.getConnection(
+                dataSourceProperties.determineUrl(),
+                dataSourceProperties.determineUsername(),
+                dataSourceProperties.determinePassword());
+             Statement statement = lockConnection.createStatement();
+             ResultSet locked = statement.executeQuery(TRY_LOCK_SQL)) {
+            if (!locked.next() || !locked.getBoolean(1)) {
+                log.debug("Expiry sweep is running on another node");
+                return;
+            }
+            for (ExpiredRowSweep sweep : sweeps) {
+                long started = System.nanoTime();
+                int deleted = sweep(sweep);
+                if (deleted > 0) {
+                    log.info("Swept {} expired rows from {} in {} ms", deleted, sweep.table(),
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes batches until one comes back short, and returns the number of rows deleted.
+     */
+    int sweep(ExpiredRowSweep sweep) throws InterruptedException {
+        Instant expiredBefore = clock.instant().minus(sweep.retention());
+        SweepMeters sweepMeters = meters.get(sweep.table());
+        int total = 0;
+        while (true) {
+            long started = System.nanoTime();
+            Integer deleted = transactionTemplate.execute(status -> sweep.deleteBatch(expiredBefore, batchSize));
+            int count = deleted == null ? 0 : deleted;
+            sweepMeters.batches.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            sweepMeters.deleted.increment(count);
+            total += count;
+            if (count < batchSize) {
+                sweepMeters.lastCompleted.set(clock.instant().getEpochSecond());
+                return total;
+            }
+            Thread.sleep(batchPause);
+        }
+    }
+
+    private static final class SweepMeters {
+
+        private final Counter deleted;
+        private final Timer batches;
+        private final AtomicLong lastCompleted = new AtomicLong();
+
+        SweepMeters(String table, MeterRegistry registry) {
+            this.deleted = Counter.builder("expiry.sweep.deleted")
+                    .description("Expired rows deleted")
+                    .tag("table", table)
+                    .register(registry);
+            this.batches = Timer.builder("expiry.sweep.batch")
+                    .description("Time spent deleting one batch of expired rows")
+                    .tag("table", table)
+                    .register(registry);
+            Gauge.builder("expiry.sweep.last.completed", lastCompleted, AtomicLong::get)
+                    .description("When the table was last swept clean, in epoch seconds")
+                    .tag("table", table)
+                    .register(registry);
+        }
+    }
+}
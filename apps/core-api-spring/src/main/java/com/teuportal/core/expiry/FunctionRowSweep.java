@@ -0,0 +1,47 @@
+package com.teuportal.core.expiry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+/**
+ * Sweeps a table through an {@code app.sweep_expired_*(expired_before, max_rows)} function, which
+ * runs as the owner so that tenant tables are swept across companies.
+ */
+class FunctionRowSweep implements ExpiredRowSweep {
+
+    private final String table;
+    private final String sql;
+    private final Duration retention;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    FunctionRowSweep(String table, String function, Duration retention, NamedParameterJdbcTemplate jdbcTemplate) {
+        this.table = table;
+        this.sql = "SELECT " + function + "(:expiredBefore, :maxRows)";
+        this.retention = retention;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public String table() {
+        return table;
+    }
+
+    @Override
+    public Duration retention() {
+        return retention;
+    }
+
+    @Override
+    public int deleteBatch(Instant expiredBefore, int maxRows) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("expiredBefore", OffsetDateTime.ofInstant(expiredBefore, ZoneOffset.UTC))
+                .addValue("maxRows", maxRows);
+        Integer deleted = jdbcTemplate.queryForObject(sql, params, Integer.class);
+        return deleted == null ? 0 : deleted;
+    }
+}
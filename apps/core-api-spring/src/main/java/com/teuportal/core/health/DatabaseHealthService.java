@@ -2,40 +2,44 @@ package com.teuportal.core.health;
 
 import com.teuportal.core.company.CompanyUserRepository;
 import com.teuportal.core.company.CompanyUserSummary;
-import com.teuportal.core.storage.FileRepository;
 import com.teuportal.core.storage.FolderRepository;
 import com.teuportal.core.storage.FolderSummary;
+import com.teuportal.core.storage.StorageUsage;
+import com.teuportal.core.storage.StorageUsageRepository;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class DatabaseHealthService {
 
     private final CompanyUserRepository companyUserRepository;
     private final FolderRepository folderRepository;
-    private final FileRepository fileRepository;
+    private final StorageUsageRepository storageUsageRepository;
 
     public DatabaseHealthService(CompanyUserRepository companyUserRepository,
                                  FolderRepository folderRepository,
-                                 FileRepository fileRepository) {
+                                 StorageUsageRepository storageUsageRepository) {
         this.companyUserRepository = companyUserRepository;
         this.folderRepository = folderRepository;
-        this.fileRepository = fileRepository;
+        this.storageUsageRepository = storageUsageRepository;
     }
 
+    @Transactional(readOnly = true)
     public Map<String, Object> diagnostics() {
         List<CompanyUserSummary> users = companyUserRepository.findRecentMembers(5);
         List<FolderSummary> folders = folderRepository.findRootFolders(5);
-        long fileCount = fileRepository.countFiles();
+        StorageUsage usage = storageUsageRepository.findCompanyUsage();
 
         Map<String, Object> payload = new HashMap<>();
         payload.put("recentUsers", users);
         payload.put("rootFolders", folders);
-        payload.put("fileCount", fileCount);
+        payload.put("fileCount", usage.fileCount());
+        payload.put("totalBytes", usage.totalBytes());
         return payload;
     }
 }
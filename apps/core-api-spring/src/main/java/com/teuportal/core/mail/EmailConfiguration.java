@@ -2,9 +2,11 @@ package com.teuportal.core.mail;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Properties;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.mail.javamail.JavaMailSenderImpl;
 import org.springframework.util.Assert;
 
@@ -13,14 +15,18 @@ import org.springframework.util.Assert;
 public class EmailConfiguration {
 
     @Bean
-    public EmailSender emailSender(EmailProperties properties) {
+    public EmailSender emailSender(EmailProperties properties, Environment environment) {
         if (!properties.isEnabled()) {
             return new NoopEmailSender();
         }
 
-        return switch (properties.getProvider()) {
+        EmailSender sender = switch (properties.getProvider()) {
             case SMTP -> createSmtpSender(properties);
         };
+        if (Threading.VIRTUAL.isActive(environment)) {
+            return new PlatformThreadEmailSender(sender, properties.getDeliveryThreads());
+        }
+        return sender;
     }
 
     private EmailSender createSmtpSender(EmailProperties properties) {
@@ -12,6 +12,7 @@ public class EmailProperties {
     private boolean enabled = false;
     private Provider provider = Provider.SMTP;
     private String defaultFrom = "";
+    private int deliveryThreads = 4;
     private final Smtp smtp = new Smtp();
 
     public boolean isEnabled() {
@@ -38,6 +39,14 @@ public class EmailProperties {
         this.defaultFrom = defaultFrom;
     }
 
+    public int getDeliveryThreads() {
+        return deliveryThreads;
+    }
+
+    public void setDeliveryThreads(int deliveryThreads) {
+        this.deliveryThreads = deliveryThreads;
+    }
+
     public Smtp getSmtp() {
         return smtp;
     }
@@ -0,0 +1,47 @@
+package com.teuportal.core.mail;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs SMTP delivery on a small pool of platform threads. Jakarta Mail's transport holds monitors
+ * across socket I/O, which would pin the carrier thread if it ran on a virtual thread; the caller
+ * still blocks until delivery finishes and sees the same exceptions as before.
+ */
+public class PlatformThreadEmailSender implements EmailSender, AutoCloseable {
+
+    private final EmailSender delegate;
+    private final ExecutorService executor;
+
+    public PlatformThreadEmailSender(EmailSender delegate, int threads) {
+        this.delegate = delegate;
+        this.executor = Executors.newFixedThreadPool(threads, Thread.ofPlatform()
+                .name("email-delivery-", 0)
+                .daemon(true)
+                .factory());
+    }
+
+    @Override
+    public void send(EmailMessage message) {
+        Future<?> delivery = executor.submit(() -> delegate.send(message));
+        try {
+            delivery.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            delivery.cancel(true);
+            throw new EmailDeliveryException("Interrupted while sending email message", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new EmailDeliveryException("Failed to send email message", ex.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
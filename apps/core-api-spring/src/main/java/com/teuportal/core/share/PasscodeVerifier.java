@@ -0,0 +1,58 @@
+package com.teuportal.core.share;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Hashes and checks share passcodes with bcrypt on a few dedicated platform threads, so slow
+ * hashing never occupies request threads and a flood of attempts cannot take more CPU than the
+ * pool has. At most {@code queueCapacity} checks wait for a thread; beyond that callers get
+ * {@link PasscodeBusyException} at once rather than an ever longer queue.
+ */
+public class PasscodeVerifier implements AutoCloseable {
+
+    private final BCryptPasswordEncoder encoder;
+    private final ThreadPoolExecutor executor;
+
+    public PasscodeVerifier(ShareProperties.Passcode properties) {
+        this.encoder = new BCryptPasswordEncoder(properties.getBcryptStrength());
+        this.executor = new ThreadPoolExecutor(properties.getThreads(), properties.getThreads(),
+                0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                Thread.ofPlatform().name("share-passcode-", 0).daemon(true).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public CompletableFuture<Boolean> matches(String passcode, String passcodeHash) {
+        return submit(() -> encoder.matches(passcode, passcodeHash));
+    }
+
+    public CompletableFuture<String> hash(String passcode) {
+        return submit(() -> encoder.encode(passcode));
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException ex) {
+            throw new PasscodeBusyException();
+        }
+    }
+
+    public static class PasscodeBusyException extends RuntimeException {
+        public PasscodeBusyException() {
+            super("Too many passcode checks in progress; try again shortly");
+        }
+    }
+}
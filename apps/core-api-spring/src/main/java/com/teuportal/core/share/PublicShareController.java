@@ -0,0 +1,178 @@
+package com.teuportal.core.share;
+
+import com.teuportal.core.storage.FileDownload;
+import com.teuportal.core.storage.FileDownloadWriter;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseCookie;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.CookieValue;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+/**
+ * Serves shared files to anyone holding the link. Requests carry no session and no company; the
+ * token is resolved through {@link ShareLinkCache}, so a hot link is served without a database
+ * round trip.
+ * <p>
+ * A passcode-protected link is opened by posting the passcode to {@code /s/{token}/unlock}. The
+ * check completes on the passcode pool while the request is suspended, and a correct passcode sets
+ * a {@link ShareAccessCookie} scoped to the link, so later downloads skip the hash.
+ * <p>
+ * Every response with a body counts as a download of the link, with the bytes it carried.
+ */
+@RestController
+@RequestMapping("/s")
+@Tag(name = "shares", description = "Public links to files")
+public class PublicShareController {
+
+    private final ShareLinkService shareLinkService;
+    private final FileDownloadWriter fileDownloadWriter;
+    private final ShareAccessCookie accessCookie;
+    private final Clock clock;
+    private final Duration cookieTtl;
+
+    public PublicShareController(ShareLinkService shareLinkService,
+                                 FileDownloadWriter fileDownloadWriter,
+                                 ShareAccessCookie accessCookie,
+                                 Clock clock,
+                                 ShareProperties properties) {
+        this.shareLinkService = shareLinkService;
+        this.fileDownloadWriter = fileDownloadWriter;
+        this.accessCookie = accessCookie;
+        this.clock = clock;
+        this.cookieTtl = properties.getPasscode().getCookieTtl();
+    }
+
+    @GetMapping("/{token}")
+    @Operation(summary = "Download a shared file")
+    public ResponseEntity<?> download(@PathVariable("token") String token,
+                                      @RequestParam(value = "inline", defaultValue = "false") boolean inline,
+                                      @CookieValue(name = ShareAccessCookie.NAME, required = false) String access,
+                                      ServletWebRequest webRequest) throws IOException {
+        Optional<SharedFile> share = shareLinkService.resolve(token);
+        if (share.isEmpty()) {
+            return notFound();
+        }
+        boolean protectedLink = share.get().passcodeProtected();
+        if (protectedLink && !accessCookie.isValid(share.get(), access, clock.instant())) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("status", "error", "message", "This link requires a passcode"));
+        }
+        FileDownload download = share.get().file();
+        if (!fileDownloadWriter.isAvailable(download)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("status", "error", "message", "File content is not available"));
+        }
+        if (webRequest.checkNotModified(download.etag(), download.lastModified())) {
+            // 304 or 412 has already been written
+            return null;
+        }
+        HttpServletResponse response = webRequest.getResponse();
+        response.setHeader(HttpHeaders.CACHE_CONTROL, protectedLink ? "private, no-cache" : "no-cache");
+        HttpServletRequest request = webRequest.getRequest();
+        long bytes = fileDownloadWriter.write(download, inline, request, response);
+        if (HttpMethod.GET.matches(request.getMethod())
+                && response.getStatus() != HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+            // Players fetch a file in many ranges; only the full body or the first range is a download
+            boolean fromStart = response.getStatus() == HttpServletResponse.SC_OK
+                    || String.valueOf(response.getHeader(HttpHeaders.CONTENT_RANGE)).startsWith("bytes 0-");
+            shareLinkService.recordDownload(share.get(), bytes, fromStart);
+        }
+        return null;
+    }
+
+    /**
+     * Checks a link's passcode. Repeated wrong guesses lock the link and the client out for
+     * growing periods (429); when the passcode pool is saturated the request is refused (503).
+     */
+    @PostMapping(path = "/{token}/unlock", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Enter the passcode of a shared file")
+    public CompletableFuture<ResponseEntity<?>> unlock(@PathVariable("token") String token,
+                                                       @RequestBody UnlockRequest request,
+                                                       HttpServletRequest servletRequest) {
+        Optional<SharedFile> resolved = shareLinkService.resolve(token);
+        if (resolved.isEmpty()) {
+            return CompletableFuture.completedFuture(notFound());
+        }
+        SharedFile share = resolved.get();
+        if (!share.passcodeProtected()) {
+            return CompletableFuture.completedFuture(ResponseEntity.noContent().build());
+        }
+        if (request == null || !StringUtils.hasLength(request.passcode())) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body(Map.of("status", "error", "message", "passcode is required")));
+        }
+        // The container's view of the peer; behind a proxy set server.forward-headers-strategy
+        String clientAddress = servletRequest.getRemoteAddr();
+        boolean secure = servletRequest.isSecure();
+        CompletableFuture<Boolean> check;
+        try {
+            check = shareLinkService.checkPasscode(token, share, request.passcode(), clientAddress);
+        } catch (ShareLinkService.ShareLockedException ex) {
+            long seconds = Math.max(1, (ex.getRetryAfter().toMillis() + 999) / 1000);
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, Long.toString(seconds))
+                    .body(Map.of("status", "error", "message", ex.getMessage())));
+        } catch (PasscodeVerifier.PasscodeBusyException ex) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("status", "error", "message", ex.getMessage())));
+        }
+        return check.thenApply(matches -> {
+            if (!matches) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body(Map.of("status", "error", "message", "Incorrect passcode"));
+            }
+            return ResponseEntity.noContent()
+                    .header(HttpHeaders.SET_COOKIE, unlockCookie(token, share, secure).toString())
+                    .build();
+        });
+    }
+
+    private ResponseCookie unlockCookie(String token, SharedFile share, boolean secure) {
+        Instant now = clock.instant();
+        Instant expiresAt = now.plus(cookieTtl);
+        if (share.expiresAt() != null && share.expiresAt().toInstant().isBefore(expiresAt)) {
+            expiresAt = share.expiresAt().toInstant();
+        }
+        return ResponseCookie.from(ShareAccessCookie.NAME, accessCookie.value(share, expiresAt))
+                .path("/s/" + token)
+                .maxAge(Duration.between(now, expiresAt))
+                .httpOnly(true)
+                .secure(secure)
+                .sameSite("Lax")
+                .build();
+    }
+
+    private static ResponseEntity<?> notFound() {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(Map.of("status", "error", "message", "Link not found or expired"));
+    }
+
+    public record UnlockRequest(String passcode) {
+    }
+}
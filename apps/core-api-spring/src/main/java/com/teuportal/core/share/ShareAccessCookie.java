@@ -0,0 +1,67 @@
+package com.teuportal.core.share;
+
+import com.teuportal.core.storage.SigningKeys;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * The cookie that keeps a passcode-protected link open once the passcode was entered. Its value
+ * is the signing key's id, an expiry, and an HMAC with the server's {@link SigningKeys} over the
+ * share id, a fingerprint of the passcode hash and that expiry. Every node checks it without
+ * hashing the passcode again; reading {@code file_share} is not enough to mint one, and changing
+ * the passcode voids every cookie issued for the old one.
+ */
+class ShareAccessCookie {
+
+    static final String NAME = "share_access";
+
+    private static final String PURPOSE = "share_access";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final SigningKeys keys;
+
+    ShareAccessCookie(SigningKeys keys) {
+        this.keys = keys;
+    }
+
+    String value(SharedFile share, Instant expiresAt) {
+        long expiry = expiresAt.getEpochSecond();
+        return keys.signingKeyId() + "." + expiry + "." + ENCODER.encodeToString(keys.sign(payload(share, expiry)));
+    }
+
+    boolean isValid(SharedFile share, String value, Instant now) {
+        if (value == null || share.passcodeHash() == null) {
+            return false;
+        }
+        String[] parts = value.split("\\.", -1);
+        if (parts.length != 3) {
+            return false;
+        }
+        try {
+            long expiry = Long.parseLong(parts[1]);
+            byte[] signature = Base64.getUrlDecoder().decode(parts[2]);
+            return now.getEpochSecond() < expiry && keys.verify(parts[0], payload(share, expiry), signature);
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    private static byte[] payload(SharedFile share, long expiry) {
+        return (PURPOSE + "|" + share.shareId() + "|" + fingerprint(share.passcodeHash()) + "|" + expiry)
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String fingerprint(String passcodeHash) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(passcodeHash.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.teuportal.core.share;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Throttles passcode attempts per link and per client address with exponential lockout. Each
+ * counter is an immutable state swapped in with compare-and-set, so concurrent attempts never
+ * wait on a lock. An attempt is counted before its passcode is hashed: a burst of guesses is
+ * throttled as it arrives, not once the hashes come back. A correct passcode clears the link's
+ * count; otherwise a count is only forgotten once it has been quiet for {@code maxLockout}.
+ * <p>
+ * Link and client counters live in separate bounded maps. Client addresses are cheap to rotate, so
+ * a full client map drops every counter that is not locking someone out. Link counters are never
+ * dropped before they are idle, or rotating addresses would reset a link's count; a full link map
+ * turns attempts on untracked links away until counters go idle.
+ */
+public class ShareAttemptLimiter {
+
+    private final Clock clock;
+    private final int freeAttempts;
+    private final long baseLockoutMillis;
+    private final long maxLockoutMillis;
+    private final Counters clients;
+    private final Counters links;
+
+    public ShareAttemptLimiter(Clock clock, ShareProperties.Passcode properties) {
+        this.clock = clock;
+        this.freeAttempts = properties.getFreeAttempts();
+        this.baseLockoutMillis = properties.getBaseLockout().toMillis();
+        this.maxLockoutMillis = properties.getMaxLockout().toMillis();
+        this.clients = new Counters(properties.getMaxTrackedClients(), true);
+        this.links = new Counters(properties.getMaxTrackedLinks(), false);
+    }
+
+    /**
+     * Counts an attempt on {@code token} from {@code clientAddress}. Returns how long the caller has
+     * to wait, or {@link Duration#ZERO} when the attempt may go ahead.
+     */
+    public Duration tryAcquire(String token, String clientAddress) {
+        long now = clock.millis();
+        long wait = acquire(clients, clientAddress, now);
+        if (wait == 0) {
+            wait = acquire(links, token, now);
+        }
+        return Duration.ofMillis(wait);
+    }
+
+    public void succeeded(String token) {
+        links.map.remove(token);
+    }
+
+    int clientCount() {
+        return clients.map.size();
+    }
+
+    int linkCount() {
+        return links.map.size();
+    }
+
+    private long acquire(Counters counters, String key, long now) {
+        AtomicReference<Attempts> counter = counters.map.get(key);
+        if (counter == null) {
+            if (counters.map.size() >= counters.maxEntries && !counters.sweep(now)) {
+                // Every tracked link is under attack; failing closed keeps their counts intact
+                return baseLockoutMillis;
+            }
+            AtomicReference<Attempts> created = new AtomicReference<>(Attempts.NONE);
+            counter = counters.map.putIfAbsent(key, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        while (true) {
+            Attempts current = counter.get();
+            if (current.lockedUntil() > now) {
+                return current.lockedUntil() - now;
+            }
+            int count = current.isIdle(now, maxLockoutMillis) ? 1 : current.count() + 1;
+            long lockedUntil = count < freeAttempts ? 0 : now + lockout(count - freeAttempts);
+            if (counter.compareAndSet(current, new Attempts(count, now, lockedUntil))) {
+                return 0;
+            }
+        }
+    }
+
+    private long lockout(int excess) {
+        long lockout = baseLockoutMillis;
+        for (int i = 0; i < excess && lockout < maxLockoutMillis; i++) {
+            lockout *= 2;
+        }
+        return Math.min(lockout, maxLockoutMillis);
+    }
+
+    private final class Counters {
+
+        private final ConcurrentHashMap<String, AtomicReference<Attempts>> map = new ConcurrentHashMap<>();
+        private final AtomicBoolean sweeping = new AtomicBoolean();
+        private final int maxEntries;
+        private final boolean evictUnlocked;
+
+        Counters(int maxEntries, boolean evictUnlocked) {
+            this.maxEntries = maxEntries;
+            this.evictUnlocked = evictUnlocked;
+        }
+
+        /**
+         * Makes room for a new counter. Returns false when none could be made, which only happens
+         * for a map that keeps counters until they are idle.
+         */
+        boolean sweep(long now) {
+            // One thread sweeps; the others go on and overshoot the bound by a few entries at most
+            if (!sweeping.compareAndSet(false, true)) {
+                return true;
+            }
+            try {
+                map.values().removeIf(counter -> counter.get().isIdle(now, maxLockoutMillis));
+                if (map.size() >= maxEntries && evictUnlocked) {
+                    // Addresses are cheap to rotate; keep only the counters that are locking someone out
+                    map.values().removeIf(counter -> counter.get().lockedUntil() <= now);
+                }
+                return evictUnlocked || map.size() < maxEntries;
+            } finally {
+                sweeping.set(false);
+            }
+        }
+    }
+
+    private record Attempts(int count, long lastAttempt, long lockedUntil) {
+
+        static final Attempts NONE = new Attempts(0, 0, 0);
+
+        boolean isIdle(long now, long idleMillis) {
+            return now - Math.max(lastAttempt, lockedUntil) >= idleMillis;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.teuportal.core.share;
+
+import com.teuportal.core.datasource.DataSourceRouteHolder;
+import com.teuportal.core.storage.SigningKeys;
+
+import java.time.Clock;
+
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@Configuration
+@EnableConfigurationProperties(ShareProperties.class)
+public class ShareConfiguration {
+
+    @Bean
+    public ShareLinkCache shareLinkCache(ShareLinkRepository repository, Clock clock, ShareProperties properties) {
+        return new ShareLinkCache(repository, clock, properties.getCache());
+    }
+
+    @Bean
+    public PasscodeVerifier passcodeVerifier(ShareProperties properties) {
+        return new PasscodeVerifier(properties.getPasscode());
+    }
+
+    @Bean
+    public ShareAttemptLimiter shareAttemptLimiter(Clock clock, ShareProperties properties) {
+        return new ShareAttemptLimiter(clock, properties.getPasscode());
+    }
+
+    @Bean
+    ShareAccessCookie shareAccessCookie(SigningKeys signingKeys) {
+        return new ShareAccessCookie(signingKeys);
+    }
+
+    @Bean
+    public ShareDownloadCounters shareDownloadCounters(Clock clock, ShareProperties properties) {
+        return new ShareDownloadCounters(clock, properties.getStats().getEvictIdleAfter());
+    }
+
+    @Bean
+    public ShareStatsFlusher shareStatsFlusher(ShareDownloadCounters counters,
+                                               ShareLinkRepository repository,
+                                               DataSourceRouteHolder routeHolder,
+                                               PlatformTransactionManager transactionManager,
+                                               ShareProperties properties) {
+        return new ShareStatsFlusher(counters, repository, routeHolder, transactionManager,
+                properties.getStats().getFlushInterval());
+    }
+
+    @Bean
+    public ShareLinkListener shareLinkListener(ShareLinkCache cache,
+                                               DataSourceProperties dataSourceProperties,
+                                               ShareProperties properties) {
+        return new ShareLinkListener(cache, dataSourceProperties, properties.getListenerRetryDelay());
+    }
+}
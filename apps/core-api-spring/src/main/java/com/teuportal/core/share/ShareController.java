@@ -0,0 +1,119 @@
+package com.teuportal.core.share;
+
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/shares")
+@Tag(name = "shares", description = "Public links to files")
+public class ShareController {
+
+    private final ShareLinkService shareLinkService;
+
+    public ShareController(ShareLinkService shareLinkService) {
+        this.shareLinkService = shareLinkService;
+    }
+
+    /**
+     * Creates a public link to a file; without {@code expiresAt} it works until revoked, and with
+     * {@code passcode} only for those who enter it.
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Create a public link to a file")
+    public ResponseEntity<?> create(@RequestBody CreateShareRequest request) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(shareLinkService.create(request.fileId(), request.expiresAt(), request.passcode()));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        } catch (ShareLinkService.ShareNotFoundException ex) {
+            return notFound(ex);
+        } catch (PasscodeVerifier.PasscodeBusyException ex) {
+            return busy(ex);
+        }
+    }
+
+    /**
+     * Sets a link's passcode, or removes it when {@code passcode} is {@code null}.
+     */
+    @PutMapping(path = "/{id}/passcode", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Set or remove a public link's passcode")
+    public ResponseEntity<?> setPasscode(@PathVariable("id") UUID id, @RequestBody PasscodeRequest request) {
+        try {
+            shareLinkService.setPasscode(id, request.passcode());
+            return ResponseEntity.noContent().build();
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        } catch (ShareLinkService.ShareNotFoundException ex) {
+            return notFound(ex);
+        } catch (PasscodeVerifier.PasscodeBusyException ex) {
+            return busy(ex);
+        }
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "List the public links to a file")
+    public ResponseEntity<?> list(@RequestParam("fileId") UUID fileId) {
+        return ResponseEntity.ok(shareLinkService.list(fileId));
+    }
+
+    /**
+     * Downloads and bytes served so far, including downloads this node has not flushed yet.
+     */
+    @GetMapping(path = "/{id}/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Show a public link's download totals")
+    public ResponseEntity<?> stats(@PathVariable("id") UUID id) {
+        try {
+            return ResponseEntity.ok(shareLinkService.stats(id));
+        } catch (ShareLinkService.ShareNotFoundException ex) {
+            return notFound(ex);
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    @Operation(summary = "Revoke a public link")
+    public ResponseEntity<?> revoke(@PathVariable("id") UUID id) {
+        try {
+            shareLinkService.revoke(id);
+            return ResponseEntity.noContent().build();
+        } catch (ShareLinkService.ShareNotFoundException ex) {
+            return notFound(ex);
+        }
+    }
+
+    private static ResponseEntity<?> notFound(RuntimeException ex) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(Map.of("status", "error", "message", ex.getMessage()));
+    }
+
+    private static ResponseEntity<?> busy(RuntimeException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("status", "error", "message", ex.getMessage()));
+    }
+
+    public record CreateShareRequest(UUID fileId, OffsetDateTime expiresAt, String passcode) {
+    }
+
+    public record PasscodeRequest(String passcode) {
+    }
+}
@@ -0,0 +1,132 @@
+package com.teuportal.core.share;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts public link downloads in memory until {@link ShareStatsFlusher} adds them to
+ * {@code file_share_stats}. Each link's counters are striped adders, so concurrent downloads of a
+ * popular link do not contend on one value, let alone on one row.
+ * <p>
+ * {@link #drain()} takes the counts and resets them without losing concurrent downloads; they land
+ * in this drain or the next. A link not downloaded for {@code evictIdleAfter} is dropped, so the
+ * map only holds recently downloaded links. Dropping waits that long because a download that
+ * looked the counters up just before they were dropped would be lost.
+ */
+public class ShareDownloadCounters {
+
+    private final Map<UUID, Counters> counters = new ConcurrentHashMap<>();
+    private final Clock clock;
+    private final Duration evictIdleAfter;
+
+    public ShareDownloadCounters(Clock clock, Duration evictIdleAfter) {
+        this.clock = clock;
+        this.evictIdleAfter = evictIdleAfter;
+    }
+
+    /**
+     * Adds {@code bytes} served by a link, counting a download only when {@code download} is set;
+     * the further ranges of a download add their bytes alone.
+     */
+    public void record(UUID shareId, long bytes, boolean download) {
+        Instant accessedAt = clock.instant();
+        Counters entry = counters.get(shareId);
+        if (entry == null) {
+            entry = counters.computeIfAbsent(shareId, id -> new Counters(accessedAt));
+        }
+        // Downloads last: a drain that sees the download also sees its bytes
+        entry.bytes.add(bytes);
+        entry.lastAccess.accumulate(accessedAt.toEpochMilli());
+        if (download) {
+            entry.downloads.increment();
+        }
+    }
+
+    /**
+     * Counts of one link not yet drained, if any.
+     */
+    public Optional<Delta> pending(UUID shareId) {
+        Counters entry = counters.get(shareId);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        long downloads = entry.downloads.sum();
+        long bytes = entry.bytes.sum();
+        if (downloads == 0 && bytes == 0) {
+            return Optional.empty();
+        }
+        return Optional.of(new Delta(shareId, downloads, bytes, toInstant(entry.lastAccess.get())));
+    }
+
+    /**
+     * Takes the counts recorded since the last drain, one delta per link. The last access is the
+     * latest ever seen on this node, which the stored total keeps anyway.
+     */
+    public List<Delta> drain() {
+        long idleBefore = clock.instant().minus(evictIdleAfter).toEpochMilli();
+        List<Delta> deltas = new ArrayList<>();
+        for (Map.Entry<UUID, Counters> mapEntry : counters.entrySet()) {
+            Counters entry = mapEntry.getValue();
+            long downloads = entry.downloads.sumThenReset();
+            long bytes = entry.bytes.sumThenReset();
+            if (downloads == 0 && bytes == 0) {
+                if (entry.lastAccess.get() < idleBefore) {
+                    counters.remove(mapEntry.getKey(), entry);
+                }
+                continue;
+            }
+            deltas.add(new Delta(mapEntry.getKey(), downloads, bytes, toInstant(entry.lastAccess.get())));
+        }
+        return deltas;
+    }
+
+    /**
+     * Puts back deltas that could not be stored, so the next drain retries them.
+     */
+    public void restore(List<Delta> deltas) {
+        for (Delta delta : deltas) {
+            Counters entry = counters.computeIfAbsent(delta.shareId(), id -> new Counters(clock.instant()));
+            entry.bytes.add(delta.bytes());
+            if (delta.lastAccessedAt() != null) {
+                entry.lastAccess.accumulate(delta.lastAccessedAt().toEpochMilli());
+            }
+            entry.downloads.add(delta.downloads());
+        }
+    }
+
+    int size() {
+        return counters.size();
+    }
+
+    private static Instant toInstant(long epochMilli) {
+        return epochMilli == 0 ? null : Instant.ofEpochMilli(epochMilli);
+    }
+
+    /**
+     * Downloads of one link since the last drain, the bytes they served, and when the latest
+     * happened.
+     */
+    public record Delta(UUID shareId, long downloads, long bytes, Instant lastAccessedAt) {
+    }
+
+    private static final class Counters {
+
+        private final LongAdder downloads = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAccumulator lastAccess = new LongAccumulator(Math::max, 0);
+
+        Counters(Instant createdAt) {
+            // A new entry counts as accessed, so a drain cannot drop it before its first download
+            lastAccess.accumulate(createdAt.toEpochMilli());
+        }
+    }
+}
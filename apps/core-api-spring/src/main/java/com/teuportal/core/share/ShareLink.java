@@ -0,0 +1,23 @@
+package com.teuportal.core.share;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * A share link as its owners see it.
+ */
+public record ShareLink(
+        UUID id,
+        UUID fileId,
+        String token,
+        String url,
+        OffsetDateTime expiresAt,
+        boolean passcodeProtected,
+        UUID createdBy,
+        OffsetDateTime createdAt
+) {
+
+    ShareLink withUrl(String url) {
+        return new ShareLink(id, fileId, token, url, expiresAt, passcodeProtected, createdBy, createdAt);
+    }
+}
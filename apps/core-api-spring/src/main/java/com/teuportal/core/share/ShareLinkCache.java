@@ -0,0 +1,150 @@
+package com.teuportal.core.share;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory token to share map for public links, like {@link com.teuportal.core.tenancy.CompanyDirectory}
+ * for slugs. A resolved link is kept for the cache TTL or until the link itself expires, whichever
+ * comes first; an unknown token for the negative TTL. Hot links and repeated misses are therefore
+ * answered without touching the database, and concurrent misses for one token share one lookup.
+ * {@link ShareLinkListener} invalidates tokens changed on any node.
+ *
+ * <p>At most {@code maxEntries} tokens are kept: when full, expired entries are dropped first, then
+ * a tenth of the rest, those closest to expiring.
+ */
+public class ShareLinkCache {
+
+    private final ShareLinkRepository repository;
+    private final Clock clock;
+    private final int maxEntries;
+    private final Duration ttl;
+    private final Duration negativeTtl;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<Optional<SharedFile>>> loading = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    public ShareLinkCache(ShareLinkRepository repository, Clock clock, ShareProperties.Cache properties) {
+        this.repository = repository;
+        this.clock = clock;
+        this.maxEntries = properties.getMaxEntries();
+        this.ttl = properties.getTtl();
+        this.negativeTtl = properties.getNegativeTtl();
+    }
+
+    public Optional<SharedFile> find(String token) {
+        Entry entry = entries.get(token);
+        if (entry != null && entry.isFresh(clock.instant())) {
+            return Optional.ofNullable(entry.share());
+        }
+        CompletableFuture<Optional<SharedFile>> mine = new CompletableFuture<>();
+        CompletableFuture<Optional<SharedFile>> pending = loading.putIfAbsent(token, mine);
+        if (pending != null) {
+            try {
+                return pending.join();
+            } catch (CompletionException ex) {
+                throw ex.getCause() instanceof RuntimeException cause ? cause : ex;
+            }
+        }
+        try {
+            Optional<SharedFile> share = load(token);
+            mine.complete(share);
+            return share;
+        } catch (RuntimeException ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            loading.remove(token, mine);
+        }
+    }
+
+    public void invalidate(String token) {
+        if (token == null) {
+            return;
+        }
+        entries.remove(token);
+        generation.incrementAndGet();
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+        generation.incrementAndGet();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private Optional<SharedFile> load(String token) {
+        long observed = generation.get();
+        Optional<SharedFile> share = repository.resolve(token);
+        Instant now = clock.instant();
+        Entry entry = share
+                .map(found -> Entry.positive(found, expiry(found, now)))
+                .orElseGet(() -> Entry.negative(now.plus(negativeTtl)));
+        if (entries.size() >= maxEntries) {
+            evict(now);
+        }
+        entries.put(token, entry);
+        // An invalidation raced with the lookup; drop what we read rather than cache stale data
+        if (generation.get() != observed) {
+            entries.remove(token, entry);
+        }
+        return share;
+    }
+
+    private Instant expiry(SharedFile share, Instant now) {
+        Instant expiresAt = now.plus(ttl);
+        if (share.expiresAt() != null && share.expiresAt().toInstant().isBefore(expiresAt)) {
+            return share.expiresAt().toInstant();
+        }
+        return expiresAt;
+    }
+
+    private void evict(Instant now) {
+        // One thread evicts; the others go on and overshoot the bound by a few entries at most
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            entries.values().removeIf(entry -> !entry.isFresh(now));
+            int excess = entries.size() - maxEntries + Math.max(1, maxEntries / 10);
+            if (excess <= 0) {
+                return;
+            }
+            entries.entrySet().stream()
+                    .sorted(Comparator.comparing(candidate -> candidate.getValue().expiresAt()))
+                    .limit(excess)
+                    .map(Map.Entry::getKey)
+                    .toList()
+                    .forEach(entries::remove);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private record Entry(SharedFile share, Instant expiresAt) {
+
+        static Entry positive(SharedFile share, Instant expiresAt) {
+            return new Entry(share, expiresAt);
+        }
+
+        static Entry negative(Instant expiresAt) {
+            return new Entry(null, expiresAt);
+        }
+
+        boolean isFresh(Instant now) {
+            return now.isBefore(expiresAt);
+        }
+    }
+}
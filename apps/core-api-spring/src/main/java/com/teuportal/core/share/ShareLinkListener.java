@@ -0,0 +1,110 @@
+package com.teuportal.core.share;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.SmartLifecycle;
+
+/**
+ * Keeps one dedicated connection in {@code LISTEN share_links} and drops the {@link ShareLinkCache}
+ * entry named by each notification, or every entry for {@code *}. Works like
+ * {@link com.teuportal.core.tenancy.CompanyDirectoryListener}: the connection is opened outside the
+ * pool, and the cache is cleared after every (re)connect since notifications sent while
+ * disconnected are lost.
+ */
+public class ShareLinkListener implements SmartLifecycle {
+
+    static final String CHANNEL = "share_links";
+    static final String ALL = "*";
+
+    private static final Logger log = LoggerFactory.getLogger(ShareLinkListener.class);
+    private static final int POLL_TIMEOUT_MILLIS = 5_000;
+
+    private final ShareLinkCache cache;
+    private final DataSourceProperties dataSourceProperties;
+    private final Duration retryDelay;
+
+    private volatile boolean running;
+    private volatile Thread worker;
+
+    public ShareLinkListener(ShareLinkCache cache, DataSourceProperties dataSourceProperties, Duration retryDelay) {
+        this.cache = cache;
+        this.dataSourceProperties = dataSourceProperties;
+        this.retryDelay = retryDelay;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        worker = Thread.ofPlatform()
+                .name("share-link-listener")
+                .daemon(true)
+                .start(this::listenLoop);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread current = worker;
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listenLoop() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(
+                    dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(),
+                    dataSourceProperties.determinePassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                cache.invalidateAll();
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        apply(notification.getParameter());
+                    }
+                }
+            } catch (SQLException | RuntimeException ex) {
+                if (!running) {
+                    return;
+                }
+                cache.invalidateAll();
+                log.warn("Share link listener disconnected; retrying in {}", retryDelay, ex);
+                try {
+                    Thread.sleep(retryDelay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void apply(String token) {
+        if (ALL.equals(token)) {
+            cache.invalidateAll();
+        } else {
+            cache.invalidate(token);
+        }
+    }
+}
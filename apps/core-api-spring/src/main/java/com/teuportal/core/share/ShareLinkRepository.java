@@ -0,0 +1,152 @@
+package com.teuportal.core.share;
+
+import com.teuportal.core.storage.FileDownload;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class ShareLinkRepository {
+
+    private static final RowMapper<ShareLink> ROW_MAPPER = (rs, rowNum) -> new ShareLink(
+            rs.getObject("id", UUID.class),
+            rs.getObject("file_id", UUID.class),
+            rs.getString("token"),
+            null,
+            rs.getObject("expires_at", OffsetDateTime.class),
+            rs.getBoolean("passcode_protected"),
+            rs.getObject("created_by", UUID.class),
+            rs.getObject("created_at", OffsetDateTime.class)
+    );
+
+    private static final RowMapper<SharedFile> SHARED_FILE_ROW_MAPPER = (rs, rowNum) -> new SharedFile(
+            rs.getObject("share_id", UUID.class),
+            rs.getObject("company_id", UUID.class),
+            rs.getObject("expires_at", OffsetDateTime.class),
+            rs.getString("passcode_hash"),
+            new FileDownload(
+                    rs.getObject("file_id", UUID.class),
+                    rs.getString("name"),
+                    rs.getLong("size_bytes"),
+                    rs.getString("mime_type"),
+                    rs.getString("checksum"),
+                    rs.getString("storage_key"),
+                    rs.getObject("created_at", OffsetDateTime.class))
+    );
+
+    private static final RowMapper<ShareStats> STATS_ROW_MAPPER = (rs, rowNum) -> new ShareStats(
+            rs.getObject("share_id", UUID.class),
+            rs.getLong("downloads"),
+            rs.getLong("bytes_served"),
+            rs.getObject("last_accessed_at", OffsetDateTime.class)
+    );
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public ShareLinkRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Shares a live file of the current tenant; empty when there is no such file.
+     */
+    public Optional<ShareLink> insert(UUID fileId, String token, OffsetDateTime expiresAt, String passcodeHash,
+                                      UUID createdBy) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("fileId", fileId)
+                .addValue("token", token)
+                .addValue("expiresAt", expiresAt)
+                .addValue("passcodeHash", passcodeHash)
+                .addValue("createdBy", createdBy);
+        return jdbcTemplate.query("""
+                INSERT INTO file_share (company_id, file_id, token, expires_at, passcode_hash, created_by)
+                SELECT f.company_id, f.id, :token, CAST(:expiresAt AS timestamptz), CAST(:passcodeHash AS text),
+                       CAST(:createdBy AS uuid)
+                FROM file f
+                WHERE f.id = :fileId
+                  AND f.deleted_at IS NULL
+                  AND NOT EXISTS (SELECT 1 FROM folder d WHERE d.id = f.folder_id AND d.deleted_at IS NOT NULL)
+                RETURNING id, file_id, token, expires_at, passcode_hash IS NOT NULL AS passcode_protected,
+                          created_by, created_at
+                """, params, ROW_MAPPER).stream().findFirst();
+    }
+
+    public List<ShareLink> findByFile(UUID fileId) {
+        return jdbcTemplate.query("""
+                SELECT id, file_id, token, expires_at, passcode_hash IS NOT NULL AS passcode_protected,
+                       created_by, created_at
+                FROM file_share
+                WHERE file_id = :fileId
+                ORDER BY created_at DESC, id
+                """, new MapSqlParameterSource("fileId", fileId), ROW_MAPPER);
+    }
+
+    /**
+     * Sets or, with {@code null}, clears a share's passcode and returns its token.
+     */
+    public Optional<String> updatePasscode(UUID shareId, String passcodeHash) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("id", shareId)
+                .addValue("passcodeHash", passcodeHash);
+        return jdbcTemplate.queryForList(
+                "UPDATE file_share SET passcode_hash = CAST(:passcodeHash AS text) WHERE id = :id RETURNING token",
+                params, String.class).stream().findFirst();
+    }
+
+    /**
+     * Deletes a share of the current tenant and returns its token.
+     */
+    public Optional<String> delete(UUID shareId) {
+        return jdbcTemplate.queryForList("DELETE FROM file_share WHERE id = :id RETURNING token",
+                new MapSqlParameterSource("id", shareId), String.class).stream().findFirst();
+    }
+
+    /**
+     * Looks a link up across tenants; runs without a tenant context.
+     */
+    public Optional<SharedFile> resolve(String token) {
+        return jdbcTemplate.query("SELECT * FROM app.resolve_share(:token)",
+                new MapSqlParameterSource("token", token), SHARED_FILE_ROW_MAPPER).stream().findFirst();
+    }
+
+    /**
+     * Download totals of a share of the current tenant, as last flushed.
+     */
+    public Optional<ShareStats> findStats(UUID shareId) {
+        return jdbcTemplate.query("""
+                SELECT s.id AS share_id,
+                       coalesce(t.downloads, 0) AS downloads,
+                       coalesce(t.bytes_served, 0) AS bytes_served,
+                       t.last_accessed_at
+                FROM file_share s
+                LEFT JOIN file_share_stats t ON t.share_id = s.id
+                WHERE s.id = :id
+                """, new MapSqlParameterSource("id", shareId), STATS_ROW_MAPPER).stream().findFirst();
+    }
+
+    /**
+     * Adds download counts to the totals of shares of any company in one statement; runs without
+     * a tenant context.
+     */
+    public void recordDownloads(List<ShareDownloadCounters.Delta> deltas) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("shareIds", deltas.stream().map(d -> d.shareId().toString()).toArray(String[]::new))
+                .addValue("downloads", deltas.stream().mapToLong(ShareDownloadCounters.Delta::downloads).toArray())
+                .addValue("bytes", deltas.stream().mapToLong(ShareDownloadCounters.Delta::bytes).toArray())
+                .addValue("accessedAt", deltas.stream()
+                        .map(d -> d.lastAccessedAt() == null ? null : d.lastAccessedAt().atOffset(ZoneOffset.UTC).toString())
+                        .toArray(String[]::new));
+        jdbcTemplate.queryForObject("""
+                SELECT app.record_share_downloads(CAST(:shareIds AS uuid[]), CAST(:downloads AS bigint[]),
+                                                  CAST(:bytes AS bigint[]), CAST(:accessedAt AS timestamptz[]))
+                """, params, Integer.class);
+    }
+}
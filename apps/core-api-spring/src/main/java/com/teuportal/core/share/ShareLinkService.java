@@ -0,0 +1,219 @@
+package com.teuportal.core.share;
+
+import com.teuportal.core.tenancy.TenantContext;
+import com.teuportal.core.tenancy.TenantContextService;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Creates and revokes share links for the current company, and resolves public links through
+ * {@link ShareLinkCache}. Tokens are 256 random bits, unique across companies, so a link names its
+ * company and file on its own. Passcodes are hashed and checked by {@link PasscodeVerifier}, off the
+ * request threads, with attempts throttled by {@link ShareAttemptLimiter}. Downloads are counted by
+ * {@link ShareDownloadCounters} and reach the database in batches.
+ */
+@Service
+public class ShareLinkService {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final Pattern TOKEN = Pattern.compile("[A-Za-z0-9_-]{43}");
+    private static final int MIN_PASSCODE_LENGTH = 4;
+    // bcrypt ignores everything past 72 bytes
+    private static final int MAX_PASSCODE_BYTES = 72;
+
+    private final ShareLinkRepository repository;
+    private final ShareLinkCache cache;
+    private final PasscodeVerifier passcodeVerifier;
+    private final ShareAttemptLimiter attemptLimiter;
+    private final ShareDownloadCounters downloadCounters;
+    private final TenantContextService tenantContextService;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTemplate;
+    private final Clock clock;
+    private final Duration maxExpiry;
+    private final String appBaseUrl;
+
+    public ShareLinkService(ShareLinkRepository repository,
+                            ShareLinkCache cache,
+                            PasscodeVerifier passcodeVerifier,
+                            ShareAttemptLimiter attemptLimiter,
+                            ShareDownloadCounters downloadCounters,
+                            TenantContextService tenantContextService,
+                            PlatformTransactionManager transactionManager,
+                            Clock clock,
+                            ShareProperties properties,
+                            @Value("${app.base-url}") String appBaseUrl) {
+        this.repository = repository;
+        this.cache = cache;
+        this.passcodeVerifier = passcodeVerifier;
+        this.attemptLimiter = attemptLimiter;
+        this.downloadCounters = downloadCounters;
+        this.tenantContextService = tenantContextService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+        this.clock = clock;
+        this.maxExpiry = properties.getMaxExpiry();
+        this.appBaseUrl = appBaseUrl;
+    }
+
+    /**
+     * Shares a file until {@code expiresAt}, or until revoked when it is {@code null}. With a
+     * {@code passcode}, the link only serves the file once it has been entered.
+     */
+    public ShareLink create(UUID fileId, OffsetDateTime expiresAt, String passcode) {
+        if (fileId == null) {
+            throw new IllegalArgumentException("fileId is required");
+        }
+        if (expiresAt != null) {
+            OffsetDateTime now = OffsetDateTime.now(clock);
+            if (!expiresAt.isAfter(now)) {
+                throw new IllegalArgumentException("expiresAt must be in the future");
+            }
+            if (expiresAt.isAfter(now.plus(maxExpiry))) {
+                throw new IllegalArgumentException("expiresAt must be within " + maxExpiry.toDays() + " days");
+            }
+        }
+        String passcodeHash = passcode == null ? null : hash(passcode);
+        TenantContext context = tenantContextService.currentContext();
+        String token = generateToken();
+        return transactionTemplate.execute(status ->
+                        repository.insert(fileId, token, expiresAt, passcodeHash, context.getUserId()))
+                .map(this::withUrl)
+                .orElseThrow(() -> new ShareNotFoundException("File not found"));
+    }
+
+    public List<ShareLink> list(UUID fileId) {
+        return readOnlyTemplate.execute(status -> repository.findByFile(fileId)).stream()
+                .map(this::withUrl)
+                .toList();
+    }
+
+    /**
+     * Sets a link's passcode, or removes it when {@code passcode} is {@code null}. Access granted
+     * with the previous passcode ends with it.
+     */
+    public void setPasscode(UUID shareId, String passcode) {
+        String passcodeHash = passcode == null ? null : hash(passcode);
+        String token = transactionTemplate.execute(status -> repository.updatePasscode(shareId, passcodeHash))
+                .orElseThrow(() -> new ShareNotFoundException("Share not found"));
+        cache.invalidate(token);
+    }
+
+    /**
+     * Download totals of a link: the stored totals plus what this node has counted since its last
+     * flush. Other nodes' recent downloads show up once they flush.
+     */
+    public ShareStats stats(UUID shareId) {
+        ShareStats stored = readOnlyTemplate.execute(status -> repository.findStats(shareId))
+                .orElseThrow(() -> new ShareNotFoundException("Share not found"));
+        return downloadCounters.pending(shareId).map(stored::plus).orElse(stored);
+    }
+
+    /**
+     * Deletes a link. This node stops serving it at once; the others when the delete's
+     * notification reaches them.
+     */
+    public void revoke(UUID shareId) {
+        String token = transactionTemplate.execute(status -> repository.delete(shareId))
+                .orElseThrow(() -> new ShareNotFoundException("Share not found"));
+        cache.invalidate(token);
+    }
+
+    /**
+     * Resolves a public link without a tenant context. Malformed tokens are rejected without a
+     * lookup, so they cannot fill the cache.
+     */
+    public Optional<SharedFile> resolve(String token) {
+        if (token == null || !TOKEN.matcher(token).matches()) {
+            return Optional.empty();
+        }
+        return cache.find(token);
+    }
+
+    /**
+     * Counts the bytes served by a public link, and a download when {@code download} is set;
+     * nothing is written until the next flush.
+     */
+    public void recordDownload(SharedFile share, long bytes, boolean download) {
+        downloadCounters.record(share.shareId(), bytes, download);
+    }
+
+    /**
+     * Checks a passcode for a protected link. The attempt is counted against the link and the
+     * client first, so callers who are locked out cost no hashing at all.
+     *
+     * @throws ShareLockedException when the link or the client is locked out
+     * @throws PasscodeVerifier.PasscodeBusyException when too many checks are already waiting
+     */
+    public CompletableFuture<Boolean> checkPasscode(String token, SharedFile share, String passcode,
+                                                    String clientAddress) {
+        Duration wait = attemptLimiter.tryAcquire(token, clientAddress);
+        if (!wait.isZero()) {
+            throw new ShareLockedException(wait);
+        }
+        return passcodeVerifier.matches(passcode, share.passcodeHash()).thenApply(matches -> {
+            if (matches) {
+                attemptLimiter.succeeded(token);
+            }
+            return matches;
+        });
+    }
+
+    private String hash(String passcode) {
+        if (passcode.length() < MIN_PASSCODE_LENGTH
+                || passcode.getBytes(StandardCharsets.UTF_8).length > MAX_PASSCODE_BYTES) {
+            throw new IllegalArgumentException("passcode must have at least " + MIN_PASSCODE_LENGTH
+                    + " characters and at most " + MAX_PASSCODE_BYTES + " bytes");
+        }
+        return passcodeVerifier.hash(passcode).join();
+    }
+
+    private ShareLink withUrl(ShareLink link) {
+        return link.withUrl(UriComponentsBuilder.fromUriString(appBaseUrl)
+                .pathSegment("s", link.token())
+                .build()
+                .toUriString());
+    }
+
+    private static String generateToken() {
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    public static class ShareNotFoundException extends RuntimeException {
+        public ShareNotFoundException(String message) {
+            super(message);
+        }
+    }
+
+    public static class ShareLockedException extends RuntimeException {
+        private final Duration retryAfter;
+
+        public ShareLockedException(Duration retryAfter) {
+            super("Too many attempts; try again later");
+            this.retryAfter = retryAfter;
+        }
+
+        public Duration getRetryAfter() {
+            return retryAfter;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.teuportal.core.share;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Public share links ({@code app.share.*}).
+ */
+@ConfigurationProperties(prefix = "app.share")
+public class ShareProperties {
+
+    private final Cache cache = new Cache();
+    private final Passcode passcode = new Passcode();
+    private final Stats stats = new Stats();
+    private Duration maxExpiry = Duration.ofDays(365);
+    private Duration listenerRetryDelay = Duration.ofSeconds(5);
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Passcode getPasscode() {
+        return passcode;
+    }
+
+    public Stats getStats() {
+        return stats;
+    }
+
+    /**
+     * Longest lifetime a link may be given; links without an expiry are still allowed.
+     */
+    public Duration getMaxExpiry() {
+        return maxExpiry;
+    }
+
+    public void setMaxExpiry(Duration maxExpiry) {
+        this.maxExpiry = maxExpiry;
+    }
+
+    public Duration getListenerRetryDelay() {
+        return listenerRetryDelay;
+    }
+
+    public void setListenerRetryDelay(Duration listenerRetryDelay) {
+        this.listenerRetryDelay = listenerRetryDelay;
+    }
+
+    /**
+     * Resolved links are kept for {@code ttl}, or until the link expires if that is sooner;
+     * unknown tokens for {@code negativeTtl}.
+     */
+    public static class Cache {
+        private int maxEntries = 100_000;
+        private Duration ttl = Duration.ofMinutes(10);
+        private Duration negativeTtl = Duration.ofSeconds(30);
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public Duration getNegativeTtl() {
+            return negativeTtl;
+        }
+
+        public void setNegativeTtl(Duration negativeTtl) {
+            this.negativeTtl = negativeTtl;
+        }
+    }
+
+    /**
+     * Download counts are kept in memory and added to {@code file_share_stats} every
+     * {@code flushInterval}; counts not yet flushed are lost if the node dies. A link's counters
+     * are dropped from memory once it has not been downloaded for {@code evictIdleAfter}.
+     */
+    public static class Stats {
+        private Duration flushInterval = Duration.ofSeconds(10);
+        private Duration evictIdleAfter = Duration.ofMinutes(5);
+
+        public Duration getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+
+        public Duration getEvictIdleAfter() {
+            return evictIdleAfter;
+        }
+
+        public void setEvictIdleAfter(Duration evictIdleAfter) {
+            this.evictIdleAfter = evictIdleAfter;
+        }
+    }
+
+    /**
+     * Passcode checks. Hashing runs on {@code threads} dedicated threads with at most
+     * {@code queueCapacity} checks waiting; beyond that callers are turned away. Each link and
+     * each client address gets {@code freeAttempts} attempts, after which every further attempt
+     * locks it out for {@code baseLockout}, doubling up to {@code maxLockout}; counts are forgotten
+     * after {@code maxLockout} without attempts. At most {@code maxTrackedClients} client and
+     * {@code maxTrackedLinks} link counts are kept. A correct passcode sets a cookie that opens the
+     * link for {@code cookieTtl} without hashing again.
+     */
+    public static class Passcode {
+        private int threads = 2;
+        private int queueCapacity = 32;
+        private int bcryptStrength = 10;
+        private int freeAttempts = 5;
+        private Duration baseLockout = Duration.ofSeconds(1);
+        private Duration maxLockout = Duration.ofMinutes(15);
+        private int maxTrackedClients = 100_000;
+        private int maxTrackedLinks = 100_000;
+        private Duration cookieTtl = Duration.ofHours(12);
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getBcryptStrength() {
+            return bcryptStrength;
+        }
+
+        public void setBcryptStrength(int bcryptStrength) {
+            this.bcryptStrength = bcryptStrength;
+        }
+
+        public int getFreeAttempts() {
+            return freeAttempts;
+        }
+
+        public void setFreeAttempts(int freeAttempts) {
+            this.freeAttempts = freeAttempts;
+        }
+
+        public Duration getBaseLockout() {
+            return baseLockout;
+        }
+
+        public void setBaseLockout(Duration baseLockout) {
+            this.baseLockout = baseLockout;
+        }
+
+        public Duration getMaxLockout() {
+            return maxLockout;
+        }
+
+        public void setMaxLockout(Duration maxLockout) {
+            this.maxLockout = maxLockout;
+        }
+
+        public int getMaxTrackedClients() {
+            return maxTrackedClients;
+        }
+
+        public void setMaxTrackedClients(int maxTrackedClients) {
+            this.maxTrackedClients = maxTrackedClients;
+        }
+
+        public int getMaxTrackedLinks() {
+            return maxTrackedLinks;
+        }
+
+        public void setMaxTrackedLinks(int maxTrackedLinks) {
+            this.maxTrackedLinks = maxTrackedLinks;
+        }
+
+        public Duration getCookieTtl() {
+            return cookieTtl;
+        }
+
+        public void setCookieTtl(Duration cookieTtl) {
+            this.cookieTtl = cookieTtl;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.teuportal.core.share;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+/**
+ * Download totals of a share link: downloads, each counted once however many ranges it was
+ * fetched in, every byte served, and when the link was last downloaded.
+ */
+public record ShareStats(
+        UUID shareId,
+        long downloads,
+        long bytesServed,
+        OffsetDateTime lastAccessedAt
+) {
+
+    ShareStats plus(ShareDownloadCounters.Delta delta) {
+        OffsetDateTime accessed = lastAccessedAt;
+        if (delta.lastAccessedAt() != null
+                && (accessed == null || delta.lastAccessedAt().isAfter(accessed.toInstant()))) {
+            accessed = delta.lastAccessedAt().atOffset(ZoneOffset.UTC);
+        }
+        return new ShareStats(shareId, downloads + delta.downloads(), bytesServed + delta.bytes(), accessed);
+    }
+}
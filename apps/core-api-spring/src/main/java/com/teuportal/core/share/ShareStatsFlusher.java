@@ -0,0 +1,112 @@
+package com.teuportal.core.share;
+
+import com.teuportal.core.datasource.DataSourceRouteHolder;
+import com.teuportal.core.datasource.Workload;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Adds the download counts of {@link ShareDownloadCounters} to {@code file_share_stats} every
+ * {@code flushInterval}, all links in one statement and one transaction. Every node flushes its own
+ * counts; the upsert adds to the totals, so no coordination is needed. Counts that fail to flush
+ * are put back and retried, and the last counts are flushed when the node shuts down.
+ */
+public class ShareStatsFlusher implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ShareStatsFlusher.class);
+
+    private final ShareDownloadCounters counters;
+    private final ShareLinkRepository repository;
+    private final DataSourceRouteHolder routeHolder;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration flushInterval;
+
+    private volatile boolean running;
+    private volatile Thread worker;
+
+    public ShareStatsFlusher(ShareDownloadCounters counters,
+                             ShareLinkRepository repository,
+                             DataSourceRouteHolder routeHolder,
+                             PlatformTransactionManager transactionManager,
+                             Duration flushInterval) {
+        this.counters = counters;
+        this.repository = repository;
+        this.routeHolder = routeHolder;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.flushInterval = flushInterval;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        worker = Thread.ofPlatform()
+                .name("share-stats-flusher")
+                .daemon(true)
+                .start(() -> routeHolder.callAs(Workload.BACKGROUND, () -> {
+                    flushLoop();
+                    return null;
+                }));
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread current = worker;
+        if (current == null) {
+            return;
+        }
+        current.interrupt();
+        try {
+            current.join(flushInterval.toMillis() + 5_000);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops after the web server, so downloads still being served at shutdown are counted.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                Thread.sleep(flushInterval);
+            } catch (InterruptedException ex) {
+                // The interrupt is cleared, so the final flush below can still use the pool
+                break;
+            }
+            flush();
+        }
+        flush();
+    }
+
+    void flush() {
+        List<ShareDownloadCounters.Delta> deltas = counters.drain();
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> repository.recordDownloads(deltas));
+        } catch (RuntimeException ex) {
+            counters.restore(deltas);
+            log.warn("Flushing download counts of {} share links failed; retrying in {}", deltas.size(),
+                    flushInterval, ex);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.teuportal.core.share;
+
+import com.teuportal.core.storage.FileDownload;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * What a public link resolves to: enough to serve the file without a tenant transaction, and to
+ * check its passcode if it has one.
+ */
+public record SharedFile(
+        UUID shareId,
+        UUID companyId,
+        OffsetDateTime expiresAt,
+        String passcodeHash,
+        FileDownload file
+) {
+
+    public boolean passcodeProtected() {
+        return passcodeHash != null;
+    }
+}
@@ -0,0 +1,315 @@
+package com.teuportal.core.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Size-bounded cache of whole blobs on local disk, evicting with a segmented LRU: new entries start
+ * on probation and move to the protected segment on their second hit. A burst of one-off reads,
+ * such as a crawler or a bulk export, only cycles the probation segment and cannot push out files
+ * that are read again and again.
+ *
+ * <p>Concurrent misses for one key share a single fetch. Entries that survive a restart are picked
+ * up again, oldest first. An entry evicted right after {@link #get} returned its path may be gone
+ * before the caller opens it; that needs the whole cache to turn over in between.
+ */
+final class BlobCache {
+
+    private static final Logger log = LoggerFactory.getLogger(BlobCache.class);
+
+    // Share of the capacity the protected segment may hold
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private final Path directory;
+    private final Path fetching;
+    private final long maxBytes;
+    private final long maxProtectedBytes;
+    private final LinkedHashMap<String, Long> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Long> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long probationBytes;
+    private long protectedBytes;
+
+    BlobCache(Path directory, long maxBytes) {
+        this.directory = directory.toAbsolutePath().normalize();
+        this.fetching = this.directory.resolve(".fetching");
+        this.maxBytes = maxBytes;
+        this.maxProtectedBytes = (long) (maxBytes * PROTECTED_RATIO);
+        try {
+            Files.createDirectories(fetching);
+            load();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot open blob cache under " + this.directory, ex);
+        }
+    }
+
+    /**
+     * Loads a blob into a file at the given path; the cache moves it into place afterwards.
+     */
+    @FunctionalInterface
+    interface Fetcher {
+        void fetch(Path target) throws IOException;
+    }
+
+    /**
+     * Returns the cached file for {@code key}, counting the access, or {@code null} on a miss.
+     */
+    Path get(String key) {
+        synchronized (this) {
+            if (protectedSegment.get(key) != null) {
+                hits.incrementAndGet();
+                return path(key);
+            }
+            Long size = probation.remove(key);
+            if (size == null) {
+                return null;
+            }
+            protectedSegment.put(key, size);
+            probationBytes -= size;
+            protectedBytes += size;
+            demoteOverflow();
+            hits.incrementAndGet();
+            return path(key);
+        }
+    }
+
+    /**
+     * Like {@link #get} but without counting the access, for one-off reads that should not keep
+     * an entry alive.
+     */
+    Path peek(String key) {
+        return contains(key) ? path(key) : null;
+    }
+
+    boolean contains(String key) {
+        synchronized (this) {
+            return protectedSegment.containsKey(key) || probation.containsKey(key);
+        }
+    }
+
+    /**
+     * Returns the cached file for {@code key}, fetching it on a miss. Callers missing the same key
+     * at the same time wait for the first caller's fetch instead of starting their own.
+     */
+    Path getOrFetch(String key, Fetcher fetcher) {
+        Path cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+        CompletableFuture<Path> fetch = new CompletableFuture<>();
+        CompletableFuture<Path> running = inFlight.putIfAbsent(key, fetch);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            // Another fetch may have completed between the lookup and registering ours
+            Path path = get(key);
+            if (path == null) {
+                misses.incrementAndGet();
+                Path target = fetching.resolve(UUID.randomUUID() + ".part");
+                try {
+                    fetcher.fetch(target);
+                    path = admit(key, target);
+                } finally {
+                    Files.deleteIfExists(target);
+                }
+            }
+            fetch.complete(path);
+            return path;
+        } catch (IOException ex) {
+            UncheckedIOException failure = new UncheckedIOException("Failed to fetch blob " + key, ex);
+            fetch.completeExceptionally(failure);
+            throw failure;
+        } catch (RuntimeException ex) {
+            fetch.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, fetch);
+        }
+    }
+
+    /**
+     * Moves {@code source} into the cache as a new entry on probation and evicts what no longer
+     * fits. Returns the cached path, or {@code null} when the entry is larger than the whole cache
+     * and was dropped.
+     */
+    Path admit(String key, Path source) throws IOException {
+        long size = Files.size(source);
+        Path target = path(key);
+        synchronized (this) {
+            if (size > maxBytes) {
+                Files.deleteIfExists(source);
+                return null;
+            }
+            if (contains(key)) {
+                // Content-addressed, so the copy already cached is identical
+                Files.deleteIfExists(source);
+                return target;
+            }
+            Files.createDirectories(target.getParent());
+            move(source, target);
+            probation.put(key, size);
+            probationBytes += size;
+            evictOverflow(key);
+        }
+        return target;
+    }
+
+    void remove(String key) {
+        synchronized (this) {
+            Long size = probation.remove(key);
+            if (size != null) {
+                probationBytes -= size;
+            } else if ((size = protectedSegment.remove(key)) != null) {
+                protectedBytes -= size;
+            } else {
+                return;
+            }
+            deleteQuietly(path(key));
+        }
+    }
+
+    long hitCount() {
+        return hits.get();
+    }
+
+    long missCount() {
+        return misses.get();
+    }
+
+    synchronized long sizeBytes() {
+        return probationBytes + protectedBytes;
+    }
+
+    private Path path(String key) {
+        Path resolved = directory.resolve(key).normalize();
+        if (!resolved.startsWith(directory) || resolved.startsWith(fetching) || resolved.equals(directory)) {
+            throw new IllegalArgumentException("Invalid storage key");
+        }
+        return resolved;
+    }
+
+    // Called with the monitor held
+    private void demoteOverflow() {
+        Iterator<Map.Entry<String, Long>> eldest = protectedSegment.entrySet().iterator();
+        while (protectedBytes > maxProtectedBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            eldest.remove();
+            protectedBytes -= entry.getValue();
+            probation.put(entry.getKey(), entry.getValue());
+            probationBytes += entry.getValue();
+        }
+        evictOverflow(null);
+    }
+
+    // Called with the monitor held; unlinking is cheap, and doing it here keeps a re-admitted key
+    // from being deleted by an eviction that ran just before. The entry being admitted is kept.
+    private void evictOverflow(String admitted) {
+        evictFrom(probation, true, admitted);
+        evictFrom(protectedSegment, false, admitted);
+    }
+
+    private void evictFrom(LinkedHashMap<String, Long> segment, boolean isProbation, String admitted) {
+        Iterator<Map.Entry<String, Long>> eldest = segment.entrySet().iterator();
+        while (probationBytes + protectedBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            if (entry.getKey().equals(admitted)) {
+                // The newest probation entry; only older ones and the protected segment are left
+                break;
+            }
+            eldest.remove();
+            if (isProbation) {
+                probationBytes -= entry.getValue();
+            } else {
+                protectedBytes -= entry.getValue();
+            }
+            deleteQuietly(path(entry.getKey()));
+        }
+    }
+
+    private void load() throws IOException {
+        try (Stream<Path> leftovers = Files.list(fetching)) {
+            leftovers.forEach(BlobCache::deleteQuietly);
+        }
+        record Found(String key, long size, long modified) {
+        }
+        List<Found> found;
+        try (Stream<Path> files = Files.walk(directory)) {
+            found = files.filter(path -> !path.startsWith(fetching))
+                    .map(path -> {
+                        try {
+                            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                            if (!attributes.isRegularFile()) {
+                                return null;
+                            }
+                            String key = directory.relativize(path).toString().replace('\\', '/');
+                            return new Found(key, attributes.size(), attributes.lastModifiedTime().toMillis());
+                        } catch (IOException ex) {
+                            return null;
+                        }
+                    })
+                    .filter(Objects::nonNull)
+                    .sorted(Comparator.comparingLong(Found::modified))
+                    .toList();
+        }
+        synchronized (this) {
+            for (Found entry : found) {
+                probation.put(entry.key(), entry.size());
+                probationBytes += entry.size();
+            }
+            evictOverflow(null);
+        }
+        if (!found.isEmpty()) {
+            log.info("Blob cache resumed with {} entries, {} bytes", probation.size(), probationBytes);
+        }
+    }
+
+    private static Path await(CompletableFuture<Path> fetch) {
+        try {
+            return fetch.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // Untracked files are picked up again, and possibly evicted, on the next start
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.teuportal.core.storage;
+
+import java.time.Instant;
+
+/**
+ * A committed blob as the backend reports it.
+ */
+public record BlobEntry(
+        String key,
+        long sizeBytes,
+        Instant lastModified
+) {
+}
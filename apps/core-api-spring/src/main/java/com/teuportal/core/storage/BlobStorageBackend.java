@@ -0,0 +1,70 @@
+package com.teuportal.core.storage;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Where committed blobs live, addressed by {@code file.storage_key}. Uploads are always staged on
+ * local disk by {@link LocalBlobStore} first; a backend only takes over once the content hash, and
+ * with it the key, is known. Callers serialize {@link #promote} and {@link #delete} per key with
+ * {@link FileRepository#lockStorageKey}.
+ */
+public interface BlobStorageBackend {
+
+    /**
+     * Copies a staged blob to the backend ahead of the transaction that records it, without taking
+     * the key lock; this is where a remote backend spends its time. Returns {@code true} when the
+     * blob was created by this call. The staged file is left in place for {@link #promote}.
+     */
+    default boolean upload(StagedBlob blob, String key) {
+        return false;
+    }
+
+    /**
+     * Makes the blob available under {@code key} and consumes the staged file. Runs under the key
+     * lock inside the recording transaction, so it should be quick. Returns {@code false} when the
+     * content already existed.
+     */
+    boolean promote(StagedBlob blob, String key);
+
+    boolean exists(String key);
+
+    /**
+     * A file on local disk holding the blob's content, suitable for sendfile and
+     * {@link java.nio.channels.FileChannel#transferTo}. Empty when the backend serves this blob as
+     * a stream only, for example because it is too large to cache.
+     *
+     * @throws BlobNotFoundException when the blob does not exist
+     */
+    Optional<Path> localFile(String key, long sizeBytes);
+
+    /**
+     * Streams {@code count} bytes starting at {@code start}, without caching them locally.
+     *
+     * @throws BlobNotFoundException when the blob does not exist
+     */
+    InputStream open(String key, long start, long count);
+
+    void delete(String key);
+
+    /**
+     * What the backend itself holds under {@code key}, bypassing any local cache; empty when the
+     * blob does not exist.
+     */
+    Optional<BlobEntry> stat(String key);
+
+    /**
+     * Up to {@code limit} committed blobs in key order, starting after {@code afterKey}, or at the
+     * first key when it is {@code null}. Staging files, uploads in progress and cached copies are
+     * not listed.
+     */
+    List<BlobEntry> list(String afterKey, int limit);
+
+    class BlobNotFoundException extends RuntimeException {
+        public BlobNotFoundException(String key) {
+            super("Blob " + key + " does not exist");
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.teuportal.core.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Signs and verifies the tokens of signed download URLs with HMAC-SHA256. A token is the encoded
+ * {@link SignedDownload} followed by its signature, and names the key that signed it, so it is
+ * verified with nothing but the configured {@link SigningKeys}: no session, tenant or database
+ * lookup.
+ * <p>
+ * Tokens are signed, not encrypted. A content-addressed storage key is therefore left out and
+ * derived again from the company and checksum; only keys of another form are carried.
+ */
+class DownloadSigner {
+
+    private static final int VERSION = 1;
+    // sign refuses longer tokens, and verify rejects them before decoding
+    private static final int MAX_TOKEN_LENGTH = 4096;
+    // The name only labels the saved file, so a longer one is shortened rather than refused
+    private static final int MAX_NAME_LENGTH = 255;
+    private static final int MAX_EXTENSION_LENGTH = 16;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SigningKeys keys;
+    private final Clock clock;
+
+    DownloadSigner(SigningKeys keys, Clock clock) {
+        this.keys = keys;
+        this.clock = clock;
+    }
+
+    /**
+     * @throws IllegalArgumentException when the file's metadata does not fit a token
+     */
+    String sign(SignedDownload download) {
+        byte[] payload = encode(download);
+        String token = ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(keys.sign(payload));
+        if (token.length() > MAX_TOKEN_LENGTH) {
+            throw new IllegalArgumentException("The file's metadata is too long for a signed URL");
+        }
+        return token;
+    }
+
+    /**
+     * Returns the grant of a well-formed, correctly signed and unexpired token, or empty.
+     */
+    Optional<SignedDownload> verify(String token) {
+        if (token == null || token.length() > MAX_TOKEN_LENGTH) {
+            return Optional.empty();
+        }
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            return Optional.empty();
+        }
+        try {
+            byte[] payload = DECODER.decode(token.substring(0, dot));
+            byte[] signature = DECODER.decode(token.substring(dot + 1));
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            if (in.readUnsignedByte() != VERSION) {
+                return Optional.empty();
+            }
+            if (!keys.verify(in.readUTF(), payload, signature)) {
+                return Optional.empty();
+            }
+            SignedDownload download = decode(in);
+            if (!clock.instant().isBefore(download.expiresAt())) {
+                return Optional.empty();
+            }
+            return Optional.of(download);
+        } catch (IllegalArgumentException | IOException ex) {
+            return Optional.empty();
+        }
+    }
+
+    private byte[] encode(SignedDownload download) {
+        FileDownload file = download.file();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeUTF(keys.signingKeyId());
+            writeUuid(out, download.companyId());
+            writeUuid(out, file.id());
+            boolean contentKey = file.storageKey().equals(LocalBlobStore.contentKey(download.companyId(), file.checksum()));
+            out.writeUTF(contentKey ? "" : file.storageKey());
+            out.writeLong(file.sizeBytes());
+            out.writeUTF(shortened(file.name()));
+            out.writeUTF(file.mimeType());
+            out.writeUTF(file.checksum());
+            out.writeLong(file.createdAt().toInstant().toEpochMilli());
+            out.writeLong(download.expiresAt().getEpochSecond());
+            out.writeBoolean(download.inline());
+            FileDownloadWriter.Region range = download.range();
+            out.writeLong(range == null ? -1 : range.start());
+            out.writeLong(range == null ? 0 : range.count());
+        } catch (UTFDataFormatException ex) {
+            throw new IllegalArgumentException("The file's metadata is too long for a signed URL", ex);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static SignedDownload decode(DataInputStream in) throws IOException {
+        UUID companyId = readUuid(in);
+        UUID fileId = readUuid(in);
+        String storageKey = in.readUTF();
+        long sizeBytes = in.readLong();
+        String name = in.readUTF();
+        String mimeType = in.readUTF();
+        String checksum = in.readUTF();
+        OffsetDateTime createdAt = OffsetDateTime.ofInstant(Instant.ofEpochMilli(in.readLong()), ZoneOffset.UTC);
+        Instant expiresAt = Instant.ofEpochSecond(in.readLong());
+        boolean inline = in.readBoolean();
+        long rangeStart = in.readLong();
+        long rangeCount = in.readLong();
+        FileDownloadWriter.Region range = rangeStart < 0 ? null : new FileDownloadWriter.Region(rangeStart, rangeCount);
+        if (storageKey.isEmpty()) {
+            storageKey = LocalBlobStore.contentKey(companyId, checksum);
+        }
+        FileDownload file = new FileDownload(fileId, name, sizeBytes, mimeType, checksum, storageKey, createdAt);
+        return new SignedDownload(companyId, file, inline, expiresAt, range);
+    }
+
+    /**
+     * Cuts a long name down to {@link #MAX_NAME_LENGTH} characters, keeping a short extension.
+     */
+    static String shortened(String name) {
+        if (name.length() <= MAX_NAME_LENGTH) {
+            return name;
+        }
+        int dot = name.lastIndexOf('.');
+        String extension = dot > 0 && name.length() - dot <= MAX_EXTENSION_LENGTH ? name.substring(dot) : "";
+        int end = MAX_NAME_LENGTH - extension.length();
+        if (Character.isHighSurrogate(name.charAt(end - 1))) {
+            end--;
+        }
+        return name.substring(0, end) + extension;
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+}
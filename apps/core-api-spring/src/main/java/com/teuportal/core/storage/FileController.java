@@ -0,0 +1,211 @@
+package com.teuportal.core.storage;
+
+import com.teuportal.core.datasource.RequestWorkload;
+import com.teuportal.core.datasource.Workload;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+@RestController
+@RequestMapping("/api/files")
+@Tag(name = "files", description = "File uploads and downloads")
+public class FileController {
+
+    private final FileUploadService fileUploadService;
+    private final FileDownloadService fileDownloadService;
+    private final FileDownloadWriter fileDownloadWriter;
+    private final SignedDownloadService signedDownloadService;
+    private final ZipExportService zipExportService;
+    private final TrashService trashService;
+
+    public FileController(FileUploadService fileUploadService,
+                          FileDownloadService fileDownloadService,
+                          FileDownloadWriter fileDownloadWriter,
+                          SignedDownloadService signedDownloadService,
+                          ZipExportService zipExportService,
+                          TrashService trashService) {
+        this.fileUploadService = fileUploadService;
+        this.fileDownloadService = fileDownloadService;
+        this.fileDownloadWriter = fileDownloadWriter;
+        this.signedDownloadService = signedDownloadService;
+        this.zipExportService = zipExportService;
+        this.trashService = trashService;
+    }
+
+    /**
+     * Accepts the raw file bytes as the request body (not multipart), so the upload is streamed
+     * straight to storage.
+     */
+    @PostMapping(consumes = MediaType.ALL_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Upload a file as a raw request body")
+    public ResponseEntity<?> upload(@RequestParam("name") String name,
+                                    @RequestParam(value = "folderId", required = false) UUID folderId,
+                                    HttpServletRequest request) {
+        if (!StringUtils.hasText(name) || name.chars().anyMatch(Character::isISOControl)) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("status", "error", "message", "A valid file name is required."));
+        }
+        String mimeType = StringUtils.hasText(request.getContentType())
+                ? request.getContentType()
+                : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        try {
+            StoredFile stored = fileUploadService.upload(name.trim(), mimeType, folderId,
+                    request.getContentLengthLong(), request.getInputStream());
+            return ResponseEntity.created(URI.create("/api/files/" + stored.id())).body(stored);
+        } catch (LocalBlobStore.BlobTooLargeException ex) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .header(HttpHeaders.CONNECTION, "close")
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        } catch (FileUploadService.LengthRequiredException ex) {
+            return ResponseEntity.status(HttpStatus.LENGTH_REQUIRED)
+                    .header(HttpHeaders.CONNECTION, "close")
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        } catch (StorageQuotaService.QuotaExceededException ex) {
+            return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE)
+                    .header(HttpHeaders.CONNECTION, "close")
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        } catch (FileUploadService.FolderNotFoundException ex) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Streams a file's content with support for {@code Range}, {@code If-Range} and conditional
+     * requests. The metadata lookup has committed before the first byte is sent, so a long download
+     * or a seeking video player never holds a pooled connection.
+     */
+    @GetMapping("/{id}/content")
+    @Operation(summary = "Download a file's content")
+    public ResponseEntity<?> download(@PathVariable("id") UUID id,
+                                      @RequestParam(value = "inline", defaultValue = "false") boolean inline,
+                                      ServletWebRequest webRequest) throws IOException {
+        Optional<FileDownload> file = fileDownloadService.find(id);
+        if (file.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("status", "error", "message", "File not found"));
+        }
+        FileDownload download = file.get();
+        if (!fileDownloadWriter.isAvailable(download)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("status", "error", "message", "File content is not available"));
+        }
+        if (webRequest.checkNotModified(download.etag(), download.lastModified())) {
+            // 304 or 412 has already been written
+            return null;
+        }
+        HttpServletResponse response = webRequest.getResponse();
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        fileDownloadWriter.write(download, inline, webRequest.getRequest(), response);
+        return null;
+    }
+
+    /**
+     * Signs a short-lived URL to the file's content that works without a session, for embedded
+     * previews and for fetching through shared caches. With {@code offset} the URL serves only
+     * that byte range.
+     */
+    @PostMapping(path = "/{id}/signed-url", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Create a signed download URL")
+    public ResponseEntity<?> signDownload(@PathVariable("id") UUID id,
+                                          @RequestBody(required = false) SignedUrlRequest request) {
+        SignedUrlRequest options = request == null ? new SignedUrlRequest(null, null, null, null) : request;
+        Optional<SignedDownloadUrl> url;
+        try {
+            url = signedDownloadService.issue(id,
+                    options.expiresIn() == null ? null : Duration.ofSeconds(options.expiresIn()),
+                    options.offset(), options.length(), Boolean.TRUE.equals(options.inline()));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        }
+        if (url.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("status", "error", "message", "File not found"));
+        }
+        return ResponseEntity.ok(url.get());
+    }
+
+    @DeleteMapping("/{id}")
+    @Operation(summary = "Move a file to the trash")
+    public ResponseEntity<?> delete(@PathVariable("id") UUID id) {
+        try {
+            trashService.trash(new ItemSelection(null, List.of(id)));
+            return ResponseEntity.noContent().build();
+        } catch (TrashService.ItemNotFoundException ex) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        }
+    }
+
+    /**
+     * Streams the selected files as one ZIP archive, in the order given. Files deleted while the
+     * archive is being written are left out.
+     */
+    @PostMapping(path = "/export", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @RequestWorkload(Workload.BACKGROUND)
+    @Operation(summary = "Download several files as a ZIP archive")
+    public ResponseEntity<?> export(@Valid @RequestBody ExportFilesRequest request,
+                                    HttpServletResponse response) throws IOException {
+        ZipExportService.PreparedExport export;
+        try {
+            export = zipExportService.prepareSelection(request.fileIds());
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        } catch (ZipExportService.ExportFileNotFoundException ex) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        } catch (ZipExportService.ExportTooLargeException ex) {
+            return ResponseEntity.unprocessableEntity()
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        } catch (ZipExportService.ExportBusyException ex) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        }
+        try (export) {
+            zipExportService.write(export, response);
+        }
+        return null;
+    }
+
+    public record ExportFilesRequest(@NotEmpty List<UUID> fileIds) {
+    }
+
+    /**
+     * @param expiresIn lifetime in seconds
+     */
+    public record SignedUrlRequest(Long expiresIn, Long offset, Long length, Boolean inline) {
+    }
+}
@@ -0,0 +1,29 @@
+package com.teuportal.core.storage;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Everything needed to serve a file's bytes once the metadata transaction has ended.
+ */
+public record FileDownload(
+        UUID id,
+        String name,
+        long sizeBytes,
+        String mimeType,
+        String checksum,
+        String storageKey,
+        OffsetDateTime createdAt
+) {
+
+    /**
+     * Strong validator: the checksum is the SHA-256 of the content, which never changes for a row.
+     */
+    public String etag() {
+        return "\"" + checksum + "\"";
+    }
+
+    public long lastModified() {
+        return createdAt.toInstant().toEpochMilli();
+    }
+}
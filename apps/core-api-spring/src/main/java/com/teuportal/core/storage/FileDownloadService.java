@@ -0,0 +1,29 @@
+package com.teuportal.core.storage;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Looks up download metadata in its own read-only transaction. The transaction, and with it the
+ * pooled connection, has ended by the time the caller starts streaming bytes.
+ */
+@Service
+public class FileDownloadService {
+
+    private final FileRepository fileRepository;
+    private final TransactionTemplate readOnlyTemplate;
+
+    public FileDownloadService(FileRepository fileRepository, PlatformTransactionManager transactionManager) {
+        this.fileRepository = fileRepository;
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+    }
+
+    public Optional<FileDownload> find(UUID fileId) {
+        return readOnlyTemplate.execute(status -> fileRepository.findDownload(fileId));
+    }
+}
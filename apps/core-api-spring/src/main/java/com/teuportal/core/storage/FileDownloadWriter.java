@@ -0,0 +1,271 @@
+package com.teuportal.core.storage;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Writes a blob to the servlet response with byte-range support. Whole files and single ranges
+ * are handed to the container's sendfile path when the connector offers it, so the bytes go from
+ * the page cache to the socket without passing through the JVM. Otherwise, and for
+ * {@code multipart/byteranges} responses, each region is copied with {@link FileChannel#transferTo}.
+ * Blobs the backend has no local file for are streamed from it range by range.
+ */
+@Component
+public class FileDownloadWriter {
+
+    // Tomcat request attributes; see org.apache.coyote.Constants
+    static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private final BlobStorageBackend storageBackend;
+
+    public FileDownloadWriter(BlobStorageBackend storageBackend) {
+        this.storageBackend = storageBackend;
+    }
+
+    public boolean isAvailable(FileDownload file) {
+        return storageBackend.exists(file.storageKey());
+    }
+
+    /**
+     * Serves {@code file}, honouring {@code Range} and {@code If-Range}. Conditional GET headers are
+     * expected to have been evaluated by the caller. Returns the length of the response body, which
+     * is 0 for {@code HEAD} and unsatisfiable ranges.
+     */
+    public long write(FileDownload file, boolean inline, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        return write(file, inline, null, request, response);
+    }
+
+    /**
+     * Like {@link #write(FileDownload, boolean, HttpServletRequest, HttpServletResponse)}, but only
+     * bytes inside {@code window} may be served: a request without ranges gets the window as a
+     * partial response, and one asking for bytes outside it is refused as unsatisfiable.
+     */
+    long write(FileDownload file, boolean inline, Region window, HttpServletRequest request,
+               HttpServletResponse response) throws IOException {
+        long length = file.sizeBytes();
+        boolean head = "HEAD".equals(request.getMethod());
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition(file.name(), inline));
+
+        List<Region> regions;
+        try {
+            regions = requestedRegions(request, file);
+            if (window != null) {
+                regions = withinWindow(regions, window, length);
+            }
+        } catch (IllegalArgumentException ex) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.setContentLength(0);
+            return 0;
+        }
+
+        if (regions.size() > 1) {
+            return writeMultipart(file, regions, head, response);
+        }
+        Region region = regions.isEmpty() ? new Region(0, length) : regions.get(0);
+        if (!regions.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, region.contentRange(length));
+        }
+        response.setContentType(file.mimeType());
+        response.setContentLengthLong(region.count());
+        if (head || region.count() == 0) {
+            return 0;
+        }
+        Optional<Path> local = storageBackend.localFile(file.storageKey(), length);
+        if (local.isEmpty()) {
+            stream(file, region, response.getOutputStream());
+            return region.count();
+        }
+        Path path = local.get();
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+            // The container streams the file after the handler returns; no body may be written here
+            request.setAttribute(SENDFILE_FILENAME_ATTR, path.toString());
+            request.setAttribute(SENDFILE_START_ATTR, region.start());
+            request.setAttribute(SENDFILE_END_ATTR, region.start() + region.count());
+            return region.count();
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            transfer(channel, region, out);
+        }
+        return region.count();
+    }
+
+    /**
+     * Returns the satisfiable ranges, or an empty list when the whole file should be sent.
+     *
+     * @throws IllegalArgumentException when the header is malformed or no range is satisfiable
+     */
+    List<Region> requestedRegions(HttpServletRequest request, FileDownload file) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        long length = file.sizeBytes();
+        if (rangeHeader == null || length == 0 || !ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), file)) {
+            return List.of();
+        }
+        List<Region> regions = new ArrayList<>();
+        for (HttpRange range : HttpRange.parseRanges(rangeHeader)) {
+            long start = range.getRangeStart(length);
+            if (start >= length) {
+                // Unsatisfiable on its own; the request fails only if every range is
+                continue;
+            }
+            long end = range.getRangeEnd(length);
+            regions.add(new Region(start, end - start + 1));
+        }
+        if (regions.isEmpty()) {
+            throw new IllegalArgumentException("No satisfiable range");
+        }
+        long requested = regions.stream().mapToLong(Region::count).sum();
+        if (regions.size() > 1 && requested > length) {
+            // Overlapping ranges could amplify one file many times over; send it once instead
+            return List.of();
+        }
+        return regions;
+    }
+
+    private static List<Region> withinWindow(List<Region> regions, Region window, long length) {
+        if (window.start() >= length) {
+            throw new IllegalArgumentException("Window is past the end of the file");
+        }
+        if (regions.isEmpty()) {
+            return List.of(new Region(window.start(), Math.min(window.count(), length - window.start())));
+        }
+        long windowEnd = window.start() + window.count();
+        for (Region region : regions) {
+            if (region.start() < window.start() || region.start() + region.count() > windowEnd) {
+                throw new IllegalArgumentException("Range outside the signed window");
+            }
+        }
+        return regions;
+    }
+
+    static String contentDisposition(String name, boolean inline) {
+        ContentDisposition.Builder builder = inline ? ContentDisposition.inline() : ContentDisposition.attachment();
+        // Plain ASCII names stay readable; anything else is sent as an RFC 5987 filename*
+        if (StandardCharsets.US_ASCII.newEncoder().canEncode(name)) {
+            builder.filename(name);
+        } else {
+            builder.filename(name, StandardCharsets.UTF_8);
+        }
+        return builder.build().toString();
+    }
+
+    private static boolean ifRangeMatches(String ifRange, FileDownload file) {
+        if (ifRange == null) {
+            return true;
+        }
+        String value = ifRange.trim();
+        if (value.startsWith("\"") || value.startsWith("W/")) {
+            // If-Range requires strong comparison, so a weak validator never matches
+            return value.equals(file.etag());
+        }
+        try {
+            long since = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return since / 1000 == file.lastModified() / 1000;
+        } catch (DateTimeParseException ex) {
+            return false;
+        }
+    }
+
+    private long writeMultipart(FileDownload file,
+                                List<Region> regions,
+                                boolean head,
+                                HttpServletResponse response) throws IOException {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        List<byte[]> partHeaders = new ArrayList<>(regions.size());
+        long contentLength = 0;
+        for (Region region : regions) {
+            byte[] header = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + file.mimeType() + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + region.contentRange(file.sizeBytes()) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(header);
+            contentLength += header.length + region.count();
+        }
+        byte[] trailer = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += trailer.length;
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (head) {
+            return 0;
+        }
+        OutputStream stream = response.getOutputStream();
+        Optional<Path> local = storageBackend.localFile(file.storageKey(), file.sizeBytes());
+        if (local.isEmpty()) {
+            for (int i = 0; i < regions.size(); i++) {
+                stream.write(partHeaders.get(i));
+                stream(file, regions.get(i), stream);
+            }
+        } else {
+            WritableByteChannel out = Channels.newChannel(stream);
+            try (FileChannel channel = FileChannel.open(local.get(), StandardOpenOption.READ)) {
+                for (int i = 0; i < regions.size(); i++) {
+                    stream.write(partHeaders.get(i));
+                    transfer(channel, regions.get(i), out);
+                }
+            }
+        }
+        stream.write(trailer);
+        return contentLength;
+    }
+
+    private void stream(FileDownload file, Region region, OutputStream out) throws IOException {
+        try (InputStream in = storageBackend.open(file.storageKey(), region.start(), region.count())) {
+            if (in.transferTo(out) != region.count()) {
+                throw new EOFException("Blob is shorter than its recorded size");
+            }
+        }
+    }
+
+    private static void transfer(FileChannel channel, Region region, WritableByteChannel out) throws IOException {
+        long position = region.start();
+        long remaining = region.count();
+        while (remaining > 0) {
+            long sent = channel.transferTo(position, remaining, out);
+            if (sent <= 0 && position >= channel.size()) {
+                throw new EOFException("Blob is shorter than its recorded size");
+            }
+            position += sent;
+            remaining -= sent;
+        }
+    }
+
+    record Region(long start, long count) {
+
+        String contentRange(long length) {
+            return "bytes " + start + "-" + (start + count - 1) + "/" + length;
+        }
+    }
+}
@@ -1,19 +1,341 @@
 package com.teuportal.core.storage;
 
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public class FileRepository {
 
+    private static final RowMapper<StoredFile> ROW_MAPPER = (rs, rowNum) -> new StoredFile(
+            rs.getObject("id", UUID.class),
+            rs.getObject("folder_id", UUID.class),
+            rs.getString("name"),
+            rs.getLong("size_bytes"),
+            rs.getString("mime_type"),
+            rs.getString("checksum"),
+            rs.getObject("created_at", OffsetDateTime.class)
+    );
+
+    private static final RowMapper<FileDownload> DOWNLOAD_ROW_MAPPER = (rs, rowNum) -> new FileDownload(
+            rs.getObject("id", UUID.class),
+            rs.getString("name"),
+            rs.getLong("size_bytes"),
+            rs.getString("mime_type"),
+            rs.getString("checksum"),
+            rs.getString("storage_key"),
+            rs.getObject("created_at", OffsetDateTime.class)
+    );
+
+    private static final RowMapper<FolderEntry> ENTRY_ROW_MAPPER = (rs, rowNum) -> new FolderEntry(
+            FolderEntry.Type.FILE,
+            rs.getObject("id", UUID.class),
+            rs.getString("name"),
+            rs.getLong("size_bytes"),
+            rs.getString("mime_type"),
+            rs.getObject("created_at", OffsetDateTime.class),
+            rs.getString("sort_name")
+    );
+
+    // A file is live when neither it nor its folder is in the trash
+    private static final String AND_LIVE = """
+            AND deleted_at IS NULL
+              AND NOT EXISTS (SELECT 1 FROM folder d WHERE d.id = file.folder_id AND d.deleted_at IS NOT NULL)
+            """;
+
     private final NamedParameterJdbcTemplate jdbcTemplate;
 
     public FileRepository(NamedParameterJdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
-    public long countFiles() {
-        Long count = jdbcTemplate.queryForObject("SELECT COUNT(1) FROM file", new java.util.HashMap<>(), Long.class);
-        return count == null ? 0L : count;
+    public StoredFile insert(UUID companyId,
+                             UUID folderId,
+                             String name,
+                             long sizeBytes,
+                             String mimeType,
+                             String checksum,
+                             String storageKey,
+                             UUID uploadedBy) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("companyId", companyId)
+                .addValue("folderId", folderId)
+                .addValue("name", name)
+                .addValue("sizeBytes", sizeBytes)
+                .addValue("mimeType", mimeType)
+                .addValue("checksum", checksum)
+                .addValue("storageKey", storageKey)
+                .addValue("uploadedBy", uploadedBy);
+        return jdbcTemplate.queryForObject("""
+                INSERT INTO file (company_id, folder_id, name, size_bytes, mime_type, checksum, storage_key, uploaded_by)
+                VALUES (:companyId, :folderId, :name, :sizeBytes, :mimeType, :checksum, :storageKey, :uploadedBy)
+                RETURNING id, folder_id, name, size_bytes, mime_type, checksum, created_at
+                """, params, ROW_MAPPER);
+    }
+
+    public Optional<StoredFile> findById(UUID fileId) {
+        return jdbcTemplate.query("""
+                SELECT id, folder_id, name, size_bytes, mime_type, checksum, created_at
+                FROM file
+                WHERE id = :id
+                  """ + AND_LIVE + """
+                """, new MapSqlParameterSource("id", fileId), ROW_MAPPER).stream().findFirst();
+    }
+
+    /**
+     * Returns one keyset page of the files directly in {@code folderId} (unfiled files when
+     * {@code null}), continuing after {@code afterKey}/{@code afterId} when given.
+     */
+    public List<FolderEntry> findInFolder(UUID folderId,
+                                          FolderContentsSort sort,
+                                          boolean descending,
+                                          Object afterKey,
+                                          UUID afterId,
+                                          int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("folderId", folderId)
+                .addValue("afterKey", afterKey)
+                .addValue("afterId", afterId)
+                .addValue("limit", limit);
+        String sql = "SELECT id, name, size_bytes, mime_type, created_at, sort_name FROM file WHERE "
+                + (folderId == null ? "folder_id IS NULL" : "folder_id = :folderId")
+                + " AND deleted_at IS NULL"
+                + (afterId == null ? "" : FolderContentsSort.seekAfter(sort.fileKey(), descending))
+                + FolderContentsSort.orderBy(sort.fileKey(), descending)
+                + " LIMIT :limit";
+        return jdbcTemplate.query(sql, params, ENTRY_ROW_MAPPER);
+    }
+
+    /**
+     * Pages through the files directly in {@code folderId} in upload order, with what a download
+     * needs for each.
+     */
+    public List<FileDownload> findDownloadsInFolder(UUID folderId,
+                                                    OffsetDateTime afterCreatedAt,
+                                                    UUID afterId,
+                                                    int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("folderId", folderId)
+                .addValue("afterCreatedAt", afterCreatedAt)
+                .addValue("afterId", afterId)
+                .addValue("limit", limit);
+        return jdbcTemplate.query("""
+                SELECT id, name, size_bytes, mime_type, checksum, storage_key, created_at
+                FROM file
+                WHERE folder_id = :folderId
+                  AND deleted_at IS NULL
+                """ + (afterId == null ? "" : "  AND (created_at, id) > (:afterCreatedAt, :afterId)\n") + """
+                ORDER BY created_at, id
+                LIMIT :limit
+                """, params, DOWNLOAD_ROW_MAPPER);
+    }
+
+    public List<FileDownload> findDownloads(Collection<UUID> fileIds) {
+        return jdbcTemplate.query("""
+                SELECT id, name, size_bytes, mime_type, checksum, storage_key, created_at
+                FROM file
+                WHERE id IN (:fileIds)
+                  """ + AND_LIVE + """
+                """, new MapSqlParameterSource("fileIds", fileIds), DOWNLOAD_ROW_MAPPER);
+    }
+
+    /**
+     * Totals the given files; ids that do not exist for the tenant are not counted.
+     */
+    public StorageUsage measure(Collection<UUID> fileIds) {
+        return jdbcTemplate.queryForObject("""
+                SELECT count(*) AS file_count,
+                       COALESCE(sum(size_bytes), 0) AS total_bytes,
+                       max(updated_at) AS last_modified_at
+                FROM file
+                WHERE id IN (:fileIds)
+                  """ + AND_LIVE + """
+                """, new MapSqlParameterSource("fileIds", fileIds), (rs, rowNum) -> new StorageUsage(
+                rs.getLong("file_count"),
+                rs.getLong("total_bytes"),
+                rs.getObject("last_modified_at", OffsetDateTime.class)));
+    }
+
+    /**
+     * Lists files anywhere below {@code folderId}, including the folder itself, newest first.
+     */
+    public List<StoredFile> findInSubtree(UUID folderId, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("folderId", folderId)
+                .addValue("limit", limit);
+        return jdbcTemplate.query("""
+                SELECT f.id, f.folder_id, f.name, f.size_bytes, f.mime_type, f.checksum, f.created_at
+                FROM folder_closure c
+                JOIN folder d ON d.id = c.descendant_id
+                JOIN file f ON f.folder_id = c.descendant_id
+                WHERE c.ancestor_id = :folderId
+                  AND d.deleted_at IS NULL
+                  AND f.deleted_at IS NULL
+                ORDER BY f.created_at DESC, f.id
+                LIMIT :limit
+                """, params, ROW_MAPPER);
+    }
+
+    public Optional<FileDownload> findDownload(UUID fileId) {
+        return jdbcTemplate.query("""
+                SELECT id, name, size_bytes, mime_type, checksum, storage_key, created_at
+                FROM file
+                WHERE id = :id
+                  """ + AND_LIVE + """
+                """, new MapSqlParameterSource("id", fileId), DOWNLOAD_ROW_MAPPER).stream().findFirst();
+    }
+
+    /**
+     * Moves the given live files into {@code folderId}, or to the root when {@code null}, in one
+     * statement. Returns how many moved.
+     */
+    public int moveAll(Collection<UUID> fileIds, UUID folderId) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("fileIds", fileIds)
+                .addValue("folderId", folderId);
+        return jdbcTemplate.update("""
+                UPDATE file
+                SET folder_id = :folderId, updated_at = now()
+                WHERE id IN (:fileIds)
+                  """ + AND_LIVE + """
+                """, params);
+    }
+
+    /**
+     * Storage keys of the given live files, for locking before they are copied.
+     */
+    public List<String> findStorageKeys(Collection<UUID> fileIds) {
+        return jdbcTemplate.queryForList("""
+                SELECT DISTINCT storage_key
+                FROM file
+                WHERE id IN (:fileIds)
+                  """ + AND_LIVE + """
+                """, new MapSqlParameterSource("fileIds", fileIds), String.class);
+    }
+
+    /**
+     * Copies the given live files into {@code folderId}. The copies share the originals' blobs;
+     * callers hold {@link #lockStorageKeys} for them so a purge cannot remove one meanwhile.
+     */
+    public List<StoredFile> copy(Collection<UUID> fileIds, UUID folderId, UUID uploadedBy) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("fileIds", fileIds)
+                .addValue("folderId", folderId)
+                .addValue("uploadedBy", uploadedBy);
+        return jdbcTemplate.query("""
+                INSERT INTO file (company_id, client_id, folder_id, name, size_bytes, mime_type, checksum, storage_key,
+                                  uploaded_by)
+                SELECT company_id, client_id, CAST(:folderId AS uuid), name, size_bytes, mime_type, checksum, storage_key,
+                       CAST(:uploadedBy AS uuid)
+                FROM file
+                WHERE id IN (:fileIds)
+                  """ + AND_LIVE + """
+                RETURNING id, folder_id, name, size_bytes, mime_type, checksum, created_at
+                """, params, ROW_MAPPER);
+    }
+
+    /**
+     * One batch of a folder copy job: the next {@code limit} live files directly in
+     * {@code folderId}, in the order of its name index, after {@code afterName}/{@code afterId}.
+     */
+    public List<CopySource> findCopySources(UUID folderId, String afterName, UUID afterId, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("folderId", folderId)
+                .addValue("afterName", afterName)
+                .addValue("afterId", afterId)
+                .addValue("limit", limit);
+        return jdbcTemplate.query("""
+                SELECT id, sort_name, size_bytes, storage_key
+                FROM file
+                WHERE folder_id = :folderId
+                  AND deleted_at IS NULL
+                """ + (afterId == null ? "" : "  AND (sort_name, id) > (:afterName, :afterId)\n") + """
+                ORDER BY sort_name, id
+                LIMIT :limit
+                """, params, (rs, rowNum) -> new CopySource(
+                rs.getObject("id", UUID.class),
+                rs.getString("sort_name"),
+                rs.getLong("size_bytes"),
+                rs.getString("storage_key")));
+    }
+
+    /**
+     * Copies files for a folder copy job from below {@code sourceId} into the matching folder below
+     * {@code targetId}. A copy's id is derived from the job and the original's id, as the folders'
+     * are, so a repeated batch inserts nothing twice. Returns the bytes copied.
+     */
+    public long copyForJob(UUID jobId, Collection<UUID> fileIds, UUID sourceId, UUID targetId, UUID uploadedBy) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("jobId", jobId.toString())
+                .addValue("fileIds", fileIds)
+                .addValue("sourceId", sourceId)
+                .addValue("targetId", targetId)
+                .addValue("uploadedBy", uploadedBy);
+        Long bytes = jdbcTemplate.queryForObject("""
+                WITH copied AS (
+                    INSERT INTO file (id, company_id, client_id, folder_id, name, size_bytes, mime_type, checksum,
+                                      storage_key, uploaded_by)
+                    SELECT md5(:jobId || id::text)::uuid, company_id, client_id,
+                           CASE WHEN folder_id = :sourceId THEN :targetId
+                                ELSE md5(:jobId || folder_id::text)::uuid END,
+                           name, size_bytes, mime_type, checksum, storage_key, CAST(:uploadedBy AS uuid)
+                    FROM file
+                    WHERE id IN (:fileIds)
+                      AND deleted_at IS NULL
+                    ON CONFLICT (id) DO NOTHING
+                    RETURNING size_bytes
+                )
+                SELECT COALESCE(sum(size_bytes), 0) FROM copied
+                """, params, Long.class);
+        return bytes == null ? 0 : bytes;
+    }
+
+    /**
+     * Which of {@code storageKeys} are still referenced by a file row of the tenant, trashed or not.
+     */
+    public List<String> findReferencedKeys(Collection<String> storageKeys) {
+        return jdbcTemplate.queryForList(
+                "SELECT DISTINCT storage_key FROM file WHERE storage_key IN (:storageKeys)",
+                new MapSqlParameterSource("storageKeys", storageKeys),
+                String.class);
+    }
+
+    public boolean existsByStorageKey(String storageKey) {
+        Boolean exists = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM file WHERE storage_key = :storageKey)",
+                new MapSqlParameterSource("storageKey", storageKey),
+                Boolean.class);
+        return Boolean.TRUE.equals(exists);
+    }
+
+    /**
+     * Serializes blob promotion and cleanup for one storage key across nodes until the current
+     * transaction ends.
+     */
+    public void lockStorageKey(String storageKey) {
+        jdbcTemplate.query("SELECT pg_advisory_xact_lock(hashtextextended(:storageKey, 0))",
+                new MapSqlParameterSource("storageKey", storageKey),
+                rs -> null);
+    }
+
+    /**
+     * Takes the {@link #lockStorageKey} lock for several keys, in a fixed order so two callers
+     * never wait on each other.
+     */
+    public void lockStorageKeys(Collection<String> storageKeys) {
+        jdbcTemplate.query("""
+                SELECT pg_advisory_xact_lock(hashtextextended(k.key, 0))
+                FROM (SELECT DISTINCT key FROM unnest(CAST(:storageKeys AS text[])) AS key ORDER BY key) k
+                """, new MapSqlParameterSource("storageKeys", storageKeys.toArray(String[]::new)), rs -> null);
+    }
+
+    record CopySource(UUID id, String sortName, long sizeBytes, String storageKey) {
     }
 }
@@ -0,0 +1,178 @@
+package com.teuportal.core.storage;
+
+import com.teuportal.core.tenancy.TenantContext;
+import com.teuportal.core.tenancy.TenantContextService;
+
+import java.io.InputStream;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Streams an upload to a staging file and copies it to the storage backend without holding a
+ * connection, then records the {@code file} row and promotes the blob into its content-addressed
+ * location in one short transaction. A blob created for a transaction that rolls back is removed
+ * again unless another committed row already refers to the same content.
+ */
+@Service
+public class FileUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(FileUploadService.class);
+
+    private final LocalBlobStore blobStore;
+    private final BlobStorageBackend storageBackend;
+    private final FileRepository fileRepository;
+    private final FolderRepository folderRepository;
+    private final StorageQuotaService quotaService;
+    private final TenantContextService tenantContextService;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate cleanupTemplate;
+    private final long maxUploadBytes;
+
+    public FileUploadService(LocalBlobStore blobStore,
+                             BlobStorageBackend storageBackend,
+                             FileRepository fileRepository,
+                             FolderRepository folderRepository,
+                             StorageQuotaService quotaService,
+                             TenantContextService tenantContextService,
+                             PlatformTransactionManager transactionManager,
+                             StorageProperties properties) {
+        this.blobStore = blobStore;
+        this.storageBackend = storageBackend;
+        this.fileRepository = fileRepository;
+        this.folderRepository = folderRepository;
+        this.quotaService = quotaService;
+        this.tenantContextService = tenantContextService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Runs from afterCompletion, where joining the finished transaction is not possible
+        this.cleanupTemplate = new TransactionTemplate(transactionManager);
+        this.cleanupTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxUploadBytes = properties.getMaxUploadSize().toBytes();
+    }
+
+    /**
+     * {@code declaredLength} is the request's content length, or {@code -1} when unknown. That many
+     * bytes are reserved against the quota before reading the body, and the body may not exceed the
+     * reservation. Bodies of unknown length are refused rather than reserving the whole upload
+     * limit, which would fail for any tenant with less quota left; resumable uploads cover them.
+     */
+    public StoredFile upload(String name, String mimeType, UUID folderId, long declaredLength, InputStream content) {
+        if (declaredLength < 0) {
+            throw new LengthRequiredException();
+        }
+        if (declaredLength > maxUploadBytes) {
+            throw new LocalBlobStore.BlobTooLargeException(maxUploadBytes);
+        }
+        TenantContext context = tenantContextService.currentContext();
+        UUID reservationId = quotaService.reserve(declaredLength);
+        StagedBlob staged = null;
+        try {
+            staged = blobStore.stage(content, declaredLength);
+            StagedBlob blob = staged;
+            boolean uploaded = upload(context, blob);
+            return transactionTemplate.execute(status -> {
+                StoredFile stored = register(context, blob, uploaded, name, mimeType, folderId);
+                quotaService.finish(reservationId, blob.sizeBytes());
+                return stored;
+            });
+        } catch (RuntimeException ex) {
+            releaseQuietly(reservationId, ex);
+            throw ex;
+        } finally {
+            if (staged != null) {
+                blobStore.discard(staged);
+            }
+        }
+    }
+
+    /**
+     * Copies a staged blob to the storage backend. Runs before the recording transaction, since an
+     * object store upload can take as long as receiving the file did; returns whether the blob was
+     * created, for {@link #register}.
+     */
+    boolean upload(TenantContext context, StagedBlob staged) {
+        return storageBackend.upload(staged, blobStore.keyFor(context.getCompanyId(), staged.sha256()));
+    }
+
+    /**
+     * Records a staged blob as a {@code file} row. Must run inside a transaction; the blob is moved
+     * into place only as part of it and removed again if that transaction rolls back.
+     * {@code uploaded} is the result of {@link #upload} for the same blob.
+     */
+    StoredFile register(TenantContext context, StagedBlob staged, boolean uploaded, String name, String mimeType,
+                        UUID folderId) {
+        String key = blobStore.keyFor(context.getCompanyId(), staged.sha256());
+        if (uploaded) {
+            // Already in the backend, so even a rollback before promotion must clean it up
+            TransactionSynchronizationManager.registerSynchronization(new RollbackCleanup(key));
+        }
+        // Foreign keys bypass RLS, so confirm the folder is visible to this tenant
+        if (folderId != null && !folderRepository.exists(folderId)) {
+            throw new FolderNotFoundException(folderId);
+        }
+        fileRepository.lockStorageKey(key);
+        if (storageBackend.promote(staged, key) && !uploaded) {
+            TransactionSynchronizationManager.registerSynchronization(new RollbackCleanup(key));
+        }
+        return fileRepository.insert(context.getCompanyId(), folderId, name, staged.sizeBytes(),
+                mimeType, staged.sha256(), key, context.getUserId());
+    }
+
+    private void releaseQuietly(UUID reservationId, RuntimeException cause) {
+        try {
+            quotaService.release(reservationId);
+        } catch (RuntimeException ex) {
+            // The reservation lapses on its own once it expires
+            cause.addSuppressed(ex);
+        }
+    }
+
+    private void removeIfUnreferenced(String key) {
+        cleanupTemplate.executeWithoutResult(status -> {
+            fileRepository.lockStorageKey(key);
+            if (!fileRepository.existsByStorageKey(key)) {
+                storageBackend.delete(key);
+            }
+        });
+    }
+
+    private final class RollbackCleanup implements TransactionSynchronization {
+
+        private final String key;
+
+        private RollbackCleanup(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status != STATUS_ROLLED_BACK) {
+                return;
+            }
+            try {
+                removeIfUnreferenced(key);
+            } catch (RuntimeException ex) {
+                log.warn("Failed to remove blob {} after rollback", key, ex);
+            }
+        }
+    }
+
+    public static class LengthRequiredException extends RuntimeException {
+        public LengthRequiredException() {
+            super("Content-Length is required; use a resumable upload for bodies of unknown length");
+        }
+    }
+
+    public static class FolderNotFoundException extends RuntimeException {
+        public FolderNotFoundException(UUID folderId) {
+            super("Folder " + folderId + " does not exist");
+        }
+    }
+}
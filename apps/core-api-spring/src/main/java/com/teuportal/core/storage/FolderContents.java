@@ -0,0 +1,12 @@
+package com.teuportal.core.storage;
+
+import java.util.List;
+
+/**
+ * A page of a folder listing; {@code nextCursor} is {@code null} on the last page.
+ */
+public record FolderContents(
+        List<FolderEntry> items,
+        String nextCursor
+) {
+}
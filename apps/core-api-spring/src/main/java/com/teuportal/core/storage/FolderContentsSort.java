@@ -0,0 +1,55 @@
+package com.teuportal.core.storage;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Sort keys for folder listings. Each maps to a column expression with a matching
+ * {@code (company_id, parent, key, id)} index; folders have no size and sort by name instead.
+ */
+public enum FolderContentsSort {
+    NAME("sort_name", "sort_name"),
+    SIZE("sort_name", "size_bytes"),
+    DATE("created_at", "created_at");
+
+    private final String folderKey;
+    private final String fileKey;
+
+    FolderContentsSort(String folderKey, String fileKey) {
+        this.folderKey = folderKey;
+        this.fileKey = fileKey;
+    }
+
+    String folderKey() {
+        return folderKey;
+    }
+
+    String fileKey() {
+        return fileKey;
+    }
+
+    /**
+     * Keyset predicate continuing after {@code :afterKey}/{@code :afterId}; the row comparison is an
+     * index condition on the matching listing index.
+     */
+    static String seekAfter(String keyExpression, boolean descending) {
+        return " AND (" + keyExpression + ", id) " + (descending ? "<" : ">") + " (:afterKey, :afterId)";
+    }
+
+    static String orderBy(String keyExpression, boolean descending) {
+        String direction = descending ? " DESC" : " ASC";
+        return " ORDER BY " + keyExpression + direction + ", id" + direction;
+    }
+
+    /**
+     * Converts a cursor's key back to the type bound against the key expression.
+     */
+    Object parseKey(FolderListingCursor.Phase phase, String key) {
+        if (this == DATE) {
+            return OffsetDateTime.parse(key);
+        }
+        if (this == SIZE && phase == FolderListingCursor.Phase.FILES) {
+            return Long.parseLong(key);
+        }
+        return key;
+    }
+}
@@ -0,0 +1,212 @@
+package com.teuportal.core.storage;
+
+import com.teuportal.core.datasource.RequestWorkload;
+import com.teuportal.core.datasource.Workload;
+
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/folders")
+@Tag(name = "folders", description = "Folder tree")
+public class FolderController {
+
+    private static final int MAX_LIMIT = 1000;
+
+    private final FolderService folderService;
+    private final TrashService trashService;
+    private final ZipExportService zipExportService;
+
+    public FolderController(FolderService folderService, TrashService trashService, ZipExportService zipExportService) {
+        this.folderService = folderService;
+        this.trashService = trashService;
+        this.zipExportService = zipExportService;
+    }
+
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Create a folder")
+    public ResponseEntity<?> create(@Valid @RequestBody CreateFolderRequest request) {
+        if (request.name().chars().anyMatch(Character::isISOControl)) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("status", "error", "message", "A valid folder name is required."));
+        }
+        try {
+            FolderSummary folder = folderService.create(request.name().trim(), request.parentId());
+            return ResponseEntity.created(URI.create("/api/folders/" + folder.id())).body(folder);
+        } catch (FileUploadService.FolderNotFoundException ex) {
+            return notFound(ex);
+        } catch (FolderService.FolderNameConflictException ex) {
+            return conflict(ex);
+        }
+    }
+
+    @PutMapping(path = "/{id}/parent", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Move a folder and everything below it")
+    public ResponseEntity<?> move(@PathVariable("id") UUID id, @RequestBody MoveFolderRequest request) {
+        try {
+            folderService.move(id, request.parentId());
+            return ResponseEntity.noContent().build();
+        } catch (FileUploadService.FolderNotFoundException ex) {
+            return notFound(ex);
+        } catch (FolderService.FolderNameConflictException | FolderService.InvalidFolderMoveException ex) {
+            return conflict(ex);
+        }
+    }
+
+    /**
+     * Moves the folder and everything below it into the trash; it is purged when the retention
+     * period ends unless restored first.
+     */
+    @DeleteMapping("/{id}")
+    @Operation(summary = "Move a folder and everything below it to the trash")
+    public ResponseEntity<?> delete(@PathVariable("id") UUID id) {
+        try {
+            trashService.trash(new ItemSelection(List.of(id), null));
+            return ResponseEntity.noContent().build();
+        } catch (TrashService.ItemNotFoundException ex) {
+            return notFound(ex);
+        }
+    }
+
+    /**
+     * Lists a folder's child folders followed by its files; omit {@code folderId} for the root.
+     * Pass the returned {@code nextCursor} back unchanged, with the same sort, to get the next page.
+     */
+    @GetMapping(path = "/contents", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Page through a folder's folders and files")
+    public ResponseEntity<?> contents(@RequestParam(value = "folderId", required = false) UUID folderId,
+                                      @RequestParam(value = "sort", defaultValue = "name") String sort,
+                                      @RequestParam(value = "order", defaultValue = "asc") String order,
+                                      @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                      @RequestParam(value = "cursor", required = false) String cursor) {
+        if (!"asc".equalsIgnoreCase(order) && !"desc".equalsIgnoreCase(order)) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("status", "error", "message", "order must be asc or desc"));
+        }
+        try {
+            FolderContentsSort sortKey = FolderContentsSort.valueOf(sort.toUpperCase(Locale.ROOT));
+            return ResponseEntity.ok(folderService.contents(folderId, sortKey, "desc".equalsIgnoreCase(order),
+                    clamp(limit), cursor));
+        } catch (FileUploadService.FolderNotFoundException ex) {
+            return notFound(ex);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        }
+    }
+
+    @GetMapping(path = "/{id}/breadcrumbs", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Path from the root to a folder")
+    public ResponseEntity<?> breadcrumbs(@PathVariable("id") UUID id) {
+        try {
+            return ResponseEntity.ok(folderService.breadcrumbs(id));
+        } catch (FileUploadService.FolderNotFoundException ex) {
+            return notFound(ex);
+        }
+    }
+
+    @GetMapping(path = "/{id}/subtree", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "All folders below a folder, shallowest first")
+    public ResponseEntity<?> subtree(@PathVariable("id") UUID id,
+                                     @RequestParam(value = "limit", defaultValue = "200") int limit) {
+        try {
+            List<FolderSummary> folders = folderService.subtree(id, clamp(limit));
+            return ResponseEntity.ok(folders);
+        } catch (FileUploadService.FolderNotFoundException ex) {
+            return notFound(ex);
+        }
+    }
+
+    @GetMapping(path = "/{id}/subtree/files", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "All files anywhere below a folder, newest first")
+    public ResponseEntity<?> subtreeFiles(@PathVariable("id") UUID id,
+                                          @RequestParam(value = "limit", defaultValue = "200") int limit) {
+        try {
+            return ResponseEntity.ok(folderService.filesInSubtree(id, clamp(limit)));
+        } catch (FileUploadService.FolderNotFoundException ex) {
+            return notFound(ex);
+        }
+    }
+
+    @GetMapping(path = "/{id}/usage", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "File count, total size and last change of everything below a folder")
+    public ResponseEntity<?> usage(@PathVariable("id") UUID id) {
+        try {
+            return ResponseEntity.ok(folderService.usage(id));
+        } catch (FileUploadService.FolderNotFoundException ex) {
+            return notFound(ex);
+        }
+    }
+
+    /**
+     * Streams the folder and everything below it as a ZIP archive. Metadata batches run on the
+     * background pool so a large export does not compete with interactive requests.
+     */
+    @GetMapping("/{id}/export")
+    @RequestWorkload(Workload.BACKGROUND)
+    @Operation(summary = "Download a folder and its subtree as a ZIP archive")
+    public ResponseEntity<?> export(@PathVariable("id") UUID id, HttpServletResponse response) throws IOException {
+        ZipExportService.PreparedExport export;
+        try {
+            export = zipExportService.prepareFolder(id);
+        } catch (FileUploadService.FolderNotFoundException ex) {
+            return notFound(ex);
+        } catch (ZipExportService.ExportTooLargeException ex) {
+            return ResponseEntity.unprocessableEntity()
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        } catch (ZipExportService.ExportBusyException ex) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        }
+        // Once streaming has started, a failure can only cut the archive short
+        try (export) {
+            zipExportService.write(export, response);
+        }
+        return null;
+    }
+
+    private static int clamp(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    private static ResponseEntity<?> notFound(RuntimeException ex) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(Map.of("status", "error", "message", ex.getMessage()));
+    }
+
+    private static ResponseEntity<?> conflict(RuntimeException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("status", "error", "message", ex.getMessage()));
+    }
+
+    public record CreateFolderRequest(@NotBlank String name, UUID parentId) {
+    }
+
+    public record MoveFolderRequest(UUID parentId) {
+    }
+}
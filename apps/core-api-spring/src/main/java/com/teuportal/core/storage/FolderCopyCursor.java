@@ -0,0 +1,74 @@
+package com.teuportal.core.storage;
+
+import java.util.UUID;
+
+/**
+ * How far a folder copy job has got, saved with every batch. The subfolders are copied first,
+ * shallowest first, so each one's parent copy already exists; then the files, one source folder
+ * at a time in the order of that folder's name index. {@code depth}/{@code folderId} is the last
+ * folder copied, or the folder whose files are being copied; {@code sortName}/{@code fileId} the
+ * last file copied from it.
+ */
+public record FolderCopyCursor(
+        Phase phase,
+        int depth,
+        UUID folderId,
+        String sortName,
+        UUID fileId
+) {
+
+    public enum Phase {
+        FOLDERS,
+        FILES
+    }
+
+    public static FolderCopyCursor start() {
+        return new FolderCopyCursor(Phase.FOLDERS, 0, null, null, null);
+    }
+
+    public static FolderCopyCursor afterFolder(int depth, UUID folderId) {
+        return new FolderCopyCursor(Phase.FOLDERS, depth, folderId, null, null);
+    }
+
+    /**
+     * Starts on the files of {@code folderId}, or on the first folder's when {@code null}.
+     */
+    public static FolderCopyCursor filesOf(UUID folderId) {
+        return new FolderCopyCursor(Phase.FILES, 0, folderId, null, null);
+    }
+
+    public FolderCopyCursor afterFile(String sortName, UUID fileId) {
+        return new FolderCopyCursor(Phase.FILES, 0, folderId, sortName, fileId);
+    }
+
+    public String encode() {
+        // The name goes last so it may contain the separator
+        return String.join(":", phase.name(), String.valueOf(depth),
+                folderId == null ? "" : folderId.toString(),
+                fileId == null ? "" : fileId.toString(),
+                sortName == null ? "" : sortName);
+    }
+
+    /**
+     * {@code null} is the start of a copy.
+     *
+     * @throws IllegalArgumentException when the value was not produced by {@link #encode()}
+     */
+    public static FolderCopyCursor decode(String value) {
+        if (value == null) {
+            return start();
+        }
+        String[] parts = value.split(":", 5);
+        if (parts.length != 5) {
+            throw new IllegalArgumentException("Malformed copy cursor");
+        }
+        try {
+            return new FolderCopyCursor(Phase.valueOf(parts[0]), Integer.parseInt(parts[1]),
+                    parts[2].isEmpty() ? null : UUID.fromString(parts[2]),
+                    parts[3].isEmpty() ? null : parts[4],
+                    parts[3].isEmpty() ? null : UUID.fromString(parts[3]));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Malformed copy cursor", ex);
+        }
+    }
+}
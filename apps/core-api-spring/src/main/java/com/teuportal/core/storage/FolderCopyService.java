@@ -0,0 +1,188 @@
+package com.teuportal.core.storage;
+
+import com.teuportal.core.tenancy.TenantContext;
+import com.teuportal.core.tenancy.TenantContextService;
+import com.teuportal.core.tenancy.TenantTransactions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Copies files and folder subtrees. Copies share the originals' content-addressed blobs, so only
+ * rows are written. Selected files are copied in the request; for each selected folder the
+ * request creates the top-level copy and queues a job that fills in the subtree in batches, so a
+ * large tree is never copied in one transaction. Every batch reserves its bytes against the
+ * quota; a job that runs out stops, leaving what it has copied so far.
+ */
+@Service
+public class FolderCopyService {
+
+    private final FolderRepository folderRepository;
+    private final FileRepository fileRepository;
+    private final StorageJobRepository jobRepository;
+    private final StorageQuotaService quotaService;
+    private final TenantContextService tenantContextService;
+    private final TenantTransactions tenantTransactions;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTemplate;
+    private final StorageProperties.Jobs jobProperties;
+
+    public FolderCopyService(FolderRepository folderRepository,
+                             FileRepository fileRepository,
+                             StorageJobRepository jobRepository,
+                             StorageQuotaService quotaService,
+                             TenantContextService tenantContextService,
+                             TenantTransactions tenantTransactions,
+                             PlatformTransactionManager transactionManager,
+                             StorageProperties properties) {
+        this.folderRepository = folderRepository;
+        this.fileRepository = fileRepository;
+        this.jobRepository = jobRepository;
+        this.quotaService = quotaService;
+        this.tenantContextService = tenantContextService;
+        this.tenantTransactions = tenantTransactions;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+        this.jobProperties = properties.getJobs();
+    }
+
+    /**
+     * Copies the selection into {@code targetFolderId}, or to the root when {@code null}.
+     */
+    public CopyResult copy(ItemSelection selection, UUID targetFolderId) {
+        ItemSelection items = selection.checked(jobProperties.getMaxSelection());
+        TenantContext context = tenantContextService.currentContext();
+        long bytes = items.fileIds().isEmpty()
+                ? 0
+                : readOnlyTemplate.execute(status -> fileRepository.measure(items.fileIds())).totalBytes();
+        UUID reservationId = quotaService.reserve(bytes);
+        try {
+            return transactionTemplate.execute(status -> {
+                if (targetFolderId != null && !folderRepository.exists(targetFolderId)) {
+                    throw new FileUploadService.FolderNotFoundException(targetFolderId);
+                }
+                if (!items.folderIds().isEmpty()) {
+                    if (folderRepository.countLive(items.folderIds()) != items.folderIds().size()) {
+                        throw new TrashService.ItemNotFoundException("Some of the folders do not exist");
+                    }
+                    // The job would otherwise keep finding its own copies in the subtree it copies
+                    if (targetFolderId != null && folderRepository.isInAnySubtree(items.folderIds(), targetFolderId)) {
+                        throw new FolderService.InvalidFolderMoveException(targetFolderId);
+                    }
+                }
+                List<StoredFile> files = List.of();
+                if (!items.fileIds().isEmpty()) {
+                    fileRepository.lockStorageKeys(fileRepository.findStorageKeys(items.fileIds()));
+                    files = fileRepository.copy(items.fileIds(), targetFolderId, context.getUserId());
+                    if (files.size() != items.fileIds().size()) {
+                        throw new TrashService.ItemNotFoundException("Some of the files do not exist");
+                    }
+                }
+                quotaService.finish(reservationId, files.stream().mapToLong(StoredFile::sizeBytes).sum());
+                List<FolderCopy> folders = new ArrayList<>(items.folderIds().size());
+                for (UUID folderId : items.folderIds()) {
+                    FolderSummary source = folderRepository.findById(folderId)
+                            .orElseThrow(() -> new FileUploadService.FolderNotFoundException(folderId));
+                    FolderSummary copy = folderRepository.insert(context.getCompanyId(), targetFolderId,
+                            source.name(), context.getUserId());
+                    UUID jobId = UUID.randomUUID();
+                    jobRepository.insertCopy(jobId, context.getCompanyId(), folderId, copy.id(), context.getUserId());
+                    folders.add(new FolderCopy(folderId, copy, jobId));
+                }
+                return new CopyResult(files, folders);
+            });
+        } catch (DuplicateKeyException ex) {
+            quotaService.release(reservationId);
+            throw new FolderService.FolderNameConflictException(null);
+        } catch (RuntimeException ex) {
+            quotaService.release(reservationId);
+            throw ex;
+        }
+    }
+
+    /**
+     * One batch of a copy job: up to the configured batch size of subfolders, shallowest first,
+     * then of files, saving the cursor in the same transaction. Returns whether the job is
+     * complete.
+     *
+     * @throws CopyAbortedException when the copy cannot continue
+     */
+    boolean copyBatch(StorageJob job, TenantContext context) {
+        int batchSize = jobProperties.getBatchSize();
+        try {
+            return tenantTransactions.execute(context, status -> {
+                if (!folderRepository.exists(job.targetFolderId())) {
+                    throw new CopyAbortedException("The folder being filled in was deleted");
+                }
+                FolderCopyCursor cursor = jobRepository.findById(job.id())
+                        .map(current -> FolderCopyCursor.decode(current.cursor()))
+                        .orElseThrow(() -> new CopyAbortedException("The copy job no longer exists"));
+                long copied = 0;
+                boolean done = false;
+                if (cursor.phase() == FolderCopyCursor.Phase.FOLDERS) {
+                    cursor = folderRepository.copySubfolders(job.id(), job.companyId(), job.folderId(),
+                                    job.targetFolderId(), job.requestedBy(), cursor.depth(), cursor.folderId(), batchSize)
+                            .orElse(FolderCopyCursor.filesOf(null));
+                } else {
+                    UUID folderId = cursor.folderId() != null
+                            ? cursor.folderId()
+                            : folderRepository.findNextInSubtree(job.folderId(), null).orElse(null);
+                    cursor = cursor.folderId() != null ? cursor : FolderCopyCursor.filesOf(folderId);
+                    int remaining = batchSize;
+                    // Empty folders cost a lookup each, so keep going until the batch is full
+                    while (folderId != null && remaining > 0) {
+                        List<FileRepository.CopySource> sources = fileRepository.findCopySources(folderId,
+                                cursor.sortName(), cursor.fileId(), remaining);
+                        if (!sources.isEmpty()) {
+                            copyFiles(job, folderId, sources);
+                            FileRepository.CopySource last = sources.get(sources.size() - 1);
+                            cursor = cursor.afterFile(last.sortName(), last.id());
+                            copied += sources.size();
+                            remaining -= sources.size();
+                        }
+                        if (remaining > 0) {
+                            folderId = folderRepository.findNextInSubtree(job.folderId(), folderId).orElse(null);
+                            cursor = FolderCopyCursor.filesOf(folderId);
+                        }
+                    }
+                    done = folderId == null;
+                }
+                jobRepository.saveProgress(job.id(), cursor.encode(), copied, jobProperties.getLease());
+                return done;
+            });
+        } catch (StorageQuotaService.QuotaExceededException ex) {
+            throw new CopyAbortedException(ex.getMessage());
+        }
+    }
+
+    private void copyFiles(StorageJob job, UUID sourceFolderId, List<FileRepository.CopySource> sources) {
+        long bytes = sources.stream().mapToLong(FileRepository.CopySource::sizeBytes).sum();
+        UUID reservationId = quotaService.reserve(bytes);
+        fileRepository.lockStorageKeys(sources.stream().map(FileRepository.CopySource::storageKey).toList());
+        long copiedBytes = fileRepository.copyForJob(job.id(), sources.stream().map(FileRepository.CopySource::id).toList(),
+                job.folderId(), job.targetFolderId(), job.requestedBy());
+        quotaService.finish(reservationId, copiedBytes);
+    }
+
+    /**
+     * {@code folder} is the new top-level copy of {@code sourceId}; {@code jobId} fills in the rest.
+     */
+    public record FolderCopy(UUID sourceId, FolderSummary folder, UUID jobId) {
+    }
+
+    public record CopyResult(List<StoredFile> files, List<FolderCopy> folders) {
+    }
+
+    public static class CopyAbortedException extends RuntimeException {
+        public CopyAbortedException(String message) {
+            super(message);
+        }
+    }
+}
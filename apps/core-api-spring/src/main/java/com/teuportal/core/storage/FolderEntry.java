@@ -0,0 +1,34 @@
+package com.teuportal.core.storage;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * One row of a folder listing, either a child folder or a file. {@code sortName} is the stored
+ * {@code lower(name)}, kept so cursors compare exactly as the index does.
+ */
+public record FolderEntry(
+        Type type,
+        UUID id,
+        String name,
+        Long sizeBytes,
+        String mimeType,
+        OffsetDateTime createdAt,
+        @JsonIgnore String sortName
+) {
+
+    public enum Type {
+        FOLDER,
+        FILE
+    }
+
+    String sortKey(FolderContentsSort sort) {
+        return switch (sort) {
+            case NAME -> sortName;
+            case SIZE -> type == Type.FILE ? String.valueOf(sizeBytes) : sortName;
+            case DATE -> createdAt.toString();
+        };
+    }
+}
@@ -0,0 +1,69 @@
+package com.teuportal.core.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Opaque position in a folder listing: which part of the listing comes next (child folders, then
+ * files) and the sort key and id of the last row returned. A cursor with no key starts the files
+ * from the beginning. Cursors are bound to the sort they were issued for.
+ */
+public record FolderListingCursor(
+        Phase phase,
+        FolderContentsSort sort,
+        boolean descending,
+        String key,
+        UUID id
+) {
+
+    private static final String VERSION = "1";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    public enum Phase {
+        FOLDERS,
+        FILES
+    }
+
+    public static FolderListingCursor startOfFiles(FolderContentsSort sort, boolean descending) {
+        return new FolderListingCursor(Phase.FILES, sort, descending, null, null);
+    }
+
+    public boolean hasKey() {
+        return id != null;
+    }
+
+    public String encode() {
+        // The key goes last so it may contain the separator
+        String raw = String.join(":", VERSION, phase.name(), sort.name(), descending ? "d" : "a",
+                id == null ? "" : id.toString(), key == null ? "" : key);
+        return ENCODER.encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException when the value was not produced by {@link #encode()}
+     */
+    public static FolderListingCursor decode(String value) {
+        String raw;
+        try {
+            raw = new String(DECODER.decode(value), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Malformed cursor", ex);
+        }
+        String[] parts = raw.split(":", 6);
+        if (parts.length != 6 || !VERSION.equals(parts[0]) || !("a".equals(parts[3]) || "d".equals(parts[3]))) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        Phase phase = Phase.valueOf(parts[1]);
+        FolderContentsSort sort = FolderContentsSort.valueOf(parts[2]);
+        boolean descending = "d".equals(parts[3]);
+        if (parts[4].isEmpty()) {
+            if (phase != Phase.FILES) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            return startOfFiles(sort, descending);
+        }
+        return new FolderListingCursor(phase, sort, descending, parts[5], UUID.fromString(parts[4]));
+    }
+}
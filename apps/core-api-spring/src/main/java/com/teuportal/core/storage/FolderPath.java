@@ -0,0 +1,15 @@
+package com.teuportal.core.storage;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A folder with the names leading to it from the root of an export, outermost first.
+ */
+public record FolderPath(
+        UUID id,
+        List<String> names,
+        OffsetDateTime createdAt
+) {
+}
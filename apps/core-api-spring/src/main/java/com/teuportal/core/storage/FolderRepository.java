@@ -1,6 +1,11 @@
 package com.teuportal.core.storage;
 
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
@@ -11,10 +16,20 @@ import org.springframework.stereotype.Repository;
 public class FolderRepository {
 
     private static final RowMapper<FolderSummary> ROW_MAPPER = (rs, rowNum) -> new FolderSummary(
-            rs.getObject("id", java.util.UUID.class),
+            rs.getObject("id", UUID.class),
             rs.getString("name"),
-            rs.getObject("parent_id", java.util.UUID.class),
-            rs.getObject("created_at", java.time.OffsetDateTime.class)
+            rs.getObject("parent_id", UUID.class),
+            rs.getObject("created_at", OffsetDateTime.class)
+    );
+
+    private static final RowMapper<FolderEntry> ENTRY_ROW_MAPPER = (rs, rowNum) -> new FolderEntry(
+            FolderEntry.Type.FOLDER,
+            rs.getObject("id", UUID.class),
+            rs.getString("name"),
+            null,
+            null,
+            rs.getObject("created_at", OffsetDateTime.class),
+            rs.getString("sort_name")
     );
 
     private final NamedParameterJdbcTemplate jdbcTemplate;
@@ -29,8 +44,283 @@ public class FolderRepository {
                 SELECT id, name, parent_id, created_at
                 FROM folder
                 WHERE parent_id IS NULL
+                  AND deleted_at IS NULL
                 ORDER BY created_at DESC
                 LIMIT :limit
                 """, params, ROW_MAPPER);
     }
+
+    public FolderSummary insert(UUID companyId, UUID parentId, String name, UUID createdBy) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("companyId", companyId)
+                .addValue("parentId", parentId)
+                .addValue("name", name)
+                .addValue("createdBy", createdBy);
+        return jdbcTemplate.queryForObject("""
+                INSERT INTO folder (company_id, parent_id, name, created_by)
+                VALUES (:companyId, :parentId, :name, :createdBy)
+                RETURNING id, name, parent_id, created_at
+                """, params, ROW_MAPPER);
+    }
+
+    /**
+     * Returns one keyset page of the child folders of {@code parentId} (root folders when
+     * {@code null}), continuing after {@code afterKey}/{@code afterId} when given.
+     */
+    public List<FolderEntry> findChildren(UUID parentId,
+                                          FolderContentsSort sort,
+                                          boolean descending,
+                                          Object afterKey,
+                                          UUID afterId,
+                                          int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("parentId", parentId)
+                .addValue("afterKey", afterKey)
+                .addValue("afterId", afterId)
+                .addValue("limit", limit);
+        String sql = "SELECT id, name, created_at, sort_name FROM folder WHERE "
+                + (parentId == null ? "parent_id IS NULL" : "parent_id = :parentId")
+                + " AND deleted_at IS NULL"
+                + (afterId == null ? "" : FolderContentsSort.seekAfter(sort.folderKey(), descending))
+                + FolderContentsSort.orderBy(sort.folderKey(), descending)
+                + " LIMIT :limit";
+        return jdbcTemplate.query(sql, params, ENTRY_ROW_MAPPER);
+    }
+
+    /**
+     * Returns the path from the root down to {@code folderId}, inclusive, for breadcrumbs.
+     */
+    public List<FolderSummary> findAncestors(UUID folderId) {
+        return jdbcTemplate.query("""
+                SELECT f.id, f.name, f.parent_id, f.created_at
+                FROM folder_closure c
+                JOIN folder f ON f.id = c.ancestor_id
+                WHERE c.descendant_id = :folderId
+                ORDER BY c.depth DESC
+                """, new MapSqlParameterSource("folderId", folderId), ROW_MAPPER);
+    }
+
+    /**
+     * Returns every folder below {@code folderId}, shallowest first.
+     */
+    public List<FolderSummary> findDescendants(UUID folderId, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("folderId", folderId)
+                .addValue("limit", limit);
+        return jdbcTemplate.query("""
+                SELECT f.id, f.name, f.parent_id, f.created_at
+                FROM folder_closure c
+                JOIN folder f ON f.id = c.descendant_id
+                WHERE c.ancestor_id = :folderId
+                  AND c.depth > 0
+                  AND f.deleted_at IS NULL
+                ORDER BY c.depth, f.sort_name, f.id
+                LIMIT :limit
+                """, params, ROW_MAPPER);
+    }
+
+    /**
+     * Counts how many of {@code folderIds} are live folders of the tenant.
+     */
+    public int countLive(Collection<UUID> folderIds) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM folder WHERE id IN (:folderIds) AND deleted_at IS NULL",
+                new MapSqlParameterSource("folderIds", folderIds),
+                Integer.class);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Whether {@code folderId} lies in the subtree of any of {@code rootIds}, including the roots.
+     */
+    public boolean isInAnySubtree(Collection<UUID> rootIds, UUID folderId) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("rootIds", rootIds)
+                .addValue("folderId", folderId);
+        Boolean inSubtree = jdbcTemplate.queryForObject("""
+                SELECT EXISTS (
+                    SELECT 1 FROM folder_closure WHERE ancestor_id IN (:rootIds) AND descendant_id = :folderId
+                )
+                """, params, Boolean.class);
+        return Boolean.TRUE.equals(inSubtree);
+    }
+
+    public boolean isInSubtree(UUID rootId, UUID folderId) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("rootId", rootId)
+                .addValue("folderId", folderId);
+        Boolean inSubtree = jdbcTemplate.queryForObject("""
+                SELECT EXISTS (
+                    SELECT 1 FROM folder_closure WHERE ancestor_id = :rootId AND descendant_id = :folderId
+                )
+                """, params, Boolean.class);
+        return Boolean.TRUE.equals(inSubtree);
+    }
+
+    /**
+     * Re-parents a folder; triggers rewrite the ancestry of its whole subtree in the same statement
+     * and reject moves into the folder's own subtree.
+     */
+    public boolean move(UUID folderId, UUID parentId) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("folderId", folderId)
+                .addValue("parentId", parentId);
+        return jdbcTemplate.update("""
+                UPDATE folder
+                SET parent_id = :parentId, updated_at = now()
+                WHERE id = :folderId
+                """, params) > 0;
+    }
+
+    /**
+     * Re-parents several folders in one statement; see {@link #move}. Returns how many moved.
+     */
+    public int moveAll(Collection<UUID> folderIds, UUID parentId) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("folderIds", folderIds)
+                .addValue("parentId", parentId);
+        return jdbcTemplate.update("""
+                UPDATE folder
+                SET parent_id = :parentId, updated_at = now()
+                WHERE id IN (:folderIds)
+                  AND deleted_at IS NULL
+                """, params);
+    }
+
+    /**
+     * Copies the next {@code limit} live folders below {@code sourceId}, shallowest first, after
+     * {@code afterDepth}/{@code afterId}. A copy's id is derived from the job and the original's
+     * id, so a parent copy is found without a mapping table and a repeated batch inserts nothing
+     * twice; the copy of {@code sourceId} itself is {@code targetId}. Parents precede their
+     * children in the insert, so each row's triggers find its parent's ancestry in place.
+     * Returns the position of the last folder of the batch, or empty when none were left.
+     */
+    public Optional<FolderCopyCursor> copySubfolders(UUID jobId,
+                                                     UUID companyId,
+                                                     UUID sourceId,
+                                                     UUID targetId,
+                                                     UUID createdBy,
+                                                     int afterDepth,
+                                                     UUID afterId,
+                                                     int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("jobId", jobId.toString())
+                .addValue("companyId", companyId)
+                .addValue("sourceId", sourceId)
+                .addValue("targetId", targetId)
+                .addValue("createdBy", createdBy)
+                .addValue("afterDepth", afterDepth)
+                .addValue("afterId", afterId)
+                .addValue("limit", limit);
+        return jdbcTemplate.query("""
+                WITH batch AS (
+                    SELECT c.depth, f.id, f.parent_id, f.name
+                    FROM folder_closure c
+                    JOIN folder f ON f.id = c.descendant_id
+                    WHERE c.ancestor_id = :sourceId
+                      AND c.depth > 0
+                      AND f.deleted_at IS NULL
+                """ + (afterId == null ? "" : "      AND (c.depth, f.id) > (:afterDepth, :afterId)\n") + """
+                    ORDER BY c.depth, f.id
+                    LIMIT :limit
+                ), copied AS (
+                    INSERT INTO folder (id, company_id, parent_id, name, created_by)
+                    SELECT md5(:jobId || b.id::text)::uuid,
+                           :companyId,
+                           CASE WHEN b.parent_id = :sourceId THEN :targetId
+                                ELSE md5(:jobId || b.parent_id::text)::uuid END,
+                           b.name,
+                           CAST(:createdBy AS uuid)
+                    FROM batch b
+                    ORDER BY b.depth, b.id
+                    ON CONFLICT DO NOTHING
+                )
+                SELECT depth, id
+                FROM batch
+                ORDER BY depth DESC, id DESC
+                LIMIT 1
+                """, params, (rs, rowNum) -> FolderCopyCursor.afterFolder(rs.getInt("depth"),
+                rs.getObject("id", UUID.class))).stream().findFirst();
+    }
+
+    /**
+     * The first live folder of the subtree of {@code rootId}, including the root, whose id
+     * follows {@code afterId}.
+     */
+    public Optional<UUID> findNextInSubtree(UUID rootId, UUID afterId) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("rootId", rootId)
+                .addValue("afterId", afterId);
+        return jdbcTemplate.queryForList("""
+                SELECT c.descendant_id
+                FROM folder_closure c
+                JOIN folder f ON f.id = c.descendant_id
+                WHERE c.ancestor_id = :rootId
+                  AND f.deleted_at IS NULL
+                """ + (afterId == null ? "" : "  AND c.descendant_id > :afterId\n") + """
+                ORDER BY c.descendant_id
+                LIMIT 1
+                """, params, UUID.class).stream().findFirst();
+    }
+
+    public Optional<FolderSummary> findById(UUID folderId) {
+        return jdbcTemplate.query("""
+                SELECT id, name, parent_id, created_at
+                FROM folder
+                WHERE id = :folderId
+                  AND deleted_at IS NULL
+                """, new MapSqlParameterSource("folderId", folderId), ROW_MAPPER).stream().findFirst();
+    }
+
+    /**
+     * Counts the folders in the subtree of {@code folderId}, including the folder itself.
+     */
+    public long countSubtree(UUID folderId) {
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM folder_closure WHERE ancestor_id = :folderId",
+                new MapSqlParameterSource("folderId", folderId),
+                Long.class);
+        return count == null ? 0L : count;
+    }
+
+    /**
+     * Pages through the subtree of {@code rootId}, including the root, in id order. Each folder
+     * carries its path from the root, so callers never need the rest of the tree in memory.
+     */
+    public List<FolderPath> findSubtreePaths(UUID rootId, UUID afterId, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("rootId", rootId)
+                .addValue("afterId", afterId)
+                .addValue("limit", limit);
+        return jdbcTemplate.query("""
+                SELECT c.descendant_id AS id,
+                       f.created_at,
+                       (SELECT array_agg(a.name ORDER BY ac.depth DESC)
+                        FROM folder_closure ac
+                        JOIN folder a ON a.id = ac.ancestor_id
+                        WHERE ac.descendant_id = c.descendant_id
+                          AND ac.depth <= c.depth) AS names
+                FROM folder_closure c
+                JOIN folder f ON f.id = c.descendant_id
+                WHERE c.ancestor_id = :rootId
+                  AND f.deleted_at IS NULL
+                """ + (afterId == null ? "" : "  AND c.descendant_id > :afterId\n") + """
+                ORDER BY c.descendant_id
+                LIMIT :limit
+                """, params, (rs, rowNum) -> new FolderPath(
+                rs.getObject("id", UUID.class),
+                Arrays.asList((String[]) rs.getArray("names").getArray()),
+                rs.getObject("created_at", OffsetDateTime.class)));
+    }
+
+    /**
+     * Whether {@code folderId} is visible to the tenant and not in the trash.
+     */
+    public boolean exists(UUID folderId) {
+        Boolean exists = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM folder WHERE id = :folderId AND deleted_at IS NULL)",
+                new MapSqlParameterSource("folderId", folderId),
+                Boolean.class);
+        return Boolean.TRUE.equals(exists);
+    }
 }
@@ -0,0 +1,222 @@
+package com.teuportal.core.storage;
+
+import com.teuportal.core.tenancy.TenantContext;
+import com.teuportal.core.tenancy.TenantContextService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Folder tree operations. Ancestry lives in {@code folder_closure}, which triggers keep in step
+ * with {@code folder.parent_id}, so every read here is a single indexed query whatever the depth.
+ */
+@Service
+public class FolderService {
+
+    private final FolderRepository folderRepository;
+    private final FileRepository fileRepository;
+    private final StorageUsageRepository storageUsageRepository;
+    private final TenantContextService tenantContextService;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTemplate;
+    private final int maxSelection;
+
+    public FolderService(FolderRepository folderRepository,
+                         FileRepository fileRepository,
+                         StorageUsageRepository storageUsageRepository,
+                         TenantContextService tenantContextService,
+                         PlatformTransactionManager transactionManager,
+                         StorageProperties properties) {
+        this.folderRepository = folderRepository;
+        this.fileRepository = fileRepository;
+        this.storageUsageRepository = storageUsageRepository;
+        this.tenantContextService = tenantContextService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+        this.maxSelection = properties.getJobs().getMaxSelection();
+    }
+
+    public FolderSummary create(String name, UUID parentId) {
+        TenantContext context = tenantContextService.currentContext();
+        try {
+            return transactionTemplate.execute(status -> {
+                requireFolder(parentId);
+                return folderRepository.insert(context.getCompanyId(), parentId, name, context.getUserId());
+            });
+        } catch (DuplicateKeyException ex) {
+            throw new FolderNameConflictException(name);
+        }
+    }
+
+    /**
+     * Moves {@code folderId} with its whole subtree below {@code parentId}, or to the root when
+     * {@code parentId} is {@code null}.
+     */
+    public void move(UUID folderId, UUID parentId) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                requireFolder(folderId);
+                requireFolder(parentId);
+                if (parentId != null && folderRepository.isInSubtree(folderId, parentId)) {
+                    throw new InvalidFolderMoveException(folderId);
+                }
+                folderRepository.move(folderId, parentId);
+            });
+        } catch (DuplicateKeyException ex) {
+            throw new FolderNameConflictException(null);
+        } catch (DataIntegrityViolationException ex) {
+            // A concurrent move made the target part of this subtree after the check above
+            throw new InvalidFolderMoveException(folderId);
+        }
+    }
+
+    /**
+     * Moves the selected folders, each with its whole subtree, and files into {@code targetId}, or
+     * to the root when {@code null}, all or nothing. Two statements do the work however many items
+     * are selected; the cost grows with the number of folders below the selection, whose ancestry
+     * triggers rewrite, not with the number of files.
+     */
+    public void moveItems(ItemSelection selection, UUID targetId) {
+        ItemSelection items = selection.checked(maxSelection);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                requireFolder(targetId);
+                if (!items.folderIds().isEmpty()) {
+                    if (targetId != null && folderRepository.isInAnySubtree(items.folderIds(), targetId)) {
+                        throw new InvalidFolderMoveException(targetId);
+                    }
+                    if (folderRepository.moveAll(items.folderIds(), targetId) != items.folderIds().size()) {
+                        throw new TrashService.ItemNotFoundException("Some of the folders do not exist");
+                    }
+                }
+                if (!items.fileIds().isEmpty()
+                        && fileRepository.moveAll(items.fileIds(), targetId) != items.fileIds().size()) {
+                    throw new TrashService.ItemNotFoundException("Some of the files do not exist");
+                }
+            });
+        } catch (DuplicateKeyException ex) {
+            throw new FolderNameConflictException(null);
+        } catch (DataIntegrityViolationException ex) {
+            throw new InvalidFolderMoveException(targetId);
+        }
+    }
+
+    /**
+     * Lists child folders, then files, one keyset page at a time. Each page costs at most two index
+     * seeks however large the folder is.
+     *
+     * @throws IllegalArgumentException when {@code cursor} is malformed or was issued for another sort
+     */
+    public FolderContents contents(UUID folderId, FolderContentsSort sort, boolean descending, int limit, String cursor) {
+        FolderListingCursor position = cursor == null ? null : FolderListingCursor.decode(cursor);
+        if (position != null && (position.sort() != sort || position.descending() != descending)) {
+            throw new IllegalArgumentException("Cursor was issued for a different sort order");
+        }
+        Object afterKey = position == null || !position.hasKey() ? null : parseKey(sort, position);
+        return readOnlyTemplate.execute(status -> {
+            requireFolder(folderId);
+            List<FolderEntry> items = new ArrayList<>(limit);
+            if (position == null || position.phase() == FolderListingCursor.Phase.FOLDERS) {
+                List<FolderEntry> folders = folderRepository.findChildren(folderId, sort, descending,
+                        afterKey, position == null ? null : position.id(), limit + 1);
+                if (folders.size() > limit) {
+                    items.addAll(folders.subList(0, limit));
+                    return new FolderContents(items, cursorAfter(FolderListingCursor.Phase.FOLDERS, sort, descending, items));
+                }
+                items.addAll(folders);
+            }
+            boolean continuingFiles = position != null && position.phase() == FolderListingCursor.Phase.FILES;
+            int remaining = limit - items.size();
+            List<FolderEntry> files = fileRepository.findInFolder(folderId, sort, descending,
+                    continuingFiles ? afterKey : null,
+                    continuingFiles ? position.id() : null,
+                    remaining + 1);
+            if (files.size() <= remaining) {
+                items.addAll(files);
+                return new FolderContents(items, null);
+            }
+            if (remaining == 0) {
+                return new FolderContents(items, FolderListingCursor.startOfFiles(sort, descending).encode());
+            }
+            List<FolderEntry> page = files.subList(0, remaining);
+            items.addAll(page);
+            return new FolderContents(items, cursorAfter(FolderListingCursor.Phase.FILES, sort, descending, page));
+        });
+    }
+
+    public List<FolderSummary> breadcrumbs(UUID folderId) {
+        return readOnlyTemplate.execute(status -> {
+            // Ancestry is kept for trashed folders too
+            requireFolder(folderId);
+            return folderRepository.findAncestors(folderId);
+        });
+    }
+
+    public List<FolderSummary> subtree(UUID folderId, int limit) {
+        return readOnlyTemplate.execute(status -> {
+            requireFolder(folderId);
+            return folderRepository.findDescendants(folderId, limit);
+        });
+    }
+
+    public List<StoredFile> filesInSubtree(UUID folderId, int limit) {
+        return readOnlyTemplate.execute(status -> {
+            requireFolder(folderId);
+            return fileRepository.findInSubtree(folderId, limit);
+        });
+    }
+
+    /**
+     * Files anywhere below {@code folderId}, read from the maintained rollup.
+     */
+    public StorageUsage usage(UUID folderId) {
+        return readOnlyTemplate.execute(status -> {
+            requireFolder(folderId);
+            return storageUsageRepository.findFolderUsage(folderId);
+        });
+    }
+
+    private static String cursorAfter(FolderListingCursor.Phase phase,
+                                      FolderContentsSort sort,
+                                      boolean descending,
+                                      List<FolderEntry> page) {
+        FolderEntry last = page.get(page.size() - 1);
+        return new FolderListingCursor(phase, sort, descending, last.sortKey(sort), last.id()).encode();
+    }
+
+    private static Object parseKey(FolderContentsSort sort, FolderListingCursor position) {
+        try {
+            return sort.parseKey(position.phase(), position.key());
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("Malformed cursor", ex);
+        }
+    }
+
+    private void requireFolder(UUID folderId) {
+        if (folderId != null && !folderRepository.exists(folderId)) {
+            throw new FileUploadService.FolderNotFoundException(folderId);
+        }
+    }
+
+    public static class FolderNameConflictException extends RuntimeException {
+        public FolderNameConflictException(String name) {
+            super(name == null
+                    ? "A folder with the same name already exists in the target folder"
+                    : "A folder named '" + name + "' already exists here");
+        }
+    }
+
+    public static class InvalidFolderMoveException extends RuntimeException {
+        public InvalidFolderMoveException(UUID folderId) {
+            super("Folder " + folderId + " cannot be moved into its own subtree");
+        }
+    }
+}
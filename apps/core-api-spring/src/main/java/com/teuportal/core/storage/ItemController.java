@@ -0,0 +1,120 @@
+package com.teuportal.core.storage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Operations on a selection of folders and files at once. Deleting and moving finish in the
+ * request; copying a folder returns its new top-level folder and a job that fills in the rest.
+ */
+@RestController
+@RequestMapping("/api/items")
+@Tag(name = "items", description = "Bulk operations on folders and files")
+public class ItemController {
+
+    private final FolderService folderService;
+    private final FolderCopyService copyService;
+    private final TrashService trashService;
+
+    public ItemController(FolderService folderService, FolderCopyService copyService, TrashService trashService) {
+        this.folderService = folderService;
+        this.copyService = copyService;
+        this.trashService = trashService;
+    }
+
+    @PostMapping(path = "/delete", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Move folders and files to the trash")
+    public ResponseEntity<?> delete(@RequestBody ItemsRequest request) {
+        try {
+            trashService.trash(request.selection());
+            return ResponseEntity.noContent().build();
+        } catch (IllegalArgumentException ex) {
+            return badRequest(ex);
+        } catch (TrashService.ItemNotFoundException ex) {
+            return notFound(ex);
+        }
+    }
+
+    /**
+     * Moves the selection into {@code targetFolderId}, or to the root when it is omitted.
+     */
+    @PostMapping(path = "/move", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Move folders and files into another folder")
+    public ResponseEntity<?> move(@RequestBody ItemsRequest request) {
+        try {
+            folderService.moveItems(request.selection(), request.targetFolderId());
+            return ResponseEntity.noContent().build();
+        } catch (IllegalArgumentException ex) {
+            return badRequest(ex);
+        } catch (FileUploadService.FolderNotFoundException | TrashService.ItemNotFoundException ex) {
+            return notFound(ex);
+        } catch (FolderService.FolderNameConflictException | FolderService.InvalidFolderMoveException ex) {
+            return conflict(ex);
+        }
+    }
+
+    /**
+     * Copies the selection into {@code targetFolderId}, or to the root when it is omitted. Files
+     * are copied before the response; follow each folder's job for the rest of its subtree.
+     */
+    @PostMapping(path = "/copy", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Copy folders and files into another folder")
+    public ResponseEntity<?> copy(@RequestBody ItemsRequest request) {
+        try {
+            return ResponseEntity.accepted().body(copyService.copy(request.selection(), request.targetFolderId()));
+        } catch (IllegalArgumentException ex) {
+            return badRequest(ex);
+        } catch (FileUploadService.FolderNotFoundException | TrashService.ItemNotFoundException ex) {
+            return notFound(ex);
+        } catch (FolderService.FolderNameConflictException | FolderService.InvalidFolderMoveException ex) {
+            return conflict(ex);
+        } catch (StorageQuotaService.QuotaExceededException ex) {
+            return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE)
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        }
+    }
+
+    @GetMapping(path = "/jobs/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Show the progress of a copy or purge job")
+    public ResponseEntity<?> job(@PathVariable("id") UUID id) {
+        return trashService.findJob(id)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("status", "error", "message", "Job not found")));
+    }
+
+    private static ResponseEntity<?> badRequest(RuntimeException ex) {
+        return ResponseEntity.badRequest()
+                .body(Map.of("status", "error", "message", ex.getMessage()));
+    }
+
+    private static ResponseEntity<?> notFound(RuntimeException ex) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(Map.of("status", "error", "message", ex.getMessage()));
+    }
+
+    private static ResponseEntity<?> conflict(RuntimeException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("status", "error", "message", ex.getMessage()));
+    }
+
+    public record ItemsRequest(List<UUID> folderIds, List<UUID> fileIds, UUID targetFolderId) {
+
+        ItemSelection selection() {
+            return new ItemSelection(folderIds, fileIds);
+        }
+    }
+}
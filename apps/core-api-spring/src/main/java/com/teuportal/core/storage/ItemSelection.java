@@ -0,0 +1,37 @@
+package com.teuportal.core.storage;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The folders and files a bulk operation applies to; either list may be omitted.
+ */
+public record ItemSelection(List<UUID> folderIds, List<UUID> fileIds) {
+
+    /**
+     * Returns the selection without duplicates.
+     *
+     * @throws IllegalArgumentException when it is empty or names more than {@code maxItems} items
+     */
+    public ItemSelection checked(int maxItems) {
+        List<UUID> folders = distinct(folderIds);
+        List<UUID> files = distinct(fileIds);
+        if (folders.isEmpty() && files.isEmpty()) {
+            throw new IllegalArgumentException("Select at least one folder or file");
+        }
+        if (folders.size() + files.size() > maxItems) {
+            throw new IllegalArgumentException("At most " + maxItems + " items can be selected at once");
+        }
+        return new ItemSelection(folders, files);
+    }
+
+    private static List<UUID> distinct(List<UUID> ids) {
+        if (ids == null) {
+            return List.of();
+        }
+        LinkedHashSet<UUID> unique = new LinkedHashSet<>(ids);
+        unique.remove(null);
+        return List.copyOf(unique);
+    }
+}
@@ -0,0 +1,562 @@
+package com.teuportal.core.storage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Content-addressed blob storage on the local filesystem. Keys have the form
+ * {@code <companyId>/<aa>/<bb>/<sha256>}, so identical content uploaded twice by one tenant is
+ * stored once. Uploads are streamed through a single direct buffer into a temporary file and
+ * hashed in the same pass; nothing is held in the heap beyond that buffer. Resumable uploads
+ * write each chunk at its final offset in a per-session part file under {@code .uploads}, which is
+ * moved into staging when the upload completes.
+ *
+ * <p>Staging is used with every {@link BlobStorageBackend}; committed blobs stay under the root only
+ * when this store is also the backend, which is the case unless an object store is configured.
+ */
+@Component
+public class LocalBlobStore implements BlobStorageBackend {
+
+    private static final HexFormat HEX = HexFormat.of();
+    // <companyId>/<aa>/<bb>/<sha256>
+    private static final int KEY_DEPTH = 4;
+
+    private final Path root;
+    private final Path staging;
+    private final Path uploads;
+    private final Path cache;
+    private final int bufferSize;
+    private final Duration writerDrainTimeout;
+    private final ConcurrentHashMap<UUID, ChunkWriters> writers = new ConcurrentHashMap<>();
+
+    public LocalBlobStore(StorageProperties properties) {
+        this.root = properties.getLocal().getRoot().toAbsolutePath().normalize();
+        this.staging = root.resolve(".staging");
+        this.uploads = root.resolve(".uploads");
+        this.cache = root.resolve(".cache");
+        this.bufferSize = (int) properties.getLocal().getBufferSize().toBytes();
+        this.writerDrainTimeout = properties.getUpload().getWriterDrainTimeout();
+        try {
+            Files.createDirectories(staging);
+            Files.createDirectories(uploads);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot create blob staging directories under " + root, ex);
+        }
+    }
+
+    /**
+     * Streams {@code content} to a staging file. Fails with {@link BlobTooLargeException} as soon as
+     * more than {@code maxBytes} have been read.
+     */
+    public StagedBlob stage(InputStream content, long maxBytes) {
+        Path target = staging.resolve(UUID.randomUUID() + ".part");
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+        long total = 0;
+        try (ReadableByteChannel in = Channels.newChannel(content);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                total += buffer.remaining();
+                if (total > maxBytes) {
+                    throw new BlobTooLargeException(maxBytes);
+                }
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                buffer.clear();
+            }
+            out.force(true);
+        } catch (IOException ex) {
+            deleteQuietly(target);
+            throw new UncheckedIOException("Failed to stage upload", ex);
+        } catch (RuntimeException ex) {
+            deleteQuietly(target);
+            throw ex;
+        }
+        return new StagedBlob(target, HEX.formatHex(digest.digest()), total);
+    }
+
+    public void createUpload(UUID sessionId) {
+        try {
+            Files.createFile(uploadPath(sessionId));
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to create upload " + sessionId, ex);
+        }
+    }
+
+    /**
+     * Writes one chunk at {@code position} of the session's part file. Chunks of the same session
+     * may be written concurrently since each request writes its own region. The bytes are on disk
+     * when this returns.
+     *
+     * @throws ChunkLengthException when the body is not exactly {@code length} bytes long
+     * @throws UploadNotFoundException when the session's part file no longer exists
+     */
+    public void writeChunk(UUID sessionId, long position, long length, InputStream content) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+        long written = 0;
+        // Registered before the part file is opened, so stageUpload either waits or finds it moved
+        writers.compute(sessionId, (id, current) -> (current != null ? current : new ChunkWriters()).enter());
+        try (ReadableByteChannel in = Channels.newChannel(content);
+             FileChannel out = FileChannel.open(uploadPath(sessionId), StandardOpenOption.WRITE)) {
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                written += buffer.remaining();
+                if (written > length) {
+                    throw new ChunkLengthException(length);
+                }
+                long offset = position + written - buffer.remaining();
+                while (buffer.hasRemaining()) {
+                    offset += out.write(buffer, offset);
+                }
+                buffer.clear();
+            }
+            if (written != length) {
+                throw new ChunkLengthException(length);
+            }
+            out.force(false);
+        } catch (NoSuchFileException ex) {
+            throw new UploadNotFoundException(sessionId);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to write chunk of upload " + sessionId, ex);
+        } finally {
+            writers.computeIfPresent(sessionId, (id, current) -> current.exit());
+        }
+    }
+
+    /**
+     * Moves the assembled part file into staging and hashes it there, so completing an upload reads
+     * its bytes once and writes none. The move fences the session's writers: chunk writes that start
+     * afterwards find no part file, and those already writing are waited for before hashing begins.
+     * A failure moves the file back for the client to retry.
+     *
+     * @throws ChunkWritesPendingException when chunk writes are still running after the drain timeout
+     */
+    public StagedBlob stageUpload(UUID sessionId, long sizeBytes) {
+        Path source = uploadPath(sessionId);
+        Path target = staging.resolve(UUID.randomUUID() + ".part");
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            // The staging sweep goes by modification time, which still dates from the last chunk
+            Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+        } catch (NoSuchFileException ex) {
+            throw new UploadNotFoundException(sessionId);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to stage upload " + sessionId, ex);
+        }
+        try {
+            awaitWriters(sessionId);
+            return new StagedBlob(target, hash(sessionId, target, sizeBytes), sizeBytes);
+        } catch (RuntimeException ex) {
+            returnUpload(sessionId, target);
+            throw ex;
+        }
+    }
+
+    /**
+     * Moves a staged upload back to its part file after its registration failed. Returns
+     * {@code false} when the blob is gone, because it was promoted before the registration rolled
+     * back; the part file is then recreated empty.
+     */
+    public boolean returnUpload(UUID sessionId, StagedBlob blob) {
+        return returnUpload(sessionId, blob.path());
+    }
+
+    private boolean returnUpload(UUID sessionId, Path staged) {
+        try {
+            Files.move(staged, uploadPath(sessionId), StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (NoSuchFileException ex) {
+            createUpload(sessionId);
+            return false;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to return upload " + sessionId, ex);
+        }
+    }
+
+    /**
+     * Removes a session's part file and returns the bytes freed.
+     */
+    public long deleteUpload(UUID sessionId) {
+        return deleteQuietly(uploadPath(sessionId));
+    }
+
+    /**
+     * Deletes staging files last written before {@code olderThan}, left behind by uploads that
+     * died before their blob was promoted, and returns the bytes freed.
+     */
+    public long sweepStaging(Instant olderThan) {
+        return sweep(staging, olderThan);
+    }
+
+    /**
+     * Deletes part files last written before {@code olderThan}, whose sessions have expired, and
+     * returns the bytes freed.
+     */
+    public long sweepUploads(Instant olderThan) {
+        return sweep(uploads, olderThan);
+    }
+
+    public String keyFor(UUID companyId, String sha256) {
+        return contentKey(companyId, sha256);
+    }
+
+    static String contentKey(UUID companyId, String sha256) {
+        return companyId + "/" + sha256.substring(0, 2) + "/" + sha256.substring(2, 4) + "/" + sha256;
+    }
+
+    /**
+     * Moves a staged blob under {@code key}. Returns {@code false} when the content already existed,
+     * in which case the staged copy is dropped. Callers serialize promotion per key.
+     */
+    @Override
+    public boolean promote(StagedBlob blob, String key) {
+        Path target = resolve(key);
+        try {
+            if (Files.exists(target)) {
+                deleteQuietly(blob.path());
+                return false;
+            }
+            Files.createDirectories(target.getParent());
+            Files.move(blob.path(), target, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to store blob " + key, ex);
+        }
+    }
+
+    public void discard(StagedBlob blob) {
+        deleteQuietly(blob.path());
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.isRegularFile(resolve(key));
+    }
+
+    @Override
+    public Optional<Path> localFile(String key, long sizeBytes) {
+        Path path = resolve(key);
+        if (!Files.isRegularFile(path)) {
+            throw new BlobNotFoundException(key);
+        }
+        return Optional.of(path);
+    }
+
+    @Override
+    public InputStream open(String key, long start, long count) {
+        return openRange(resolve(key), key, start, count);
+    }
+
+    @Override
+    public void delete(String key) {
+        try {
+            Files.deleteIfExists(resolve(key));
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to delete blob " + key, ex);
+        }
+    }
+
+    @Override
+    public Optional<BlobEntry> stat(String key) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(resolve(key), BasicFileAttributes.class);
+            return attributes.isRegularFile()
+                    ? Optional.of(new BlobEntry(key, attributes.size(), attributes.lastModifiedTime().toInstant()))
+                    : Optional.empty();
+        } catch (NoSuchFileException ex) {
+            return Optional.empty();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to read blob " + key, ex);
+        }
+    }
+
+    /**
+     * Walks the key directories in name order, skipping every directory before {@code afterKey}
+     * without reading it, so resuming a listing costs one directory read per key level.
+     */
+    @Override
+    public List<BlobEntry> list(String afterKey, int limit) {
+        List<BlobEntry> entries = new ArrayList<>(limit);
+        try {
+            collect(root, "", afterKey == null ? null : afterKey.split("/"), 0, limit, entries);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to list blobs under " + root, ex);
+        }
+        return entries;
+    }
+
+    public Path resolve(String key) {
+        Path resolved = root.resolve(key).normalize();
+        if (!resolved.startsWith(root) || resolved.startsWith(staging) || resolved.startsWith(uploads)
+                || resolved.startsWith(cache)) {
+            throw new IllegalArgumentException("Invalid storage key");
+        }
+        return resolved;
+    }
+
+    /**
+     * The cache directory of an object store backend; on the same file system as the staging files,
+     * so staged blobs move into it without copying.
+     */
+    Path cacheDirectory() {
+        return cache;
+    }
+
+    static InputStream openRange(Path path, String key, long start, long count) {
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                channel.position(start);
+            } catch (IOException | RuntimeException ex) {
+                try {
+                    channel.close();
+                } catch (IOException closeFailure) {
+                    ex.addSuppressed(closeFailure);
+                }
+                throw ex;
+            }
+            return new RangeInputStream(Channels.newInputStream(channel), count);
+        } catch (NoSuchFileException ex) {
+            throw new BlobNotFoundException(key);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to open blob " + key, ex);
+        }
+    }
+
+    private void collect(Path directory, String prefix, String[] after, int depth, int limit,
+                         List<BlobEntry> entries) throws IOException {
+        List<Path> children;
+        try (Stream<Path> listing = Files.list(directory)) {
+            // Staging, uploads and the cache live in dot directories next to the key tree
+            children = listing.filter(path -> !path.getFileName().toString().startsWith("."))
+                    .sorted(Comparator.comparing(path -> path.getFileName().toString()))
+                    .toList();
+        } catch (NoSuchFileException ex) {
+            return;
+        }
+        for (Path child : children) {
+            if (entries.size() >= limit) {
+                return;
+            }
+            String name = child.getFileName().toString();
+            int order = after != null && depth < after.length ? name.compareTo(after[depth]) : 1;
+            if (order < 0) {
+                continue;
+            }
+            if (depth < KEY_DEPTH - 1) {
+                if (Files.isDirectory(child)) {
+                    collect(child, prefix + name + "/", order == 0 ? after : null, depth + 1, limit, entries);
+                }
+            } else if (order > 0) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(child, BasicFileAttributes.class);
+                    if (attributes.isRegularFile()) {
+                        entries.add(new BlobEntry(prefix + name, attributes.size(),
+                                attributes.lastModifiedTime().toInstant()));
+                    }
+                } catch (NoSuchFileException ignored) {
+                    // Deleted since the directory was read
+                }
+            }
+        }
+    }
+
+    private static long sweep(Path directory, Instant olderThan) {
+        long freed = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                try {
+                    if (Files.getLastModifiedTime(file).toInstant().isBefore(olderThan)) {
+                        freed += deleteQuietly(file);
+                    }
+                } catch (IOException ignored) {
+                    // Gone already, or retried on the next sweep
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to sweep " + directory, ex);
+        }
+        return freed;
+    }
+
+    private void awaitWriters(UUID sessionId) {
+        ChunkWriters active = writers.get(sessionId);
+        try {
+            if (active != null && !active.awaitIdle(writerDrainTimeout)) {
+                throw new ChunkWritesPendingException(sessionId);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ChunkWritesPendingException(sessionId);
+        }
+    }
+
+    private String hash(UUID sessionId, Path path, long sizeBytes) {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (in.size() != sizeBytes) {
+                throw new IllegalStateException("Upload " + sessionId + " has " + in.size()
+                        + " bytes on disk but declares " + sizeBytes);
+            }
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to hash upload " + sessionId, ex);
+        }
+        return HEX.formatHex(digest.digest());
+    }
+
+    private Path uploadPath(UUID sessionId) {
+        return uploads.resolve(sessionId + ".part");
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    private static long deleteQuietly(Path path) {
+        try {
+            long size = Files.size(path);
+            Files.delete(path);
+            return size;
+        } catch (IOException ignored) {
+            // A leftover staging file is never referenced by a key; it only costs disk space
+            return 0;
+        }
+    }
+
+    /**
+     * Ends after {@code remaining} bytes, so a range read never runs into the rest of the blob.
+     */
+    private static final class RangeInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        private RangeInputStream(InputStream in, long remaining) {
+            super(in);
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Counts the chunk writes of one session that are in flight. The entry leaves the map when the
+     * count drops to zero and is never reused, so a waiter holding it cannot miss a later writer.
+     */
+    private static final class ChunkWriters {
+
+        private int active;
+
+        synchronized ChunkWriters enter() {
+            active++;
+            return this;
+        }
+
+        synchronized ChunkWriters exit() {
+            if (--active > 0) {
+                return this;
+            }
+            notifyAll();
+            return null;
+        }
+
+        synchronized boolean awaitIdle(Duration timeout) throws InterruptedException {
+            long deadline = System.nanoTime() + timeout.toNanos();
+            while (active > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return true;
+        }
+    }
+
+    public static class ChunkLengthException extends RuntimeException {
+        public ChunkLengthException(long expected) {
+            super("Chunk must be exactly " + expected + " bytes");
+        }
+    }
+
+    public static class UploadNotFoundException extends RuntimeException {
+        public UploadNotFoundException(UUID sessionId) {
+            super("Upload " + sessionId + " does not exist");
+        }
+    }
+
+    public static class ChunkWritesPendingException extends RuntimeException {
+        public ChunkWritesPendingException(UUID sessionId) {
+            super("Upload " + sessionId + " still has chunk writes in flight");
+        }
+    }
+
+    public static class BlobTooLargeException extends RuntimeException {
+        public BlobTooLargeException(long maxBytes) {
+            super("Upload exceeds the limit of " + maxBytes + " bytes");
+        }
+    }
+}
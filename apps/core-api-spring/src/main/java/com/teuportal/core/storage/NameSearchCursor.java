@@ -0,0 +1,76 @@
+package com.teuportal.core.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Opaque position in name search results: which phase comes next (prefix matches, then similar
+ * names) and the score, sort name and id of the last hit returned. A cursor with no id starts the
+ * similar names from the beginning. Cursors are bound to the query and filters they were issued
+ * for through {@code searchKey}.
+ */
+public record NameSearchCursor(
+        int searchKey,
+        Phase phase,
+        float score,
+        String sortName,
+        UUID id
+) {
+
+    private static final String VERSION = "1";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    public enum Phase {
+        PREFIX,
+        SIMILAR
+    }
+
+    public static NameSearchCursor startOfSimilar(int searchKey) {
+        return new NameSearchCursor(searchKey, Phase.SIMILAR, 0, null, null);
+    }
+
+    public boolean hasKey() {
+        return id != null;
+    }
+
+    public String encode() {
+        // Float.toString round-trips exactly; the name goes last so it may contain the separator
+        String raw = String.join(":", VERSION, Integer.toHexString(searchKey), phase.name(),
+                Float.toString(score), id == null ? "" : id.toString(), sortName == null ? "" : sortName);
+        return ENCODER.encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException when the value was not produced by {@link #encode()}
+     */
+    public static NameSearchCursor decode(String value) {
+        String[] parts;
+        try {
+            parts = new String(DECODER.decode(value), StandardCharsets.UTF_8).split(":", 6);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Malformed cursor", ex);
+        }
+        if (parts.length != 6 || !VERSION.equals(parts[0])) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        try {
+            int searchKey = Integer.parseUnsignedInt(parts[1], 16);
+            Phase phase = Phase.valueOf(parts[2]);
+            float score = Float.parseFloat(parts[3]);
+            if (parts[4].isEmpty()) {
+                if (phase != Phase.SIMILAR) {
+                    throw new IllegalArgumentException("Malformed cursor");
+                }
+                return startOfSimilar(searchKey);
+            }
+            if (!Float.isFinite(score)) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            return new NameSearchCursor(searchKey, phase, score, parts[5], UUID.fromString(parts[4]));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Malformed cursor", ex);
+        }
+    }
+}
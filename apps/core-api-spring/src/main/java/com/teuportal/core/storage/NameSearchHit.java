@@ -0,0 +1,25 @@
+package com.teuportal.core.storage;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * One name search result. {@code folderId} is the containing folder, {@code null} at the root;
+ * size, MIME type and client are only set for files. {@code score} and {@code sortName} are kept
+ * for the cursor; prefix matches have no score.
+ */
+public record NameSearchHit(
+        FolderEntry.Type type,
+        UUID id,
+        String name,
+        UUID folderId,
+        UUID clientId,
+        Long sizeBytes,
+        String mimeType,
+        OffsetDateTime createdAt,
+        @JsonIgnore float score,
+        @JsonIgnore String sortName
+) {
+}
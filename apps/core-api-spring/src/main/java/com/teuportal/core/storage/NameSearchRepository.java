@@ -0,0 +1,133 @@
+package com.teuportal.core.storage;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Name search queries. Filters are optional: a client or MIME type restricts results to files,
+ * {@code folderId} to that folder's subtree.
+ */
+@Repository
+public class NameSearchRepository {
+
+    // Similar names are ranked among at most this many candidates per table
+    static final int MAX_CANDIDATES = 1000;
+
+    private static final String HIT_COLUMNS = """
+            kind, id, name, folder_id, client_id, size_bytes, mime_type, created_at, sort_name""";
+
+    private static final RowMapper<NameSearchHit> ROW_MAPPER = (rs, rowNum) -> {
+        boolean file = "FILE".equals(rs.getString("kind"));
+        return new NameSearchHit(
+                file ? FolderEntry.Type.FILE : FolderEntry.Type.FOLDER,
+                rs.getObject("id", UUID.class),
+                rs.getString("name"),
+                rs.getObject("folder_id", UUID.class),
+                rs.getObject("client_id", UUID.class),
+                file ? rs.getLong("size_bytes") : null,
+                rs.getString("mime_type"),
+                rs.getObject("created_at", java.time.OffsetDateTime.class),
+                rs.getFloat("score"),
+                rs.getString("sort_name")
+        );
+    };
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public NameSearchRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Returns one keyset page of names starting with {@code query}, in byte order of their
+     * lowercase form, continuing after {@code afterName}/{@code afterId} when given. Each table
+     * is read as a range of its {@code (company_id, sort_name, id)} index.
+     */
+    public List<NameSearchHit> findPrefixMatches(String query,
+                                                 UUID clientId,
+                                                 String mimeType,
+                                                 UUID folderId,
+                                                 String afterName,
+                                                 UUID afterId,
+                                                 int limit) {
+        MapSqlParameterSource params = filters(query, clientId, mimeType, folderId)
+                .addValue("afterName", afterName)
+                .addValue("afterId", afterId)
+                .addValue("limit", limit);
+        String range = " WHERE t.sort_name COLLATE \"C\" >= lower(:query)"
+                + " AND t.sort_name COLLATE \"C\" < lower(:query) || chr(1114111)"
+                + (afterId == null ? "" : " AND (t.sort_name COLLATE \"C\", t.id) > (:afterName, :afterId)");
+        String order = " ORDER BY t.sort_name COLLATE \"C\", t.id LIMIT :limit";
+        String sql = "(SELECT 'FILE' AS kind, t.id, t.name, t.folder_id, t.client_id, t.size_bytes, t.mime_type,"
+                + " t.created_at, t.sort_name FROM file t" + range
+                + " AND t.deleted_at IS NULL"
+                + " AND NOT EXISTS (SELECT 1 FROM folder d WHERE d.id = t.folder_id AND d.deleted_at IS NOT NULL)"
+                + (clientId == null ? "" : " AND t.client_id = :clientId")
+                + (mimeType == null ? "" : " AND t.mime_type = :mimeType")
+                + (folderId == null ? "" : " AND t.folder_id IN (" + subtree() + ")")
+                + order + ")";
+        if (clientId == null && mimeType == null) {
+            sql += " UNION ALL (SELECT 'FOLDER', t.id, t.name, t.parent_id, NULL, NULL, NULL, t.created_at,"
+                    + " t.sort_name FROM folder t" + range + " AND t.deleted_at IS NULL"
+                    + (folderId == null ? "" : " AND t.id IN (" + subtree() + ") AND t.id <> :folderId")
+                    + order + ")";
+        }
+        return jdbcTemplate.query("SELECT " + HIT_COLUMNS + ", 0 AS score FROM (" + sql + ") t"
+                + " ORDER BY t.sort_name COLLATE \"C\", t.id LIMIT :limit", params, ROW_MAPPER);
+    }
+
+    /**
+     * Returns one keyset page of names containing a word similar to {@code query} but not starting
+     * with it, best match first, continuing after {@code afterScore}/{@code afterName}/
+     * {@code afterId} when given. {@code app.search_similar_names} ranks the ids with the trigram
+     * indexes that RLS would keep out of a plain query; they are joined back to {@code file} and
+     * {@code folder} here, so what is returned still passes the tenant policies.
+     */
+    public List<NameSearchHit> findSimilar(String query,
+                                           UUID clientId,
+                                           String mimeType,
+                                           UUID folderId,
+                                           Float afterScore,
+                                           String afterName,
+                                           UUID afterId,
+                                           int limit) {
+        MapSqlParameterSource params = filters(query, clientId, mimeType, folderId)
+                .addValue("afterScore", afterScore)
+                .addValue("afterName", afterName)
+                .addValue("afterId", afterId)
+                .addValue("limit", limit)
+                .addValue("maxCandidates", MAX_CANDIDATES);
+        return jdbcTemplate.query("""
+                SELECT s.kind, s.id, s.score, s.sort_name,
+                       COALESCE(f.name, d.name) AS name,
+                       CASE WHEN s.kind = 'FILE' THEN f.folder_id ELSE d.parent_id END AS folder_id,
+                       f.client_id, f.size_bytes, f.mime_type,
+                       COALESCE(f.created_at, d.created_at) AS created_at
+                FROM app.search_similar_names(:query, CAST(:clientId AS uuid), CAST(:mimeType AS text),
+                                              CAST(:folderId AS uuid), CAST(:afterScore AS real),
+                                              CAST(:afterName AS text), CAST(:afterId AS uuid),
+                                              :limit, :maxCandidates) s
+                LEFT JOIN file f ON s.kind = 'FILE' AND f.id = s.id
+                LEFT JOIN folder d ON s.kind = 'FOLDER' AND d.id = s.id
+                WHERE f.id IS NOT NULL OR d.id IS NOT NULL
+                ORDER BY s.score DESC, s.sort_name COLLATE "C", s.id
+                """, params, ROW_MAPPER);
+    }
+
+    private static MapSqlParameterSource filters(String query, UUID clientId, String mimeType, UUID folderId) {
+        return new MapSqlParameterSource()
+                .addValue("query", query)
+                .addValue("clientId", clientId)
+                .addValue("mimeType", mimeType)
+                .addValue("folderId", folderId);
+    }
+
+    private static String subtree() {
+        return "SELECT c.descendant_id FROM folder_closure c WHERE c.ancestor_id = :folderId";
+    }
+}
@@ -0,0 +1,13 @@
+package com.teuportal.core.storage;
+
+import java.util.List;
+
+/**
+ * A page of name search results, best match first; {@code nextCursor} is {@code null} on the last
+ * page.
+ */
+public record NameSearchResults(
+        List<NameSearchHit> items,
+        String nextCursor
+) {
+}
@@ -0,0 +1,96 @@
+package com.teuportal.core.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.UUID;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Finds files and folders by name anywhere in the tenant. Names starting with the query come
+ * first, in name order; then names with a word similar to it, best match first, so a typo or a
+ * word from the middle of a name still finds it. Both phases page by keyset.
+ */
+@Service
+public class NameSearchService {
+
+    static final int MIN_QUERY_LENGTH = 2;
+    static final int MAX_QUERY_LENGTH = 200;
+
+    private final NameSearchRepository nameSearchRepository;
+    private final FolderRepository folderRepository;
+    private final TransactionTemplate readOnlyTemplate;
+
+    public NameSearchService(NameSearchRepository nameSearchRepository,
+                             FolderRepository folderRepository,
+                             PlatformTransactionManager transactionManager) {
+        this.nameSearchRepository = nameSearchRepository;
+        this.folderRepository = folderRepository;
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Searches names for {@code query}, optionally only files of one client or MIME type, or only
+     * entries below {@code folderId}.
+     *
+     * @throws IllegalArgumentException when the query is too short or too long, or {@code cursor}
+     *                                  is malformed or was issued for another search
+     */
+    public NameSearchResults search(String query, UUID clientId, String mimeType, UUID folderId, int limit, String cursor) {
+        String term = query == null ? "" : query.strip();
+        if (term.length() < MIN_QUERY_LENGTH || term.length() > MAX_QUERY_LENGTH) {
+            throw new IllegalArgumentException("Search query must be between " + MIN_QUERY_LENGTH
+                    + " and " + MAX_QUERY_LENGTH + " characters");
+        }
+        int searchKey = Objects.hash(term.toLowerCase(Locale.ROOT), clientId, mimeType, folderId);
+        NameSearchCursor position = cursor == null ? null : NameSearchCursor.decode(cursor);
+        if (position != null && position.searchKey() != searchKey) {
+            throw new IllegalArgumentException("Cursor was issued for a different search");
+        }
+        return readOnlyTemplate.execute(status -> {
+            if (folderId != null && !folderRepository.exists(folderId)) {
+                throw new FileUploadService.FolderNotFoundException(folderId);
+            }
+            List<NameSearchHit> items = new ArrayList<>(limit);
+            if (position == null || position.phase() == NameSearchCursor.Phase.PREFIX) {
+                List<NameSearchHit> prefixed = nameSearchRepository.findPrefixMatches(term, clientId, mimeType, folderId,
+                        position == null ? null : position.sortName(),
+                        position == null ? null : position.id(),
+                        limit + 1);
+                if (prefixed.size() > limit) {
+                    items.addAll(prefixed.subList(0, limit));
+                    return new NameSearchResults(items, cursorAfter(searchKey, NameSearchCursor.Phase.PREFIX, items));
+                }
+                items.addAll(prefixed);
+            }
+            boolean continuingSimilar = position != null && position.hasKey()
+                    && position.phase() == NameSearchCursor.Phase.SIMILAR;
+            int remaining = limit - items.size();
+            List<NameSearchHit> similar = nameSearchRepository.findSimilar(term, clientId, mimeType, folderId,
+                    continuingSimilar ? position.score() : null,
+                    continuingSimilar ? position.sortName() : null,
+                    continuingSimilar ? position.id() : null,
+                    remaining + 1);
+            if (similar.size() <= remaining) {
+                items.addAll(similar);
+                return new NameSearchResults(items, null);
+            }
+            if (remaining == 0) {
+                return new NameSearchResults(items, NameSearchCursor.startOfSimilar(searchKey).encode());
+            }
+            List<NameSearchHit> page = similar.subList(0, remaining);
+            items.addAll(page);
+            return new NameSearchResults(items, cursorAfter(searchKey, NameSearchCursor.Phase.SIMILAR, page));
+        });
+    }
+
+    private static String cursorAfter(int searchKey, NameSearchCursor.Phase phase, List<NameSearchHit> page) {
+        NameSearchHit last = page.get(page.size() - 1);
+        return new NameSearchCursor(searchKey, phase, last.score(), last.sortName(), last.id()).encode();
+    }
+}
@@ -0,0 +1,198 @@
+package com.teuportal.core.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.http.ContentStreamProvider;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * Blobs in an S3-compatible bucket under their storage key, with a {@link BlobCache} on local disk
+ * in front. Uploads are written through: the object is stored before the transaction that records
+ * the file, and the staged copy then moves into the cache, since new files are often read soon.
+ * Downloads are served from the cache, fetching a missing blob once however many requests wait for
+ * it; blobs too large to cache and bulk reads such as exports stream from the bucket instead.
+ */
+public class S3BlobStore implements BlobStorageBackend {
+
+    private static final Logger log = LoggerFactory.getLogger(S3BlobStore.class);
+
+    private final S3Client s3;
+    private final String bucket;
+    private final long partSize;
+    private final long maxCachedBytes;
+    private final BlobCache cache;
+
+    public S3BlobStore(S3Client s3, LocalBlobStore localBlobStore, StorageProperties properties) {
+        this(s3, properties.getS3().getBucket(), properties.getS3().getPartSize().toBytes(),
+                properties.getCache().getMaxEntrySize().toBytes(),
+                new BlobCache(localBlobStore.cacheDirectory(), properties.getCache().getMaxSize().toBytes()));
+    }
+
+    S3BlobStore(S3Client s3, String bucket, long partSize, long maxCachedBytes, BlobCache cache) {
+        if (bucket == null || bucket.isBlank()) {
+            throw new IllegalStateException("app.storage.s3.bucket must be set for the s3 backend");
+        }
+        this.s3 = s3;
+        this.bucket = bucket;
+        this.partSize = partSize;
+        this.maxCachedBytes = maxCachedBytes;
+        this.cache = cache;
+    }
+
+    /**
+     * Puts the object unless it is already stored. Content-addressed keys make a repeated put
+     * harmless, so this needs no lock.
+     */
+    @Override
+    public boolean upload(StagedBlob blob, String key) {
+        if (exists(key)) {
+            return false;
+        }
+        put(blob, key);
+        return true;
+    }
+
+    /**
+     * Runs under the key lock. The object normally exists already; it is put again only if a
+     * rolled-back upload of the same content removed it after {@link #upload}.
+     */
+    @Override
+    public boolean promote(StagedBlob blob, String key) {
+        boolean created = false;
+        if (!existsInBucket(key)) {
+            put(blob, key);
+            created = true;
+        }
+        try {
+            if (blob.sizeBytes() <= maxCachedBytes) {
+                cache.admit(key, blob.path());
+            }
+        } catch (IOException ex) {
+            // The bucket has the blob; the cache fills on the first read instead
+            log.warn("Failed to cache uploaded blob {}", key, ex);
+        }
+        return created;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return cache.contains(key) || existsInBucket(key);
+    }
+
+    @Override
+    public Optional<Path> localFile(String key, long sizeBytes) {
+        if (sizeBytes > maxCachedBytes) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(cache.getOrFetch(key, target -> fetch(key, target)));
+    }
+
+    @Override
+    public InputStream open(String key, long start, long count) {
+        Path cached = cache.peek(key);
+        if (cached != null && Files.isRegularFile(cached)) {
+            return LocalBlobStore.openRange(cached, key, start, count);
+        }
+        if (count == 0) {
+            return InputStream.nullInputStream();
+        }
+        try {
+            return s3.getObject(request -> request.bucket(bucket).key(key)
+                    .range("bytes=" + start + "-" + (start + count - 1)));
+        } catch (NoSuchKeyException ex) {
+            throw new BlobNotFoundException(key);
+        }
+    }
+
+    @Override
+    public void delete(String key) {
+        cache.remove(key);
+        s3.deleteObject(request -> request.bucket(bucket).key(key));
+    }
+
+    @Override
+    public Optional<BlobEntry> stat(String key) {
+        try {
+            HeadObjectResponse head = s3.headObject(request -> request.bucket(bucket).key(key));
+            return Optional.of(new BlobEntry(key, head.contentLength(), head.lastModified()));
+        } catch (NoSuchKeyException ex) {
+            return Optional.empty();
+        } catch (S3Exception ex) {
+            // HEAD responses have no body, so some stores report a missing key only by status
+            if (ex.statusCode() == 404) {
+                return Optional.empty();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * One {@code ListObjectsV2} page; the bucket holds nothing but blobs.
+     */
+    @Override
+    public List<BlobEntry> list(String afterKey, int limit) {
+        return s3.listObjectsV2(request -> request.bucket(bucket).startAfter(afterKey).maxKeys(limit))
+                .contents().stream()
+                .map(object -> new BlobEntry(object.key(), object.size(), object.lastModified()))
+                .toList();
+    }
+
+    private boolean existsInBucket(String key) {
+        return stat(key).isPresent();
+    }
+
+    private void put(StagedBlob blob, String key) {
+        Path path = blob.path();
+        long size = blob.sizeBytes();
+        if (size <= partSize) {
+            s3.putObject(request -> request.bucket(bucket).key(key).contentLength(size), RequestBody.fromFile(path));
+            return;
+        }
+        String uploadId = s3.createMultipartUpload(request -> request.bucket(bucket).key(key)).uploadId();
+        try {
+            List<CompletedPart> parts = new ArrayList<>();
+            for (long offset = 0, part = 1; offset < size; offset += partSize, part++) {
+                long start = offset;
+                long length = Math.min(partSize, size - offset);
+                int partNumber = (int) part;
+                // A fresh stream per attempt, so the SDK can retry a part without buffering it
+                ContentStreamProvider content = () -> LocalBlobStore.openRange(path, key, start, length);
+                String etag = s3.uploadPart(request -> request.bucket(bucket).key(key)
+                                .uploadId(uploadId).partNumber(partNumber).contentLength(length),
+                        RequestBody.fromContentProvider(content, length, "application/octet-stream")).eTag();
+                parts.add(CompletedPart.builder().partNumber(partNumber).eTag(etag).build());
+            }
+            s3.completeMultipartUpload(request -> request.bucket(bucket).key(key).uploadId(uploadId)
+                    .multipartUpload(upload -> upload.parts(parts)));
+        } catch (RuntimeException ex) {
+            try {
+                s3.abortMultipartUpload(request -> request.bucket(bucket).key(key).uploadId(uploadId));
+            } catch (RuntimeException abortFailure) {
+                ex.addSuppressed(abortFailure);
+            }
+            throw ex;
+        }
+    }
+
+    private void fetch(String key, Path target) {
+        try {
+            s3.getObject(request -> request.bucket(bucket).key(key), ResponseTransformer.toFile(target));
+        } catch (NoSuchKeyException ex) {
+            throw new BlobNotFoundException(key);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.teuportal.core.storage;
+
+import java.util.Map;
+import java.util.UUID;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/search")
+@Tag(name = "search", description = "File and folder name search")
+public class SearchController {
+
+    private static final int MAX_LIMIT = 200;
+
+    private final NameSearchService nameSearchService;
+
+    public SearchController(NameSearchService nameSearchService) {
+        this.nameSearchService = nameSearchService;
+    }
+
+    /**
+     * Searches file and folder names, best match first. Filtering by client or MIME type returns
+     * files only; {@code folderId} limits results to that folder's subtree. Pass the returned
+     * {@code nextCursor} back unchanged, with the same query and filters, to get the next page.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Search files and folders by name")
+    public ResponseEntity<?> search(@RequestParam("q") String query,
+                                    @RequestParam(value = "clientId", required = false) UUID clientId,
+                                    @RequestParam(value = "mimeType", required = false) String mimeType,
+                                    @RequestParam(value = "folderId", required = false) UUID folderId,
+                                    @RequestParam(value = "limit", defaultValue = "50") int limit,
+                                    @RequestParam(value = "cursor", required = false) String cursor) {
+        try {
+            return ResponseEntity.ok(nameSearchService.search(query, clientId,
+                    StringUtils.hasText(mimeType) ? mimeType.trim() : null, folderId,
+                    Math.max(1, Math.min(limit, MAX_LIMIT)), cursor));
+        } catch (FileUploadService.FolderNotFoundException ex) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.teuportal.core.storage;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * What a signed download URL grants: one file of one company until {@code expiresAt}, limited to
+ * {@code range} when it is set. Carries the file's download metadata, so the URL is served without
+ * looking the file up.
+ */
+record SignedDownload(
+        UUID companyId,
+        FileDownload file,
+        boolean inline,
+        Instant expiresAt,
+        FileDownloadWriter.Region range
+) {
+}
@@ -0,0 +1,74 @@
+package com.teuportal.core.storage;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Serves signed download URLs ({@code /d/<token>}). Registered ahead of Spring Session, Spring
+ * Security and {@code TenantContextFilter} and never passes the request on, so a download costs
+ * one HMAC check and the blob read: no session load, no tenant transaction. Responses may be
+ * cached by shared caches until the URL expires, since the URL itself is the credential.
+ */
+class SignedDownloadFilter extends OncePerRequestFilter {
+
+    static final String PATH_PREFIX = "/d/";
+
+    private final DownloadSigner signer;
+    private final FileDownloadWriter fileDownloadWriter;
+    private final Clock clock;
+
+    SignedDownloadFilter(DownloadSigner signer, FileDownloadWriter fileDownloadWriter, Clock clock) {
+        this.signer = signer;
+        this.fileDownloadWriter = fileDownloadWriter;
+        this.clock = clock;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+            response.setHeader(HttpHeaders.ALLOW, "GET, HEAD");
+            error(response, HttpServletResponse.SC_METHOD_NOT_ALLOWED, "Method not allowed");
+            return;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        Optional<SignedDownload> signed = path.startsWith(PATH_PREFIX)
+                ? signer.verify(path.substring(PATH_PREFIX.length()))
+                : Optional.empty();
+        if (signed.isEmpty()) {
+            error(response, HttpServletResponse.SC_FORBIDDEN, "Link is invalid or has expired");
+            return;
+        }
+        SignedDownload download = signed.get();
+        FileDownload file = download.file();
+        if (!fileDownloadWriter.isAvailable(file)) {
+            error(response, HttpServletResponse.SC_NOT_FOUND, "File content is not available");
+            return;
+        }
+        ServletWebRequest webRequest = new ServletWebRequest(request, response);
+        if (webRequest.checkNotModified(file.etag(), file.lastModified())) {
+            return;
+        }
+        long maxAge = Math.max(0, Duration.between(clock.instant(), download.expiresAt()).toSeconds());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=" + maxAge);
+        fileDownloadWriter.write(file, download.inline(), download.range(), request, response);
+    }
+
+    private static void error(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"status\":\"error\",\"message\":\"" + message + "\"}");
+    }
+}
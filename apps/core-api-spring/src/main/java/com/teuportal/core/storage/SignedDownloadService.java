@@ -0,0 +1,87 @@
+package com.teuportal.core.storage;
+
+import com.teuportal.core.tenancy.TenantContextService;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Issues signed download URLs for files of the current company. The lookup runs with the caller's
+ * tenant context, so only files the caller can see are signed; the URL then works for anyone
+ * holding it until it expires, and is served by {@link SignedDownloadFilter} without a session
+ * or a database round trip. A signed URL cannot be revoked, so its lifetime is capped.
+ */
+@Service
+public class SignedDownloadService {
+
+    private final FileDownloadService fileDownloadService;
+    private final DownloadSigner signer;
+    private final TenantContextService tenantContextService;
+    private final Clock clock;
+    private final Duration defaultTtl;
+    private final Duration maxTtl;
+    private final String appBaseUrl;
+
+    public SignedDownloadService(FileDownloadService fileDownloadService,
+                                 DownloadSigner signer,
+                                 TenantContextService tenantContextService,
+                                 Clock clock,
+                                 StorageProperties properties,
+                                 @Value("${app.base-url}") String appBaseUrl) {
+        this.fileDownloadService = fileDownloadService;
+        this.signer = signer;
+        this.tenantContextService = tenantContextService;
+        this.clock = clock;
+        this.defaultTtl = properties.getSignedUrls().getDefaultTtl();
+        this.maxTtl = properties.getSignedUrls().getMaxTtl();
+        this.appBaseUrl = appBaseUrl;
+    }
+
+    /**
+     * Signs a URL for a file, or for {@code length} bytes of it from {@code offset} when an offset
+     * is given. Returns empty when the file does not exist.
+     *
+     * @param ttl lifetime of the URL; the configured default when {@code null}
+     * @param length bytes from {@code offset}, or up to the end of the file when {@code null}
+     */
+    public Optional<SignedDownloadUrl> issue(UUID fileId, Duration ttl, Long offset, Long length, boolean inline) {
+        Duration lifetime = ttl == null ? defaultTtl : ttl;
+        if (lifetime.isNegative() || lifetime.isZero() || lifetime.compareTo(maxTtl) > 0) {
+            throw new IllegalArgumentException("expiresIn must be between 1 and " + maxTtl.toSeconds() + " seconds");
+        }
+        if (offset == null && length != null) {
+            throw new IllegalArgumentException("length requires an offset");
+        }
+        UUID companyId = tenantContextService.currentContext().getCompanyId();
+        return fileDownloadService.find(fileId).map(file -> {
+            FileDownloadWriter.Region range = offset == null ? null : range(file, offset, length);
+            Instant expiresAt = clock.instant().plus(lifetime);
+            String token = signer.sign(new SignedDownload(companyId, file, inline, expiresAt, range));
+            String url = UriComponentsBuilder.fromUriString(appBaseUrl)
+                    .pathSegment("d", token)
+                    .build()
+                    .toUriString();
+            return new SignedDownloadUrl(url, OffsetDateTime.ofInstant(expiresAt, ZoneOffset.UTC));
+        });
+    }
+
+    private static FileDownloadWriter.Region range(FileDownload file, long offset, Long length) {
+        if (offset < 0 || offset >= file.sizeBytes()) {
+            throw new IllegalArgumentException("offset must be within the file's " + file.sizeBytes() + " bytes");
+        }
+        long available = file.sizeBytes() - offset;
+        if (length != null && length <= 0) {
+            throw new IllegalArgumentException("length must be positive");
+        }
+        return new FileDownloadWriter.Region(offset, length == null ? available : Math.min(length, available));
+    }
+}
@@ -0,0 +1,6 @@
+package com.teuportal.core.storage;
+
+import java.time.OffsetDateTime;
+
+public record SignedDownloadUrl(String url, OffsetDateTime expiresAt) {
+}
@@ -0,0 +1,109 @@
+package com.teuportal.core.storage;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StringUtils;
+
+/**
+ * The server-side HMAC-SHA256 keys ({@code app.storage.signed-urls.keys}) behind signed download
+ * URLs and share access cookies. The first key signs; every key verifies, so keys are rotated by
+ * prepending the new one and dropping the old one once what it signed has expired. Each kind of
+ * payload signed with them must be told apart by its first bytes, so one kind of token is never
+ * accepted as another: share access cookies start with a purpose tag, download tokens with their
+ * binary format version.
+ */
+public class SigningKeys {
+
+    private static final Logger log = LoggerFactory.getLogger(SigningKeys.class);
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_SECRET_BYTES = 32;
+    private static final Pattern KEY_ID = Pattern.compile("[A-Za-z0-9_-]{1,32}");
+
+    private final Map<String, SecretKeySpec> keys = new HashMap<>();
+    private final String signingKeyId;
+
+    public SigningKeys(StorageProperties.SignedUrls properties) {
+        String first = null;
+        for (String entry : properties.getKeys()) {
+            if (!StringUtils.hasText(entry)) {
+                continue;
+            }
+            String id = parseKey(entry.trim());
+            if (first == null) {
+                first = id;
+            }
+        }
+        if (first == null) {
+            byte[] secret = new byte[MIN_SECRET_BYTES];
+            new SecureRandom().nextBytes(secret);
+            first = "local";
+            keys.put(first, new SecretKeySpec(secret, ALGORITHM));
+            log.warn("No app.storage.signed-urls.keys configured; signed download URLs and share access cookies "
+                    + "only work on this node until it restarts");
+        }
+        this.signingKeyId = first;
+    }
+
+    /**
+     * The id of the key {@link #sign} uses; store it with the signature.
+     */
+    public String signingKeyId() {
+        return signingKeyId;
+    }
+
+    public byte[] sign(byte[] payload) {
+        return mac(keys.get(signingKeyId), payload);
+    }
+
+    /**
+     * Whether {@code signature} is the signature of {@code payload} by the key {@code keyId}, which
+     * must still be configured.
+     */
+    public boolean verify(String keyId, byte[] payload, byte[] signature) {
+        SecretKeySpec key = keys.get(keyId);
+        return key != null && MessageDigest.isEqual(mac(key, payload), signature);
+    }
+
+    private String parseKey(String entry) {
+        int colon = entry.indexOf(':');
+        String id = colon < 0 ? "" : entry.substring(0, colon);
+        if (!KEY_ID.matcher(id).matches()) {
+            throw new IllegalStateException("Signed URL keys must be given as <id>:<base64 secret>");
+        }
+        byte[] secret;
+        try {
+            secret = Base64.getDecoder().decode(entry.substring(colon + 1));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalStateException("Signed URL key " + id + " is not valid base64", ex);
+        }
+        if (secret.length < MIN_SECRET_BYTES) {
+            throw new IllegalStateException("Signed URL key " + id + " must have at least " + MIN_SECRET_BYTES + " bytes");
+        }
+        if (keys.putIfAbsent(id, new SecretKeySpec(secret, ALGORITHM)) != null) {
+            throw new IllegalStateException("Signed URL key " + id + " is configured twice");
+        }
+        return id;
+    }
+
+    private static byte[] mac(SecretKeySpec key, byte[] payload) {
+        try {
+            // Mac instances are not thread-safe, and a fresh one costs less than a lock under load
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", ex);
+        }
+    }
+}
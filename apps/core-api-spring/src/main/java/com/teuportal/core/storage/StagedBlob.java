@@ -0,0 +1,13 @@
+package com.teuportal.core.storage;
+
+import java.nio.file.Path;
+
+/**
+ * Upload bytes in a staging file, with their SHA-256 digest.
+ */
+public record StagedBlob(
+        Path path,
+        String sha256,
+        long sizeBytes
+) {
+}
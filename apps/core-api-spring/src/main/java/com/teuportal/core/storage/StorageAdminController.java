@@ -0,0 +1,87 @@
+package com.teuportal.core.storage;
+
+import com.teuportal.core.datasource.ReadOnlyRequest;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.PositiveOrZero;
+
+import java.util.Map;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Storage usage, quota and integrity issues of the current company, for owners and admins.
+ */
+@RestController
+@RequestMapping("/api/admin/storage")
+@Tag(name = "admin", description = "Company administration")
+public class StorageAdminController {
+
+    private static final int MAX_LIMIT = 1000;
+
+    private final StorageQuotaService quotaService;
+    private final StorageScrubService scrubService;
+
+    public StorageAdminController(StorageQuotaService quotaService, StorageScrubService scrubService) {
+        this.quotaService = quotaService;
+        this.scrubService = scrubService;
+    }
+
+    /**
+     * Served from the primary so in-flight reservations and a quota just changed are included.
+     */
+    @GetMapping(path = "/usage", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ReadOnlyRequest(false)
+    @Operation(summary = "Show storage usage against the quota")
+    public ResponseEntity<?> usage() {
+        try {
+            return ResponseEntity.ok(quotaService.status());
+        } catch (StorageQuotaService.QuotaAccessDeniedException ex) {
+            return forbidden(ex);
+        }
+    }
+
+    /**
+     * Sets the quota in bytes; {@code null} removes it.
+     */
+    @PutMapping(path = "/quota", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Set or remove the storage quota")
+    public ResponseEntity<?> updateQuota(@Valid @RequestBody UpdateQuotaRequest request) {
+        try {
+            return ResponseEntity.ok(quotaService.updateQuota(request.quotaBytes()));
+        } catch (StorageQuotaService.QuotaAccessDeniedException ex) {
+            return forbidden(ex);
+        }
+    }
+
+    /**
+     * Files whose blob the background scrub found missing, truncated or altered.
+     */
+    @GetMapping(path = "/integrity", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "List files with a missing or damaged blob")
+    public ResponseEntity<?> integrity(@RequestParam(value = "limit", defaultValue = "100") int limit) {
+        try {
+            return ResponseEntity.ok(scrubService.integrityIssues(Math.max(1, Math.min(limit, MAX_LIMIT))));
+        } catch (StorageQuotaService.QuotaAccessDeniedException ex) {
+            return forbidden(ex);
+        }
+    }
+
+    private static ResponseEntity<?> forbidden(RuntimeException ex) {
+        return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(Map.of("status", "error", "message", ex.getMessage()));
+    }
+
+    public record UpdateQuotaRequest(@PositiveOrZero Long quotaBytes) {
+    }
+}
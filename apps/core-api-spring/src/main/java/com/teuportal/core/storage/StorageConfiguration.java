@@ -0,0 +1,105 @@
+package com.teuportal.core.storage;
+
+import com.teuportal.core.datasource.DataSourceRouteHolder;
+import com.teuportal.core.tenancy.TenantTransactions;
+
+import java.time.Clock;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.session.web.http.SessionRepositoryFilter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.StringUtils;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+
+@Configuration
+@EnableConfigurationProperties(StorageProperties.class)
+public class StorageConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "app.storage.jobs", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public StorageJobWorker storageJobWorker(StorageJobRepository jobRepository,
+                                             TrashService trashService,
+                                             FolderCopyService copyService,
+                                             TenantTransactions tenantTransactions,
+                                             DataSourceRouteHolder routeHolder,
+                                             PlatformTransactionManager transactionManager,
+                                             StorageProperties properties) {
+        return new StorageJobWorker(jobRepository, trashService, copyService, tenantTransactions, routeHolder,
+                transactionManager, properties);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "app.storage.scrub", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public StorageScrubber storageScrubber(StorageScrubRepository scrubRepository,
+                                           StorageScrubService scrubService,
+                                           DataSourceRouteHolder routeHolder,
+                                           PlatformTransactionManager transactionManager,
+                                           StorageProperties properties) {
+        return new StorageScrubber(scrubRepository, scrubService, routeHolder, transactionManager, properties);
+    }
+
+    @Bean
+    public SigningKeys signingKeys(StorageProperties properties) {
+        return new SigningKeys(properties.getSignedUrls());
+    }
+
+    @Bean
+    DownloadSigner downloadSigner(SigningKeys signingKeys, Clock clock) {
+        return new DownloadSigner(signingKeys, clock);
+    }
+
+    @Bean
+    FilterRegistrationBean<SignedDownloadFilter> signedDownloadFilter(DownloadSigner downloadSigner,
+                                                                     FileDownloadWriter fileDownloadWriter,
+                                                                     Clock clock) {
+        FilterRegistrationBean<SignedDownloadFilter> registration =
+                new FilterRegistrationBean<>(new SignedDownloadFilter(downloadSigner, fileDownloadWriter, clock));
+        registration.addUrlPatterns(SignedDownloadFilter.PATH_PREFIX + "*");
+        // Ahead of Spring Session, so the caller's session is never loaded
+        registration.setOrder(SessionRepositoryFilter.DEFAULT_ORDER - 1);
+        return registration;
+    }
+
+    /**
+     * Committed blobs go to the object store; {@link LocalBlobStore} keeps staging uploads and
+     * backs the read cache.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(prefix = "app.storage", name = "backend", havingValue = "s3")
+    static class ObjectStoreConfiguration {
+
+        @Bean
+        S3Client storageS3Client(StorageProperties properties) {
+            StorageProperties.S3 s3 = properties.getS3();
+            S3ClientBuilder builder = S3Client.builder()
+                    .region(Region.of(s3.getRegion()))
+                    .forcePathStyle(s3.isPathStyle());
+            if (s3.getEndpoint() != null) {
+                builder.endpointOverride(s3.getEndpoint());
+            }
+            if (StringUtils.hasText(s3.getAccessKey())) {
+                builder.credentialsProvider(StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create(s3.getAccessKey(), s3.getSecretKey())));
+            } else {
+                builder.credentialsProvider(DefaultCredentialsProvider.builder().build());
+            }
+            return builder.build();
+        }
+
+        @Bean
+        @Primary
+        S3BlobStore s3BlobStore(S3Client storageS3Client, LocalBlobStore localBlobStore, StorageProperties properties) {
+            return new S3BlobStore(storageS3Client, localBlobStore, properties);
+        }
+    }
+}
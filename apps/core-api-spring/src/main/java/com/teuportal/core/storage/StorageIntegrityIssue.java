@@ -0,0 +1,24 @@
+package com.teuportal.core.storage;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * A file whose blob the integrity pass found missing or different from what the row records.
+ * {@code checkedAt} is the last pass that still found it so.
+ */
+public record StorageIntegrityIssue(
+        UUID fileId,
+        String name,
+        String storageKey,
+        Problem problem,
+        OffsetDateTime detectedAt,
+        OffsetDateTime checkedAt
+) {
+
+    public enum Problem {
+        MISSING,
+        SIZE_MISMATCH,
+        CHECKSUM_MISMATCH
+    }
+}
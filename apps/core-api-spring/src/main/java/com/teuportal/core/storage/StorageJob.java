@@ -0,0 +1,54 @@
+package com.teuportal.core.storage;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Background work on a tenant's files: purging trashed rows and blobs, or filling in a folder
+ * copy. {@code processed} counts the rows handled so far; {@code state} is derived for callers
+ * polling a job.
+ */
+public record StorageJob(
+        UUID id,
+        @JsonIgnore UUID companyId,
+        Kind kind,
+        UUID folderId,
+        @JsonIgnore List<UUID> fileIds,
+        @JsonIgnore OffsetDateTime trashedAt,
+        UUID targetFolderId,
+        @JsonIgnore String cursor,
+        long processed,
+        @JsonIgnore UUID requestedBy,
+        OffsetDateTime runAfter,
+        @JsonIgnore OffsetDateTime lockedUntil,
+        int attempts,
+        String lastError,
+        @JsonIgnore boolean failed,
+        OffsetDateTime finishedAt,
+        OffsetDateTime createdAt
+) {
+
+    public enum Kind {
+        PURGE,
+        COPY
+    }
+
+    public enum State {
+        PENDING,
+        RUNNING,
+        FAILED,
+        DONE
+    }
+
+    @JsonProperty
+    public State state() {
+        if (finishedAt != null) {
+            return failed ? State.FAILED : State.DONE;
+        }
+        return lockedUntil != null && lockedUntil.isAfter(OffsetDateTime.now()) ? State.RUNNING : State.PENDING;
+    }
+}
@@ -0,0 +1,160 @@
+package com.teuportal.core.storage;
+
+import java.sql.Array;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class StorageJobRepository {
+
+    private static final RowMapper<StorageJob> ROW_MAPPER = (rs, rowNum) -> new StorageJob(
+            rs.getObject("id", UUID.class),
+            rs.getObject("company_id", UUID.class),
+            StorageJob.Kind.valueOf(rs.getString("kind")),
+            rs.getObject("folder_id", UUID.class),
+            uuids(rs.getArray("file_ids")),
+            rs.getObject("trashed_at", OffsetDateTime.class),
+            rs.getObject("target_folder_id", UUID.class),
+            rs.getString("cursor"),
+            rs.getLong("processed"),
+            rs.getObject("requested_by", UUID.class),
+            rs.getObject("run_after", OffsetDateTime.class),
+            rs.getObject("locked_until", OffsetDateTime.class),
+            rs.getInt("attempts"),
+            rs.getString("last_error"),
+            rs.getBoolean("failed"),
+            rs.getObject("finished_at", OffsetDateTime.class),
+            rs.getObject("created_at", OffsetDateTime.class)
+    );
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public StorageJobRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Queues a purge of what was trashed up to the current transaction's timestamp: the trashed
+     * folder {@code folderId}, the trashed files among {@code fileIds}, or, with neither, the
+     * whole trash.
+     */
+    public UUID insertPurge(UUID companyId, UUID folderId, Collection<UUID> fileIds, UUID requestedBy,
+                            Duration delay) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("companyId", companyId)
+                .addValue("folderId", folderId)
+                .addValue("fileIds", fileIds == null ? null : fileIds.toArray(UUID[]::new))
+                .addValue("requestedBy", requestedBy)
+                .addValue("delaySeconds", delay.toSeconds());
+        return jdbcTemplate.queryForObject("""
+                INSERT INTO storage_job (company_id, kind, folder_id, file_ids, trashed_at, requested_by, run_after)
+                VALUES (:companyId, 'PURGE', :folderId, :fileIds, now(), :requestedBy,
+                        now() + make_interval(secs => :delaySeconds))
+                RETURNING id
+                """, params, UUID.class);
+    }
+
+    public void insertCopy(UUID jobId, UUID companyId, UUID sourceFolderId, UUID targetFolderId, UUID requestedBy) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("id", jobId)
+                .addValue("companyId", companyId)
+                .addValue("folderId", sourceFolderId)
+                .addValue("targetFolderId", targetFolderId)
+                .addValue("requestedBy", requestedBy);
+        jdbcTemplate.update("""
+                INSERT INTO storage_job (id, company_id, kind, folder_id, target_folder_id, requested_by)
+                VALUES (:id, :companyId, 'COPY', :folderId, :targetFolderId, :requestedBy)
+                """, params);
+    }
+
+    /**
+     * Leases the next due job of any company to the caller; runs without a tenant context.
+     */
+    public Optional<StorageJob> claim(Duration lease, Duration keepFinished) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("leaseSeconds", lease.toSeconds())
+                .addValue("keepSeconds", keepFinished.toSeconds());
+        return jdbcTemplate.query("""
+                SELECT *
+                FROM app.claim_storage_job(make_interval(secs => :leaseSeconds), make_interval(secs => :keepSeconds))
+                """, params, ROW_MAPPER).stream().findFirst();
+    }
+
+    public Optional<StorageJob> findById(UUID jobId) {
+        return jdbcTemplate.query("SELECT * FROM storage_job WHERE id = :id",
+                new MapSqlParameterSource("id", jobId), ROW_MAPPER).stream().findFirst();
+    }
+
+    /**
+     * Records a finished batch and extends the lease, in the transaction that did the batch's work.
+     */
+    public void saveProgress(UUID jobId, String cursor, long processed, Duration lease) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("id", jobId)
+                .addValue("cursor", cursor)
+                .addValue("processed", processed)
+                .addValue("leaseSeconds", lease.toSeconds());
+        jdbcTemplate.update("""
+                UPDATE storage_job
+                SET cursor = :cursor,
+                    processed = processed + :processed,
+                    locked_until = now() + make_interval(secs => :leaseSeconds)
+                WHERE id = :id
+                """, params);
+    }
+
+    public void finish(UUID jobId, String failure) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("id", jobId)
+                .addValue("failure", failure);
+        jdbcTemplate.update("""
+                UPDATE storage_job
+                SET finished_at = now(),
+                    locked_until = NULL,
+                    failed = CAST(:failure AS text) IS NOT NULL,
+                    last_error = COALESCE(CAST(:failure AS text), last_error)
+                WHERE id = :id
+                """, params);
+    }
+
+    /**
+     * Gives up the lease so the job queues behind other due jobs.
+     */
+    public void release(UUID jobId) {
+        jdbcTemplate.update("""
+                UPDATE storage_job
+                SET locked_until = NULL, run_after = now()
+                WHERE id = :id
+                """, new MapSqlParameterSource("id", jobId));
+    }
+
+    public void retryLater(UUID jobId, String error, Duration delay) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("id", jobId)
+                .addValue("error", error)
+                .addValue("delaySeconds", delay.toSeconds());
+        jdbcTemplate.update("""
+                UPDATE storage_job
+                SET locked_until = NULL,
+                    attempts = attempts + 1,
+                    last_error = :error,
+                    run_after = now() + make_interval(secs => :delaySeconds)
+                WHERE id = :id
+                """, params);
+    }
+
+    private static List<UUID> uuids(Array array) throws SQLException {
+        return array == null ? null : Arrays.asList((UUID[]) array.getArray());
+    }
+}
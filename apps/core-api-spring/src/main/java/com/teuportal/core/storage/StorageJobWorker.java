@@ -0,0 +1,171 @@
+package com.teuportal.core.storage;
+
+import com.teuportal.core.datasource.DataSourceRouteHolder;
+import com.teuportal.core.datasource.Workload;
+import com.teuportal.core.tenancy.TenantContext;
+import com.teuportal.core.tenancy.TenantTransactions;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs purge and copy jobs on one background thread. A job is leased to this instance while it
+ * runs, so several instances share the queue, and one whose instance died is picked up again once
+ * its lease runs out. Each turn works on a job for at most one time slice, pausing between
+ * batches so foreground traffic keeps the database, then puts it back in the queue; a large job
+ * never holds the worker from the others. A failed batch is retried with a growing delay, and a
+ * job that keeps failing, or cannot go on at all, is marked failed.
+ */
+public class StorageJobWorker implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageJobWorker.class);
+    private static final Duration MAX_RETRY_DELAY = Duration.ofHours(1);
+
+    private final StorageJobRepository jobRepository;
+    private final TrashService trashService;
+    private final FolderCopyService copyService;
+    private final TenantTransactions tenantTransactions;
+    private final DataSourceRouteHolder routeHolder;
+    private final TransactionTemplate transactionTemplate;
+    private final StorageProperties.Jobs properties;
+
+    private volatile boolean running;
+    private volatile Thread worker;
+
+    public StorageJobWorker(StorageJobRepository jobRepository,
+                            TrashService trashService,
+                            FolderCopyService copyService,
+                            TenantTransactions tenantTransactions,
+                            DataSourceRouteHolder routeHolder,
+                            PlatformTransactionManager transactionManager,
+                            StorageProperties properties) {
+        this.jobRepository = jobRepository;
+        this.trashService = trashService;
+        this.copyService = copyService;
+        this.tenantTransactions = tenantTransactions;
+        this.routeHolder = routeHolder;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties.getJobs();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        worker = Thread.ofPlatform()
+                .name("storage-job-worker")
+                .daemon(true)
+                .start(() -> routeHolder.callAs(Workload.BACKGROUND, () -> {
+                    workLoop();
+                    return null;
+                }));
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread current = worker;
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void workLoop() {
+        while (running) {
+            try {
+                // Claimed without a tenant context: the queue spans every company
+                Optional<StorageJob> job = transactionTemplate.execute(status ->
+                        jobRepository.claim(properties.getLease(), properties.getKeepFinished()));
+                if (job.isPresent()) {
+                    work(job.get());
+                } else {
+                    Thread.sleep(properties.getPollInterval());
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Storage job worker failed; retrying in {}", properties.getPollInterval(), ex);
+                try {
+                    Thread.sleep(properties.getPollInterval());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void work(StorageJob job) throws InterruptedException {
+        TenantContext context = new TenantContext(job.companyId(), job.requestedBy(), Set.of());
+        long deadline = System.nanoTime() + properties.getSlice().toNanos();
+        try {
+            while (!runBatch(job, context)) {
+                if (!running || System.nanoTime() >= deadline) {
+                    tenantTransactions.execute(context, status -> {
+                        jobRepository.release(job.id());
+                        return null;
+                    });
+                    return;
+                }
+                Thread.sleep(properties.getBatchPause());
+            }
+            tenantTransactions.execute(context, status -> {
+                jobRepository.finish(job.id(), null);
+                return null;
+            });
+        } catch (FolderCopyService.CopyAbortedException ex) {
+            log.info("Storage job {} of company {} stopped: {}", job.id(), job.companyId(), ex.getMessage());
+            tenantTransactions.execute(context, status -> {
+                jobRepository.finish(job.id(), ex.getMessage());
+                return null;
+            });
+        } catch (RuntimeException ex) {
+            giveUpOrRetry(job, context, ex);
+        }
+    }
+
+    private boolean runBatch(StorageJob job, TenantContext context) {
+        return switch (job.kind()) {
+            case PURGE -> trashService.purgeBatch(job, context);
+            case COPY -> copyService.copyBatch(job, context);
+        };
+    }
+
+    private void giveUpOrRetry(StorageJob job, TenantContext context, RuntimeException ex) {
+        String error = ex.getClass().getSimpleName() + ": " + ex.getMessage();
+        int attempts = job.attempts() + 1;
+        if (attempts >= properties.getMaxAttempts()) {
+            log.error("Storage job {} of company {} failed {} times; giving up", job.id(), job.companyId(), attempts, ex);
+            tenantTransactions.execute(context, status -> {
+                jobRepository.finish(job.id(), error);
+                return null;
+            });
+            return;
+        }
+        Duration delay = properties.getPollInterval().multipliedBy(1L << Math.min(attempts, 20));
+        if (delay.compareTo(MAX_RETRY_DELAY) > 0) {
+            delay = MAX_RETRY_DELAY;
+        }
+        log.warn("Storage job {} of company {} failed; retrying in {}", job.id(), job.companyId(), delay, ex);
+        Duration retryDelay = delay;
+        tenantTransactions.execute(context, status -> {
+            jobRepository.retryLater(job.id(), error, retryDelay);
+            return null;
+        });
+    }
+}
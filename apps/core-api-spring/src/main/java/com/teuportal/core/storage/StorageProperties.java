@@ -0,0 +1,567 @@
+package com.teuportal.core.storage;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@ConfigurationProperties(prefix = "app.storage")
+public class StorageProperties {
+
+    private DataSize maxUploadSize = DataSize.ofGigabytes(2);
+    private Backend backend = Backend.LOCAL;
+    private final Local local = new Local();
+    private final S3 s3 = new S3();
+    private final Cache cache = new Cache();
+    private final Upload upload = new Upload();
+    private final Export export = new Export();
+    private final Quota quota = new Quota();
+    private final Trash trash = new Trash();
+    private final Jobs jobs = new Jobs();
+    private final Scrub scrub = new Scrub();
+    private final SignedUrls signedUrls = new SignedUrls();
+
+    public DataSize getMaxUploadSize() {
+        return maxUploadSize;
+    }
+
+    public void setMaxUploadSize(DataSize maxUploadSize) {
+        this.maxUploadSize = maxUploadSize;
+    }
+
+    public Backend getBackend() {
+        return backend;
+    }
+
+    public void setBackend(Backend backend) {
+        this.backend = backend;
+    }
+
+    public Local getLocal() {
+        return local;
+    }
+
+    public S3 getS3() {
+        return s3;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Upload getUpload() {
+        return upload;
+    }
+
+    public Export getExport() {
+        return export;
+    }
+
+    public Quota getQuota() {
+        return quota;
+    }
+
+    public Trash getTrash() {
+        return trash;
+    }
+
+    public Jobs getJobs() {
+        return jobs;
+    }
+
+    public Scrub getScrub() {
+        return scrub;
+    }
+
+    public SignedUrls getSignedUrls() {
+        return signedUrls;
+    }
+
+    public static class Local {
+        private Path root = Path.of("data", "blobs");
+        private DataSize bufferSize = DataSize.ofKilobytes(64);
+
+        public Path getRoot() {
+            return root;
+        }
+
+        public void setRoot(Path root) {
+            this.root = root;
+        }
+
+        public DataSize getBufferSize() {
+            return bufferSize;
+        }
+
+        public void setBufferSize(DataSize bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+    }
+
+    public enum Backend {
+        /** Committed blobs stay under {@code local.root}. */
+        LOCAL,
+        /** Committed blobs live in an S3-compatible bucket, with a local read cache. */
+        S3
+    }
+
+    /**
+     * S3-compatible object store. Set {@code endpoint} and {@code pathStyle} for MinIO and other
+     * non-AWS stores; without an access key the default AWS credential chain is used.
+     */
+    public static class S3 {
+        private String bucket;
+        private URI endpoint;
+        private String region = "us-east-1";
+        private boolean pathStyle;
+        private String accessKey;
+        private String secretKey;
+        private DataSize partSize = DataSize.ofMegabytes(64);
+
+        public String getBucket() {
+            return bucket;
+        }
+
+        public void setBucket(String bucket) {
+            this.bucket = bucket;
+        }
+
+        public URI getEndpoint() {
+            return endpoint;
+        }
+
+        public void setEndpoint(URI endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        public String getRegion() {
+            return region;
+        }
+
+        public void setRegion(String region) {
+            this.region = region;
+        }
+
+        public boolean isPathStyle() {
+            return pathStyle;
+        }
+
+        public void setPathStyle(boolean pathStyle) {
+            this.pathStyle = pathStyle;
+        }
+
+        public String getAccessKey() {
+            return accessKey;
+        }
+
+        public void setAccessKey(String accessKey) {
+            this.accessKey = accessKey;
+        }
+
+        public String getSecretKey() {
+            return secretKey;
+        }
+
+        public void setSecretKey(String secretKey) {
+            this.secretKey = secretKey;
+        }
+
+        public DataSize getPartSize() {
+            return partSize;
+        }
+
+        public void setPartSize(DataSize partSize) {
+            this.partSize = partSize;
+        }
+    }
+
+    /**
+     * Local read cache in front of the object store, under {@code local.root}. Blobs larger than
+     * {@code maxEntrySize} are streamed from the store instead of cached.
+     */
+    public static class Cache {
+        private DataSize maxSize = DataSize.ofGigabytes(20);
+        private DataSize maxEntrySize = DataSize.ofGigabytes(2);
+
+        public DataSize getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(DataSize maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public DataSize getMaxEntrySize() {
+            return maxEntrySize;
+        }
+
+        public void setMaxEntrySize(DataSize maxEntrySize) {
+            this.maxEntrySize = maxEntrySize;
+        }
+    }
+
+    /**
+     * Resumable upload sessions. Chunks are written in place, so the chunk size only bounds how much
+     * a client has to resend after a dropped connection.
+     */
+    public static class Upload {
+        private DataSize chunkSize = DataSize.ofMegabytes(8);
+        private DataSize maxSize = DataSize.ofGigabytes(20);
+        private Duration sessionTtl = Duration.ofHours(24);
+        private Duration writerDrainTimeout = Duration.ofSeconds(30);
+
+        public DataSize getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(DataSize chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public DataSize getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(DataSize maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public Duration getSessionTtl() {
+            return sessionTtl;
+        }
+
+        public void setSessionTtl(Duration sessionTtl) {
+            this.sessionTtl = sessionTtl;
+        }
+
+        /**
+         * How long completing an upload waits for chunk writes that were already running.
+         */
+        public Duration getWriterDrainTimeout() {
+            return writerDrainTimeout;
+        }
+
+        public void setWriterDrainTimeout(Duration writerDrainTimeout) {
+            this.writerDrainTimeout = writerDrainTimeout;
+        }
+    }
+
+    /**
+     * ZIP exports. Each running export holds a request thread and a read buffer, so
+     * {@code maxConcurrent} caps them per node; the size and entry limits are checked before the
+     * first byte is sent.
+     */
+    public static class Export {
+        private DataSize maxSize = DataSize.ofGigabytes(50);
+        private int maxEntries = 100_000;
+        private int maxSelection = 1_000;
+        private int maxConcurrent = 4;
+        private int batchSize = 500;
+
+        public DataSize getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(DataSize maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public int getMaxSelection() {
+            return maxSelection;
+        }
+
+        public void setMaxSelection(int maxSelection) {
+            this.maxSelection = maxSelection;
+        }
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+
+    /**
+     * Quota reservations. A single-request upload reserves its bytes for at most
+     * {@code reservationTtl}; after that the space counts as free again even if the request is still
+     * running. Resumable uploads hold theirs for the session's lifetime.
+     */
+    public static class Quota {
+        private Duration reservationTtl = Duration.ofHours(6);
+
+        public Duration getReservationTtl() {
+            return reservationTtl;
+        }
+
+        public void setReservationTtl(Duration reservationTtl) {
+            this.reservationTtl = reservationTtl;
+        }
+    }
+
+    /**
+     * Deleted files and folders stay in the trash for {@code retention} before they are purged.
+     */
+    public static class Trash {
+        private Duration retention = Duration.ofDays(30);
+
+        public Duration getRetention() {
+            return retention;
+        }
+
+        public void setRetention(Duration retention) {
+            this.retention = retention;
+        }
+    }
+
+    /**
+     * Bulk operations and the background jobs that purge the trash and fill in folder copies. A
+     * request may name at most {@code maxSelection} items. Each job batch touches at most
+     * {@code batchSize} rows in one transaction, and the worker waits {@code batchPause} between
+     * batches so foreground requests keep the database. A node works on one job for at most
+     * {@code slice} before letting other tenants' jobs go first; a job whose node stops renewing
+     * its {@code lease} is picked up elsewhere. Failed batches are retried with backoff, up to
+     * {@code maxAttempts} times.
+     */
+    public static class Jobs {
+        private boolean enabled = true;
+        private int maxSelection = 1_000;
+        private int batchSize = 500;
+        private Duration batchPause = Duration.ofMillis(50);
+        private Duration pollInterval = Duration.ofSeconds(5);
+        private Duration slice = Duration.ofSeconds(10);
+        private Duration lease = Duration.ofMinutes(2);
+        private int maxAttempts = 10;
+        private Duration keepFinished = Duration.ofDays(7);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxSelection() {
+            return maxSelection;
+        }
+
+        public void setMaxSelection(int maxSelection) {
+            this.maxSelection = maxSelection;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public Duration getBatchPause() {
+            return batchPause;
+        }
+
+        public void setBatchPause(Duration batchPause) {
+            this.batchPause = batchPause;
+        }
+
+        public Duration getPollInterval() {
+            return pollInterval;
+        }
+
+        public void setPollInterval(Duration pollInterval) {
+            this.pollInterval = pollInterval;
+        }
+
+        public Duration getSlice() {
+            return slice;
+        }
+
+        public void setSlice(Duration slice) {
+            this.slice = slice;
+        }
+
+        public Duration getLease() {
+            return lease;
+        }
+
+        public void setLease(Duration lease) {
+            this.lease = lease;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public Duration getKeepFinished() {
+            return keepFinished;
+        }
+
+        public void setKeepFinished(Duration keepFinished) {
+            this.keepFinished = keepFinished;
+        }
+    }
+
+    /**
+     * Background passes that reconcile blobs with {@code file} rows: one deletes blobs no row
+     * refers to, along with abandoned uploads, the other checks that every row's blob exists with
+     * the recorded size and checksum. A pass starts every {@code interval} and works through
+     * {@code batchSize} blobs or rows at a time, pausing {@code batchPause} in between and reading
+     * content at no more than {@code readRate} per second. Nothing younger than {@code grace} is
+     * deleted, so uploads still being recorded are left alone.
+     */
+    public static class Scrub {
+        private boolean enabled = true;
+        private Duration interval = Duration.ofDays(1);
+        private Duration grace = Duration.ofDays(1);
+        private int batchSize = 500;
+        private Duration batchPause = Duration.ofMillis(200);
+        private DataSize readRate = DataSize.ofMegabytes(16);
+        private boolean verifyChecksums = true;
+        private Duration pollInterval = Duration.ofMinutes(1);
+        private Duration slice = Duration.ofSeconds(30);
+        private Duration lease = Duration.ofMinutes(2);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getInterval() {
+            return interval;
+        }
+
+        public void setInterval(Duration interval) {
+            this.interval = interval;
+        }
+
+        public Duration getGrace() {
+            return grace;
+        }
+
+        public void setGrace(Duration grace) {
+            this.grace = grace;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public Duration getBatchPause() {
+            return batchPause;
+        }
+
+        public void setBatchPause(Duration batchPause) {
+            this.batchPause = batchPause;
+        }
+
+        public DataSize getReadRate() {
+            return readRate;
+        }
+
+        public void setReadRate(DataSize readRate) {
+            this.readRate = readRate;
+        }
+
+        public boolean isVerifyChecksums() {
+            return verifyChecksums;
+        }
+
+        public void setVerifyChecksums(boolean verifyChecksums) {
+            this.verifyChecksums = verifyChecksums;
+        }
+
+        public Duration getPollInterval() {
+            return pollInterval;
+        }
+
+        public void setPollInterval(Duration pollInterval) {
+            this.pollInterval = pollInterval;
+        }
+
+        public Duration getSlice() {
+            return slice;
+        }
+
+        public void setSlice(Duration slice) {
+            this.slice = slice;
+        }
+
+        public Duration getLease() {
+            return lease;
+        }
+
+        public void setLease(Duration lease) {
+            this.lease = lease;
+        }
+    }
+
+    /**
+     * Signed download URLs ({@code /d/...}). Each entry of {@code keys} is {@code <id>:<base64 secret>}
+     * with at least 32 bytes of secret; the first signs, and all of them verify. To rotate, put the
+     * new key first and drop the old one once {@code maxTtl} has passed. Without keys every node
+     * signs with a random key of its own, so its URLs only work on that node until it restarts.
+     */
+    public static class SignedUrls {
+        private List<String> keys = new ArrayList<>();
+        private Duration defaultTtl = Duration.ofMinutes(5);
+        private Duration maxTtl = Duration.ofHours(1);
+
+        public List<String> getKeys() {
+            return keys;
+        }
+
+        public void setKeys(List<String> keys) {
+            this.keys = keys;
+        }
+
+        public Duration getDefaultTtl() {
+            return defaultTtl;
+        }
+
+        public void setDefaultTtl(Duration defaultTtl) {
+            this.defaultTtl = defaultTtl;
+        }
+
+        public Duration getMaxTtl() {
+            return maxTtl;
+        }
+
+        public void setMaxTtl(Duration maxTtl) {
+            this.maxTtl = maxTtl;
+        }
+    }
+}
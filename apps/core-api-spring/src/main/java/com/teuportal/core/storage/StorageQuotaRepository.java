@@ -0,0 +1,85 @@
+package com.teuportal.core.storage;
+
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Quota settings and reservations. Reserving and settling go through the {@code app.*} functions
+ * from V12, which take bytes from a per-backend shard of the free quota.
+ */
+@Repository
+public class StorageQuotaRepository {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public StorageQuotaRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Returns the reservation id, or empty when the quota cannot cover {@code bytes}.
+     */
+    public Optional<UUID> reserve(UUID companyId, UUID reservationId, long bytes, OffsetDateTime expiresAt) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("companyId", companyId)
+                .addValue("reservationId", reservationId)
+                .addValue("bytes", bytes)
+                .addValue("expiresAt", expiresAt);
+        return Optional.ofNullable(jdbcTemplate.queryForObject(
+                "SELECT app.reserve_storage(:companyId, :bytes, :expiresAt, :reservationId)", params, UUID.class));
+    }
+
+    public void finish(UUID reservationId, long usedBytes) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("reservationId", reservationId)
+                .addValue("usedBytes", usedBytes);
+        jdbcTemplate.query("SELECT app.finish_storage_reservation(:reservationId, :usedBytes)", params, rs -> null);
+    }
+
+    public Optional<Long> findQuota(UUID companyId) {
+        MapSqlParameterSource params = new MapSqlParameterSource().addValue("companyId", companyId);
+        return jdbcTemplate.query("""
+                        SELECT storage_quota_bytes
+                        FROM settings
+                        WHERE company_id = :companyId
+                        """, params, (rs, rowNum) -> rs.getObject("storage_quota_bytes", Long.class))
+                .stream()
+                .filter(Objects::nonNull)
+                .findFirst();
+    }
+
+    /**
+     * Sets or clears ({@code null}) the quota and redistributes the free space under the new limit.
+     */
+    public void updateQuota(UUID companyId, Long quotaBytes) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("companyId", companyId)
+                .addValue("quotaBytes", quotaBytes, Types.BIGINT);
+        jdbcTemplate.update("""
+                INSERT INTO settings (company_id, storage_quota_bytes)
+                VALUES (:companyId, :quotaBytes)
+                ON CONFLICT (company_id) DO UPDATE SET storage_quota_bytes = EXCLUDED.storage_quota_bytes
+                """, params);
+        jdbcTemplate.query("SELECT app.rebalance_storage_quota(:companyId, 0)", params, rs -> null);
+    }
+
+    /**
+     * Bytes held by unexpired reservations of the company bound to the current transaction.
+     */
+    public long sumReservedBytes() {
+        Long reserved = jdbcTemplate.queryForObject("""
+                SELECT COALESCE(sum(bytes), 0)
+                FROM storage_reservation
+                WHERE company_id = app.require_company_id()
+                  AND expires_at > now()
+                """, new MapSqlParameterSource(), Long.class);
+        return reserved == null ? 0 : reserved;
+    }
+}
@@ -0,0 +1,114 @@
+package com.teuportal.core.storage;
+
+import com.teuportal.core.tenancy.TenantContext;
+import com.teuportal.core.tenancy.TenantContextService;
+
+import java.time.Clock;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Enforces the per-company storage quota. An upload reserves its bytes before any data arrives and
+ * settles the reservation in the transaction that records the file, so concurrent uploads can never
+ * jointly overshoot the quota. Methods join the caller's transaction when there is one.
+ */
+@Service
+public class StorageQuotaService {
+
+    private final StorageQuotaRepository quotaRepository;
+    private final StorageUsageRepository storageUsageRepository;
+    private final TenantContextService tenantContextService;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTemplate;
+    private final Clock clock;
+    private final StorageProperties.Quota quotaProperties;
+
+    public StorageQuotaService(StorageQuotaRepository quotaRepository,
+                               StorageUsageRepository storageUsageRepository,
+                               TenantContextService tenantContextService,
+                               PlatformTransactionManager transactionManager,
+                               Clock clock,
+                               StorageProperties properties) {
+        this.quotaRepository = quotaRepository;
+        this.storageUsageRepository = storageUsageRepository;
+        this.tenantContextService = tenantContextService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+        this.clock = clock;
+        this.quotaProperties = properties.getQuota();
+    }
+
+    /**
+     * Reserves {@code bytes} for a single-request upload, held for at most the configured
+     * reservation TTL.
+     */
+    public UUID reserve(long bytes) {
+        return reserve(UUID.randomUUID(), bytes, OffsetDateTime.now(clock).plus(quotaProperties.getReservationTtl()));
+    }
+
+    public UUID reserve(UUID reservationId, long bytes, OffsetDateTime expiresAt) {
+        TenantContext context = tenantContextService.currentContext();
+        return transactionTemplate.execute(status ->
+                        quotaRepository.reserve(context.getCompanyId(), reservationId, bytes, expiresAt))
+                .orElseThrow(() -> new QuotaExceededException(bytes));
+    }
+
+    /**
+     * Settles a reservation once {@code usedBytes} are recorded as a file; the rest is freed.
+     */
+    public void finish(UUID reservationId, long usedBytes) {
+        transactionTemplate.executeWithoutResult(status -> quotaRepository.finish(reservationId, usedBytes));
+    }
+
+    public void release(UUID reservationId) {
+        finish(reservationId, 0);
+    }
+
+    public StorageQuotaStatus status() {
+        TenantContext context = requireManager();
+        return readOnlyTemplate.execute(status -> {
+            Long quota = quotaRepository.findQuota(context.getCompanyId()).orElse(null);
+            StorageUsage usage = storageUsageRepository.findCompanyUsage();
+            long reserved = quotaRepository.sumReservedBytes();
+            Long available = quota == null ? null : Math.max(quota - usage.totalBytes() - reserved, 0);
+            return new StorageQuotaStatus(quota, usage.totalBytes(), reserved, available,
+                    usage.fileCount(), usage.lastModifiedAt());
+        });
+    }
+
+    /**
+     * Sets the quota, or removes it with {@code null}. A quota below current usage blocks new
+     * uploads but leaves existing files alone.
+     */
+    public StorageQuotaStatus updateQuota(Long quotaBytes) {
+        TenantContext context = requireManager();
+        transactionTemplate.executeWithoutResult(status ->
+                quotaRepository.updateQuota(context.getCompanyId(), quotaBytes));
+        return status();
+    }
+
+    private TenantContext requireManager() {
+        TenantContext context = tenantContextService.currentContext();
+        if (!context.canManage()) {
+            throw new QuotaAccessDeniedException();
+        }
+        return context;
+    }
+
+    public static class QuotaExceededException extends RuntimeException {
+        public QuotaExceededException(long bytes) {
+            super("Storage quota exceeded: " + bytes + " more bytes do not fit");
+        }
+    }
+
+    public static class QuotaAccessDeniedException extends RuntimeException {
+        public QuotaAccessDeniedException() {
+            super("Only owners and admins can manage storage");
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.teuportal.core.storage;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Usage against the company's quota. {@code quotaBytes} and {@code availableBytes} are
+ * {@code null} when no quota is set; {@code reservedBytes} is held by uploads still in progress.
+ */
+public record StorageQuotaStatus(
+        Long quotaBytes,
+        long usedBytes,
+        long reservedBytes,
+        Long availableBytes,
+        long fileCount,
+        OffsetDateTime lastModifiedAt
+) {
+}
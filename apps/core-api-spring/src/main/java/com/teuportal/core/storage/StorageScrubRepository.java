@@ -0,0 +1,203 @@
+package com.teuportal.core.storage;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Scrub pass bookkeeping, which is global, and the per-tenant integrity issues the passes record.
+ */
+@Repository
+public class StorageScrubRepository {
+
+    private static final RowMapper<StorageScrubState> STATE_ROW_MAPPER = (rs, rowNum) -> new StorageScrubState(
+            StorageScrubState.Pass.valueOf(rs.getString("pass")),
+            rs.getString("cursor"),
+            rs.getObject("pass_started_at", OffsetDateTime.class),
+            rs.getLong("scanned"),
+            rs.getLong("found"),
+            rs.getLong("reclaimed_bytes"),
+            rs.getObject("next_run_at", OffsetDateTime.class),
+            rs.getObject("last_finished_at", OffsetDateTime.class),
+            rs.getObject("last_scanned", Long.class),
+            rs.getObject("last_found", Long.class),
+            rs.getObject("last_reclaimed_bytes", Long.class)
+    );
+
+    private static final RowMapper<StorageIntegrityIssue> ISSUE_ROW_MAPPER = (rs, rowNum) -> new StorageIntegrityIssue(
+            rs.getObject("file_id", UUID.class),
+            rs.getString("name"),
+            rs.getString("storage_key"),
+            StorageIntegrityIssue.Problem.valueOf(rs.getString("problem")),
+            rs.getObject("detected_at", OffsetDateTime.class),
+            rs.getObject("checked_at", OffsetDateTime.class)
+    );
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public StorageScrubRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Leases the pass that is under way or due, whichever has waited longest, starting it if it is
+     * not under way yet. A pass under way waits from when it last gave up its lease.
+     */
+    public Optional<StorageScrubState> claim(Duration lease) {
+        return jdbcTemplate.query("""
+                UPDATE storage_scrub s
+                SET locked_until = now() + make_interval(secs => :leaseSeconds),
+                    pass_started_at = COALESCE(s.pass_started_at, now())
+                WHERE s.pass = (
+                    SELECT q.pass
+                    FROM storage_scrub q
+                    WHERE (q.pass_started_at IS NOT NULL OR q.next_run_at <= now())
+                      AND (q.locked_until IS NULL OR q.locked_until < now())
+                    ORDER BY q.next_run_at
+                    LIMIT 1
+                    FOR UPDATE SKIP LOCKED
+                )
+                RETURNING s.*
+                """, new MapSqlParameterSource("leaseSeconds", lease.toSeconds()), STATE_ROW_MAPPER)
+                .stream().findFirst();
+    }
+
+    /**
+     * Adds a batch's counts to the pass and extends the lease.
+     */
+    public void saveProgress(StorageScrubState.Pass pass, String cursor, long scanned, long found,
+                             long reclaimedBytes, Duration lease) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("pass", pass.name())
+                .addValue("cursor", cursor)
+                .addValue("scanned", scanned)
+                .addValue("found", found)
+                .addValue("reclaimedBytes", reclaimedBytes)
+                .addValue("leaseSeconds", lease.toSeconds());
+        jdbcTemplate.update("""
+                UPDATE storage_scrub
+                SET cursor = :cursor,
+                    scanned = scanned + :scanned,
+                    found = found + :found,
+                    reclaimed_bytes = reclaimed_bytes + :reclaimedBytes,
+                    locked_until = now() + make_interval(secs => :leaseSeconds)
+                WHERE pass = :pass
+                """, params);
+    }
+
+    /**
+     * Keeps the totals of the pass as the last pass's and schedules the next one {@code interval}
+     * after this one started.
+     */
+    public StorageScrubState finish(StorageScrubState.Pass pass, Duration interval) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("pass", pass.name())
+                .addValue("intervalSeconds", interval.toSeconds());
+        return jdbcTemplate.queryForObject("""
+                UPDATE storage_scrub
+                SET cursor = NULL,
+                    last_finished_at = now(),
+                    last_scanned = scanned,
+                    last_found = found,
+                    last_reclaimed_bytes = reclaimed_bytes,
+                    scanned = 0,
+                    found = 0,
+                    reclaimed_bytes = 0,
+                    next_run_at = pass_started_at + make_interval(secs => :intervalSeconds),
+                    pass_started_at = NULL,
+                    locked_until = NULL
+                WHERE pass = :pass
+                RETURNING *
+                """, params, STATE_ROW_MAPPER);
+    }
+
+    /**
+     * Gives up the lease on an unfinished pass and puts it behind the other due pass, so a long
+     * pass does not keep the other from running.
+     */
+    public void release(StorageScrubState.Pass pass) {
+        jdbcTemplate.update("UPDATE storage_scrub SET locked_until = NULL, next_run_at = now() WHERE pass = :pass",
+                new MapSqlParameterSource("pass", pass.name()));
+    }
+
+    /**
+     * The next {@code limit} file rows of every tenant after {@code afterId}; runs without a tenant
+     * context.
+     */
+    public List<ScrubbedFile> findFileBatch(UUID afterId, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("afterId", afterId)
+                .addValue("limit", limit);
+        return jdbcTemplate.query("""
+                SELECT company_id, id, storage_key, size_bytes, checksum
+                FROM app.scrub_file_batch(CAST(:afterId AS uuid), :limit)
+                """, params, (rs, rowNum) -> new ScrubbedFile(
+                rs.getObject("company_id", UUID.class),
+                rs.getObject("id", UUID.class),
+                rs.getString("storage_key"),
+                rs.getLong("size_bytes"),
+                rs.getString("checksum")));
+    }
+
+    /**
+     * Deletes up to {@code limit} upload sessions, and as many quota reservations, of every tenant
+     * that expired before {@code expiredBefore}, and returns the sessions; runs without a tenant
+     * context.
+     */
+    public List<UUID> deleteExpiredUploads(OffsetDateTime expiredBefore, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("expiredBefore", expiredBefore)
+                .addValue("limit", limit);
+        return jdbcTemplate.queryForList("SELECT * FROM app.sweep_expired_uploads(:expiredBefore, :limit)",
+                params, UUID.class);
+    }
+
+    /**
+     * Records or refreshes an issue with a file of the current tenant, unless the file has been
+     * deleted meanwhile.
+     */
+    public void recordIssue(UUID fileId, StorageIntegrityIssue.Problem problem) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("fileId", fileId)
+                .addValue("problem", problem.name());
+        jdbcTemplate.update("""
+                INSERT INTO storage_integrity_issue (file_id, company_id, storage_key, problem)
+                SELECT id, company_id, storage_key, :problem
+                FROM file
+                WHERE id = :fileId
+                ON CONFLICT (file_id) DO UPDATE
+                SET storage_key = EXCLUDED.storage_key,
+                    problem = EXCLUDED.problem,
+                    checked_at = now()
+                """, params);
+    }
+
+    /**
+     * Drops the issues of files that have since been found intact.
+     */
+    public void clearIssues(Collection<UUID> fileIds) {
+        jdbcTemplate.update("DELETE FROM storage_integrity_issue WHERE file_id IN (:fileIds)",
+                new MapSqlParameterSource("fileIds", fileIds));
+    }
+
+    public List<StorageIntegrityIssue> findIssues(int limit) {
+        return jdbcTemplate.query("""
+                SELECT i.file_id, f.name, i.storage_key, i.problem, i.detected_at, i.checked_at
+                FROM storage_integrity_issue i
+                JOIN file f ON f.id = i.file_id
+                ORDER BY i.detected_at DESC, i.file_id
+                LIMIT :limit
+                """, new MapSqlParameterSource("limit", limit), ISSUE_ROW_MAPPER);
+    }
+
+    record ScrubbedFile(UUID companyId, UUID id, String storageKey, long sizeBytes, String checksum) {
+    }
+}
@@ -0,0 +1,285 @@
+package com.teuportal.core.storage;
+
+import com.teuportal.core.tenancy.TenantContext;
+import com.teuportal.core.tenancy.TenantContextService;
+import com.teuportal.core.tenancy.TenantTransactions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Reconciles blobs with file rows in batches for {@link StorageScrubber}. The orphan pass first
+ * sweeps expired uploads, then lists the backend in key order and deletes blobs no row refers to;
+ * the integrity pass walks the rows of every tenant in id order and checks that each blob is
+ * there, has the recorded size and, unless disabled, hashes to the recorded checksum. Broken rows
+ * are reported, never changed.
+ *
+ * <p>Blobs younger than the grace period are left alone, since a blob is written before the row
+ * that refers to it is committed. No transaction is open while blobs are read.
+ */
+@Service
+public class StorageScrubService {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageScrubService.class);
+    private static final HexFormat HEX = HexFormat.of();
+    private static final Pattern BLOB_KEY = Pattern.compile(
+            "([0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12})/[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}");
+    private static final int HASH_BUFFER = 64 * 1024;
+
+    private final StorageScrubRepository scrubRepository;
+    private final FileRepository fileRepository;
+    private final BlobStorageBackend storageBackend;
+    private final LocalBlobStore blobStore;
+    private final TenantContextService tenantContextService;
+    private final TenantTransactions tenantTransactions;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final StorageProperties.Scrub properties;
+    private final Duration sessionTtl;
+    private final ReadThrottle throttle;
+
+    public StorageScrubService(StorageScrubRepository scrubRepository,
+                               FileRepository fileRepository,
+                               BlobStorageBackend storageBackend,
+                               LocalBlobStore blobStore,
+                               TenantContextService tenantContextService,
+                               TenantTransactions tenantTransactions,
+                               PlatformTransactionManager transactionManager,
+                               Clock clock,
+                               StorageProperties properties) {
+        this.scrubRepository = scrubRepository;
+        this.fileRepository = fileRepository;
+        this.storageBackend = storageBackend;
+        this.blobStore = blobStore;
+        this.tenantContextService = tenantContextService;
+        this.tenantTransactions = tenantTransactions;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.properties = properties.getScrub();
+        this.sessionTtl = properties.getUpload().getSessionTtl();
+        this.throttle = new ReadThrottle(this.properties.getReadRate().toBytes());
+    }
+
+    /**
+     * Issues the integrity pass has found with the current company's files, newest first.
+     */
+    public List<StorageIntegrityIssue> integrityIssues(int limit) {
+        TenantContext context = tenantContextService.currentContext();
+        if (!context.canManage()) {
+            throw new StorageQuotaService.QuotaAccessDeniedException();
+        }
+        return scrubRepository.findIssues(limit);
+    }
+
+    /**
+     * One batch of the orphan pass. A pass starts with a {@code null} cursor, which sweeps expired
+     * uploads; then the cursor is the last blob key listed, empty before the first.
+     */
+    Batch orphanBatch(String cursor) {
+        Instant cutoff = clock.instant().minus(properties.getGrace());
+        if (cursor == null) {
+            return new Batch("", 0, 0, sweepUploads(cutoff));
+        }
+        List<BlobEntry> blobs = storageBackend.list(cursor.isEmpty() ? null : cursor, properties.getBatchSize());
+        Map<UUID, List<BlobEntry>> candidates = new LinkedHashMap<>();
+        for (BlobEntry blob : blobs) {
+            Matcher matcher = BLOB_KEY.matcher(blob.key());
+            if (matcher.matches() && blob.lastModified().isBefore(cutoff)) {
+                candidates.computeIfAbsent(UUID.fromString(matcher.group(1)), id -> new ArrayList<>()).add(blob);
+            }
+        }
+        long found = 0;
+        long reclaimed = 0;
+        for (Map.Entry<UUID, List<BlobEntry>> entry : candidates.entrySet()) {
+            List<BlobEntry> removed = removeOrphans(entry.getKey(), entry.getValue());
+            found += removed.size();
+            reclaimed += removed.stream().mapToLong(BlobEntry::sizeBytes).sum();
+        }
+        String next = blobs.size() < properties.getBatchSize() ? null : blobs.getLast().key();
+        return new Batch(next, blobs.size(), found, reclaimed);
+    }
+
+    /**
+     * One batch of the integrity pass; the cursor is the id of the last file checked.
+     */
+    Batch integrityBatch(String cursor) throws InterruptedException {
+        UUID afterId = cursor == null ? null : UUID.fromString(cursor);
+        List<StorageScrubRepository.ScrubbedFile> files = transactionTemplate.execute(status ->
+                scrubRepository.findFileBatch(afterId, properties.getBatchSize()));
+        Map<UUID, List<UUID>> intact = new LinkedHashMap<>();
+        Map<UUID, Map<UUID, StorageIntegrityIssue.Problem>> broken = new LinkedHashMap<>();
+        for (StorageScrubRepository.ScrubbedFile file : files) {
+            StorageIntegrityIssue.Problem problem = check(file);
+            if (problem == null) {
+                intact.computeIfAbsent(file.companyId(), id -> new ArrayList<>()).add(file.id());
+            } else {
+                broken.computeIfAbsent(file.companyId(), id -> new LinkedHashMap<>()).put(file.id(), problem);
+            }
+        }
+        Set<UUID> companies = new TreeSet<>(intact.keySet());
+        companies.addAll(broken.keySet());
+        long found = 0;
+        for (UUID companyId : companies) {
+            List<UUID> ok = intact.getOrDefault(companyId, List.of());
+            Map<UUID, StorageIntegrityIssue.Problem> problems = broken.getOrDefault(companyId, Map.of());
+            found += problems.size();
+            tenantTransactions.execute(new TenantContext(companyId, null, Set.of()), status -> {
+                if (!ok.isEmpty()) {
+                    scrubRepository.clearIssues(ok);
+                }
+                problems.forEach(scrubRepository::recordIssue);
+                return null;
+            });
+        }
+        String next = files.size() < properties.getBatchSize() ? null : files.getLast().id().toString();
+        return new Batch(next, files.size(), found, 0);
+    }
+
+    private long sweepUploads(Instant cutoff) {
+        long reclaimed = 0;
+        OffsetDateTime expiredBefore = OffsetDateTime.ofInstant(cutoff, ZoneOffset.UTC);
+        List<UUID> sessions;
+        do {
+            // Without a tenant context: sessions and reservations of every company
+            sessions = transactionTemplate.execute(status ->
+                    scrubRepository.deleteExpiredUploads(expiredBefore, properties.getBatchSize()));
+            for (UUID sessionId : sessions) {
+                reclaimed += blobStore.deleteUpload(sessionId);
+            }
+        } while (sessions.size() >= properties.getBatchSize());
+        // Part files whose session row is gone, and staging files left by interrupted requests
+        reclaimed += blobStore.sweepUploads(cutoff.minus(sessionTtl));
+        reclaimed += blobStore.sweepStaging(cutoff);
+        return reclaimed;
+    }
+
+    private List<BlobEntry> removeOrphans(UUID companyId, List<BlobEntry> blobs) {
+        Map<String, BlobEntry> orphans = new LinkedHashMap<>();
+        blobs.forEach(blob -> orphans.put(blob.key(), blob));
+        // Locked like a purge, so an upload of the same content either sees the blob gone or keeps it
+        return tenantTransactions.execute(new TenantContext(companyId, null, Set.of()), status -> {
+            fileRepository.lockStorageKeys(orphans.keySet());
+            fileRepository.findReferencedKeys(orphans.keySet()).forEach(orphans::remove);
+            for (String key : orphans.keySet()) {
+                storageBackend.delete(key);
+            }
+            if (!orphans.isEmpty()) {
+                log.info("Removed {} orphaned blobs of company {}", orphans.size(), companyId);
+            }
+            return List.copyOf(orphans.values());
+        });
+    }
+
+    private StorageIntegrityIssue.Problem check(StorageScrubRepository.ScrubbedFile file) throws InterruptedException {
+        Optional<BlobEntry> blob = storageBackend.stat(file.storageKey());
+        if (blob.isEmpty()) {
+            return StorageIntegrityIssue.Problem.MISSING;
+        }
+        if (blob.get().sizeBytes() != file.sizeBytes()) {
+            return StorageIntegrityIssue.Problem.SIZE_MISMATCH;
+        }
+        if (!properties.isVerifyChecksums()) {
+            return null;
+        }
+        try {
+            return sha256(file.storageKey(), file.sizeBytes()).equalsIgnoreCase(file.checksum())
+                    ? null
+                    : StorageIntegrityIssue.Problem.CHECKSUM_MISMATCH;
+        } catch (BlobStorageBackend.BlobNotFoundException ex) {
+            return StorageIntegrityIssue.Problem.MISSING;
+        }
+    }
+
+    private String sha256(String key, long sizeBytes) throws InterruptedException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+        byte[] buffer = new byte[HASH_BUFFER];
+        try (InputStream in = storageBackend.open(key, 0, sizeBytes)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                throttle.acquire(read);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to read blob " + key, ex);
+        }
+        return HEX.formatHex(digest.digest());
+    }
+
+    /**
+     * Where the pass goes on from, {@code null} once it is complete, and what the batch counted.
+     */
+    record Batch(String cursor, long scanned, long found, long reclaimedBytes) {
+
+        boolean complete() {
+            return cursor == null;
+        }
+    }
+
+    /**
+     * Paces checksum reads to a byte rate. Only the scrubber thread reads through it; credit for
+     * idle time is capped at a second so a pause is not followed by a burst.
+     */
+    static final class ReadThrottle {
+
+        private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+        private final long bytesPerSecond;
+        private long windowStart = System.nanoTime();
+        private long windowBytes;
+
+        ReadThrottle(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        void acquire(long bytes) throws InterruptedException {
+            if (bytesPerSecond <= 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            long allowedAt = windowStart + windowBytes * NANOS_PER_SECOND / bytesPerSecond;
+            if (now - allowedAt > NANOS_PER_SECOND) {
+                windowStart = now;
+                windowBytes = 0;
+            }
+            windowBytes += bytes;
+            long wait = windowStart + windowBytes * NANOS_PER_SECOND / bytesPerSecond - now;
+            if (wait > 0) {
+                Thread.sleep(Duration.ofNanos(wait));
+            }
+            if (windowBytes >= bytesPerSecond) {
+                windowStart += windowBytes / bytesPerSecond * NANOS_PER_SECOND;
+                windowBytes %= bytesPerSecond;
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.teuportal.core.storage;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Progress of one scrub pass: the running totals of the pass under way, if any, and those of the
+ * last complete one. {@code found} counts orphaned blobs deleted or rows with a broken blob.
+ */
+public record StorageScrubState(
+        Pass pass,
+        String cursor,
+        OffsetDateTime passStartedAt,
+        long scanned,
+        long found,
+        long reclaimedBytes,
+        OffsetDateTime nextRunAt,
+        OffsetDateTime lastFinishedAt,
+        Long lastScanned,
+        Long lastFound,
+        Long lastReclaimedBytes
+) {
+
+    public enum Pass {
+        ORPHANS,
+        INTEGRITY
+    }
+}
@@ -0,0 +1,145 @@
+package com.teuportal.core.storage;
+
+import com.teuportal.core.datasource.DataSourceRouteHolder;
+import com.teuportal.core.datasource.Workload;
+
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs the orphan and integrity passes of {@link StorageScrubService} on one background thread.
+ * Like {@link StorageJobWorker}, a pass is leased while it runs and worked on for at most one
+ * time slice, pausing between batches; its cursor and totals are saved after every batch, so a
+ * pass interrupted by a restart resumes where it stopped. A failed batch is retried at the next
+ * poll.
+ */
+public class StorageScrubber implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageScrubber.class);
+
+    private final StorageScrubRepository scrubRepository;
+    private final StorageScrubService scrubService;
+    private final DataSourceRouteHolder routeHolder;
+    private final TransactionTemplate transactionTemplate;
+    private final StorageProperties.Scrub properties;
+
+    private volatile boolean running;
+    private volatile Thread worker;
+
+    public StorageScrubber(StorageScrubRepository scrubRepository,
+                           StorageScrubService scrubService,
+                           DataSourceRouteHolder routeHolder,
+                           PlatformTransactionManager transactionManager,
+                           StorageProperties properties) {
+        this.scrubRepository = scrubRepository;
+        this.scrubService = scrubService;
+        this.routeHolder = routeHolder;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties.getScrub();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        worker = Thread.ofPlatform()
+                .name("storage-scrubber")
+                .daemon(true)
+                .start(() -> routeHolder.callAs(Workload.BACKGROUND, () -> {
+                    workLoop();
+                    return null;
+                }));
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread current = worker;
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void workLoop() {
+        while (running) {
+            try {
+                // Claimed without a tenant context: a pass spans every company
+                Optional<StorageScrubState> pass = transactionTemplate.execute(status ->
+                        scrubRepository.claim(properties.getLease()));
+                if (pass.isPresent()) {
+                    work(pass.get());
+                } else {
+                    Thread.sleep(properties.getPollInterval());
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Storage scrubber failed; retrying in {}", properties.getPollInterval(), ex);
+                try {
+                    Thread.sleep(properties.getPollInterval());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void work(StorageScrubState pass) throws InterruptedException {
+        long deadline = System.nanoTime() + properties.getSlice().toNanos();
+        String cursor = pass.cursor();
+        try {
+            while (true) {
+                StorageScrubService.Batch batch = switch (pass.pass()) {
+                    case ORPHANS -> scrubService.orphanBatch(cursor);
+                    case INTEGRITY -> scrubService.integrityBatch(cursor);
+                };
+                if (batch.complete()) {
+                    StorageScrubState finished = transactionTemplate.execute(status -> {
+                        save(pass, batch);
+                        return scrubRepository.finish(pass.pass(), properties.getInterval());
+                    });
+                    log.info("Storage {} pass finished: {} scanned, {} found, {} bytes reclaimed",
+                            pass.pass(), finished.lastScanned(), finished.lastFound(), finished.lastReclaimedBytes());
+                    return;
+                }
+                transactionTemplate.executeWithoutResult(status -> save(pass, batch));
+                cursor = batch.cursor();
+                if (!running || System.nanoTime() >= deadline) {
+                    release(pass);
+                    return;
+                }
+                Thread.sleep(properties.getBatchPause());
+            }
+        } catch (InterruptedException | RuntimeException ex) {
+            release(pass);
+            throw ex;
+        }
+    }
+
+    private void save(StorageScrubState pass, StorageScrubService.Batch batch) {
+        scrubRepository.saveProgress(pass.pass(), batch.cursor(), batch.scanned(), batch.found(),
+                batch.reclaimedBytes(), properties.getLease());
+    }
+
+    private void release(StorageScrubState pass) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> scrubRepository.release(pass.pass()));
+        } catch (RuntimeException ex) {
+            log.warn("Failed to release the storage {} pass; its lease runs out on its own", pass.pass(), ex);
+        }
+    }
+}
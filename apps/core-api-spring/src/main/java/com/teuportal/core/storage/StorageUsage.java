@@ -0,0 +1,14 @@
+package com.teuportal.core.storage;
+
+import java.time.OffsetDateTime;
+
+/**
+ * File count and total bytes of a company or a folder subtree; {@code lastModifiedAt} is when
+ * files were last added, removed or moved there, or {@code null} if that never happened.
+ */
+public record StorageUsage(
+        long fileCount,
+        long totalBytes,
+        OffsetDateTime lastModifiedAt
+) {
+}
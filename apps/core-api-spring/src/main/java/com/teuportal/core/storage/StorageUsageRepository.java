@@ -0,0 +1,53 @@
+package com.teuportal.core.storage;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Reads the usage rollups that triggers on {@code file} and {@code folder} keep up to date. Each
+ * read sums a fixed number of shard rows, however many files the company or subtree holds.
+ */
+@Repository
+public class StorageUsageRepository {
+
+    private static final RowMapper<StorageUsage> ROW_MAPPER = (rs, rowNum) -> new StorageUsage(
+            rs.getLong("file_count"),
+            rs.getLong("total_bytes"),
+            rs.getObject("last_modified_at", OffsetDateTime.class)
+    );
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public StorageUsageRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Usage of the company bound to the current transaction.
+     */
+    public StorageUsage findCompanyUsage() {
+        return jdbcTemplate.queryForObject("""
+                SELECT COALESCE(sum(file_count), 0) AS file_count,
+                       COALESCE(sum(total_bytes), 0) AS total_bytes,
+                       max(last_modified_at) AS last_modified_at
+                FROM company_usage
+                WHERE company_id = app.require_company_id()
+                """, new MapSqlParameterSource(), ROW_MAPPER);
+    }
+
+    public StorageUsage findFolderUsage(UUID folderId) {
+        MapSqlParameterSource params = new MapSqlParameterSource().addValue("folderId", folderId);
+        return jdbcTemplate.queryForObject("""
+                SELECT COALESCE(sum(file_count), 0) AS file_count,
+                       COALESCE(sum(total_bytes), 0) AS total_bytes,
+                       max(last_modified_at) AS last_modified_at
+                FROM folder_usage
+                WHERE folder_id = :folderId
+                """, params, ROW_MAPPER);
+    }
+}
@@ -0,0 +1,15 @@
+package com.teuportal.core.storage;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+public record StoredFile(
+        UUID id,
+        UUID folderId,
+        String name,
+        long sizeBytes,
+        String mimeType,
+        String checksum,
+        OffsetDateTime createdAt
+) {
+}
@@ -0,0 +1,83 @@
+package com.teuportal.core.storage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/trash")
+@Tag(name = "trash", description = "Deleted folders and files")
+public class TrashController {
+
+    private static final int MAX_LIMIT = 1000;
+
+    private final TrashService trashService;
+
+    public TrashController(TrashService trashService) {
+        this.trashService = trashService;
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "List deleted folders and files, most recent first")
+    public ResponseEntity<?> list(@RequestParam(value = "limit", defaultValue = "100") int limit) {
+        return ResponseEntity.ok(trashService.list(Math.max(1, Math.min(limit, MAX_LIMIT))));
+    }
+
+    @PostMapping(path = "/restore", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Restore deleted folders and files to where they were")
+    public ResponseEntity<?> restore(@RequestBody ItemSelection selection) {
+        try {
+            trashService.restore(selection);
+            return ResponseEntity.noContent().build();
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        } catch (TrashService.ItemNotFoundException ex) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        } catch (TrashService.RestoreConflictException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        }
+    }
+
+    /**
+     * Purges the selected entries without waiting for the retention period to end.
+     */
+    @PostMapping(path = "/purge", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Permanently delete folders and files from the trash")
+    public ResponseEntity<?> purge(@RequestBody ItemSelection selection) {
+        try {
+            return accepted(trashService.purgeNow(selection));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        } catch (TrashService.ItemNotFoundException ex) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        }
+    }
+
+    @DeleteMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Empty the trash")
+    public ResponseEntity<?> empty() {
+        return accepted(trashService.purgeNow(null));
+    }
+
+    private static ResponseEntity<?> accepted(List<UUID> jobIds) {
+        return ResponseEntity.accepted().body(Map.of("jobIds", jobIds));
+    }
+}
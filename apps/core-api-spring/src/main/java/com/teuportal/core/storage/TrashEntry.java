@@ -0,0 +1,19 @@
+package com.teuportal.core.storage;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Something the user deleted: a folder with its whole subtree, or a single file. {@code folderId}
+ * is where it was, {@code null} at the root; a folder's {@code sizeBytes} covers its subtree.
+ */
+public record TrashEntry(
+        FolderEntry.Type type,
+        UUID id,
+        String name,
+        UUID folderId,
+        long sizeBytes,
+        OffsetDateTime deletedAt,
+        UUID deletedBy
+) {
+}
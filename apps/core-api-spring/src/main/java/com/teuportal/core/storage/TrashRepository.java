@@ -0,0 +1,234 @@
+package com.teuportal.core.storage;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Moving files and folders into and out of the trash, and purging it. A trashed folder stamps
+ * its whole subtree of folders with the same {@code deleted_at} and {@code trash_root}; its files
+ * are left alone and count as trashed through their folder.
+ */
+@Repository
+public class TrashRepository {
+
+    private static final RowMapper<TrashEntry> ROW_MAPPER = (rs, rowNum) -> new TrashEntry(
+            "FILE".equals(rs.getString("kind")) ? FolderEntry.Type.FILE : FolderEntry.Type.FOLDER,
+            rs.getObject("id", UUID.class),
+            rs.getString("name"),
+            rs.getObject("folder_id", UUID.class),
+            rs.getLong("size_bytes"),
+            rs.getObject("deleted_at", OffsetDateTime.class),
+            rs.getObject("deleted_by", UUID.class)
+    );
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public TrashRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Trashes a live folder with everything below it that is not already in the trash. Takes the
+     * folder tree lock, so no folder is created below it meanwhile.
+     */
+    public void trashFolder(UUID companyId, UUID folderId, UUID deletedBy) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("companyId", companyId)
+                .addValue("folderId", folderId)
+                .addValue("deletedBy", deletedBy);
+        jdbcTemplate.query("SELECT app.lock_folder_tree(:companyId, true)", params, rs -> null);
+        jdbcTemplate.update("""
+                UPDATE folder
+                SET deleted_at = now(), deleted_by = :deletedBy, trash_root = :folderId
+                WHERE id IN (SELECT descendant_id FROM folder_closure WHERE ancestor_id = :folderId)
+                  AND deleted_at IS NULL
+                """, params);
+    }
+
+    /**
+     * Trashes the given live files and returns how many there were.
+     */
+    public int trashFiles(Collection<UUID> fileIds, UUID deletedBy) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("fileIds", fileIds)
+                .addValue("deletedBy", deletedBy);
+        return jdbcTemplate.update("""
+                UPDATE file f
+                SET deleted_at = now(), deleted_by = :deletedBy
+                WHERE f.id IN (:fileIds)
+                  AND f.deleted_at IS NULL
+                  AND NOT EXISTS (SELECT 1 FROM folder d WHERE d.id = f.folder_id AND d.deleted_at IS NOT NULL)
+                """, params);
+    }
+
+    /**
+     * The parent of {@code folderId} when that folder is the root of something trashed; the
+     * inner {@link Optional} is empty for a folder trashed from the top level. Locks the folder,
+     * so a restore and a purge of it take turns.
+     */
+    public Optional<Optional<UUID>> findTrashedParent(UUID folderId) {
+        return jdbcTemplate.query("""
+                SELECT parent_id
+                FROM folder
+                WHERE id = :folderId
+                  AND trash_root = id
+                FOR UPDATE
+                """, new MapSqlParameterSource("folderId", folderId),
+                (rs, rowNum) -> Optional.ofNullable(rs.getObject("parent_id", UUID.class))).stream().findFirst();
+    }
+
+    /**
+     * Brings back the folders trashed together with {@code folderId}.
+     */
+    public void restoreFolder(UUID folderId) {
+        jdbcTemplate.update("""
+                UPDATE folder
+                SET deleted_at = NULL, deleted_by = NULL, trash_root = NULL
+                WHERE id IN (SELECT descendant_id FROM folder_closure WHERE ancestor_id = :folderId)
+                  AND trash_root = :folderId
+                """, new MapSqlParameterSource("folderId", folderId));
+    }
+
+    /**
+     * Brings back the given trashed files whose folder is live and returns how many there were.
+     */
+    public int restoreFiles(Collection<UUID> fileIds) {
+        return jdbcTemplate.update("""
+                UPDATE file f
+                SET deleted_at = NULL, deleted_by = NULL
+                WHERE f.id IN (:fileIds)
+                  AND f.deleted_at IS NOT NULL
+                  AND NOT EXISTS (SELECT 1 FROM folder d WHERE d.id = f.folder_id AND d.deleted_at IS NOT NULL)
+                """, new MapSqlParameterSource("fileIds", fileIds));
+    }
+
+    /**
+     * Lists what the user deleted, most recent first: trashed folders with the size of their
+     * subtree, and files trashed on their own.
+     */
+    public List<TrashEntry> findEntries(int limit) {
+        return jdbcTemplate.query("""
+                SELECT kind, id, name, folder_id, size_bytes, deleted_at, deleted_by
+                FROM (
+                    (SELECT 'FOLDER' AS kind, t.id, t.name, t.parent_id AS folder_id,
+                            (SELECT COALESCE(sum(u.total_bytes), 0) FROM folder_usage u WHERE u.folder_id = t.id)
+                                AS size_bytes,
+                            t.deleted_at, t.deleted_by
+                     FROM folder t
+                     WHERE t.trash_root = t.id
+                     ORDER BY t.deleted_at DESC, t.id
+                     LIMIT :limit)
+                    UNION ALL
+                    (SELECT 'FILE', t.id, t.name, t.folder_id, t.size_bytes, t.deleted_at, t.deleted_by
+                     FROM file t
+                     WHERE t.deleted_at IS NOT NULL
+                       AND NOT EXISTS (SELECT 1 FROM folder d WHERE d.id = t.folder_id AND d.deleted_at IS NOT NULL)
+                     ORDER BY t.deleted_at DESC, t.id
+                     LIMIT :limit)
+                ) t
+                ORDER BY deleted_at DESC, id
+                LIMIT :limit
+                """, new MapSqlParameterSource("limit", limit), ROW_MAPPER);
+    }
+
+    /**
+     * Deletes up to {@code limit} files that were trashed on their own no later than
+     * {@code trashedAt}, only among {@code fileIds} when given, and returns their storage keys.
+     */
+    public List<String> deleteTrashedFiles(Collection<UUID> fileIds, OffsetDateTime trashedAt, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("fileIds", fileIds)
+                .addValue("trashedAt", trashedAt)
+                .addValue("limit", limit);
+        return jdbcTemplate.queryForList("""
+                DELETE FROM file
+                WHERE deleted_at IS NOT NULL
+                  AND id IN (
+                    SELECT id
+                    FROM file
+                    WHERE deleted_at <= :trashedAt
+                """ + (fileIds == null ? "" : "      AND id IN (:fileIds)\n") + """
+                    ORDER BY deleted_at, id
+                    LIMIT :limit
+                )
+                RETURNING storage_key
+                """, params, String.class);
+    }
+
+    /**
+     * The next folder to purge: {@code folderId} when it is still the root of what was trashed
+     * no later than {@code trashedAt}, or with no {@code folderId} the oldest such root. Locks the
+     * folder, so it cannot be restored while its subtree is being deleted.
+     */
+    public Optional<UUID> findPurgeRoot(UUID folderId, OffsetDateTime trashedAt) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("folderId", folderId)
+                .addValue("trashedAt", trashedAt);
+        return jdbcTemplate.queryForList("""
+                SELECT id
+                FROM folder
+                WHERE trash_root = id
+                  AND deleted_at <= :trashedAt
+                """ + (folderId == null ? "" : "  AND id = :folderId\n") + """
+                ORDER BY deleted_at, id
+                LIMIT 1
+                FOR UPDATE
+                """, params, UUID.class).stream().findFirst();
+    }
+
+    /**
+     * Deletes up to {@code limit} files anywhere below {@code folderId} and returns their storage
+     * keys. Only files in trashed folders are deleted, whatever the caller locked.
+     */
+    public List<String> deleteSubtreeFiles(UUID folderId, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("folderId", folderId)
+                .addValue("limit", limit);
+        return jdbcTemplate.queryForList("""
+                DELETE FROM file
+                WHERE id IN (
+                    SELECT f.id
+                    FROM folder_closure c
+                    JOIN folder d ON d.id = c.descendant_id
+                    JOIN file f ON f.folder_id = d.id
+                    WHERE c.ancestor_id = :folderId
+                      AND d.deleted_at IS NOT NULL
+                    LIMIT :limit
+                )
+                RETURNING storage_key
+                """, params, String.class);
+    }
+
+    /**
+     * Deletes the {@code limit} deepest folders of the subtree of {@code folderId}, the folder
+     * itself last. Every folder deeper than one deleted here goes in the same statement or went
+     * before, so no child is ever re-rooted by its parent's deletion. Only trashed folders are
+     * deleted. Returns how many were deleted.
+     */
+    public int deleteSubtreeFolders(UUID folderId, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("folderId", folderId)
+                .addValue("limit", limit);
+        return jdbcTemplate.update("""
+                DELETE FROM folder
+                WHERE deleted_at IS NOT NULL
+                  AND id IN (
+                    SELECT c.descendant_id
+                    FROM folder_closure c
+                    JOIN folder d ON d.id = c.descendant_id
+                    WHERE c.ancestor_id = :folderId
+                      AND d.deleted_at IS NOT NULL
+                    ORDER BY c.depth DESC
+                    LIMIT :limit
+                )
+                """, params);
+    }
+}
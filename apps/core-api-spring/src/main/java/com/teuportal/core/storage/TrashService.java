@@ -0,0 +1,226 @@
+package com.teuportal.core.storage;
+
+import com.teuportal.core.tenancy.TenantContext;
+import com.teuportal.core.tenancy.TenantContextService;
+import com.teuportal.core.tenancy.TenantTransactions;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Deleting moves files and folders into the trash in one short transaction, however much is
+ * below a folder, and queues a purge for when the retention period ends. The purge, run by
+ * {@link StorageJobWorker}, deletes rows in bounded batches and then removes the blobs no row
+ * refers to any more.
+ */
+@Service
+public class TrashService {
+
+    private static final Logger log = LoggerFactory.getLogger(TrashService.class);
+
+    private final TrashRepository trashRepository;
+    private final FolderRepository folderRepository;
+    private final FileRepository fileRepository;
+    private final StorageJobRepository jobRepository;
+    private final BlobStorageBackend storageBackend;
+    private final TenantContextService tenantContextService;
+    private final TenantTransactions tenantTransactions;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTemplate;
+    private final Duration retention;
+    private final StorageProperties.Jobs jobProperties;
+
+    public TrashService(TrashRepository trashRepository,
+                        FolderRepository folderRepository,
+                        FileRepository fileRepository,
+                        StorageJobRepository jobRepository,
+                        BlobStorageBackend storageBackend,
+                        TenantContextService tenantContextService,
+                        TenantTransactions tenantTransactions,
+                        PlatformTransactionManager transactionManager,
+                        StorageProperties properties) {
+        this.trashRepository = trashRepository;
+        this.folderRepository = folderRepository;
+        this.fileRepository = fileRepository;
+        this.jobRepository = jobRepository;
+        this.storageBackend = storageBackend;
+        this.tenantContextService = tenantContextService;
+        this.tenantTransactions = tenantTransactions;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+        this.retention = properties.getTrash().getRetention();
+        this.jobProperties = properties.getJobs();
+    }
+
+    /**
+     * Moves the selected folders, with everything below them, and files into the trash.
+     */
+    public void trash(ItemSelection selection) {
+        ItemSelection items = selection.checked(jobProperties.getMaxSelection());
+        TenantContext context = tenantContextService.currentContext();
+        transactionTemplate.executeWithoutResult(status -> {
+            // Files first: once their folder is trashed they no longer count as live
+            if (!items.fileIds().isEmpty()) {
+                if (trashRepository.trashFiles(items.fileIds(), context.getUserId()) != items.fileIds().size()) {
+                    throw new ItemNotFoundException("Some of the files do not exist");
+                }
+                jobRepository.insertPurge(context.getCompanyId(), null, items.fileIds(), context.getUserId(), retention);
+            }
+            if (!items.folderIds().isEmpty() && folderRepository.countLive(items.folderIds()) != items.folderIds().size()) {
+                throw new ItemNotFoundException("Some of the folders do not exist");
+            }
+            // A selected folder below another selected folder is trashed with it and keeps its own
+            // purge job, which finds nothing left to do
+            for (UUID folderId : items.folderIds()) {
+                trashRepository.trashFolder(context.getCompanyId(), folderId, context.getUserId());
+                jobRepository.insertPurge(context.getCompanyId(), folderId, null, context.getUserId(), retention);
+            }
+        });
+    }
+
+    /**
+     * Puts trashed folders and files back where they were. A folder whose parent is itself in the
+     * trash, or whose name has been taken meanwhile, cannot be restored.
+     */
+    public void restore(ItemSelection selection) {
+        ItemSelection items = selection.checked(jobProperties.getMaxSelection());
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (UUID folderId : items.folderIds()) {
+                    Optional<UUID> parentId = trashRepository.findTrashedParent(folderId)
+                            .orElseThrow(() -> new ItemNotFoundException("Folder " + folderId + " is not in the trash"));
+                    if (parentId.isPresent() && !folderRepository.exists(parentId.get())) {
+                        throw new RestoreConflictException("The folder that contained " + folderId
+                                + " is in the trash; restore it first");
+                    }
+                    trashRepository.restoreFolder(folderId);
+                }
+                if (!items.fileIds().isEmpty() && trashRepository.restoreFiles(items.fileIds()) != items.fileIds().size()) {
+                    throw new ItemNotFoundException("Some of the files are not in the trash, or their folder is");
+                }
+            });
+        } catch (DuplicateKeyException ex) {
+            throw new RestoreConflictException("A folder with the same name already exists where it was");
+        }
+    }
+
+    public List<TrashEntry> list(int limit) {
+        return readOnlyTemplate.execute(status -> trashRepository.findEntries(limit));
+    }
+
+    /**
+     * Purges the selected trash entries now instead of when their retention ends, or the whole
+     * trash when the selection is {@code null}. Returns the purge jobs.
+     */
+    public List<UUID> purgeNow(ItemSelection selection) {
+        TenantContext context = tenantContextService.currentContext();
+        if (selection == null) {
+            return transactionTemplate.execute(status -> List.of(
+                    jobRepository.insertPurge(context.getCompanyId(), null, null, context.getUserId(), Duration.ZERO)));
+        }
+        ItemSelection items = selection.checked(jobProperties.getMaxSelection());
+        return transactionTemplate.execute(status -> {
+            List<UUID> jobIds = new ArrayList<>();
+            for (UUID folderId : items.folderIds()) {
+                if (trashRepository.findTrashedParent(folderId).isEmpty()) {
+                    throw new ItemNotFoundException("Folder " + folderId + " is not in the trash");
+                }
+                jobIds.add(jobRepository.insertPurge(context.getCompanyId(), folderId, null, context.getUserId(),
+                        Duration.ZERO));
+            }
+            if (!items.fileIds().isEmpty()) {
+                jobIds.add(jobRepository.insertPurge(context.getCompanyId(), null, items.fileIds(),
+                        context.getUserId(), Duration.ZERO));
+            }
+            return jobIds;
+        });
+    }
+
+    /**
+     * A purge or copy job of the current company, for following its progress.
+     */
+    public Optional<StorageJob> findJob(UUID jobId) {
+        return readOnlyTemplate.execute(status -> jobRepository.findById(jobId));
+    }
+
+    /**
+     * One batch of a purge job: up to the configured batch size of files, or once no files are
+     * left below the folder being purged, of folders, deepest first. Returns whether the job is
+     * complete. Blobs are removed after the batch has committed, and only once no row refers to
+     * them; one that cannot be removed now is left for the orphan collector.
+     */
+    boolean purgeBatch(StorageJob job, TenantContext context) {
+        int batchSize = jobProperties.getBatchSize();
+        List<String> keys = new ArrayList<>();
+        boolean done = tenantTransactions.execute(context, status -> {
+            int processed;
+            boolean complete = false;
+            if (job.fileIds() != null || job.folderId() == null) {
+                keys.addAll(trashRepository.deleteTrashedFiles(job.fileIds(), job.trashedAt(), batchSize));
+            }
+            processed = keys.size();
+            if (processed < batchSize && job.fileIds() == null) {
+                Optional<UUID> root = trashRepository.findPurgeRoot(job.folderId(), job.trashedAt());
+                if (root.isEmpty()) {
+                    complete = true;
+                } else {
+                    List<String> subtreeKeys = trashRepository.deleteSubtreeFiles(root.get(), batchSize - processed);
+                    keys.addAll(subtreeKeys);
+                    processed += subtreeKeys.size();
+                    if (processed < batchSize) {
+                        processed += trashRepository.deleteSubtreeFolders(root.get(), batchSize - processed);
+                    }
+                }
+            } else if (processed < batchSize) {
+                complete = true;
+            }
+            jobRepository.saveProgress(job.id(), null, processed, jobProperties.getLease());
+            return complete;
+        });
+        removeUnreferencedBlobs(context, keys);
+        return done;
+    }
+
+    private void removeUnreferencedBlobs(TenantContext context, List<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        TreeSet<String> candidates = new TreeSet<>(keys);
+        try {
+            tenantTransactions.execute(context, status -> {
+                fileRepository.lockStorageKeys(candidates);
+                candidates.removeAll(fileRepository.findReferencedKeys(candidates));
+                for (String key : candidates) {
+                    storageBackend.delete(key);
+                }
+                return null;
+            });
+        } catch (RuntimeException ex) {
+            log.warn("Failed to remove {} purged blobs of company {}", candidates.size(), context.getCompanyId(), ex);
+        }
+    }
+
+    public static class ItemNotFoundException extends RuntimeException {
+        public ItemNotFoundException(String message) {
+            super(message);
+        }
+    }
+
+    public static class RestoreConflictException extends RuntimeException {
+        public RestoreConflictException(String message) {
+            super(message);
+        }
+    }
+}
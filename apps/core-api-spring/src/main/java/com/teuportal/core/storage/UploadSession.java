@@ -0,0 +1,46 @@
+package com.teuportal.core.storage;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * A resumable upload. Chunk {@code i} covers bytes {@code [i * chunkSize, min((i + 1) * chunkSize, sizeBytes))}.
+ */
+public record UploadSession(
+        UUID id,
+        UUID folderId,
+        String name,
+        String mimeType,
+        long sizeBytes,
+        int chunkSize,
+        int chunkCount,
+        UUID fileId,
+        OffsetDateTime createdAt,
+        OffsetDateTime expiresAt,
+        OffsetDateTime completingAt,
+        OffsetDateTime completedAt
+) {
+
+    public long offset(int chunkIndex) {
+        return (long) chunkIndex * chunkSize;
+    }
+
+    public long chunkLength(int chunkIndex) {
+        return Math.min(chunkSize, sizeBytes - offset(chunkIndex));
+    }
+
+    public boolean isCompleted() {
+        return completedAt != null;
+    }
+
+    /**
+     * Whether a completion is staging the part file; chunks are refused until it finishes or fails.
+     */
+    public boolean isCompleting() {
+        return completingAt != null && completedAt == null;
+    }
+
+    public boolean isExpired(OffsetDateTime now) {
+        return completedAt == null && expiresAt.isBefore(now);
+    }
+}
@@ -0,0 +1,153 @@
+package com.teuportal.core.storage;
+
+import com.teuportal.core.datasource.ReadOnlyRequest;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.PositiveOrZero;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Resumable uploads: create a session with the final size, {@code PUT} chunks in any order and in
+ * parallel, check which chunks are stored after a dropped connection, then complete the session.
+ */
+@RestController
+@RequestMapping("/api/uploads")
+@Tag(name = "files", description = "File uploads and downloads")
+public class UploadSessionController {
+
+    private final UploadSessionService uploadSessionService;
+
+    public UploadSessionController(UploadSessionService uploadSessionService) {
+        this.uploadSessionService = uploadSessionService;
+    }
+
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Start a resumable upload")
+    public ResponseEntity<?> create(@Valid @RequestBody CreateUploadRequest request) {
+        if (request.name().chars().anyMatch(Character::isISOControl)) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("status", "error", "message", "A valid file name is required."));
+        }
+        String mimeType = StringUtils.hasText(request.mimeType())
+                ? request.mimeType()
+                : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        try {
+            UploadSession session = uploadSessionService.create(request.name().trim(), mimeType,
+                    request.folderId(), request.sizeBytes());
+            return ResponseEntity.created(URI.create("/api/uploads/" + session.id()))
+                    .body(UploadSessionService.UploadStatus.of(session, List.of()));
+        } catch (LocalBlobStore.BlobTooLargeException ex) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        } catch (StorageQuotaService.QuotaExceededException ex) {
+            return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE)
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        } catch (FileUploadService.FolderNotFoundException ex) {
+            return notFound(ex);
+        }
+    }
+
+    /**
+     * Served from the primary so a client resuming right after a chunk sees it as stored.
+     */
+    @GetMapping(path = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ReadOnlyRequest(false)
+    @Operation(summary = "Show which chunks of an upload are stored")
+    public ResponseEntity<?> status(@PathVariable("id") UUID id) {
+        try {
+            return ResponseEntity.ok(uploadSessionService.status(id));
+        } catch (LocalBlobStore.UploadNotFoundException ex) {
+            return notFound(ex);
+        }
+    }
+
+    @PutMapping(path = "/{id}/chunks/{index}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @Operation(summary = "Store one chunk of an upload")
+    public ResponseEntity<?> putChunk(@PathVariable("id") UUID id,
+                                      @PathVariable("index") int index,
+                                      HttpServletRequest request) {
+        try {
+            uploadSessionService.writeChunk(id, index, request.getContentLengthLong(), request.getInputStream());
+            return ResponseEntity.noContent().build();
+        } catch (LocalBlobStore.UploadNotFoundException ex) {
+            return notFound(ex);
+        } catch (UploadSessionService.InvalidChunkException | LocalBlobStore.ChunkLengthException ex) {
+            return ResponseEntity.badRequest()
+                    .header(HttpHeaders.CONNECTION, "close")
+                    .body(Map.of("status", "error", "message", ex.getMessage()));
+        } catch (UploadSessionService.UploadCompletedException ex) {
+            return conflict(ex);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @PostMapping(path = "/{id}/complete", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Assemble a fully uploaded file")
+    public ResponseEntity<?> complete(@PathVariable("id") UUID id) {
+        try {
+            StoredFile stored = uploadSessionService.complete(id);
+            return ResponseEntity.created(URI.create("/api/files/" + stored.id())).body(stored);
+        } catch (LocalBlobStore.UploadNotFoundException | FileUploadService.FolderNotFoundException ex) {
+            return notFound(ex);
+        } catch (UploadSessionService.MissingChunksException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("status", "error", "message", ex.getMessage(),
+                            "missingChunks", ex.getMissingChunks()));
+        } catch (UploadSessionService.UploadCompletedException | LocalBlobStore.ChunkWritesPendingException ex) {
+            return conflict(ex);
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    @Operation(summary = "Abort an upload and discard its chunks")
+    public ResponseEntity<?> abort(@PathVariable("id") UUID id) {
+        try {
+            uploadSessionService.abort(id);
+            return ResponseEntity.noContent().build();
+        } catch (LocalBlobStore.UploadNotFoundException ex) {
+            return notFound(ex);
+        } catch (UploadSessionService.UploadCompletingException ex) {
+            return conflict(ex);
+        }
+    }
+
+    private static ResponseEntity<?> notFound(RuntimeException ex) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(Map.of("status", "error", "message", ex.getMessage()));
+    }
+
+    private static ResponseEntity<?> conflict(RuntimeException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("status", "error", "message", ex.getMessage()));
+    }
+
+    public record CreateUploadRequest(@NotBlank String name,
+                                      UUID folderId,
+                                      @PositiveOrZero long sizeBytes,
+                                      String mimeType) {
+    }
+}
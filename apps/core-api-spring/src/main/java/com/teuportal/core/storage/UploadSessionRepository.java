@@ -0,0 +1,159 @@
+package com.teuportal.core.storage;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class UploadSessionRepository {
+
+    private static final String COLUMNS = """
+            id, folder_id, name, mime_type, size_bytes, chunk_size, chunk_count, file_id,
+            created_at, expires_at, completing_at, completed_at
+            """;
+
+    private static final RowMapper<UploadSession> ROW_MAPPER = (rs, rowNum) -> new UploadSession(
+            rs.getObject("id", UUID.class),
+            rs.getObject("folder_id", UUID.class),
+            rs.getString("name"),
+            rs.getString("mime_type"),
+            rs.getLong("size_bytes"),
+            rs.getInt("chunk_size"),
+            rs.getInt("chunk_count"),
+            rs.getObject("file_id", UUID.class),
+            rs.getObject("created_at", OffsetDateTime.class),
+            rs.getObject("expires_at", OffsetDateTime.class),
+            rs.getObject("completing_at", OffsetDateTime.class),
+            rs.getObject("completed_at", OffsetDateTime.class)
+    );
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public UploadSessionRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public UploadSession insert(UUID companyId,
+                                UUID folderId,
+                                String name,
+                                String mimeType,
+                                long sizeBytes,
+                                int chunkSize,
+                                int chunkCount,
+                                UUID createdBy,
+                                OffsetDateTime expiresAt) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("companyId", companyId)
+                .addValue("folderId", folderId)
+                .addValue("name", name)
+                .addValue("mimeType", mimeType)
+                .addValue("sizeBytes", sizeBytes)
+                .addValue("chunkSize", chunkSize)
+                .addValue("chunkCount", chunkCount)
+                .addValue("createdBy", createdBy)
+                .addValue("expiresAt", expiresAt);
+        return jdbcTemplate.queryForObject("""
+                INSERT INTO upload_session (company_id, folder_id, name, mime_type, size_bytes, chunk_size,
+                                            chunk_count, created_by, expires_at)
+                VALUES (:companyId, :folderId, :name, :mimeType, :sizeBytes, :chunkSize,
+                        :chunkCount, :createdBy, :expiresAt)
+                RETURNING
+                """ + COLUMNS, params, ROW_MAPPER);
+    }
+
+    public Optional<UploadSession> findById(UUID sessionId) {
+        return jdbcTemplate.query("SELECT " + COLUMNS + " FROM upload_session WHERE id = :id",
+                new MapSqlParameterSource("id", sessionId), ROW_MAPPER).stream().findFirst();
+    }
+
+    /**
+     * Locks the session row so only one completion can register the file.
+     */
+    public Optional<UploadSession> lockById(UUID sessionId) {
+        return jdbcTemplate.query("SELECT " + COLUMNS + " FROM upload_session WHERE id = :id FOR UPDATE",
+                new MapSqlParameterSource("id", sessionId), ROW_MAPPER).stream().findFirst();
+    }
+
+    /**
+     * Locks the session row against {@link #lockById} while a chunk checks that the session still
+     * takes chunks; chunks of one session do not block each other.
+     */
+    public Optional<UploadSession> lockForChunk(UUID sessionId) {
+        return jdbcTemplate.query("SELECT " + COLUMNS + " FROM upload_session WHERE id = :id FOR SHARE",
+                new MapSqlParameterSource("id", sessionId), ROW_MAPPER).stream().findFirst();
+    }
+
+    public void markCompleting(UUID sessionId) {
+        jdbcTemplate.update("UPDATE upload_session SET completing_at = now() WHERE id = :id",
+                new MapSqlParameterSource("id", sessionId));
+    }
+
+    /**
+     * Reopens a session whose completion failed, so its chunks can be resent.
+     */
+    public void clearCompleting(UUID sessionId) {
+        jdbcTemplate.update("UPDATE upload_session SET completing_at = NULL WHERE id = :id AND completed_at IS NULL",
+                new MapSqlParameterSource("id", sessionId));
+    }
+
+    public List<Integer> findReceivedChunks(UUID sessionId) {
+        return jdbcTemplate.queryForList("""
+                SELECT chunk_index
+                FROM upload_chunk
+                WHERE session_id = :sessionId
+                ORDER BY chunk_index
+                """, new MapSqlParameterSource("sessionId", sessionId), Integer.class);
+    }
+
+    /**
+     * Idempotent, so a chunk resent after a lost response is simply recorded again.
+     */
+    public void recordChunk(UUID sessionId, UUID companyId, int chunkIndex, long sizeBytes) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("sessionId", sessionId)
+                .addValue("companyId", companyId)
+                .addValue("chunkIndex", chunkIndex)
+                .addValue("sizeBytes", sizeBytes);
+        jdbcTemplate.update("""
+                INSERT INTO upload_chunk (session_id, company_id, chunk_index, size_bytes)
+                VALUES (:sessionId, :companyId, :chunkIndex, :sizeBytes)
+                ON CONFLICT (session_id, chunk_index)
+                DO UPDATE SET size_bytes = EXCLUDED.size_bytes, received_at = now()
+                """, params);
+    }
+
+    public void forgetChunk(UUID sessionId, int chunkIndex) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("sessionId", sessionId)
+                .addValue("chunkIndex", chunkIndex);
+        jdbcTemplate.update("DELETE FROM upload_chunk WHERE session_id = :sessionId AND chunk_index = :chunkIndex",
+                params);
+    }
+
+    public void forgetChunks(UUID sessionId) {
+        jdbcTemplate.update("DELETE FROM upload_chunk WHERE session_id = :sessionId",
+                new MapSqlParameterSource("sessionId", sessionId));
+    }
+
+    public void markCompleted(UUID sessionId, UUID fileId) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("id", sessionId)
+                .addValue("fileId", fileId);
+        jdbcTemplate.update("""
+                UPDATE upload_session
+                SET file_id = :fileId, completed_at = now()
+                WHERE id = :id
+                """, params);
+    }
+
+    public boolean deleteOpen(UUID sessionId) {
+        return jdbcTemplate.update("DELETE FROM upload_session WHERE id = :id AND completed_at IS NULL",
+                new MapSqlParameterSource("id", sessionId)) > 0;
+    }
+}
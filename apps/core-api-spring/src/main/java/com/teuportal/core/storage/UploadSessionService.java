@@ -0,0 +1,309 @@
+package com.teuportal.core.storage;
+
+import com.teuportal.core.tenancy.TenantContext;
+import com.teuportal.core.tenancy.TenantContextService;
+
+import java.io.InputStream;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Resumable uploads. Each chunk request streams its bytes straight to their final offset in the
+ * session's part file and only then records the chunk in a short transaction, so parallel chunk
+ * requests never wait on each other or hold a connection while receiving data. Completion marks
+ * the session as completing under its row lock, which chunk requests check under a shared lock
+ * before writing and again before recording; it then copies and hashes the assembled file once and
+ * registers it like a regular upload.
+ */
+@Service
+public class UploadSessionService {
+
+    private final UploadSessionRepository sessionRepository;
+    private final FileRepository fileRepository;
+    private final FolderRepository folderRepository;
+    private final FileUploadService fileUploadService;
+    private final StorageQuotaService quotaService;
+    private final LocalBlobStore blobStore;
+    private final TenantContextService tenantContextService;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final int chunkSize;
+    private final long maxSize;
+    private final Duration sessionTtl;
+
+    public UploadSessionService(UploadSessionRepository sessionRepository,
+                                FileRepository fileRepository,
+                                FolderRepository folderRepository,
+                                FileUploadService fileUploadService,
+                                StorageQuotaService quotaService,
+                                LocalBlobStore blobStore,
+                                TenantContextService tenantContextService,
+                                PlatformTransactionManager transactionManager,
+                                Clock clock,
+                                StorageProperties properties) {
+        this.sessionRepository = sessionRepository;
+        this.fileRepository = fileRepository;
+        this.folderRepository = folderRepository;
+        this.fileUploadService = fileUploadService;
+        this.quotaService = quotaService;
+        this.blobStore = blobStore;
+        this.tenantContextService = tenantContextService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.chunkSize = Math.toIntExact(properties.getUpload().getChunkSize().toBytes());
+        this.maxSize = properties.getUpload().getMaxSize().toBytes();
+        this.sessionTtl = properties.getUpload().getSessionTtl();
+    }
+
+    public UploadSession create(String name, String mimeType, UUID folderId, long sizeBytes) {
+        if (sizeBytes > maxSize) {
+            throw new LocalBlobStore.BlobTooLargeException(maxSize);
+        }
+        TenantContext context = tenantContextService.currentContext();
+        int chunkCount = Math.toIntExact((sizeBytes + chunkSize - 1) / chunkSize);
+        OffsetDateTime expiresAt = OffsetDateTime.now(clock).plus(sessionTtl);
+        return transactionTemplate.execute(status -> {
+            if (folderId != null && !folderRepository.exists(folderId)) {
+                throw new FileUploadService.FolderNotFoundException(folderId);
+            }
+            UploadSession session = sessionRepository.insert(context.getCompanyId(), folderId, name, mimeType,
+                    sizeBytes, chunkSize, chunkCount, context.getUserId(), expiresAt);
+            // Shares the session's id and lifetime, so completing or aborting it settles the quota
+            quotaService.reserve(session.id(), sizeBytes, expiresAt);
+            blobStore.createUpload(session.id());
+            return session;
+        });
+    }
+
+    public UploadStatus status(UUID sessionId) {
+        return transactionTemplate.execute(status -> {
+            UploadSession session = sessionRepository.findById(sessionId)
+                    .orElseThrow(() -> new LocalBlobStore.UploadNotFoundException(sessionId));
+            return UploadStatus.of(session, sessionRepository.findReceivedChunks(sessionId));
+        });
+    }
+
+    /**
+     * Stores one chunk. {@code declaredLength} is the request's content length, or {@code -1} when
+     * unknown; a mismatch is rejected before anything is written. A write that fails part way leaves
+     * the chunk unrecorded, even if an earlier attempt had stored it, so the client resends it.
+     * Chunks are refused once the session is completing.
+     */
+    public void writeChunk(UUID sessionId, int chunkIndex, long declaredLength, InputStream content) {
+        TenantContext context = tenantContextService.currentContext();
+        UploadSession session = transactionTemplate.execute(status -> lockOpen(sessionId));
+        if (chunkIndex < 0 || chunkIndex >= session.chunkCount()) {
+            throw new InvalidChunkException(chunkIndex, session.chunkCount());
+        }
+        long length = session.chunkLength(chunkIndex);
+        if (declaredLength >= 0 && declaredLength != length) {
+            throw new LocalBlobStore.ChunkLengthException(length);
+        }
+        try {
+            blobStore.writeChunk(sessionId, session.offset(chunkIndex), length, content);
+        } catch (RuntimeException ex) {
+            transactionTemplate.executeWithoutResult(status -> {
+                // A completing session keeps its chunks; the completion has already read them
+                if (sessionRepository.lockForChunk(sessionId).filter(this::takesChunks).isPresent()) {
+                    sessionRepository.forgetChunk(sessionId, chunkIndex);
+                }
+            });
+            throw ex;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                lockOpen(sessionId);
+                sessionRepository.recordChunk(sessionId, context.getCompanyId(), chunkIndex, length);
+            });
+        } catch (DataIntegrityViolationException ex) {
+            // The session was aborted while the chunk was in flight
+            throw new LocalBlobStore.UploadNotFoundException(sessionId);
+        }
+    }
+
+    /**
+     * Registers the assembled file. Completing an already completed session returns its file, so a
+     * client can safely retry after losing the response. The part file itself becomes the staged
+     * blob; a completion that fails hands it back and reopens the session.
+     */
+    public StoredFile complete(UUID sessionId) {
+        TenantContext context = tenantContextService.currentContext();
+        UploadSession session = transactionTemplate.execute(status -> {
+            UploadSession locked = sessionRepository.lockById(sessionId)
+                    .orElseThrow(() -> new LocalBlobStore.UploadNotFoundException(sessionId));
+            if (locked.isCompleted()) {
+                return locked;
+            }
+            List<Integer> missing = UploadStatus.of(locked, sessionRepository.findReceivedChunks(sessionId))
+                    .missingChunks();
+            if (!missing.isEmpty()) {
+                throw new MissingChunksException(missing);
+            }
+            sessionRepository.markCompleting(sessionId);
+            return locked;
+        });
+        if (session.isCompleted()) {
+            return existingFile(session);
+        }
+        StagedBlob staged;
+        try {
+            staged = blobStore.stageUpload(sessionId, session.sizeBytes());
+        } catch (RuntimeException ex) {
+            reopen(sessionId);
+            throw ex;
+        }
+        try {
+            boolean uploaded = fileUploadService.upload(context, staged);
+            return transactionTemplate.execute(status -> {
+                UploadSession locked = sessionRepository.lockById(sessionId)
+                        .orElseThrow(() -> new LocalBlobStore.UploadNotFoundException(sessionId));
+                if (locked.isCompleted()) {
+                    return existingFile(locked);
+                }
+                StoredFile stored = fileUploadService.register(context, staged, uploaded, locked.name(),
+                        locked.mimeType(), locked.folderId());
+                sessionRepository.markCompleted(sessionId, stored.id());
+                quotaService.finish(sessionId, stored.sizeBytes());
+                deleteUploadAfterCommit(sessionId);
+                return stored;
+            });
+        } catch (RuntimeException ex) {
+            reopen(sessionId, staged);
+            throw ex;
+        } finally {
+            blobStore.discard(staged);
+        }
+    }
+
+    public void abort(UUID sessionId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (sessionRepository.lockById(sessionId).filter(UploadSession::isCompleting).isPresent()) {
+                throw new UploadCompletingException(sessionId);
+            }
+            if (!sessionRepository.deleteOpen(sessionId)) {
+                throw new LocalBlobStore.UploadNotFoundException(sessionId);
+            }
+            quotaService.release(sessionId);
+            deleteUploadAfterCommit(sessionId);
+        });
+    }
+
+    /**
+     * Locks the session shared and checks that it still takes chunks; runs in a transaction.
+     */
+    private UploadSession lockOpen(UUID sessionId) {
+        UploadSession session = sessionRepository.lockForChunk(sessionId)
+                .orElseThrow(() -> new LocalBlobStore.UploadNotFoundException(sessionId));
+        if (session.isCompleted()) {
+            throw new UploadCompletedException(sessionId);
+        }
+        if (session.isCompleting()) {
+            throw new UploadCompletingException(sessionId);
+        }
+        if (session.isExpired(OffsetDateTime.now(clock))) {
+            throw new LocalBlobStore.UploadNotFoundException(sessionId);
+        }
+        return session;
+    }
+
+    private boolean takesChunks(UploadSession session) {
+        return !session.isCompleted() && !session.isCompleting();
+    }
+
+    private void reopen(UUID sessionId) {
+        transactionTemplate.executeWithoutResult(status -> sessionRepository.clearCompleting(sessionId));
+    }
+
+    /**
+     * Hands the staged part file back before reopening. A blob promoted before the registration
+     * rolled back is gone, so its chunks have to be sent again.
+     */
+    private void reopen(UUID sessionId, StagedBlob staged) {
+        boolean returned = blobStore.returnUpload(sessionId, staged);
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!returned) {
+                sessionRepository.forgetChunks(sessionId);
+            }
+            sessionRepository.clearCompleting(sessionId);
+        });
+    }
+
+    private StoredFile existingFile(UploadSession session) {
+        return Optional.ofNullable(session.fileId())
+                .flatMap(fileId -> transactionTemplate.execute(status -> fileRepository.findById(fileId)))
+                .orElseThrow(() -> new UploadCompletedException(session.id()));
+    }
+
+    private void deleteUploadAfterCommit(UUID sessionId) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                blobStore.deleteUpload(sessionId);
+            }
+        });
+    }
+
+    public record UploadStatus(UploadSession session, List<Integer> receivedChunks, List<Integer> missingChunks) {
+
+        static UploadStatus of(UploadSession session, List<Integer> receivedChunks) {
+            boolean[] received = new boolean[session.chunkCount()];
+            receivedChunks.forEach(index -> received[index] = true);
+            List<Integer> missing = IntStream.range(0, session.chunkCount())
+                    .filter(index -> !received[index])
+                    .boxed()
+                    .toList();
+            return new UploadStatus(session, receivedChunks, missing);
+        }
+    }
+
+    public static class InvalidChunkException extends RuntimeException {
+        public InvalidChunkException(int chunkIndex, int chunkCount) {
+            super("Chunk " + chunkIndex + " is outside 0.." + (chunkCount - 1));
+        }
+    }
+
+    public static class MissingChunksException extends RuntimeException {
+
+        private final List<Integer> missingChunks;
+
+        public MissingChunksException(List<Integer> missingChunks) {
+            super(missingChunks.size() + " chunks have not been received");
+            this.missingChunks = missingChunks;
+        }
+
+        public List<Integer> getMissingChunks() {
+            return missingChunks;
+        }
+    }
+
+    public static class UploadCompletedException extends RuntimeException {
+        public UploadCompletedException(UUID sessionId) {
+            super("Upload " + sessionId + " is already complete");
+        }
+
+        protected UploadCompletedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * The session is being completed; it takes chunks again only if the completion fails.
+     */
+    public static class UploadCompletingException extends UploadCompletedException {
+        public UploadCompletingException(UUID sessionId) {
+            super("Upload " + sessionId + " is being completed");
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.teuportal.core.storage;
+
+import com.teuportal.core.tenancy.TenantContext;
+import com.teuportal.core.tenancy.TenantTransactions;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+/**
+ * Streams a folder subtree or a selection of files as a ZIP archive straight to the response, with
+ * no temporary files. Metadata is read in keyset batches, each in its own short transaction, so a
+ * long export holds neither a pooled connection nor more than one batch of rows; archive memory is
+ * bounded by the entry limit. Already-compressed content is stored rather than deflated again.
+ *
+ * <p>Batches are separate transactions, so files added or moved while an export runs may or may
+ * not be included.
+ */
+@Service
+public class ZipExportService {
+
+    static final String CONTENT_TYPE = "application/zip";
+
+    private static final Set<String> COMPRESSED_TYPES = Set.of(
+            "application/zip",
+            "application/gzip",
+            "application/x-gzip",
+            "application/x-bzip2",
+            "application/x-xz",
+            "application/zstd",
+            "application/x-7z-compressed",
+            "application/vnd.rar",
+            "application/x-rar-compressed",
+            "application/java-archive",
+            "application/epub+zip",
+            "application/pdf"
+    );
+
+    private final FolderRepository folderRepository;
+    private final FileRepository fileRepository;
+    private final StorageUsageRepository storageUsageRepository;
+    private final BlobStorageBackend storageBackend;
+    private final TenantTransactions tenantTransactions;
+    private final StorageProperties.Export exportProperties;
+    private final int bufferSize;
+    private final Semaphore permits;
+
+    public ZipExportService(FolderRepository folderRepository,
+                            FileRepository fileRepository,
+                            StorageUsageRepository storageUsageRepository,
+                            BlobStorageBackend storageBackend,
+                            TenantTransactions tenantTransactions,
+                            StorageProperties properties) {
+        this.folderRepository = folderRepository;
+        this.fileRepository = fileRepository;
+        this.storageUsageRepository = storageUsageRepository;
+        this.storageBackend = storageBackend;
+        this.tenantTransactions = tenantTransactions;
+        this.exportProperties = properties.getExport();
+        this.bufferSize = (int) properties.getLocal().getBufferSize().toBytes();
+        this.permits = new Semaphore(exportProperties.getMaxConcurrent());
+    }
+
+    /**
+     * Checks the folder and its size against the export limits from the maintained usage counters,
+     * then reserves an export slot. Nothing has been written to the response yet, so failures can
+     * still be reported with a status code.
+     */
+    public PreparedExport prepareFolder(UUID folderId) {
+        TenantContext context = tenantTransactions.capture();
+        FolderSummary folder = tenantTransactions.read(context, status -> {
+            FolderSummary found = folderRepository.findById(folderId)
+                    .orElseThrow(() -> new FileUploadService.FolderNotFoundException(folderId));
+            StorageUsage usage = storageUsageRepository.findFolderUsage(folderId);
+            checkLimits(usage.fileCount() + folderRepository.countSubtree(folderId), usage.totalBytes());
+            return found;
+        });
+        return reserve(context, safeSegment(folder.name()) + ".zip", folderId, List.of());
+    }
+
+    public PreparedExport prepareSelection(List<UUID> fileIds) {
+        List<UUID> distinct = List.copyOf(new LinkedHashSet<>(fileIds));
+        if (distinct.isEmpty()) {
+            throw new IllegalArgumentException("At least one file id is required.");
+        }
+        if (distinct.size() > exportProperties.getMaxSelection()) {
+            throw new IllegalArgumentException("At most " + exportProperties.getMaxSelection()
+                    + " files can be exported at once.");
+        }
+        TenantContext context = tenantTransactions.capture();
+        StorageUsage usage = tenantTransactions.read(context, status -> fileRepository.measure(distinct));
+        if (usage.fileCount() != distinct.size()) {
+            throw new ExportFileNotFoundException();
+        }
+        checkLimits(usage.fileCount(), usage.totalBytes());
+        return reserve(context, "files.zip", null, distinct);
+    }
+
+    public void write(PreparedExport export, HttpServletResponse response) throws IOException {
+        response.setContentType(CONTENT_TYPE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, FileDownloadWriter.contentDisposition(export.fileName(), false));
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-store");
+        try (ZipStreamWriter zip = new ZipStreamWriter(response.getOutputStream(), bufferSize)) {
+            if (export.folderId() != null) {
+                writeFolder(export, zip);
+            } else {
+                writeSelection(export, zip);
+            }
+            zip.finish();
+        }
+    }
+
+    private void writeFolder(PreparedExport export, ZipStreamWriter zip) throws IOException {
+        int batchSize = exportProperties.getBatchSize();
+        UUID afterFolder = null;
+        while (true) {
+            UUID after = afterFolder;
+            List<FolderPath> folders = tenantTransactions.read(export.context(),
+                    status -> folderRepository.findSubtreePaths(export.folderId(), after, batchSize));
+            for (FolderPath folder : folders) {
+                String directory = String.join("/", folder.names().stream().map(ZipExportService::safeSegment).toList()) + "/";
+                checkEntryLimit(zip);
+                zip.addDirectory(directory, folder.createdAt().toInstant());
+                writeFolderFiles(export, zip, folder.id(), directory);
+            }
+            if (folders.size() < batchSize) {
+                return;
+            }
+            afterFolder = folders.get(folders.size() - 1).id();
+        }
+    }
+
+    private void writeFolderFiles(PreparedExport export, ZipStreamWriter zip, UUID folderId, String directory)
+            throws IOException {
+        int batchSize = exportProperties.getBatchSize();
+        Set<String> usedNames = new HashSet<>();
+        OffsetDateTime afterCreatedAt = null;
+        UUID afterId = null;
+        while (true) {
+            OffsetDateTime createdAt = afterCreatedAt;
+            UUID id = afterId;
+            List<FileDownload> files = tenantTransactions.read(export.context(),
+                    status -> fileRepository.findDownloadsInFolder(folderId, createdAt, id, batchSize));
+            for (FileDownload file : files) {
+                writeFile(zip, directory + uniqueName(safeSegment(file.name()), usedNames), file);
+            }
+            if (files.size() < batchSize) {
+                return;
+            }
+            FileDownload last = files.get(files.size() - 1);
+            afterCreatedAt = last.createdAt();
+            afterId = last.id();
+        }
+    }
+
+    private void writeSelection(PreparedExport export, ZipStreamWriter zip) throws IOException {
+        int batchSize = exportProperties.getBatchSize();
+        Set<String> usedNames = new HashSet<>();
+        List<UUID> fileIds = export.fileIds();
+        for (int start = 0; start < fileIds.size(); start += batchSize) {
+            List<UUID> batch = fileIds.subList(start, Math.min(start + batchSize, fileIds.size()));
+            Map<UUID, FileDownload> files = new HashMap<>();
+            tenantTransactions.read(export.context(), status -> fileRepository.findDownloads(batch))
+                    .forEach(file -> files.put(file.id(), file));
+            for (UUID id : batch) {
+                FileDownload file = files.get(id);
+                // Deleted since the export was prepared
+                if (file != null) {
+                    writeFile(zip, uniqueName(safeSegment(file.name()), usedNames), file);
+                }
+            }
+        }
+    }
+
+    private void writeFile(ZipStreamWriter zip, String entryName, FileDownload file) throws IOException {
+        checkEntryLimit(zip);
+        // A missing blob aborts the archive rather than silently leaving the file out
+        try (InputStream content = storageBackend.open(file.storageKey(), 0, file.sizeBytes())) {
+            zip.addFile(entryName, file.createdAt().toInstant(), !isCompressed(file.mimeType()), content);
+        }
+    }
+
+    private void checkLimits(long entries, long bytes) {
+        if (entries > exportProperties.getMaxEntries()) {
+            throw new ExportTooLargeException("Exports are limited to " + exportProperties.getMaxEntries() + " entries.");
+        }
+        if (bytes > exportProperties.getMaxSize().toBytes()) {
+            throw new ExportTooLargeException("Exports are limited to " + exportProperties.getMaxSize().toMegabytes() + " MB.");
+        }
+    }
+
+    private void checkEntryLimit(ZipStreamWriter zip) {
+        // The subtree may have grown since the export was prepared
+        if (zip.entryCount() >= exportProperties.getMaxEntries()) {
+            throw new ExportTooLargeException("Exports are limited to " + exportProperties.getMaxEntries() + " entries.");
+        }
+    }
+
+    private PreparedExport reserve(TenantContext context, String fileName, UUID folderId, List<UUID> fileIds) {
+        if (!permits.tryAcquire()) {
+            throw new ExportBusyException();
+        }
+        return new PreparedExport(context, fileName, folderId, fileIds, permits);
+    }
+
+    /**
+     * Whether {@code mimeType} is already compressed, so deflating it again would only cost CPU.
+     */
+    static boolean isCompressed(String mimeType) {
+        if (mimeType == null) {
+            return false;
+        }
+        String type = mimeType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+        if (type.startsWith("image/")) {
+            return !type.equals("image/svg+xml") && !type.equals("image/bmp");
+        }
+        if (type.startsWith("video/")) {
+            return true;
+        }
+        if (type.startsWith("audio/")) {
+            return !type.equals("audio/wav") && !type.equals("audio/x-wav");
+        }
+        // OOXML and OpenDocument files are ZIP containers
+        return type.startsWith("application/vnd.openxmlformats-officedocument.")
+                || type.startsWith("application/vnd.oasis.opendocument.")
+                || COMPRESSED_TYPES.contains(type);
+    }
+
+    /**
+     * Makes a stored name usable as one path segment of an entry name.
+     */
+    static String safeSegment(String name) {
+        StringBuilder cleaned = new StringBuilder(name.length());
+        name.codePoints().forEach(cp -> cleaned.appendCodePoint(
+                cp == '/' || cp == '\\' || Character.isISOControl(cp) ? '_' : cp));
+        String segment = cleaned.toString().trim();
+        return segment.isEmpty() || segment.equals(".") || segment.equals("..") ? "_" : segment;
+    }
+
+    /**
+     * Names may repeat within a folder, and archive tools extract onto case-insensitive file
+     * systems, so later duplicates get a numbered suffix.
+     */
+    static String uniqueName(String name, Set<String> usedNames) {
+        if (usedNames.add(name.toLowerCase(Locale.ROOT))) {
+            return name;
+        }
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        for (int n = 2; ; n++) {
+            String candidate = base + " (" + n + ")" + extension;
+            if (usedNames.add(candidate.toLowerCase(Locale.ROOT))) {
+                return candidate;
+            }
+        }
+    }
+
+    /**
+     * A validated export holding one of the node's export slots until closed.
+     */
+    public static final class PreparedExport implements AutoCloseable {
+
+        private final TenantContext context;
+        private final String fileName;
+        private final UUID folderId;
+        private final List<UUID> fileIds;
+        private final Semaphore permits;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private PreparedExport(TenantContext context, String fileName, UUID folderId, List<UUID> fileIds, Semaphore permits) {
+            this.context = context;
+            this.fileName = fileName;
+            this.folderId = folderId;
+            this.fileIds = fileIds;
+            this.permits = permits;
+        }
+
+        TenantContext context() {
+            return context;
+        }
+
+        public String fileName() {
+            return fileName;
+        }
+
+        UUID folderId() {
+            return folderId;
+        }
+
+        List<UUID> fileIds() {
+            return fileIds;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+
+    public static class ExportTooLargeException extends RuntimeException {
+        public ExportTooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    public static class ExportBusyException extends RuntimeException {
+        public ExportBusyException() {
+            super("Too many exports are running; try again shortly.");
+        }
+    }
+
+    public static class ExportFileNotFoundException extends RuntimeException {
+        public ExportFileNotFoundException() {
+            super("One or more files were not found");
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.teuportal.core.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a ZIP archive to a stream in one pass. File entries carry their CRC and sizes in a ZIP64
+ * data descriptor after the data, so stored entries need no read-ahead to compute the CRC and no
+ * entry or archive size limit applies. Only the central directory (one small record per entry) is
+ * kept in memory until {@link #finish()}.
+ *
+ * <p>{@link java.util.zip.ZipOutputStream} is not used because it requires the CRC of a stored
+ * entry before its data.
+ */
+final class ZipStreamWriter implements AutoCloseable {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    private static final int VERSION_DEFAULT = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final int DOS_DIRECTORY_ATTRIBUTE = 0x10;
+    private static final long MAX_32 = 0xFFFFFFFFL;
+    private static final int MAX_16 = 0xFFFF;
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private final byte[] deflated;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+    private final CRC32 crc = new CRC32();
+    private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+    private long position;
+    private long entryCount;
+    private boolean finished;
+
+    ZipStreamWriter(OutputStream out, int bufferSize) {
+        this.out = out;
+        this.buffer = new byte[bufferSize];
+        this.deflated = new byte[bufferSize];
+    }
+
+    long entryCount() {
+        return entryCount;
+    }
+
+    long bytesWritten() {
+        return position;
+    }
+
+    void addDirectory(String name, Instant modified) throws IOException {
+        String directoryName = name.endsWith("/") ? name : name + "/";
+        byte[] encodedName = directoryName.getBytes(StandardCharsets.UTF_8);
+        long offset = position;
+        int dosTime = dosTime(modified);
+
+        ByteBuffer header = littleEndian(30 + encodedName.length);
+        header.putInt(LOCAL_HEADER_SIGNATURE)
+                .putShort((short) VERSION_DEFAULT)
+                .putShort((short) FLAG_UTF8)
+                .putShort((short) METHOD_STORED)
+                .putInt(dosTime)
+                .putInt(0)
+                .putInt(0)
+                .putInt(0)
+                .putShort((short) encodedName.length)
+                .putShort((short) 0)
+                .put(encodedName);
+        write(header);
+
+        addCentralRecord(encodedName, FLAG_UTF8, METHOD_STORED, dosTime, 0, 0, 0, offset, DOS_DIRECTORY_ATTRIBUTE);
+    }
+
+    /**
+     * Copies {@code content} into a new entry, deflating it when {@code compress} is set.
+     */
+    void addFile(String name, Instant modified, boolean compress, InputStream content) throws IOException {
+        byte[] encodedName = name.getBytes(StandardCharsets.UTF_8);
+        int flags = FLAG_UTF8 | FLAG_DATA_DESCRIPTOR;
+        int method = compress ? METHOD_DEFLATED : METHOD_STORED;
+        long offset = position;
+        int dosTime = dosTime(modified);
+
+        // Sizes are unknown up front: 0xFFFFFFFF plus an empty ZIP64 field tells readers that the
+        // data descriptor carries 8-byte sizes
+        ByteBuffer header = littleEndian(30 + encodedName.length + 20);
+        header.putInt(LOCAL_HEADER_SIGNATURE)
+                .putShort((short) VERSION_ZIP64)
+                .putShort((short) flags)
+                .putShort((short) method)
+                .putInt(dosTime)
+                .putInt(0)
+                .putInt((int) MAX_32)
+                .putInt((int) MAX_32)
+                .putShort((short) encodedName.length)
+                .putShort((short) 20)
+                .put(encodedName)
+                .putShort((short) ZIP64_EXTRA_ID)
+                .putShort((short) 16)
+                .putLong(0)
+                .putLong(0);
+        write(header);
+
+        crc.reset();
+        long dataStart = position;
+        long size = compress ? deflate(content) : store(content);
+        long compressedSize = position - dataStart;
+        long checksum = crc.getValue();
+
+        ByteBuffer descriptor = littleEndian(24);
+        descriptor.putInt(DATA_DESCRIPTOR_SIGNATURE)
+                .putInt((int) checksum)
+                .putLong(compressedSize)
+                .putLong(size);
+        write(descriptor);
+
+        addCentralRecord(encodedName, flags, method, dosTime, checksum, compressedSize, size, offset, 0);
+    }
+
+    /**
+     * Writes the central directory and end records. The underlying stream is flushed, not closed.
+     */
+    void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        long directoryOffset = position;
+        long directorySize = centralDirectory.size();
+        centralDirectory.writeTo(out);
+        position += directorySize;
+
+        boolean zip64 = entryCount >= MAX_16 || directoryOffset >= MAX_32 || directorySize >= MAX_32;
+        if (zip64) {
+            long zip64EndOffset = position;
+            ByteBuffer end64 = littleEndian(56);
+            end64.putInt(ZIP64_END_SIGNATURE)
+                    .putLong(44)
+                    .putShort((short) VERSION_ZIP64)
+                    .putShort((short) VERSION_ZIP64)
+                    .putInt(0)
+                    .putInt(0)
+                    .putLong(entryCount)
+                    .putLong(entryCount)
+                    .putLong(directorySize)
+                    .putLong(directoryOffset);
+            write(end64);
+
+            ByteBuffer locator = littleEndian(20);
+            locator.putInt(ZIP64_LOCATOR_SIGNATURE)
+                    .putInt(0)
+                    .putLong(zip64EndOffset)
+                    .putInt(1);
+            write(locator);
+        }
+
+        ByteBuffer end = littleEndian(22);
+        end.putInt(END_SIGNATURE)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putShort((short) Math.min(entryCount, MAX_16))
+                .putShort((short) Math.min(entryCount, MAX_16))
+                .putInt((int) Math.min(directorySize, MAX_32))
+                .putInt((int) Math.min(directoryOffset, MAX_32))
+                .putShort((short) 0);
+        write(end);
+        out.flush();
+    }
+
+    @Override
+    public void close() {
+        deflater.end();
+    }
+
+    private long store(InputStream content) throws IOException {
+        long total = 0;
+        int read;
+        while ((read = content.read(buffer)) != -1) {
+            crc.update(buffer, 0, read);
+            out.write(buffer, 0, read);
+            position += read;
+            total += read;
+        }
+        return total;
+    }
+
+    private long deflate(InputStream content) throws IOException {
+        deflater.reset();
+        long total = 0;
+        int read;
+        while ((read = content.read(buffer)) != -1) {
+            crc.update(buffer, 0, read);
+            total += read;
+            deflater.setInput(buffer, 0, read);
+            while (!deflater.needsInput()) {
+                drainDeflater();
+            }
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            drainDeflater();
+        }
+        return total;
+    }
+
+    private void drainDeflater() throws IOException {
+        int count = deflater.deflate(deflated, 0, deflated.length);
+        if (count > 0) {
+            out.write(deflated, 0, count);
+            position += count;
+        }
+    }
+
+    private void addCentralRecord(byte[] encodedName,
+                                  int flags,
+                                  int method,
+                                  int dosTime,
+                                  long checksum,
+                                  long compressedSize,
+                                  long size,
+                                  long offset,
+                                  int externalAttributes) {
+        // Only values that overflow their 32-bit field move to the ZIP64 extra, in this order
+        boolean largeSize = size >= MAX_32;
+        boolean largeCompressed = compressedSize >= MAX_32;
+        boolean largeOffset = offset >= MAX_32;
+        int extraLength = (largeSize ? 8 : 0) + (largeCompressed ? 8 : 0) + (largeOffset ? 8 : 0);
+        int extraBlock = extraLength == 0 ? 0 : extraLength + 4;
+        boolean zip64 = extraBlock > 0 || (flags & FLAG_DATA_DESCRIPTOR) != 0;
+
+        ByteBuffer record = littleEndian(46 + encodedName.length + extraBlock);
+        record.putInt(CENTRAL_HEADER_SIGNATURE)
+                .putShort((short) VERSION_ZIP64)
+                .putShort((short) (zip64 ? VERSION_ZIP64 : VERSION_DEFAULT))
+                .putShort((short) flags)
+                .putShort((short) method)
+                .putInt(dosTime)
+                .putInt((int) checksum)
+                .putInt((int) (largeCompressed ? MAX_32 : compressedSize))
+                .putInt((int) (largeSize ? MAX_32 : size))
+                .putShort((short) encodedName.length)
+                .putShort((short) extraBlock)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putInt(externalAttributes)
+                .putInt((int) (largeOffset ? MAX_32 : offset))
+                .put(encodedName);
+        if (extraBlock > 0) {
+            record.putShort((short) ZIP64_EXTRA_ID).putShort((short) extraLength);
+            if (largeSize) {
+                record.putLong(size);
+            }
+            if (largeCompressed) {
+                record.putLong(compressedSize);
+            }
+            if (largeOffset) {
+                record.putLong(offset);
+            }
+        }
+        centralDirectory.write(record.array(), 0, record.position());
+        entryCount++;
+    }
+
+    private void write(ByteBuffer data) throws IOException {
+        out.write(data.array(), 0, data.position());
+        position += data.position();
+    }
+
+    private static ByteBuffer littleEndian(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * MS-DOS date and time in UTC, clamped to 1980, the earliest date the format can express.
+     */
+    static int dosTime(Instant instant) {
+        LocalDateTime time = LocalDateTime.ofInstant(instant, ZoneOffset.UTC);
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        int date = ((time.getYear() - 1980) << 9) | (time.getMonthValue() << 5) | time.getDayOfMonth();
+        int clock = (time.getHour() << 11) | (time.getMinute() << 5) | (time.getSecond() / 2);
+        return (date << 16) | clock;
+    }
+}
@@ -0,0 +1,144 @@
+package com.teuportal.core.tenancy;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * In-memory slug to company id map. Known slugs and recently missed slugs are answered without
+ * touching the database; {@link CompanyDirectoryListener} invalidates entries when a company is
+ * created, renamed, deactivated or deleted on any node.
+ *
+ * <p>Slugs come from client-controlled headers, so at most {@code MAX_ENTRIES} are kept: when full,
+ * expired misses are dropped first, then a tenth of the rest, misses closest to expiring before
+ * known companies, which are simply looked up again.
+ */
+public class CompanyDirectory {
+
+    private static final Logger log = LoggerFactory.getLogger(CompanyDirectory.class);
+    static final int MAX_ENTRIES = 10_000;
+
+    private static final Comparator<Entry> EVICTION_ORDER =
+            Comparator.comparing(Entry::expiresAt, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Clock clock;
+    private final Duration negativeTtl;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    public CompanyDirectory(JdbcTemplate jdbcTemplate, Clock clock, Duration negativeTtl) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.clock = clock;
+        this.negativeTtl = negativeTtl;
+    }
+
+    public Optional<UUID> find(String slug) {
+        Entry entry = entries.get(slug);
+        if (entry != null && entry.isFresh(clock.instant())) {
+            return Optional.ofNullable(entry.companyId());
+        }
+        return load(slug);
+    }
+
+    /**
+     * Replaces the cache with every active company. Called whenever notifications may have been
+     * missed, so it also drops negative entries.
+     */
+    public void reload() {
+        long observed = generation.incrementAndGet();
+        List<Map.Entry<String, UUID>> rows = jdbcTemplate.query(
+                "SELECT id, slug FROM app.company_directory()",
+                (rs, rowNum) -> Map.entry(rs.getString("slug"), rs.getObject("id", UUID.class))
+        );
+        entries.clear();
+        if (generation.get() == observed) {
+            rows.forEach(row -> entries.put(row.getKey(), Entry.positive(row.getValue())));
+        }
+        log.info("Loaded {} companies into the directory cache", rows.size());
+    }
+
+    public void invalidate(String slug) {
+        if (slug == null) {
+            return;
+        }
+        entries.remove(slug);
+        generation.incrementAndGet();
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+        generation.incrementAndGet();
+    }
+
+    private Optional<UUID> load(String slug) {
+        long observed = generation.get();
+        UUID companyId = jdbcTemplate.queryForObject("SELECT app.resolve_company_slug(?)", UUID.class, slug);
+        Entry entry = companyId != null
+                ? Entry.positive(companyId)
+                : Entry.negative(clock.instant().plus(negativeTtl));
+        if (entries.size() >= MAX_ENTRIES) {
+            evict(clock.instant());
+        }
+        entries.put(slug, entry);
+        // An invalidation raced with the lookup; drop what we read rather than cache stale data
+        if (generation.get() != observed) {
+            entries.remove(slug, entry);
+        }
+        return Optional.ofNullable(companyId);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void evict(Instant now) {
+        // One thread evicts; the others go on and overshoot the bound by a few entries at most
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            entries.values().removeIf(entry -> !entry.isFresh(now));
+            int excess = entries.size() - MAX_ENTRIES + MAX_ENTRIES / 10;
+            if (excess <= 0) {
+                return;
+            }
+            entries.entrySet().stream()
+                    .sorted(Map.Entry.comparingByValue(EVICTION_ORDER))
+                    .limit(excess)
+                    .map(Map.Entry::getKey)
+                    .toList()
+                    .forEach(entries::remove);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private record Entry(UUID companyId, Instant expiresAt) {
+
+        static Entry positive(UUID companyId) {
+            return new Entry(companyId, null);
+        }
+
+        static Entry negative(Instant expiresAt) {
+            return new Entry(null, expiresAt);
+        }
+
+        boolean isFresh(Instant now) {
+            return expiresAt == null || now.isBefore(expiresAt);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.teuportal.core.tenancy;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.SmartLifecycle;
+
+/**
+ * Keeps one dedicated connection in {@code LISTEN company_directory} and invalidates the
+ * {@link CompanyDirectory} entries named by each notification. The connection is opened outside
+ * the pool because a pooled connection would lose its LISTEN registration on return. After every
+ * (re)connect the directory is reloaded, since notifications sent while disconnected are lost.
+ */
+public class CompanyDirectoryListener implements SmartLifecycle {
+
+    static final String CHANNEL = "company_directory";
+
+    private static final Logger log = LoggerFactory.getLogger(CompanyDirectoryListener.class);
+    private static final int POLL_TIMEOUT_MILLIS = 5_000;
+
+    private final CompanyDirectory directory;
+    private final DataSourceProperties dataSourceProperties;
+    private final ObjectMapper objectMapper;
+    private final Duration retryDelay;
+
+    private volatile boolean running;
+    private volatile Thread worker;
+
+    public CompanyDirectoryListener(CompanyDirectory directory,
+                                    DataSourceProperties dataSourceProperties,
+                                    ObjectMapper objectMapper,
+                                    Duration retryDelay) {
+        this.directory = directory;
+        this.dataSourceProperties = dataSourceProperties;
+        this.objectMapper = objectMapper;
+        this.retryDelay = retryDelay;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        worker = Thread.ofPlatform()
+                .name("company-directory-listener")
+                .daemon(true)
+                .start(this::listenLoop);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread current = worker;
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listenLoop() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(
+                    dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(),
+                    dataSourceProperties.determinePassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                directory.reload();
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        apply(notification.getParameter());
+                    }
+                }
+            } catch (SQLException | RuntimeException ex) {
+                if (!running) {
+                    return;
+                }
+                // Entries may go stale while we cannot hear notifications; fall back to lazy lookups
+                directory.invalidateAll();
+                log.warn("Company directory listener disconnected; retrying in {}", retryDelay, ex);
+                try {
+                    Thread.sleep(retryDelay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void apply(String payload) {
+        try {
+            JsonNode change = objectMapper.readTree(payload);
+            directory.invalidate(change.path("old").textValue());
+            directory.invalidate(change.path("new").textValue());
+        } catch (IOException ex) {
+            log.warn("Ignoring malformed company directory notification '{}'", payload);
+            directory.invalidateAll();
+        }
+    }
+}
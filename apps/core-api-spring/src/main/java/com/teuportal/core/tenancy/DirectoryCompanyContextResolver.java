@@ -0,0 +1,62 @@
+package com.teuportal.core.tenancy;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.util.Locale;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * Resolves the company for multi-company deployments from the slug header or, failing that, the
+ * request host ({@code <slug>.<base-domain>}). Lookups are served by {@link CompanyDirectory}.
+ */
+public class DirectoryCompanyContextResolver implements CompanyContextResolver {
+
+    private static final Pattern SLUG = Pattern.compile("[a-z0-9](?:[a-z0-9-]{0,61}[a-z0-9])?");
+
+    private final CompanyDirectory directory;
+    private final TenancyProperties properties;
+
+    public DirectoryCompanyContextResolver(CompanyDirectory directory, TenancyProperties properties) {
+        this.directory = directory;
+        this.properties = properties;
+    }
+
+    @Override
+    public UUID resolveCompanyId(HttpServletRequest request) {
+        String slug = resolveSlug(request);
+        if (slug == null || !SLUG.matcher(slug).matches()) {
+            throw new UnknownCompanyException("No company could be determined for this request");
+        }
+        return directory.find(slug)
+                .orElseThrow(() -> new UnknownCompanyException("Unknown company '" + slug + "'"));
+    }
+
+    String resolveSlug(HttpServletRequest request) {
+        String header = request.getHeader(properties.getSlugHeader());
+        if (StringUtils.hasText(header)) {
+            return header.trim().toLowerCase(Locale.ROOT);
+        }
+        String fromHost = slugFromHost(request.getServerName());
+        if (fromHost != null) {
+            return fromHost;
+        }
+        return StringUtils.hasText(properties.getDefaultSlug()) ? properties.getDefaultSlug() : null;
+    }
+
+    private String slugFromHost(String host) {
+        String baseDomain = properties.getBaseDomain();
+        if (!StringUtils.hasText(host) || !StringUtils.hasText(baseDomain)) {
+            return null;
+        }
+        String normalizedHost = host.toLowerCase(Locale.ROOT);
+        String suffix = "." + baseDomain.toLowerCase(Locale.ROOT);
+        if (!normalizedHost.endsWith(suffix)) {
+            return null;
+        }
+        String label = normalizedHost.substring(0, normalizedHost.length() - suffix.length());
+        return label.contains(".") ? null : label;
+    }
+}
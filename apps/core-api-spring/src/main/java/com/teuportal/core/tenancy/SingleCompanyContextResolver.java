@@ -8,11 +8,13 @@ import java.util.UUID;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
 @Component
+@ConditionalOnProperty(value = "app.tenancy.mode", havingValue = "single", matchIfMissing = true)
 @DependsOn("singleCompanyBootstrapper")
 public class SingleCompanyContextResolver implements CompanyContextResolver {
 
@@ -0,0 +1,41 @@
+package com.teuportal.core.tenancy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.time.Clock;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@Configuration
+@EnableConfigurationProperties(TenancyProperties.class)
+public class TenancyConfiguration {
+
+    @Configuration
+    @ConditionalOnProperty(value = "app.tenancy.mode", havingValue = "multi")
+    static class MultiCompanyConfiguration {
+
+        @Bean
+        public CompanyDirectory companyDirectory(JdbcTemplate jdbcTemplate, Clock clock, TenancyProperties properties) {
+            return new CompanyDirectory(jdbcTemplate, clock, properties.getNegativeCacheTtl());
+        }
+
+        @Bean
+        public CompanyDirectoryListener companyDirectoryListener(CompanyDirectory directory,
+                                                                 DataSourceProperties dataSourceProperties,
+                                                                 ObjectMapper objectMapper,
+                                                                 TenancyProperties properties) {
+            return new CompanyDirectoryListener(directory, dataSourceProperties, objectMapper,
+                    properties.getListenerRetryDelay());
+        }
+
+        @Bean
+        public CompanyContextResolver companyContextResolver(CompanyDirectory directory, TenancyProperties properties) {
+            return new DirectoryCompanyContextResolver(directory, properties);
+        }
+    }
+}
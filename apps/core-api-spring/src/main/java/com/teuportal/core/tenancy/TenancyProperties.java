@@ -0,0 +1,69 @@
+package com.teuportal.core.tenancy;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "app.tenancy")
+public class TenancyProperties {
+
+    public enum Mode {
+        SINGLE,
+        MULTI
+    }
+
+    private Mode mode = Mode.SINGLE;
+    private String baseDomain = "";
+    private String slugHeader = "X-Company-Slug";
+    private String defaultSlug = "";
+    private Duration negativeCacheTtl = Duration.ofSeconds(30);
+    private Duration listenerRetryDelay = Duration.ofSeconds(5);
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public String getBaseDomain() {
+        return baseDomain;
+    }
+
+    public void setBaseDomain(String baseDomain) {
+        this.baseDomain = baseDomain;
+    }
+
+    public String getSlugHeader() {
+        return slugHeader;
+    }
+
+    public void setSlugHeader(String slugHeader) {
+        this.slugHeader = slugHeader;
+    }
+
+    public String getDefaultSlug() {
+        return defaultSlug;
+    }
+
+    public void setDefaultSlug(String defaultSlug) {
+        this.defaultSlug = defaultSlug;
+    }
+
+    public Duration getNegativeCacheTtl() {
+        return negativeCacheTtl;
+    }
+
+    public void setNegativeCacheTtl(Duration negativeCacheTtl) {
+        this.negativeCacheTtl = negativeCacheTtl;
+    }
+
+    public Duration getListenerRetryDelay() {
+        return listenerRetryDelay;
+    }
+
+    public void setListenerRetryDelay(Duration listenerRetryDelay) {
+        this.listenerRetryDelay = listenerRetryDelay;
+    }
+}
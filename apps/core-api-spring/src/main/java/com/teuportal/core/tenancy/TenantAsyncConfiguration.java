@@ -0,0 +1,20 @@
+package com.teuportal.core.tenancy;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class TenantAsyncConfiguration implements WebMvcConfigurer {
+
+    private final TenantContextHolder contextHolder;
+
+    public TenantAsyncConfiguration(TenantContextHolder contextHolder) {
+        this.contextHolder = contextHolder;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new TenantCallableInterceptor(contextHolder));
+    }
+}
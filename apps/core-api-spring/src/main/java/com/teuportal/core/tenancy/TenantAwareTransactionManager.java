@@ -0,0 +1,92 @@
+package com.teuportal.core.tenancy;
+
+import com.teuportal.core.datasource.DataSourceRouteHolder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Optional;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.DelegatingTransactionDefinition;
+
+/**
+ * Applies the tenant GUCs when a transaction first acquires its connection, so a request only
+ * holds a pooled connection for the duration of its actual database work. Each transaction draws
+ * from its workload's pool; interactive read-only transactions, including every transaction
+ * started by a read-only request, are routed to the replica pool.
+ */
+public class TenantAwareTransactionManager extends JdbcTransactionManager {
+
+    private static final String APPLY_TENANT_SQL =
+            "SELECT set_config('app.company_id', ?, true), set_config('app.user_id', ?, true)";
+    private static final String APPLY_TENANT_WITH_RIGHTS_SQL =
+            "SELECT set_config('app.company_id', ?, true), set_config('app.user_id', ?, true), "
+                    + "app.bind_manage_rights(?::uuid, ?::uuid, ?)";
+
+    private final TenantContextHolder contextHolder;
+    private final DataSourceRouteHolder routeHolder;
+
+    public TenantAwareTransactionManager(DataSource dataSource,
+                                         TenantContextHolder contextHolder,
+                                         DataSourceRouteHolder routeHolder) {
+        super(dataSource);
+        this.contextHolder = contextHolder;
+        this.routeHolder = routeHolder;
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        TransactionDefinition effective = definition;
+        if (!definition.isReadOnly() && routeHolder.isReadOnlyRequest()) {
+            effective = new DelegatingTransactionDefinition(definition) {
+                @Override
+                public boolean isReadOnly() {
+                    return true;
+                }
+            };
+        }
+        routeHolder.setTransactionRoute(routeHolder.routeFor(effective.isReadOnly()));
+        try {
+            super.doBegin(transaction, effective);
+        } finally {
+            routeHolder.clearTransactionRoute();
+        }
+    }
+
+    @Override
+    protected void prepareTransactionalConnection(Connection connection, TransactionDefinition definition)
+            throws SQLException {
+        super.prepareTransactionalConnection(connection, definition);
+        Optional<TenantContext> context = contextHolder.get();
+        if (context.isPresent()) {
+            applySessionVariables(connection, context.get(), !definition.isReadOnly());
+        }
+    }
+
+    /**
+     * Write transactions of signed-in users also bind their manage rights, so policies that call
+     * {@code app.company_user_can_manage} cost one check per transaction instead of one per row.
+     */
+    private void applySessionVariables(Connection connection, TenantContext context, boolean bindRights)
+            throws SQLException {
+        boolean withRights = bindRights && context.getUserId() != null;
+        try (PreparedStatement statement = connection.prepareStatement(
+                withRights ? APPLY_TENANT_WITH_RIGHTS_SQL : APPLY_TENANT_SQL)) {
+            statement.setString(1, context.getCompanyId().toString());
+            statement.setString(2, context.getUserId() == null ? "" : context.getUserId().toString());
+            if (withRights) {
+                statement.setString(3, context.getCompanyId().toString());
+                statement.setString(4, context.getUserId().toString());
+                statement.setBoolean(5, context.canManage());
+            }
+            statement.execute();
+        } catch (SQLException ex) {
+            logger.error("Failed to apply tenant session variables", ex);
+            throw ex;
+        }
+    }
+}
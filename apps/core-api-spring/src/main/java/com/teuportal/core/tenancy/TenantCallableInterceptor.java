@@ -0,0 +1,33 @@
+package com.teuportal.core.tenancy;
+
+import java.util.concurrent.Callable;
+
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+
+/**
+ * Binds the request's tenant context on the MVC async worker that runs a {@code Callable} or
+ * {@code StreamingResponseBody}, independent of how that executor is decorated.
+ */
+public class TenantCallableInterceptor implements CallableProcessingInterceptor {
+
+    private final TenantContextHolder contextHolder;
+
+    public TenantCallableInterceptor(TenantContextHolder contextHolder) {
+        this.contextHolder = contextHolder;
+    }
+
+    @Override
+    public <T> void preProcess(NativeWebRequest request, Callable<T> task) {
+        Object context = request.getAttribute(TenantContextFilter.CONTEXT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (context instanceof TenantContext tenantContext) {
+            contextHolder.set(tenantContext);
+        }
+    }
+
+    @Override
+    public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult) {
+        contextHolder.clear();
+    }
+}
@@ -33,4 +33,12 @@ public final class TenantContext {
     public boolean hasRole(String role) {
         return role != null && roles.contains(role);
     }
+
+    /**
+     * Whether the session claims an elevated role. The database re-checks the claim once per write
+     * transaction before policies rely on it.
+     */
+    public boolean canManage() {
+        return roles.contains("ROLE_OWNER") || roles.contains("ROLE_ADMIN");
+    }
 }
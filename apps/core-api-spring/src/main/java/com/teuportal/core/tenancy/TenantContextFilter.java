@@ -6,93 +6,108 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
-import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.Collections;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.UUID;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
-import org.springframework.jdbc.core.ConnectionCallback;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.PlatformTransactionManager;
-import org.springframework.transaction.TransactionStatus;
-import org.springframework.transaction.support.TransactionCallbackWithoutResult;
-import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+/**
+ * Binds the tenant context for the request. No connection is taken here: the tenant GUCs are
+ * applied by {@link TenantAwareTransactionManager} when a transaction first acquires one, and
+ * that transaction ends with the service call rather than with the response.
+ * <p>
+ * The resolved context is kept as a request attribute and re-bound on async dispatches, so
+ * {@code DeferredResult}, {@code Callable} and SSE results are rendered with the same tenant.
+ */
 @Component
 @Order(Ordered.LOWEST_PRECEDENCE - 10)
 public class TenantContextFilter extends OncePerRequestFilter {
 
-    private static final Logger log = LoggerFactory.getLogger(TenantContextFilter.class);
+    public static final String CONTEXT_ATTRIBUTE = TenantContextFilter.class.getName() + ".CONTEXT";
+
+    // Public share links: the token names the company, whatever host the link is opened on
+    private static final String[] TENANT_FREE_PATHS = {"/s/"};
 
     private final CompanyContextResolver companyContextResolver;
     private final TenantContextHolder contextHolder;
-    private final JdbcTemplate jdbcTemplate;
-    private final TransactionTemplate transactionTemplate;
 
     public TenantContextFilter(CompanyContextResolver companyContextResolver,
-                               TenantContextHolder contextHolder,
-                               JdbcTemplate jdbcTemplate,
-                               PlatformTransactionManager transactionManager) {
+                               TenantContextHolder contextHolder) {
         this.companyContextResolver = companyContextResolver;
         this.contextHolder = contextHolder;
-        this.jdbcTemplate = jdbcTemplate;
-        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
 
-        UUID companyId = companyContextResolver.resolveCompanyId(request);
-        TenantContext context = new TenantContext(companyId, resolveUserId(), resolveRoles());
+        if (isAsyncDispatch(request) && request.getAttribute(CONTEXT_ATTRIBUTE) instanceof TenantContext dispatched) {
+            doFilterWithContext(dispatched, request, response, filterChain);
+            return;
+        }
 
+        UUID companyId;
         try {
-            transactionTemplate.execute(new TransactionCallbackWithoutResult() {
-                @Override
-                protected void doInTransactionWithoutResult(TransactionStatus status) {
-                    contextHolder.set(context);
-                    applySessionVariables(context);
-                    try {
-                        filterChain.doFilter(request, response);
-                    } catch (IOException | ServletException e) {
-                        // Wrap checked exceptions to propagate outside the transaction callback
-                        throw new TenantFilterException(e);
-                    } finally {
-                        contextHolder.clear();
-                    }
-                }
-            });
-        } catch (TenantFilterException e) {
-            Throwable cause = e.getCause();
-            if (cause instanceof ServletException servletEx) {
-                throw servletEx;
-            }
-            if (cause instanceof IOException ioEx) {
-                throw ioEx;
+            companyId = companyContextResolver.resolveCompanyId(request);
+        } catch (UnknownCompanyException ex) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        TenantPrincipal principal = resolvePrincipal();
+        if (principal != null && principal.companyId() != null && !principal.companyId().equals(companyId)) {
+            // A session issued by one company must not be replayed against another company's host
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        UUID userId = principal == null ? null : principal.userId();
+        TenantContext context = new TenantContext(companyId, userId, resolveRoles());
+        request.setAttribute(CONTEXT_ATTRIBUTE, context);
+        doFilterWithContext(context, request, response, filterChain);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (String prefix : TENANT_FREE_PATHS) {
+            if (path.startsWith(prefix)) {
+                return true;
             }
-            throw e;
         }
+        return false;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
     }
 
-    private UUID resolveUserId() {
+    private void doFilterWithContext(TenantContext context, HttpServletRequest request, HttpServletResponse response,
+                                     FilterChain filterChain) throws ServletException, IOException {
+        contextHolder.set(context);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            // Also runs when async processing starts, releasing the container thread's binding
+            contextHolder.clear();
+        }
+    }
+
+    private TenantPrincipal resolvePrincipal() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication == null || !authentication.isAuthenticated()) {
             return null;
         }
         Object principal = authentication.getPrincipal();
         if (principal instanceof TenantPrincipal tenantPrincipal) {
-            return tenantPrincipal.userId();
+            return tenantPrincipal;
         }
         // TODO: replace with real principal extraction when session auth is implemented
         return null;
@@ -107,27 +122,4 @@ public class TenantContextFilter extends OncePerRequestFilter {
                 .map(GrantedAuthority::getAuthority)
                 .collect(Collectors.toUnmodifiableSet());
     }
-
-    private void applySessionVariables(TenantContext context) {
-        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
-            try (Statement statement = connection.createStatement()) {
-                statement.execute("SET LOCAL app.company_id = '" + context.getCompanyId() + "'");
-                String userValue = context.getUserId() == null ? "" : context.getUserId().toString();
-                statement.execute("SET LOCAL app.user_id = '" + userValue + "'");
-            } catch (SQLException ex) {
-                log.error("Failed to apply tenant session variables", ex);
-                throw ex;
-            }
-            return null;
-        });
-    }
-
-    private static class TenantFilterException extends RuntimeException {
-        TenantFilterException(Throwable cause) {
-            super(cause);
-        }
-    }
 }
-
-
-
@@ -1,6 +1,8 @@
 package com.teuportal.core.tenancy;
 
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
 
 import org.springframework.stereotype.Component;
 
@@ -20,4 +22,57 @@ public class TenantContextHolder {
     public void clear() {
         current.remove();
     }
+
+    /**
+     * Runs {@code action} with {@code context} bound, restoring whatever was bound before. Child
+     * tasks only see a context through this scoped binding, so the holder can move to a
+     * {@code ScopedValue} carrier once that API is final.
+     */
+    public <T> T callWith(TenantContext context, Supplier<T> action) {
+        TenantContext previous = current.get();
+        current.set(context);
+        try {
+            return action.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * Captures the calling thread's context so {@code task} sees it on whichever thread runs it.
+     */
+    public Runnable wrap(Runnable task) {
+        TenantContext captured = current.get();
+        if (captured == null) {
+            return task;
+        }
+        return () -> callWith(captured, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    public <T> Callable<T> wrap(Callable<T> task) {
+        TenantContext captured = current.get();
+        if (captured == null) {
+            return task;
+        }
+        return () -> {
+            TenantContext previous = current.get();
+            current.set(captured);
+            try {
+                return task.call();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    private void restore(TenantContext previous) {
+        if (previous == null) {
+            current.remove();
+        } else {
+            current.set(previous);
+        }
+    }
 }
@@ -0,0 +1,23 @@
+package com.teuportal.core.tenancy;
+
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Propagates the tenant context into tasks run by the application task executor, whether it is
+ * backed by platform or virtual threads.
+ */
+@Component
+public class TenantContextTaskDecorator implements TaskDecorator {
+
+    private final TenantContextHolder holder;
+
+    public TenantContextTaskDecorator(TenantContextHolder holder) {
+        this.holder = holder;
+    }
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        return holder.wrap(runnable);
+    }
+}
@@ -4,8 +4,19 @@ import java.io.Serial;
 import java.io.Serializable;
 import java.util.UUID;
 
-public record TenantPrincipal(UUID userId) implements Serializable {
+import org.springframework.security.core.AuthenticatedPrincipal;
+
+/**
+ * Session principal. {@code companyId} is null for sessions created before it was recorded. The
+ * principal name is the user id, which keeps Spring Session's {@code principal_name} short.
+ */
+public record TenantPrincipal(UUID userId, UUID companyId) implements AuthenticatedPrincipal, Serializable {
 
     @Serial
     private static final long serialVersionUID = 1L;
-}
\ No newline at end of file
+
+    @Override
+    public String getName() {
+        return String.valueOf(userId);
+    }
+}
@@ -0,0 +1,22 @@
+package com.teuportal.core.tenancy;
+
+import com.teuportal.core.datasource.DataSourceRouteHolder;
+
+import javax.sql.DataSource;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@Configuration
+public class TenantTransactionConfiguration {
+
+    @Bean
+    @Primary
+    public PlatformTransactionManager transactionManager(DataSource dataSource,
+                                                         TenantContextHolder contextHolder,
+                                                         DataSourceRouteHolder routeHolder) {
+        return new TenantAwareTransactionManager(dataSource, contextHolder, routeHolder);
+    }
+}
@@ -0,0 +1,45 @@
+package com.teuportal.core.tenancy;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs one short transaction for a captured tenant context. Long-running producers (streamed
+ * exports, SSE feeds, background work) call this once per batch instead of holding a pooled
+ * connection for the lifetime of the response.
+ */
+@Component
+public class TenantTransactions {
+
+    private final TenantContextHolder contextHolder;
+    private final TransactionTemplate readWrite;
+    private final TransactionTemplate readOnly;
+
+    public TenantTransactions(TenantContextHolder contextHolder, PlatformTransactionManager transactionManager) {
+        this.contextHolder = contextHolder;
+        this.readWrite = new TransactionTemplate(transactionManager);
+        this.readWrite.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readOnly.setReadOnly(true);
+    }
+
+    /**
+     * Returns the calling thread's context so a producer can carry it to other threads.
+     */
+    public TenantContext capture() {
+        return contextHolder.get()
+                .orElseThrow(() -> new IllegalStateException("Tenant context is not available for this thread"));
+    }
+
+    public <T> T execute(TenantContext context, TransactionCallback<T> action) {
+        return contextHolder.callWith(context, () -> readWrite.execute(action));
+    }
+
+    public <T> T read(TenantContext context, TransactionCallback<T> action) {
+        return contextHolder.callWith(context, () -> readOnly.execute(action));
+    }
+}
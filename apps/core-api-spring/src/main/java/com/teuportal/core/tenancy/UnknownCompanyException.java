@@ -0,0 +1,11 @@
+package com.teuportal.core.tenancy;
+
+/**
+ * Raised when a request cannot be mapped to an active company.
+ */
+public class UnknownCompanyException extends RuntimeException {
+
+    public UnknownCompanyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,18 @@
+-- Keyset listing of a folder's contents: one index per sort key, each ending in id so
+-- (key, id) > (cursor) seeks straight to the next page. They replace the plain parent indexes,
+-- whose columns they lead with.
+--
+-- Name order uses a stored lower(name): lower() is not leakproof, so under RLS a predicate on
+-- lower(name) could only be applied as a filter after the policy, never as an index condition.
+
+ALTER TABLE folder ADD COLUMN sort_name text GENERATED ALWAYS AS (lower(name)) STORED;
+ALTER TABLE file ADD COLUMN sort_name text GENERATED ALWAYS AS (lower(name)) STORED;
+
+CREATE INDEX idx_folder_parent_name ON folder (company_id, parent_id, sort_name, id);
+CREATE INDEX idx_folder_parent_created ON folder (company_id, parent_id, created_at, id);
+DROP INDEX IF EXISTS idx_folder_company_parent;
+
+CREATE INDEX idx_file_folder_name ON file (company_id, folder_id, sort_name, id);
+CREATE INDEX idx_file_folder_size ON file (company_id, folder_id, size_bytes, id);
+CREATE INDEX idx_file_folder_created ON file (company_id, folder_id, created_at, id);
+DROP INDEX IF EXISTS idx_file_company_folder;
@@ -0,0 +1,214 @@
+-- Storage usage rollups maintained by triggers: file count, total bytes and the time the contents
+-- last changed, per company and per folder subtree. Each key is spread over a fixed set of shard
+-- rows picked by backend, so concurrent uploads into one folder or tenant update different rows
+-- instead of queueing on one; readers sum at most app.usage_shards() rows.
+
+CREATE TABLE company_usage (
+    company_id uuid NOT NULL REFERENCES company (id) ON DELETE CASCADE,
+    shard smallint NOT NULL,
+    file_count bigint NOT NULL DEFAULT 0,
+    total_bytes bigint NOT NULL DEFAULT 0,
+    last_modified_at timestamptz NOT NULL DEFAULT now(),
+    PRIMARY KEY (company_id, shard)
+);
+
+-- Rollups cover the whole subtree below a folder, including the folder itself
+CREATE TABLE folder_usage (
+    folder_id uuid NOT NULL REFERENCES folder (id) ON DELETE CASCADE,
+    shard smallint NOT NULL,
+    company_id uuid NOT NULL,
+    file_count bigint NOT NULL DEFAULT 0,
+    total_bytes bigint NOT NULL DEFAULT 0,
+    last_modified_at timestamptz NOT NULL DEFAULT now(),
+    PRIMARY KEY (folder_id, shard)
+);
+
+CREATE OR REPLACE FUNCTION app.usage_shards()
+RETURNS smallint
+LANGUAGE sql
+IMMUTABLE
+AS $$
+    SELECT 16::smallint
+$$;
+
+-- Concurrent transactions run on different backends, so they land on different shards
+CREATE OR REPLACE FUNCTION app.usage_shard()
+RETURNS smallint
+LANGUAGE sql
+STABLE
+AS $$
+    SELECT (pg_backend_pid() % app.usage_shards())::smallint
+$$;
+
+-- Skipped while the company itself is being deleted; its rows go with it
+CREATE OR REPLACE FUNCTION app.apply_company_usage(target_company uuid, file_delta bigint, bytes_delta bigint)
+RETURNS void
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM company WHERE id = target_company) THEN
+        RETURN;
+    END IF;
+    INSERT INTO company_usage AS u (company_id, shard, file_count, total_bytes, last_modified_at)
+    VALUES (target_company, app.usage_shard(), file_delta, bytes_delta, now())
+    ON CONFLICT (company_id, shard) DO UPDATE
+        SET file_count = u.file_count + EXCLUDED.file_count,
+            total_bytes = u.total_bytes + EXCLUDED.total_bytes,
+            last_modified_at = greatest(u.last_modified_at, EXCLUDED.last_modified_at);
+END;
+$$;
+
+-- Takes files out of the ancestry of old_folder and adds them to the ancestry of new_folder in one
+-- statement, locking the shard rows in a fixed order. Folders deleted earlier in the same
+-- statement are no longer visible and are left alone.
+CREATE OR REPLACE FUNCTION app.apply_folder_usage(target_company uuid,
+                                                  old_folder uuid, old_files bigint, old_bytes bigint,
+                                                  new_folder uuid, new_files bigint, new_bytes bigint)
+RETURNS void
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    INSERT INTO folder_usage AS u (folder_id, shard, company_id, file_count, total_bytes, last_modified_at)
+    SELECT delta.folder_id, app.usage_shard(), target_company, sum(delta.files), sum(delta.bytes), now()
+    FROM (
+        SELECT c.ancestor_id AS folder_id, -old_files AS files, -old_bytes AS bytes
+        FROM folder_closure c
+        WHERE c.descendant_id = old_folder
+        UNION ALL
+        SELECT c.ancestor_id, new_files, new_bytes
+        FROM folder_closure c
+        WHERE c.descendant_id = new_folder
+    ) delta
+    JOIN folder f ON f.id = delta.folder_id
+    GROUP BY delta.folder_id
+    ORDER BY delta.folder_id
+    ON CONFLICT (folder_id, shard) DO UPDATE
+        SET file_count = u.file_count + EXCLUDED.file_count,
+            total_bytes = u.total_bytes + EXCLUDED.total_bytes,
+            last_modified_at = greatest(u.last_modified_at, EXCLUDED.last_modified_at);
+END;
+$$;
+
+-- File writes share the folder tree lock, so a folder move never reads a subtree total while an
+-- upload is still adding to the ancestors it is about to leave
+CREATE OR REPLACE FUNCTION app.file_usage_change()
+RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    target_company uuid := COALESCE(NEW.company_id, OLD.company_id);
+    old_folder uuid;
+BEGIN
+    PERFORM app.lock_folder_tree(target_company, false);
+    IF TG_OP = 'INSERT' THEN
+        PERFORM app.apply_company_usage(target_company, 1, NEW.size_bytes);
+        PERFORM app.apply_folder_usage(target_company, NULL, 0, 0, NEW.folder_id, 1, NEW.size_bytes);
+    ELSIF TG_OP = 'DELETE' THEN
+        PERFORM app.apply_company_usage(target_company, -1, -OLD.size_bytes);
+        PERFORM app.apply_folder_usage(target_company, OLD.folder_id, 1, OLD.size_bytes, NULL, 0, 0);
+    ELSE
+        PERFORM app.apply_company_usage(target_company, 0, NEW.size_bytes - OLD.size_bytes);
+        -- A folder deletion already took its subtree out of its ancestors' rollups
+        SELECT id INTO old_folder FROM folder WHERE id = OLD.folder_id;
+        PERFORM app.apply_folder_usage(target_company, old_folder, 1, OLD.size_bytes,
+                                       NEW.folder_id, 1, NEW.size_bytes);
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+-- Runs after app.folder_closure_move has rewritten the subtree's ancestry
+CREATE OR REPLACE FUNCTION app.folder_usage_move()
+RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    moved_files bigint;
+    moved_bytes bigint;
+    old_parent uuid;
+BEGIN
+    PERFORM app.lock_folder_tree(NEW.company_id, true);
+    SELECT COALESCE(sum(file_count), 0), COALESCE(sum(total_bytes), 0)
+    INTO moved_files, moved_bytes
+    FROM folder_usage
+    WHERE folder_id = NEW.id;
+    SELECT id INTO old_parent FROM folder WHERE id = OLD.parent_id;
+    PERFORM app.apply_folder_usage(NEW.company_id, old_parent, moved_files, moved_bytes,
+                                   NEW.parent_id, moved_files, moved_bytes);
+    RETURN NULL;
+END;
+$$;
+
+-- Deleting a folder re-roots its children, so its whole subtree leaves the ancestors' rollups
+CREATE OR REPLACE FUNCTION app.folder_usage_delete()
+RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    removed_files bigint;
+    removed_bytes bigint;
+BEGIN
+    IF OLD.parent_id IS NULL THEN
+        RETURN OLD;
+    END IF;
+    PERFORM app.lock_folder_tree(OLD.company_id, true);
+    SELECT COALESCE(sum(file_count), 0), COALESCE(sum(total_bytes), 0)
+    INTO removed_files, removed_bytes
+    FROM folder_usage
+    WHERE folder_id = OLD.id;
+    PERFORM app.apply_folder_usage(OLD.company_id, OLD.parent_id, removed_files, removed_bytes, NULL, 0, 0);
+    RETURN OLD;
+END;
+$$;
+
+CREATE TRIGGER trg_file_usage_insert_delete
+    AFTER INSERT OR DELETE ON file
+    FOR EACH ROW
+    EXECUTE FUNCTION app.file_usage_change();
+
+CREATE TRIGGER trg_file_usage_update
+    AFTER UPDATE OF folder_id, size_bytes ON file
+    FOR EACH ROW
+    WHEN (OLD.folder_id IS DISTINCT FROM NEW.folder_id OR OLD.size_bytes <> NEW.size_bytes)
+    EXECUTE FUNCTION app.file_usage_change();
+
+CREATE TRIGGER trg_folder_usage_move
+    AFTER UPDATE OF parent_id ON folder
+    FOR EACH ROW
+    WHEN (OLD.parent_id IS DISTINCT FROM NEW.parent_id)
+    EXECUTE FUNCTION app.folder_usage_move();
+
+CREATE TRIGGER trg_folder_usage_delete
+    BEFORE DELETE ON folder
+    FOR EACH ROW
+    EXECUTE FUNCTION app.folder_usage_delete();
+
+-- Backfill into shard 0; FORCE would otherwise subject the migration owner to the policies
+ALTER TABLE file NO FORCE ROW LEVEL SECURITY;
+ALTER TABLE folder_closure NO FORCE ROW LEVEL SECURITY;
+INSERT INTO company_usage (company_id, shard, file_count, total_bytes, last_modified_at)
+SELECT company_id, 0, count(*), sum(size_bytes), max(updated_at)
+FROM file
+GROUP BY company_id;
+INSERT INTO folder_usage (folder_id, shard, company_id, file_count, total_bytes, last_modified_at)
+SELECT c.ancestor_id, 0, c.company_id, count(*), sum(f.size_bytes), max(f.updated_at)
+FROM file f
+JOIN folder_closure c ON c.descendant_id = f.folder_id
+GROUP BY c.ancestor_id, c.company_id;
+ALTER TABLE file FORCE ROW LEVEL SECURITY;
+ALTER TABLE folder_closure FORCE ROW LEVEL SECURITY;
+
+ALTER TABLE company_usage ENABLE ROW LEVEL SECURITY;
+ALTER TABLE company_usage FORCE ROW LEVEL SECURITY;
+CREATE POLICY company_usage_isolation ON company_usage
+    USING (company_id = app.require_company_id())
+    WITH CHECK (company_id = app.require_company_id());
+
+ALTER TABLE folder_usage ENABLE ROW LEVEL SECURITY;
+ALTER TABLE folder_usage FORCE ROW LEVEL SECURITY;
+CREATE POLICY folder_usage_isolation ON folder_usage
+    USING (company_id = app.require_company_id())
+    WITH CHECK (company_id = app.require_company_id());
+
+REVOKE ALL ON company_usage FROM PUBLIC;
+REVOKE ALL ON folder_usage FROM PUBLIC;
@@ -0,0 +1,131 @@
+-- Per-company storage quota with reservations. Uploads reserve their bytes before any data is
+-- received and settle the reservation in the transaction that records the file, or release it.
+-- The free part of the quota is held as escrow spread over app.usage_shards() rows, so parallel
+-- reservations in one tenant take from different rows; only a shard that runs dry locks them all
+-- to recompute and redistribute what is left.
+
+ALTER TABLE settings
+    ADD COLUMN storage_quota_bytes bigint CHECK (storage_quota_bytes IS NULL OR storage_quota_bytes >= 0);
+
+CREATE TABLE storage_reservation (
+    id uuid PRIMARY KEY DEFAULT gen_random_uuid(),
+    company_id uuid NOT NULL REFERENCES company (id) ON DELETE CASCADE,
+    shard smallint NOT NULL,
+    bytes bigint NOT NULL CHECK (bytes >= 0),
+    created_at timestamptz NOT NULL DEFAULT now(),
+    expires_at timestamptz NOT NULL
+);
+CREATE INDEX idx_storage_reservation_company_expires ON storage_reservation (company_id, expires_at);
+
+CREATE TABLE storage_quota_shard (
+    company_id uuid NOT NULL REFERENCES company (id) ON DELETE CASCADE,
+    shard smallint NOT NULL,
+    available_bytes bigint NOT NULL CHECK (available_bytes >= 0),
+    PRIMARY KEY (company_id, shard)
+);
+
+-- Recomputes the free quota from committed usage and live reservations and spreads it over the
+-- shards, keeping reserve_bytes back for the caller when that much is free. Returns false when it
+-- is not. Space freed by deleted files and expired reservations becomes available here.
+CREATE OR REPLACE FUNCTION app.rebalance_storage_quota(target_company uuid, reserve_bytes bigint)
+RETURNS boolean
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    quota bigint;
+    free bigint;
+    granted bigint;
+    shards smallint := app.usage_shards();
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtextextended('storage_quota:' || target_company::text, 0));
+    -- Waits for in-flight reservations, so the sums below include them
+    PERFORM 1 FROM storage_quota_shard WHERE company_id = target_company ORDER BY shard FOR UPDATE;
+
+    SELECT storage_quota_bytes INTO quota FROM settings WHERE company_id = target_company;
+    IF quota IS NULL THEN
+        DELETE FROM storage_quota_shard WHERE company_id = target_company;
+        RETURN true;
+    END IF;
+
+    SELECT quota
+           - COALESCE((SELECT sum(total_bytes) FROM company_usage WHERE company_id = target_company), 0)
+           - COALESCE((SELECT sum(bytes) FROM storage_reservation
+                       WHERE company_id = target_company AND expires_at > now()), 0)
+    INTO free;
+    free := greatest(free, 0);
+    granted := CASE WHEN free >= reserve_bytes THEN reserve_bytes ELSE 0 END;
+
+    INSERT INTO storage_quota_shard (company_id, shard, available_bytes)
+    SELECT target_company, s, (free - granted) / shards
+                              + CASE WHEN s = 0 THEN (free - granted) % shards ELSE 0 END
+    FROM generate_series(0, shards - 1) s
+    ON CONFLICT (company_id, shard) DO UPDATE SET available_bytes = EXCLUDED.available_bytes;
+
+    RETURN free >= reserve_bytes;
+END;
+$$;
+
+-- Returns the reservation id, or NULL when the quota cannot cover requested_bytes
+CREATE OR REPLACE FUNCTION app.reserve_storage(target_company uuid,
+                                               requested_bytes bigint,
+                                               reservation_expires_at timestamptz,
+                                               reservation_id uuid DEFAULT gen_random_uuid())
+RETURNS uuid
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    my_shard smallint := app.usage_shard();
+    limited boolean;
+BEGIN
+    SELECT storage_quota_bytes IS NOT NULL INTO limited FROM settings WHERE company_id = target_company;
+    IF limited THEN
+        UPDATE storage_quota_shard
+        SET available_bytes = available_bytes - requested_bytes
+        WHERE company_id = target_company
+          AND shard = my_shard
+          AND available_bytes >= requested_bytes;
+        IF NOT FOUND AND NOT app.rebalance_storage_quota(target_company, requested_bytes) THEN
+            RETURN NULL;
+        END IF;
+    END IF;
+    INSERT INTO storage_reservation (id, company_id, shard, bytes, expires_at)
+    VALUES (reservation_id, target_company, my_shard, requested_bytes, reservation_expires_at);
+    RETURN reservation_id;
+END;
+$$;
+
+-- Settles a reservation: used_bytes now count as stored and the rest goes back to the shard it
+-- came from. Finishing with 0 releases it. Unknown ids are ignored, so retries are harmless. An
+-- expired reservation was already counted as free by the last rebalance, so nothing is returned.
+CREATE OR REPLACE FUNCTION app.finish_storage_reservation(target_reservation uuid, used_bytes bigint)
+RETURNS void
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    finished storage_reservation;
+BEGIN
+    DELETE FROM storage_reservation WHERE id = target_reservation RETURNING * INTO finished;
+    IF finished.id IS NULL OR finished.expires_at <= now() THEN
+        RETURN;
+    END IF;
+    UPDATE storage_quota_shard
+    SET available_bytes = available_bytes + greatest(finished.bytes - used_bytes, 0)
+    WHERE company_id = finished.company_id
+      AND shard = finished.shard;
+END;
+$$;
+
+ALTER TABLE storage_reservation ENABLE ROW LEVEL SECURITY;
+ALTER TABLE storage_reservation FORCE ROW LEVEL SECURITY;
+CREATE POLICY storage_reservation_isolation ON storage_reservation
+    USING (company_id = app.require_company_id())
+    WITH CHECK (company_id = app.require_company_id());
+
+ALTER TABLE storage_quota_shard ENABLE ROW LEVEL SECURITY;
+ALTER TABLE storage_quota_shard FORCE ROW LEVEL SECURITY;
+CREATE POLICY storage_quota_shard_isolation ON storage_quota_shard
+    USING (company_id = app.require_company_id())
+    WITH CHECK (company_id = app.require_company_id());
+
+REVOKE ALL ON storage_reservation FROM PUBLIC;
+REVOKE ALL ON storage_quota_shard FROM PUBLIC;
@@ -0,0 +1,90 @@
+-- Name search over files and folders, in two phases: names starting with the query, in name
+-- order, then names containing a word similar to it, best match first.
+--
+-- Prefix matches are a range on sort_name in byte order. Text comparisons are leakproof, so that
+-- phase is an ordinary query under RLS and pages straight off these indexes.
+CREATE INDEX idx_file_company_name ON file (company_id, (sort_name COLLATE "C"), id);
+CREATE INDEX idx_folder_company_name ON folder (company_id, (sort_name COLLATE "C"), id);
+
+-- Similar names come from trigram indexes, led by company_id so a tenant's lookups never touch
+-- another tenant's postings
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE EXTENSION IF NOT EXISTS btree_gin;
+
+CREATE INDEX idx_file_name_trgm ON file USING gin (company_id, sort_name gin_trgm_ops);
+CREATE INDEX idx_folder_name_trgm ON folder USING gin (company_id, sort_name gin_trgm_ops);
+
+-- The trigram operators are not leakproof, so under RLS they would only ever filter rows after
+-- the policy and never use the indexes above. This runs as the owner, like
+-- app.resolve_company_slug, applies the tenant condition itself and returns only ids; callers
+-- join them back to file and folder, where the policies apply as usual.
+--
+-- Names starting with the query are left to the prefix phase. At most max_candidates names per
+-- table are ranked, so a word shared by a large part of the tenant costs no more than a rare
+-- one. Under that LIMIT the planner would rather walk the tenant in some index order and filter,
+-- which takes seconds when matches are rare, so only bitmap scans are left enabled; parallel
+-- scans stay off so every page ranks the same candidates. Client and MIME type filters only
+-- apply to files, so either one leaves folders out.
+CREATE OR REPLACE FUNCTION app.search_similar_names(
+    query text,
+    filter_client uuid,
+    filter_mime text,
+    under_folder uuid,
+    after_score real,
+    after_name text,
+    after_id uuid,
+    max_rows integer,
+    max_candidates integer
+)
+RETURNS TABLE (kind text, id uuid, score real, sort_name text)
+LANGUAGE plpgsql
+STABLE
+SECURITY DEFINER
+SET search_path = public
+SET pg_trgm.word_similarity_threshold = 0.5
+SET enable_seqscan = off
+SET enable_indexscan = off
+SET enable_indexonlyscan = off
+SET max_parallel_workers_per_gather = 0
+AS $$
+DECLARE
+    tenant uuid := app.require_company_id();
+    candidates text := ' t.id, t.sort_name FROM %s t WHERE t.company_id = $1'
+        || ' AND $2 <%% t.sort_name AND NOT starts_with(t.sort_name, $2)';
+    scope text := '';
+    file_filters text := '';
+    seek text := '';
+    sql text;
+BEGIN
+    IF under_folder IS NOT NULL THEN
+        scope := ' AND %s IN (SELECT c.descendant_id FROM folder_closure c'
+            || ' WHERE c.company_id = $1 AND c.ancestor_id = $5)';
+    END IF;
+    IF filter_client IS NOT NULL THEN
+        file_filters := file_filters || ' AND t.client_id = $3';
+    END IF;
+    IF filter_mime IS NOT NULL THEN
+        file_filters := file_filters || ' AND t.mime_type = $4';
+    END IF;
+    IF after_id IS NOT NULL THEN
+        seek := ' WHERE m.score < $6 OR (m.score = $6 AND (m.sort_name COLLATE "C", m.id) > ($7, $8))';
+    END IF;
+
+    sql := '(SELECT ''FILE''::text AS kind,' || format(candidates, 'file') || file_filters
+        || format(scope, 't.folder_id') || ' LIMIT $10)';
+    IF filter_client IS NULL AND filter_mime IS NULL THEN
+        sql := sql || ' UNION ALL (SELECT ''FOLDER''::text,' || format(candidates, 'folder')
+            || format(scope, 't.id') || CASE WHEN under_folder IS NULL THEN '' ELSE ' AND t.id <> $5' END
+            || ' LIMIT $10)';
+    END IF;
+    sql := 'SELECT m.kind, m.id, m.score, m.sort_name FROM ('
+        || 'SELECT r.kind, r.id, r.sort_name,'
+        || ' ((word_similarity($2, r.sort_name) + similarity($2, r.sort_name)) / 2)::real AS score'
+        || ' FROM (' || sql || ') r) m' || seek
+        || ' ORDER BY m.score DESC, m.sort_name COLLATE "C", m.id LIMIT $9';
+
+    RETURN QUERY EXECUTE sql
+        USING tenant, lower(query), filter_client, filter_mime, under_folder,
+              after_score, after_name, after_id, max_rows, max_candidates;
+END;
+$$;
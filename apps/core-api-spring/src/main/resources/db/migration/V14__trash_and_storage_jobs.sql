@@ -0,0 +1,186 @@
+-- Trash and background storage jobs. Deleting moves files and folder subtrees into the trash
+-- right away; rows and blobs are removed later, a bounded batch per transaction, by the storage
+-- job worker. Folder copies are filled in the same way.
+--
+-- Trashing a folder stamps every folder of its subtree, but none of its files: a file is live
+-- when its own deleted_at is NULL and its folder is live. A 200k-file folder is trashed by one
+-- UPDATE over its folders. trash_root names the folder the user deleted, so restoring it brings
+-- back exactly the folders that went with it, and not a subfolder that was trashed on its own.
+-- Trashed rows keep counting towards usage and the quota until they are purged.
+
+ALTER TABLE folder
+    ADD COLUMN deleted_at timestamptz,
+    ADD COLUMN deleted_by uuid REFERENCES company_user (id),
+    ADD COLUMN trash_root uuid;
+ALTER TABLE file
+    ADD COLUMN deleted_at timestamptz,
+    ADD COLUMN deleted_by uuid REFERENCES company_user (id);
+
+CREATE INDEX idx_folder_trash_root ON folder (company_id, deleted_at, id) WHERE trash_root = id;
+CREATE INDEX idx_file_trash ON file (company_id, deleted_at, id) WHERE deleted_at IS NOT NULL;
+
+-- A name in the trash no longer blocks a new folder of the same name; restoring it then conflicts
+DROP INDEX ux_folder_company_parent_name;
+CREATE UNIQUE INDEX ux_folder_company_parent_name
+    ON folder (company_id, COALESCE(parent_id, '00000000-0000-0000-0000-000000000000'::uuid), lower(name))
+    WHERE deleted_at IS NULL;
+
+-- Folders are only created or moved below live parents. Trashing takes the tree lock
+-- exclusively, so this check and a concurrent trash of the parent are ordered.
+CREATE OR REPLACE FUNCTION app.folder_check_parent()
+RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    IF NEW.parent_id IS NULL THEN
+        RETURN NEW;
+    END IF;
+    PERFORM app.lock_folder_tree(NEW.company_id, TG_OP = 'UPDATE');
+    IF NOT EXISTS (
+        SELECT 1 FROM folder WHERE id = NEW.parent_id AND company_id = NEW.company_id AND deleted_at IS NULL
+    ) THEN
+        RAISE EXCEPTION 'Parent folder % does not exist', NEW.parent_id
+            USING ERRCODE = 'foreign_key_violation';
+    END IF;
+    IF TG_OP = 'UPDATE' AND EXISTS (
+        SELECT 1 FROM folder_closure WHERE ancestor_id = NEW.id AND descendant_id = NEW.parent_id
+    ) THEN
+        RAISE EXCEPTION 'Folder % cannot be moved into its own subtree', NEW.id
+            USING ERRCODE = 'check_violation';
+    END IF;
+    RETURN NEW;
+END;
+$$;
+
+-- Work queue. A job belongs to one company and is claimed by one node at a time for a lease,
+-- which the worker renews with every batch; the batch also saves the job's cursor, so a job
+-- picked up again after a crash continues where its last committed batch ended.
+CREATE TABLE storage_job (
+    id uuid PRIMARY KEY DEFAULT gen_random_uuid(),
+    company_id uuid NOT NULL REFERENCES company (id) ON DELETE CASCADE,
+    kind text NOT NULL CHECK (kind IN ('PURGE', 'COPY')),
+    -- PURGE: the trashed folder, or NULL with file_ids; COPY: the folder being copied
+    folder_id uuid,
+    file_ids uuid[],
+    -- PURGE: the deleted_at stamp of the trashing, so a later trash and restore is not purged early
+    trashed_at timestamptz,
+    -- COPY: the new root folder, created when the copy was requested
+    target_folder_id uuid,
+    cursor text,
+    processed bigint NOT NULL DEFAULT 0,
+    requested_by uuid REFERENCES company_user (id) ON DELETE SET NULL,
+    run_after timestamptz NOT NULL DEFAULT now(),
+    locked_until timestamptz,
+    -- Failed batches so far; the next try waits longer after each
+    attempts integer NOT NULL DEFAULT 0,
+    last_error text,
+    failed boolean NOT NULL DEFAULT false,
+    finished_at timestamptz,
+    created_at timestamptz NOT NULL DEFAULT now()
+);
+CREATE INDEX idx_storage_job_due ON storage_job (run_after) WHERE finished_at IS NULL;
+CREATE INDEX idx_storage_job_company_kind ON storage_job (company_id, kind, run_after) WHERE finished_at IS NULL;
+CREATE INDEX idx_storage_job_finished ON storage_job (finished_at) WHERE finished_at IS NOT NULL;
+
+-- Takes the next due job of any tenant for the calling node. Runs as the owner, like
+-- app.resolve_company_slug, since the worker has no tenant until it has a job; everything the
+-- job then does runs under that job's company. Finished jobs are kept for keep_finished so their
+-- outcome can still be looked up.
+CREATE OR REPLACE FUNCTION app.claim_storage_job(lease interval, keep_finished interval)
+RETURNS SETOF storage_job
+LANGUAGE plpgsql
+SECURITY DEFINER
+SET search_path = public
+AS $$
+BEGIN
+    DELETE FROM storage_job WHERE finished_at < now() - keep_finished;
+    RETURN QUERY
+    UPDATE storage_job j
+    SET locked_until = now() + lease
+    WHERE j.id = (
+        SELECT q.id
+        FROM storage_job q
+        WHERE q.finished_at IS NULL
+          AND q.run_after <= now()
+          AND (q.locked_until IS NULL OR q.locked_until < now())
+        ORDER BY q.run_after
+        LIMIT 1
+        FOR UPDATE SKIP LOCKED
+    )
+    RETURNING j.*;
+END;
+$$;
+
+ALTER TABLE storage_job ENABLE ROW LEVEL SECURITY;
+ALTER TABLE storage_job FORCE ROW LEVEL SECURITY;
+CREATE POLICY storage_job_isolation ON storage_job
+    USING (company_id = app.require_company_id())
+    WITH CHECK (company_id = app.require_company_id());
+
+REVOKE ALL ON storage_job FROM PUBLIC;
+
+-- Name search leaves out the trash. Unchanged from V13 apart from the deleted_at conditions.
+CREATE OR REPLACE FUNCTION app.search_similar_names(
+    query text,
+    filter_client uuid,
+    filter_mime text,
+    under_folder uuid,
+    after_score real,
+    after_name text,
+    after_id uuid,
+    max_rows integer,
+    max_candidates integer
+)
+RETURNS TABLE (kind text, id uuid, score real, sort_name text)
+LANGUAGE plpgsql
+STABLE
+SECURITY DEFINER
+SET search_path = public
+SET pg_trgm.word_similarity_threshold = 0.5
+SET enable_seqscan = off
+SET enable_indexscan = off
+SET enable_indexonlyscan = off
+SET max_parallel_workers_per_gather = 0
+AS $$
+DECLARE
+    tenant uuid := app.require_company_id();
+    candidates text := ' t.id, t.sort_name FROM %s t WHERE t.company_id = $1'
+        || ' AND $2 <%% t.sort_name AND NOT starts_with(t.sort_name, $2) AND t.deleted_at IS NULL';
+    scope text := '';
+    file_filters text := ' AND NOT EXISTS (SELECT 1 FROM folder p WHERE p.id = t.folder_id'
+        || ' AND p.deleted_at IS NOT NULL)';
+    seek text := '';
+    sql text;
+BEGIN
+    IF under_folder IS NOT NULL THEN
+        scope := ' AND %s IN (SELECT c.descendant_id FROM folder_closure c'
+            || ' WHERE c.company_id = $1 AND c.ancestor_id = $5)';
+    END IF;
+    IF filter_client IS NOT NULL THEN
+        file_filters := file_filters || ' AND t.client_id = $3';
+    END IF;
+    IF filter_mime IS NOT NULL THEN
+        file_filters := file_filters || ' AND t.mime_type = $4';
+    END IF;
+    IF after_id IS NOT NULL THEN
+        seek := ' WHERE m.score < $6 OR (m.score = $6 AND (m.sort_name COLLATE "C", m.id) > ($7, $8))';
+    END IF;
+
+    sql := '(SELECT ''FILE''::text AS kind,' || format(candidates, 'file') || file_filters
+        || format(scope, 't.folder_id') || ' LIMIT $10)';
+    IF filter_client IS NULL AND filter_mime IS NULL THEN
+        sql := sql || ' UNION ALL (SELECT ''FOLDER''::text,' || format(candidates, 'folder')
+            || format(scope, 't.id') || CASE WHEN under_folder IS NULL THEN '' ELSE ' AND t.id <> $5' END
+            || ' LIMIT $10)';
+    END IF;
+    sql := 'SELECT m.kind, m.id, m.score, m.sort_name FROM ('
+        || 'SELECT r.kind, r.id, r.sort_name,'
+        || ' ((word_similarity($2, r.sort_name) + similarity($2, r.sort_name)) / 2)::real AS score'
+        || ' FROM (' || sql || ') r) m' || seek
+        || ' ORDER BY m.score DESC, m.sort_name COLLATE "C", m.id LIMIT $9';
+
+    RETURN QUERY EXECUTE sql
+        USING tenant, lower(query), filter_client, filter_mime, under_folder,
+              after_score, after_name, after_id, max_rows, max_candidates;
+END;
+$$;
@@ -0,0 +1,91 @@
+-- Background reconciliation of blobs and file rows. Each pass keeps its cursor and running totals
+-- in storage_scrub, so a pass resumes where it stopped on whichever node picks it up next; the
+-- totals of the last complete pass stay behind as its report. Rows whose blob is missing or does
+-- not match are recorded per tenant in storage_integrity_issue rather than changed.
+
+CREATE TABLE storage_scrub (
+    pass text PRIMARY KEY CHECK (pass IN ('ORPHANS', 'INTEGRITY')),
+    cursor text,
+    pass_started_at timestamptz,
+    scanned bigint NOT NULL DEFAULT 0,
+    found bigint NOT NULL DEFAULT 0,
+    reclaimed_bytes bigint NOT NULL DEFAULT 0,
+    next_run_at timestamptz NOT NULL DEFAULT now(),
+    locked_until timestamptz,
+    last_finished_at timestamptz,
+    last_scanned bigint,
+    last_found bigint,
+    last_reclaimed_bytes bigint
+);
+
+INSERT INTO storage_scrub (pass) VALUES ('ORPHANS'), ('INTEGRITY');
+
+CREATE TABLE storage_integrity_issue (
+    file_id uuid PRIMARY KEY REFERENCES file (id) ON DELETE CASCADE,
+    company_id uuid NOT NULL REFERENCES company (id) ON DELETE CASCADE,
+    storage_key text NOT NULL,
+    problem text NOT NULL CHECK (problem IN ('MISSING', 'SIZE_MISMATCH', 'CHECKSUM_MISMATCH')),
+    detected_at timestamptz NOT NULL DEFAULT now(),
+    checked_at timestamptz NOT NULL DEFAULT now()
+);
+CREATE INDEX idx_storage_integrity_issue_company ON storage_integrity_issue (company_id, detected_at DESC);
+
+ALTER TABLE storage_integrity_issue ENABLE ROW LEVEL SECURITY;
+ALTER TABLE storage_integrity_issue FORCE ROW LEVEL SECURITY;
+CREATE POLICY storage_integrity_issue_isolation ON storage_integrity_issue
+    USING (company_id = app.require_company_id())
+    WITH CHECK (company_id = app.require_company_id());
+
+REVOKE ALL ON storage_integrity_issue FROM PUBLIC;
+
+CREATE INDEX idx_upload_session_expires ON upload_session (expires_at);
+CREATE INDEX idx_storage_reservation_expires ON storage_reservation (expires_at);
+
+-- The next file rows of every tenant in id order, for the integrity pass. Runs as the owner, like
+-- app.claim_storage_job; it returns only what is needed to find and check each blob.
+CREATE OR REPLACE FUNCTION app.scrub_file_batch(after_id uuid, max_rows integer)
+RETURNS TABLE (company_id uuid, id uuid, storage_key text, size_bytes bigint, checksum text)
+LANGUAGE sql
+STABLE
+SECURITY DEFINER
+SET search_path = public
+AS $$
+    SELECT f.company_id, f.id, f.storage_key, f.size_bytes, f.checksum
+    FROM file f
+    WHERE after_id IS NULL OR f.id > after_id
+    ORDER BY f.id
+    LIMIT max_rows;
+$$;
+
+-- Deletes upload sessions and quota reservations of every tenant that expired before
+-- expired_before, and returns the deleted sessions so their part files can go too. Neither is
+-- usable once expired: sessions reject further chunks and expired reservations no longer count.
+CREATE OR REPLACE FUNCTION app.sweep_expired_uploads(expired_before timestamptz, max_rows integer)
+RETURNS SETOF uuid
+LANGUAGE plpgsql
+SECURITY DEFINER
+SET search_path = public
+AS $$
+BEGIN
+    DELETE FROM storage_reservation r
+    WHERE r.id IN (
+        SELECT q.id
+        FROM storage_reservation q
+        WHERE q.expires_at < expired_before
+        ORDER BY q.expires_at
+        LIMIT max_rows
+        FOR UPDATE SKIP LOCKED
+    );
+    RETURN QUERY
+    DELETE FROM upload_session s
+    WHERE s.id IN (
+        SELECT q.id
+        FROM upload_session q
+        WHERE q.expires_at < expired_before
+        ORDER BY q.expires_at
+        LIMIT max_rows
+        FOR UPDATE SKIP LOCKED
+    )
+    RETURNING s.id;
+END;
+$$;
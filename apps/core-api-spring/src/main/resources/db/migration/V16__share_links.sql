@@ -0,0 +1,95 @@
+-- Public share links. A link is opened without a session or company host, so its token alone
+-- has to identify the share: tokens become unique across companies, which also serves the
+-- lookups the per-company index served.
+
+DROP INDEX IF EXISTS ux_file_share_company_token;
+CREATE UNIQUE INDEX ux_file_share_token ON file_share (token);
+
+-- Resolves a link before any tenant context exists, so it runs as the owner like
+-- app.resolve_company_slug. Only shares that can be served are returned: unexpired, of a live
+-- file in an active company.
+CREATE OR REPLACE FUNCTION app.resolve_share(share_token text)
+RETURNS TABLE (
+    share_id uuid,
+    company_id uuid,
+    expires_at timestamptz,
+    passcode_protected boolean,
+    file_id uuid,
+    name text,
+    size_bytes bigint,
+    mime_type text,
+    checksum text,
+    storage_key text,
+    created_at timestamptz
+)
+LANGUAGE sql
+STABLE
+SECURITY DEFINER
+SET search_path = public
+AS $$
+    SELECT s.id, s.company_id, s.expires_at, s.passcode_hash IS NOT NULL,
+           f.id, f.name, f.size_bytes, f.mime_type, f.checksum, f.storage_key, f.created_at
+    FROM file_share s
+    JOIN file f ON f.id = s.file_id
+    JOIN company c ON c.id = s.company_id
+    WHERE s.token = share_token
+      AND (s.expires_at IS NULL OR s.expires_at > now())
+      AND c.is_active
+      AND f.deleted_at IS NULL
+      AND NOT EXISTS (SELECT 1 FROM folder d WHERE d.id = f.folder_id AND d.deleted_at IS NOT NULL);
+$$;
+
+-- Every API node caches resolved links; tell them which tokens changed, or '*' when a change
+-- may affect links that cannot be named cheaply. Delivered on commit only.
+CREATE OR REPLACE FUNCTION app.notify_share_link()
+RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    PERFORM pg_notify('share_links', OLD.token);
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER trg_file_share_notify
+    AFTER UPDATE OR DELETE ON file_share
+    FOR EACH ROW EXECUTE FUNCTION app.notify_share_link();
+
+-- Trashing or restoring a file: its links stop or start resolving
+CREATE OR REPLACE FUNCTION app.notify_file_share_links()
+RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    PERFORM pg_notify('share_links', s.token)
+    FROM file_share s
+    WHERE s.company_id = NEW.company_id
+      AND s.file_id = NEW.id;
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER trg_file_notify_share_links
+    AFTER UPDATE OF deleted_at ON file
+    FOR EACH ROW
+    WHEN (OLD.deleted_at IS DISTINCT FROM NEW.deleted_at)
+    EXECUTE FUNCTION app.notify_file_share_links();
+
+-- Trashing a folder hides every file below it, and deactivating a company all of its files
+CREATE OR REPLACE FUNCTION app.notify_all_share_links()
+RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    PERFORM pg_notify('share_links', '*');
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER trg_folder_notify_share_links
+    AFTER UPDATE OF deleted_at ON folder
+    FOR EACH STATEMENT EXECUTE FUNCTION app.notify_all_share_links();
+
+CREATE TRIGGER trg_company_notify_share_links
+    AFTER UPDATE OF is_active ON company
+    FOR EACH STATEMENT EXECUTE FUNCTION app.notify_all_share_links();
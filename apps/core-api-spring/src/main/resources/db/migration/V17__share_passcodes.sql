@@ -0,0 +1,35 @@
+-- Passcode-protected links are checked on the API nodes, which cache resolved links; the resolver
+-- returns the passcode hash itself instead of only whether there is one.
+
+DROP FUNCTION app.resolve_share(text);
+
+CREATE FUNCTION app.resolve_share(share_token text)
+RETURNS TABLE (
+    share_id uuid,
+    company_id uuid,
+    expires_at timestamptz,
+    passcode_hash text,
+    file_id uuid,
+    name text,
+    size_bytes bigint,
+    mime_type text,
+    checksum text,
+    storage_key text,
+    created_at timestamptz
+)
+LANGUAGE sql
+STABLE
+SECURITY DEFINER
+SET search_path = public
+AS $$
+    SELECT s.id, s.company_id, s.expires_at, s.passcode_hash,
+           f.id, f.name, f.size_bytes, f.mime_type, f.checksum, f.storage_key, f.created_at
+    FROM file_share s
+    JOIN file f ON f.id = s.file_id
+    JOIN company c ON c.id = s.company_id
+    WHERE s.token = share_token
+      AND (s.expires_at IS NULL OR s.expires_at > now())
+      AND c.is_active
+      AND f.deleted_at IS NULL
+      AND NOT EXISTS (SELECT 1 FROM folder d WHERE d.id = f.folder_id AND d.deleted_at IS NOT NULL);
+$$;
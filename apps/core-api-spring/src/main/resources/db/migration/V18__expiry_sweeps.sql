@@ -0,0 +1,93 @@
+-- Expired rows are deleted by the expiry sweeper in small batches. Each function deletes at most
+-- max_rows rows that expired before expired_before, oldest first, and returns how many it
+-- deleted. Rows are picked through an index on the expiry, locked with SKIP LOCKED so the sweep
+-- never waits on a request, and deleted by ctid. The sweeper runs without a tenant context, so
+-- the functions run as the owner.
+
+-- idx_file_share_company_expires leads with the company and cannot serve a sweep across tenants
+CREATE INDEX idx_file_share_expires ON file_share (expires_at) WHERE expires_at IS NOT NULL;
+
+CREATE OR REPLACE FUNCTION app.sweep_expired_file_shares(expired_before timestamptz, max_rows integer)
+RETURNS integer
+LANGUAGE plpgsql
+SECURITY DEFINER
+SET search_path = public
+AS $$
+DECLARE
+    deleted integer;
+BEGIN
+    DELETE FROM file_share
+    WHERE ctid = ANY (ARRAY(
+        SELECT s.ctid
+        FROM file_share s
+        WHERE s.expires_at < expired_before
+        ORDER BY s.expires_at
+        LIMIT max_rows
+        FOR UPDATE SKIP LOCKED
+    ));
+    GET DIAGNOSTICS deleted = ROW_COUNT;
+    RETURN deleted;
+END;
+$$;
+
+CREATE OR REPLACE FUNCTION app.sweep_expired_login_tokens(expired_before timestamptz, max_rows integer)
+RETURNS integer
+LANGUAGE plpgsql
+SECURITY DEFINER
+SET search_path = public
+AS $$
+DECLARE
+    deleted integer;
+BEGIN
+    DELETE FROM login_token
+    WHERE ctid = ANY (ARRAY(
+        SELECT t.ctid
+        FROM login_token t
+        WHERE t.expires_at < expired_before
+        ORDER BY t.expires_at
+        LIMIT max_rows
+        FOR UPDATE SKIP LOCKED
+    ));
+    GET DIAGNOSTICS deleted = ROW_COUNT;
+    RETURN deleted;
+END;
+$$;
+
+-- Spring Session keeps expiry times as epoch milliseconds; attributes go with their session
+CREATE OR REPLACE FUNCTION app.sweep_expired_sessions(expired_before timestamptz, max_rows integer)
+RETURNS integer
+LANGUAGE plpgsql
+SECURITY DEFINER
+SET search_path = public
+AS $$
+DECLARE
+    deleted integer;
+BEGIN
+    DELETE FROM spring_session
+    WHERE ctid = ANY (ARRAY(
+        SELECT s.ctid
+        FROM spring_session s
+        WHERE s.expiry_time < (extract(epoch FROM expired_before) * 1000)::bigint
+        ORDER BY s.expiry_time
+        LIMIT max_rows
+        FOR UPDATE SKIP LOCKED
+    ));
+    GET DIAGNOSTICS deleted = ROW_COUNT;
+    RETURN deleted;
+END;
+$$;
+
+-- Nodes stop serving a link when it expires on their own clock, so deleting an expired link
+-- needs no notification; a sweep batch would otherwise send one per row.
+CREATE OR REPLACE FUNCTION app.notify_share_link()
+RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    IF TG_OP = 'DELETE' AND OLD.expires_at IS NOT NULL AND OLD.expires_at <= now() THEN
+        RETURN NULL;
+    END IF;
+    PERFORM pg_notify('share_links', OLD.token);
+    RETURN NULL;
+END;
+$$;
@@ -0,0 +1,49 @@
+-- Download totals of public share links. Nodes count downloads in memory and add them here in one
+-- batched upsert per flush, so a popular link never turns its row into a per-download hot spot.
+
+CREATE TABLE file_share_stats (
+    share_id uuid PRIMARY KEY REFERENCES file_share (id) ON DELETE CASCADE,
+    company_id uuid NOT NULL REFERENCES company (id) ON DELETE CASCADE,
+    downloads bigint NOT NULL DEFAULT 0,
+    bytes_served bigint NOT NULL DEFAULT 0,
+    last_accessed_at timestamptz,
+    updated_at timestamptz NOT NULL DEFAULT now()
+);
+CREATE INDEX idx_file_share_stats_company ON file_share_stats (company_id);
+
+ALTER TABLE file_share_stats ENABLE ROW LEVEL SECURITY;
+ALTER TABLE file_share_stats FORCE ROW LEVEL SECURITY;
+CREATE POLICY file_share_stats_isolation ON file_share_stats
+    USING (company_id = app.require_company_id())
+    WITH CHECK (company_id = app.require_company_id());
+
+REVOKE ALL ON file_share_stats FROM PUBLIC;
+
+-- Adds one flush worth of counts to the totals of shares of any company, and returns how many
+-- shares were updated. The company is taken from the share itself; counts for shares deleted in
+-- the meantime are dropped. Rows are written in share order, so concurrent flushes from several
+-- nodes lock them in the same order and cannot deadlock.
+CREATE OR REPLACE FUNCTION app.record_share_downloads(share_ids uuid[], download_counts bigint[],
+                                                      served_bytes bigint[], accessed_at timestamptz[])
+RETURNS integer
+LANGUAGE plpgsql
+SECURITY DEFINER
+SET search_path = public
+AS $$
+DECLARE
+    recorded integer;
+BEGIN
+    INSERT INTO file_share_stats AS t (share_id, company_id, downloads, bytes_served, last_accessed_at)
+    SELECT s.id, s.company_id, d.downloads, d.bytes, d.accessed_at
+    FROM unnest(share_ids, download_counts, served_bytes, accessed_at) AS d (share_id, downloads, bytes, accessed_at)
+    JOIN file_share s ON s.id = d.share_id
+    ORDER BY s.id
+    ON CONFLICT (share_id) DO UPDATE
+        SET downloads = t.downloads + EXCLUDED.downloads,
+            bytes_served = t.bytes_served + EXCLUDED.bytes_served,
+            last_accessed_at = GREATEST(t.last_accessed_at, EXCLUDED.last_accessed_at),
+            updated_at = now();
+    GET DIAGNOSTICS recorded = ROW_COUNT;
+    RETURN recorded;
+END;
+$$;
@@ -0,0 +1,4 @@
+-- Completing an upload first marks its session, under the session's row lock, so chunk writes
+-- that check the mark under the same lock stop touching the part file while it is being staged
+
+ALTER TABLE upload_session ADD COLUMN completing_at timestamptz;
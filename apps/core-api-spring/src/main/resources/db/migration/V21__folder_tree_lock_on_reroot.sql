@@ -0,0 +1,28 @@
+-- Moves to the root, including the re-rooting done by ON DELETE SET NULL, rewrite the subtree's
+-- ancestry like any other move, so they take the tree lock exclusively before the early return.
+-- Otherwise app.folder_closure_move would delete ancestry that a concurrent child insert, holding
+-- the shared lock, is copying.
+CREATE OR REPLACE FUNCTION app.folder_check_parent()
+RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    PERFORM app.lock_folder_tree(NEW.company_id, TG_OP = 'UPDATE');
+    IF NEW.parent_id IS NULL THEN
+        RETURN NEW;
+    END IF;
+    IF NOT EXISTS (
+        SELECT 1 FROM folder WHERE id = NEW.parent_id AND company_id = NEW.company_id AND deleted_at IS NULL
+    ) THEN
+        RAISE EXCEPTION 'Parent folder % does not exist', NEW.parent_id
+            USING ERRCODE = 'foreign_key_violation';
+    END IF;
+    IF TG_OP = 'UPDATE' AND EXISTS (
+        SELECT 1 FROM folder_closure WHERE ancestor_id = NEW.id AND descendant_id = NEW.parent_id
+    ) THEN
+        RAISE EXCEPTION 'Folder % cannot be moved into its own subtree', NEW.id
+            USING ERRCODE = 'check_violation';
+    END IF;
+    RETURN NEW;
+END;
+$$;
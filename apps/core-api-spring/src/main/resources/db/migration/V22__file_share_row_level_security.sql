@@ -0,0 +1,6 @@
+-- V2 created file_share_isolation but never enabled row level security on file_share, so the
+-- policy did not apply and a tenant could read or revoke another tenant's links by id. Public
+-- links are resolved and swept through SECURITY DEFINER functions and keep working without a
+-- tenant context.
+ALTER TABLE file_share ENABLE ROW LEVEL SECURITY;
+ALTER TABLE file_share FORCE ROW LEVEL SECURITY;
@@ -0,0 +1,82 @@
+-- Trashing or restoring a folder, and (de)activating a company, sent '*' and cleared the share
+-- link cache of every node for every company. They now name the tokens of the shares they
+-- affect, like file trash does. The statement triggers read the changed rows from transition
+-- tables, which cannot be combined with UPDATE OF, so they fire on any update and filter the rows.
+--
+-- The functions run as the owner: file_share has row level security since V22, and a company is
+-- deactivated without a tenant context, which would hide every share from the lookup.
+
+-- Moving a file into or out of a trashed folder changes whether its links resolve, like trash
+CREATE OR REPLACE FUNCTION app.notify_file_share_links()
+RETURNS trigger
+LANGUAGE plpgsql
+SECURITY DEFINER
+SET search_path = public
+AS $$
+BEGIN
+    PERFORM pg_notify('share_links', s.token)
+    FROM file_share s
+    WHERE s.company_id = NEW.company_id
+      AND s.file_id = NEW.id;
+    RETURN NULL;
+END;
+$$;
+
+DROP TRIGGER trg_file_notify_share_links ON file;
+
+CREATE TRIGGER trg_file_notify_share_links
+    AFTER UPDATE OF deleted_at, folder_id ON file
+    FOR EACH ROW
+    WHEN (OLD.deleted_at IS DISTINCT FROM NEW.deleted_at OR OLD.folder_id IS DISTINCT FROM NEW.folder_id)
+    EXECUTE FUNCTION app.notify_file_share_links();
+
+-- Trash stamps every folder of the subtree, so the changed folders hold exactly the files whose
+-- links stop or start resolving
+CREATE OR REPLACE FUNCTION app.notify_folder_share_links()
+RETURNS trigger
+LANGUAGE plpgsql
+SECURITY DEFINER
+SET search_path = public
+AS $$
+BEGIN
+    PERFORM pg_notify('share_links', s.token)
+    FROM new_rows n
+    JOIN old_rows o ON o.id = n.id
+    JOIN file f ON f.company_id = n.company_id AND f.folder_id = n.id
+    JOIN file_share s ON s.company_id = f.company_id AND s.file_id = f.id
+    WHERE o.deleted_at IS DISTINCT FROM n.deleted_at;
+    RETURN NULL;
+END;
+$$;
+
+DROP TRIGGER trg_folder_notify_share_links ON folder;
+
+CREATE TRIGGER trg_folder_notify_share_links
+    AFTER UPDATE ON folder
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION app.notify_folder_share_links();
+
+CREATE OR REPLACE FUNCTION app.notify_company_share_links()
+RETURNS trigger
+LANGUAGE plpgsql
+SECURITY DEFINER
+SET search_path = public
+AS $$
+BEGIN
+    PERFORM pg_notify('share_links', s.token)
+    FROM new_rows n
+    JOIN old_rows o ON o.id = n.id
+    JOIN file_share s ON s.company_id = n.id
+    WHERE o.is_active IS DISTINCT FROM n.is_active;
+    RETURN NULL;
+END;
+$$;
+
+DROP TRIGGER trg_company_notify_share_links ON company;
+
+CREATE TRIGGER trg_company_notify_share_links
+    AFTER UPDATE ON company
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION app.notify_company_share_links();
+
+DROP FUNCTION app.notify_all_share_links();
@@ -0,0 +1,46 @@
+-- Company directory lookups for multi-company deployments
+
+-- Slug lookups run before any tenant context exists, so they bypass the company policy
+CREATE OR REPLACE FUNCTION app.resolve_company_slug(target_slug text)
+RETURNS uuid
+LANGUAGE sql
+STABLE
+SECURITY DEFINER
+SET search_path = public
+AS $$
+    SELECT id FROM company WHERE slug = target_slug AND is_active;
+$$;
+
+CREATE OR REPLACE FUNCTION app.company_directory()
+RETURNS TABLE (id uuid, slug text)
+LANGUAGE sql
+STABLE
+SECURITY DEFINER
+SET search_path = public
+AS $$
+    SELECT c.id, c.slug FROM company c WHERE c.is_active;
+$$;
+
+-- Tell every API node which slugs changed; delivered on commit only
+CREATE OR REPLACE FUNCTION app.notify_company_directory()
+RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    old_slug text;
+    new_slug text;
+BEGIN
+    IF TG_OP <> 'INSERT' THEN
+        old_slug := OLD.slug;
+    END IF;
+    IF TG_OP <> 'DELETE' THEN
+        new_slug := NEW.slug;
+    END IF;
+    PERFORM pg_notify('company_directory', json_build_object('old', old_slug, 'new', new_slug)::text);
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER trg_company_notify_directory
+    AFTER INSERT OR DELETE OR UPDATE OF slug, is_active ON company
+    FOR EACH ROW EXECUTE FUNCTION app.notify_company_directory();
@@ -0,0 +1,41 @@
+-- Rewrite the tenancy helpers as STABLE SQL functions the planner can inline into policies.
+-- Inlined, `company_id = app.require_company_id()` becomes a stable comparison that is
+-- evaluated once per scan and can drive the (company_id, ...) indexes.
+
+CREATE OR REPLACE FUNCTION app.current_company_id()
+RETURNS uuid
+LANGUAGE sql
+STABLE
+PARALLEL SAFE
+AS $$
+    SELECT NULLIF(current_setting('app.company_id', true), '')::uuid;
+$$;
+
+CREATE OR REPLACE FUNCTION app.current_user_id()
+RETURNS uuid
+LANGUAGE sql
+STABLE
+PARALLEL SAFE
+AS $$
+    SELECT NULLIF(current_setting('app.user_id', true), '')::uuid;
+$$;
+
+-- Only reached when the GUC is missing; plpgsql keeps the hard failure out of the inlined path
+CREATE OR REPLACE FUNCTION app.missing_company_id()
+RETURNS uuid
+LANGUAGE plpgsql
+STABLE
+AS $$
+BEGIN
+    RAISE EXCEPTION 'app.company_id must be set for this transaction';
+END;
+$$;
+
+-- SECURITY DEFINER and SET search_path both block inlining; the body only reads a GUC
+CREATE OR REPLACE FUNCTION app.require_company_id()
+RETURNS uuid
+LANGUAGE sql
+STABLE
+AS $$
+    SELECT COALESCE(app.current_company_id(), app.missing_company_id());
+$$;
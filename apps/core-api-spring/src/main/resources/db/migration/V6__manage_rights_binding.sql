@@ -0,0 +1,63 @@
+-- Validate manage rights once per transaction instead of probing company_user for every written row
+
+-- The original membership probe, kept for transactions that never bound their rights
+CREATE OR REPLACE FUNCTION app.probe_company_manage(target_company uuid)
+RETURNS boolean
+LANGUAGE sql
+STABLE
+SECURITY DEFINER
+SET search_path = public
+AS $$
+    SELECT EXISTS (
+        SELECT 1
+        FROM company_user cu
+        WHERE cu.id = app.current_user_id()
+          AND cu.company_id = target_company
+          AND cu.role IN ('OWNER', 'ADMIN')
+    );
+$$;
+
+-- Called by the API when a write transaction starts. A caller that does not claim an elevated
+-- role is recorded as non-managing without a lookup; a claimed role is checked once.
+-- The result is bound to the company/user pair so a later change of either GUC falls back to
+-- the probe.
+CREATE OR REPLACE FUNCTION app.bind_manage_rights(target_company uuid, actor uuid, claimed boolean)
+RETURNS boolean
+LANGUAGE plpgsql
+SECURITY DEFINER
+SET search_path = public
+AS $$
+DECLARE
+    allowed boolean := false;
+BEGIN
+    IF target_company IS NULL OR actor IS NULL THEN
+        RETURN false;
+    END IF;
+    IF claimed THEN
+        allowed := EXISTS (
+            SELECT 1
+            FROM company_user cu
+            WHERE cu.id = actor
+              AND cu.company_id = target_company
+              AND cu.role IN ('OWNER', 'ADMIN')
+        );
+    END IF;
+    PERFORM set_config('app.manage_rights',
+            target_company::text || ':' || actor::text || ':' || CASE WHEN allowed THEN '1' ELSE '0' END,
+            true);
+    RETURN allowed;
+END;
+$$;
+
+-- Inlinable: a string comparison per row when rights are bound, the probe otherwise
+CREATE OR REPLACE FUNCTION app.company_user_can_manage(target_company uuid)
+RETURNS boolean
+LANGUAGE sql
+STABLE
+AS $$
+    SELECT CASE current_setting('app.manage_rights', true)
+        WHEN target_company::text || ':' || app.current_user_id()::text || ':1' THEN true
+        WHEN target_company::text || ':' || app.current_user_id()::text || ':0' THEN false
+        ELSE app.probe_company_manage(target_company)
+    END;
+$$;
@@ -0,0 +1,8 @@
+-- Content-addressed blobs: several file rows may share one storage key within a tenant
+
+DROP INDEX IF EXISTS ux_file_company_storage;
+CREATE INDEX idx_file_company_storage ON file (company_id, storage_key);
+
+-- V2 created file_isolation but never switched RLS on for the table
+ALTER TABLE file ENABLE ROW LEVEL SECURITY;
+ALTER TABLE file FORCE ROW LEVEL SECURITY;
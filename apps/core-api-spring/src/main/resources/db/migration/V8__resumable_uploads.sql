@@ -0,0 +1,43 @@
+-- Resumable uploads: a session declares the final size, chunks arrive in any order and are
+-- recorded once their bytes are durable in the session's part file
+
+CREATE TABLE upload_session (
+    id uuid PRIMARY KEY DEFAULT gen_random_uuid(),
+    company_id uuid NOT NULL REFERENCES company (id) ON DELETE CASCADE,
+    folder_id uuid REFERENCES folder (id) ON DELETE SET NULL,
+    name text NOT NULL,
+    mime_type text NOT NULL,
+    size_bytes bigint NOT NULL CHECK (size_bytes >= 0),
+    chunk_size integer NOT NULL CHECK (chunk_size > 0),
+    chunk_count integer NOT NULL CHECK (chunk_count >= 0),
+    file_id uuid REFERENCES file (id) ON DELETE SET NULL,
+    created_by uuid REFERENCES company_user (id),
+    created_at timestamptz NOT NULL DEFAULT now(),
+    expires_at timestamptz NOT NULL,
+    completed_at timestamptz
+);
+CREATE INDEX idx_upload_session_company ON upload_session (company_id);
+CREATE INDEX idx_upload_session_open_expiry ON upload_session (expires_at) WHERE completed_at IS NULL;
+
+CREATE TABLE upload_chunk (
+    session_id uuid NOT NULL REFERENCES upload_session (id) ON DELETE CASCADE,
+    company_id uuid NOT NULL REFERENCES company (id) ON DELETE CASCADE,
+    chunk_index integer NOT NULL CHECK (chunk_index >= 0),
+    size_bytes integer NOT NULL CHECK (size_bytes >= 0),
+    received_at timestamptz NOT NULL DEFAULT now(),
+    PRIMARY KEY (session_id, chunk_index)
+);
+
+ALTER TABLE upload_session ENABLE ROW LEVEL SECURITY;
+ALTER TABLE upload_session FORCE ROW LEVEL SECURITY;
+CREATE POLICY upload_session_isolation ON upload_session
+    USING (company_id = app.require_company_id())
+    WITH CHECK (company_id = app.require_company_id());
+
+ALTER TABLE upload_chunk ENABLE ROW LEVEL SECURITY;
+ALTER TABLE upload_chunk FORCE ROW LEVEL SECURITY;
+CREATE POLICY upload_chunk_isolation ON upload_chunk
+    USING (company_id = app.require_company_id())
+    WITH CHECK (company_id = app.require_company_id());
+
+REVOKE ALL ON upload_session, upload_chunk FROM PUBLIC;
@@ -0,0 +1,125 @@
+-- Folder ancestry as a closure table: one row per (ancestor, descendant) pair, including each
+-- folder paired with itself at depth 0. Subtree listings, breadcrumbs and subtree moves become
+-- single indexed statements regardless of tree depth.
+
+CREATE TABLE folder_closure (
+    company_id uuid NOT NULL REFERENCES company (id) ON DELETE CASCADE,
+    ancestor_id uuid NOT NULL REFERENCES folder (id) ON DELETE CASCADE,
+    descendant_id uuid NOT NULL REFERENCES folder (id) ON DELETE CASCADE,
+    depth integer NOT NULL CHECK (depth >= 0),
+    PRIMARY KEY (ancestor_id, descendant_id)
+);
+CREATE INDEX idx_folder_closure_descendant ON folder_closure (descendant_id, depth);
+
+-- Tree writes within a tenant: inserts share the lock, moves take it exclusively so a concurrent
+-- insert never copies a parent's ancestry that a move is rewriting
+CREATE OR REPLACE FUNCTION app.lock_folder_tree(target_company uuid, exclusive boolean)
+RETURNS void
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    IF exclusive THEN
+        PERFORM pg_advisory_xact_lock(hashtextextended('folder_tree:' || target_company::text, 0));
+    ELSE
+        PERFORM pg_advisory_xact_lock_shared(hashtextextended('folder_tree:' || target_company::text, 0));
+    END IF;
+END;
+$$;
+
+-- Foreign keys ignore RLS, so a parent is only accepted if it belongs to the same company
+CREATE OR REPLACE FUNCTION app.folder_check_parent()
+RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    IF NEW.parent_id IS NULL THEN
+        RETURN NEW;
+    END IF;
+    PERFORM app.lock_folder_tree(NEW.company_id, TG_OP = 'UPDATE');
+    IF NOT EXISTS (SELECT 1 FROM folder WHERE id = NEW.parent_id AND company_id = NEW.company_id) THEN
+        RAISE EXCEPTION 'Parent folder % does not exist', NEW.parent_id
+            USING ERRCODE = 'foreign_key_violation';
+    END IF;
+    IF TG_OP = 'UPDATE' AND EXISTS (
+        SELECT 1 FROM folder_closure WHERE ancestor_id = NEW.id AND descendant_id = NEW.parent_id
+    ) THEN
+        RAISE EXCEPTION 'Folder % cannot be moved into its own subtree', NEW.id
+            USING ERRCODE = 'check_violation';
+    END IF;
+    RETURN NEW;
+END;
+$$;
+
+CREATE OR REPLACE FUNCTION app.folder_closure_insert()
+RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    INSERT INTO folder_closure (company_id, ancestor_id, descendant_id, depth)
+    SELECT NEW.company_id, NEW.id, NEW.id, 0
+    UNION ALL
+    SELECT NEW.company_id, ancestor_id, NEW.id, depth + 1
+    FROM folder_closure
+    WHERE descendant_id = NEW.parent_id;
+    RETURN NULL;
+END;
+$$;
+
+-- Detaches the subtree from its old ancestors and attaches it below the new parent. Also runs
+-- when deleting a folder sets its children's parent_id to NULL.
+CREATE OR REPLACE FUNCTION app.folder_closure_move()
+RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    DELETE FROM folder_closure
+    WHERE descendant_id IN (SELECT descendant_id FROM folder_closure WHERE ancestor_id = NEW.id)
+      AND ancestor_id IN (SELECT ancestor_id FROM folder_closure WHERE descendant_id = NEW.id AND depth > 0);
+
+    INSERT INTO folder_closure (company_id, ancestor_id, descendant_id, depth)
+    SELECT NEW.company_id, above.ancestor_id, below.descendant_id, above.depth + below.depth + 1
+    FROM folder_closure above
+    CROSS JOIN folder_closure below
+    WHERE above.descendant_id = NEW.parent_id
+      AND below.ancestor_id = NEW.id;
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER trg_folder_check_parent
+    BEFORE INSERT OR UPDATE OF parent_id ON folder
+    FOR EACH ROW
+    EXECUTE FUNCTION app.folder_check_parent();
+
+CREATE TRIGGER trg_folder_closure_insert
+    AFTER INSERT ON folder
+    FOR EACH ROW
+    EXECUTE FUNCTION app.folder_closure_insert();
+
+CREATE TRIGGER trg_folder_closure_move
+    AFTER UPDATE OF parent_id ON folder
+    FOR EACH ROW
+    WHEN (OLD.parent_id IS DISTINCT FROM NEW.parent_id)
+    EXECUTE FUNCTION app.folder_closure_move();
+
+-- Backfill existing trees; FORCE would otherwise subject the migration owner to the policies
+ALTER TABLE folder NO FORCE ROW LEVEL SECURITY;
+INSERT INTO folder_closure (company_id, ancestor_id, descendant_id, depth)
+WITH RECURSIVE tree AS (
+    SELECT company_id, id AS ancestor_id, id AS descendant_id, 0 AS depth
+    FROM folder
+    UNION ALL
+    SELECT f.company_id, tree.ancestor_id, f.id, tree.depth + 1
+    FROM tree
+    JOIN folder f ON f.parent_id = tree.descendant_id
+)
+SELECT company_id, ancestor_id, descendant_id, depth FROM tree;
+ALTER TABLE folder FORCE ROW LEVEL SECURITY;
+
+ALTER TABLE folder_closure ENABLE ROW LEVEL SECURITY;
+ALTER TABLE folder_closure FORCE ROW LEVEL SECURITY;
+CREATE POLICY folder_closure_isolation ON folder_closure
+    USING (company_id = app.require_company_id())
+    WITH CHECK (company_id = app.require_company_id());
+
+REVOKE ALL ON folder_closure FROM PUBLIC;
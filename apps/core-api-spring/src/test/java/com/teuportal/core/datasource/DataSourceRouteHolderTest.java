@@ -0,0 +1,41 @@
+package com.teuportal.core.datasource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class DataSourceRouteHolderTest {
+
+    private final DataSourceRouteHolder routeHolder = new DataSourceRouteHolder();
+
+    // Interactive work splits between primary and replica; the other workloads keep their own pool.
+    @Test
+    void routesByWorkload() {
+        assertThat(routeHolder.routeFor(false)).isEqualTo(DataSourceRoute.PRIMARY);
+        assertThat(routeHolder.routeFor(true)).isEqualTo(DataSourceRoute.REPLICA);
+
+        routeHolder.setWorkload(Workload.AUTH);
+        assertThat(routeHolder.routeFor(false)).isEqualTo(DataSourceRoute.AUTH);
+        assertThat(routeHolder.routeFor(true)).isEqualTo(DataSourceRoute.AUTH);
+
+        routeHolder.setWorkload(Workload.BACKGROUND);
+        assertThat(routeHolder.routeFor(false)).isEqualTo(DataSourceRoute.BACKGROUND);
+        assertThat(routeHolder.routeFor(true)).isEqualTo(DataSourceRoute.BACKGROUND);
+
+        routeHolder.clearWorkload();
+        assertThat(routeHolder.currentWorkload()).isEqualTo(Workload.INTERACTIVE);
+    }
+
+    // callAs switches the workload for the action only, restoring the outer one, even when nested.
+    @Test
+    void callAsRestoresPreviousWorkload() {
+        DataSourceRoute nested = routeHolder.callAs(Workload.BACKGROUND, () -> {
+            DataSourceRoute inner = routeHolder.callAs(Workload.AUTH, () -> routeHolder.routeFor(true));
+            assertThat(routeHolder.currentWorkload()).isEqualTo(Workload.BACKGROUND);
+            return inner;
+        });
+
+        assertThat(nested).isEqualTo(DataSourceRoute.AUTH);
+        assertThat(routeHolder.currentWorkload()).isEqualTo(Workload.INTERACTIVE);
+    }
+}
@@ -0,0 +1,93 @@
+package com.teuportal.core.datasource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+class ReadOnlyRequestInterceptorTest {
+
+    private final DataSourceRouteHolder routeHolder = new DataSourceRouteHolder();
+    private final ReadOnlyRequestInterceptor interceptor = new ReadOnlyRequestInterceptor(routeHolder);
+
+    // GET and HEAD are read-only by default; other methods are not.
+    @Test
+    void safeMethodsAreReadOnly() throws Exception {
+        HandlerMethod handler = handler(new PlainController(), "plain");
+
+        assertThat(readOnly("GET", handler)).isTrue();
+        assertThat(readOnly("HEAD", handler)).isTrue();
+        assertThat(readOnly("POST", handler)).isFalse();
+        assertThat(readOnly("DELETE", handler)).isFalse();
+    }
+
+    // A method annotation overrides the default in either direction.
+    @Test
+    void methodAnnotationOverridesDefault() throws Exception {
+        assertThat(readOnly("GET", handler(new PlainController(), "writesOnGet"))).isFalse();
+        assertThat(readOnly("POST", handler(new PlainController(), "readsOnPost"))).isTrue();
+    }
+
+    // A class annotation applies to every handler, unless the method says otherwise.
+    @Test
+    void classAnnotationAppliesUnlessMethodOverrides() throws Exception {
+        assertThat(readOnly("GET", handler(new WritingController(), "plain"))).isFalse();
+        assertThat(readOnly("GET", handler(new WritingController(), "reads"))).isTrue();
+    }
+
+    // The flag is cleared when the request completes and when the thread hands off to async processing.
+    @Test
+    void clearsOnCompletionAndAsyncStart() throws Exception {
+        HandlerMethod handler = handler(new PlainController(), "plain");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        interceptor.preHandle(request, response, handler);
+        interceptor.afterConcurrentHandlingStarted(request, response, handler);
+        assertThat(routeHolder.isReadOnlyRequest()).isFalse();
+
+        interceptor.preHandle(request, response, handler);
+        interceptor.afterCompletion(request, response, handler, null);
+        assertThat(routeHolder.isReadOnlyRequest()).isFalse();
+    }
+
+    private boolean readOnly(String method, Object handler) {
+        interceptor.preHandle(new MockHttpServletRequest(method, "/"), new MockHttpServletResponse(), handler);
+        try {
+            return routeHolder.isReadOnlyRequest();
+        } finally {
+            routeHolder.clearReadOnlyRequest();
+        }
+    }
+
+    private static HandlerMethod handler(Object controller, String method) throws NoSuchMethodException {
+        return new HandlerMethod(controller, controller.getClass().getDeclaredMethod(method));
+    }
+
+    static class PlainController {
+
+        void plain() {
+        }
+
+        @ReadOnlyRequest(false)
+        void writesOnGet() {
+        }
+
+        @ReadOnlyRequest
+        void readsOnPost() {
+        }
+    }
+
+    @ReadOnlyRequest(false)
+    static class WritingController {
+
+        void plain() {
+        }
+
+        @ReadOnlyRequest
+        void reads() {
+        }
+    }
+}
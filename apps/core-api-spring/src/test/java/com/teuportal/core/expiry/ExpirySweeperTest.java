@@ -0,0 +1,75 @@
+package com.teuportal.core.expiry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class ExpirySweeperTest {
+
+    private static final Instant NOW = Instant.parse("2026-03-01T12:00:00Z");
+
+    // Batches are deleted until one comes back short, and each is counted under its table.
+    @Test
+    void sweepsUntilABatchComesBackShort() throws InterruptedException {
+        FakeSweep sweep = new FakeSweep(Duration.ofDays(7), 500, 500, 20);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ExpirySweeper sweeper = sweeper(sweep, registry);
+
+        assertThat(sweeper.sweep(sweep)).isEqualTo(1020);
+
+        assertThat(sweep.calls).containsExactly(NOW.minus(Duration.ofDays(7)), NOW.minus(Duration.ofDays(7)),
+                NOW.minus(Duration.ofDays(7)));
+        assertThat(registry.get("expiry.sweep.deleted").tag("table", "file_share").counter().count()).isEqualTo(1020);
+        assertThat(registry.get("expiry.sweep.batch").tag("table", "file_share").timer().count()).isEqualTo(3);
+        assertThat(registry.get("expiry.sweep.last.completed").tag("table", "file_share").gauge().value())
+                .isEqualTo(NOW.getEpochSecond());
+    }
+
+    private static ExpirySweeper sweeper(ExpiredRowSweep sweep, SimpleMeterRegistry registry) {
+        ExpiryProperties properties = new ExpiryProperties();
+        properties.setBatchSize(500);
+        properties.setBatchPause(Duration.ZERO);
+        return new ExpirySweeper(List.of(sweep), null, null, mock(PlatformTransactionManager.class), registry,
+                Clock.fixed(NOW, ZoneOffset.UTC), properties);
+    }
+
+    private static final class FakeSweep implements ExpiredRowSweep {
+
+        private final Duration retention;
+        private final Deque<Integer> batches = new ArrayDeque<>();
+        private final List<Instant> calls = new ArrayList<>();
+
+        FakeSweep(Duration retention, Integer... batches) {
+            this.retention = retention;
+            this.batches.addAll(List.of(batches));
+        }
+
+        @Override
+        public String table() {
+            return "file_share";
+        }
+
+        @Override
+        public Duration retention() {
+            return retention;
+        }
+
+        @Override
+        public int deleteBatch(Instant expiredBefore, int maxRows) {
+            calls.add(expiredBefore);
+            return batches.isEmpty() ? 0 : batches.poll();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.teuportal.core.mail;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+class PlatformThreadEmailSenderTest {
+
+    // Delivery requested from a virtual thread runs on a platform thread.
+    @Test
+    void sendRunsDelegateOnPlatformThread() throws Exception {
+        AtomicReference<Thread> deliveryThread = new AtomicReference<>();
+        try (PlatformThreadEmailSender sender = new PlatformThreadEmailSender(
+                message -> deliveryThread.set(Thread.currentThread()), 1)) {
+
+            Thread caller = Thread.ofVirtual().start(() ->
+                    sender.send(EmailMessage.text(List.of("dev@example.com"), "Subject", "Body")));
+            caller.join();
+        }
+
+        assertThat(deliveryThread.get()).isNotNull();
+        assertThat(deliveryThread.get().isVirtual()).isFalse();
+    }
+
+    // Delivery exceptions still reach the caller unchanged.
+    @Test
+    void sendPropagatesDelegateFailure() {
+        try (PlatformThreadEmailSender sender = new PlatformThreadEmailSender(message -> {
+            throw new EmailDeliveryException("fail", new RuntimeException("boom"));
+        }, 1)) {
+            assertThatThrownBy(() -> sender.send(EmailMessage.text(List.of("dev@example.com"), "Subject", "Body")))
+                    .isInstanceOf(EmailDeliveryException.class)
+                    .hasMessageContaining("fail");
+        }
+    }
+}
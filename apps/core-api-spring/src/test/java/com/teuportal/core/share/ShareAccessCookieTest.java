@@ -0,0 +1,68 @@
+package com.teuportal.core.share;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.teuportal.core.storage.FileDownload;
+import com.teuportal.core.storage.SigningKeys;
+import com.teuportal.core.storage.StorageProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+
+class ShareAccessCookieTest {
+
+    private static final Instant NOW = Instant.parse("2026-03-01T12:00:00Z");
+
+    // A cookie opens its link until it expires, and only while the passcode is unchanged.
+    @Test
+    void validUntilExpiryOrPasscodeChange() {
+        ShareAccessCookie cookie = new ShareAccessCookie(keys("k1"));
+        SharedFile share = share(UUID.randomUUID(), "$2a$10$first");
+        String value = cookie.value(share, NOW.plusSeconds(60));
+
+        assertThat(cookie.isValid(share, value, NOW)).isTrue();
+        assertThat(cookie.isValid(share, value, NOW.plusSeconds(60))).isFalse();
+        assertThat(cookie.isValid(share(share.shareId(), "$2a$10$second"), value, NOW)).isFalse();
+        assertThat(cookie.isValid(share(UUID.randomUUID(), "$2a$10$first"), value, NOW)).isFalse();
+    }
+
+    // Knowing the passcode hash, as the old scheme's key, is not enough to mint a cookie.
+    @Test
+    void passcodeHashCannotMintCookies() throws Exception {
+        ShareAccessCookie cookie = new ShareAccessCookie(keys("k1"));
+        SharedFile share = share(UUID.randomUUID(), "$2a$10$first");
+        long expiry = NOW.plusSeconds(60).getEpochSecond();
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(share.passcodeHash().getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        String forged = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(mac.doFinal((share.shareId() + "|" + expiry).getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(cookie.isValid(share, expiry + "." + forged, NOW)).isFalse();
+        assertThat(cookie.isValid(share, "k1." + expiry + "." + forged, NOW)).isFalse();
+        assertThat(new ShareAccessCookie(keys("other")).isValid(share, cookie.value(share, NOW.plusSeconds(60)), NOW))
+                .isFalse();
+    }
+
+    private static SigningKeys keys(String id) {
+        StorageProperties.SignedUrls properties = new StorageProperties.SignedUrls();
+        byte[] secret = new byte[32];
+        secret[0] = (byte) id.hashCode();
+        properties.setKeys(List.of(id + ":" + Base64.getEncoder().encodeToString(secret)));
+        return new SigningKeys(properties);
+    }
+
+    private static SharedFile share(UUID shareId, String passcodeHash) {
+        FileDownload file = new FileDownload(UUID.randomUUID(), "report.pdf", 10, "application/pdf", "ab".repeat(32),
+                "key", OffsetDateTime.now(ZoneOffset.UTC));
+        return new SharedFile(shareId, UUID.randomUUID(), null, passcodeHash, file);
+    }
+}
@@ -0,0 +1,127 @@
+package com.teuportal.core.share;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ShareAttemptLimiterTest {
+
+    private MutableClock clock;
+    private ShareProperties.Passcode properties;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+        properties = new ShareProperties.Passcode();
+        properties.setFreeAttempts(3);
+        properties.setBaseLockout(Duration.ofSeconds(1));
+        properties.setMaxLockout(Duration.ofSeconds(10));
+    }
+
+    // Past the free attempts each attempt doubles the lockout, up to the maximum.
+    @Test
+    void locksOutExponentially() {
+        ShareAttemptLimiter limiter = new ShareAttemptLimiter(clock, properties);
+
+        assertThat(limiter.tryAcquire("link", "10.0.0.1")).isZero();
+        assertThat(limiter.tryAcquire("link", "10.0.0.2")).isZero();
+        assertThat(limiter.tryAcquire("link", "10.0.0.3")).isZero();
+        assertThat(limiter.tryAcquire("link", "10.0.0.4")).isEqualTo(Duration.ofSeconds(1));
+
+        int client = 10;
+        long[] expected = {2, 4, 8, 10, 10};
+        for (long seconds : expected) {
+            clock.advance(limiter.tryAcquire("link", "10.0.0." + client++));
+            assertThat(limiter.tryAcquire("link", "10.0.0." + client++)).isZero();
+            assertThat(limiter.tryAcquire("link", "10.0.0." + client++)).isEqualTo(Duration.ofSeconds(seconds));
+        }
+    }
+
+    // One client guessing across many links is locked out on its own count.
+    @Test
+    void locksOutClientsAcrossLinks() {
+        ShareAttemptLimiter limiter = new ShareAttemptLimiter(clock, properties);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.tryAcquire("link-" + i, "10.0.0.1")).isZero();
+        }
+        assertThat(limiter.tryAcquire("link-3", "10.0.0.1")).isPositive();
+        assertThat(limiter.tryAcquire("link-3", "10.0.0.2")).isZero();
+    }
+
+    // A correct passcode clears the link's count; idle counts are forgotten after the maximum lockout.
+    @Test
+    void forgetsAfterSuccessOrIdleness() {
+        ShareAttemptLimiter limiter = new ShareAttemptLimiter(clock, properties);
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire("link", "10.0.0." + i);
+        }
+        limiter.succeeded("link");
+        assertThat(limiter.tryAcquire("link", "10.0.0.9")).isZero();
+
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire("other", "10.0.1." + i);
+        }
+        clock.advance(Duration.ofSeconds(11));
+        assertThat(limiter.tryAcquire("other", "10.0.1.9")).isZero();
+        assertThat(limiter.tryAcquire("other", "10.0.1.9")).isZero();
+    }
+
+    // Rotating client addresses fills the client map but never resets a link's count.
+    @Test
+    void rotatingClientsCannotResetLinkCounts() {
+        properties.setMaxTrackedClients(4);
+        properties.setMaxTrackedLinks(2);
+        ShareAttemptLimiter limiter = new ShareAttemptLimiter(clock, properties);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.tryAcquire("link", "2001:db8::" + i)).isZero();
+        }
+        for (int i = 3; i < 100; i++) {
+            assertThat(limiter.tryAcquire("link", "2001:db8::" + i)).isPositive();
+        }
+        assertThat(limiter.clientCount()).isLessThanOrEqualTo(4);
+
+        // A full link map turns new links away instead of dropping counts still in use
+        assertThat(limiter.tryAcquire("second", "10.0.0.1")).isZero();
+        assertThat(limiter.tryAcquire("third", "10.0.0.2")).isPositive();
+        assertThat(limiter.linkCount()).isEqualTo(2);
+
+        clock.advance(Duration.ofSeconds(11));
+        assertThat(limiter.tryAcquire("third", "10.0.0.3")).isZero();
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
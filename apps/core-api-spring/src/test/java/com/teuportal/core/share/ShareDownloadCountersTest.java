@@ -0,0 +1,145 @@
+package com.teuportal.core.share;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class ShareDownloadCountersTest {
+
+    private static final Instant NOW = Instant.parse("2026-03-01T12:00:00Z");
+
+    // Downloads recorded while drains run land in exactly one drain.
+    @Test
+    void concurrentDownloadsAreDrainedExactlyOnce() throws InterruptedException {
+        ShareDownloadCounters counters = new ShareDownloadCounters(Clock.fixed(NOW, ZoneOffset.UTC), Duration.ZERO);
+        UUID share = UUID.randomUUID();
+        int threads = 8;
+        int perThread = 20_000;
+        AtomicLong drainedDownloads = new AtomicLong();
+        AtomicLong drainedBytes = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(threads);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    counters.record(share, 10, true);
+                }
+                done.countDown();
+            });
+        }
+        while (!done.await(1, TimeUnit.MILLISECONDS)) {
+            add(counters.drain(), drainedDownloads, drainedBytes);
+        }
+        pool.shutdown();
+        add(counters.drain(), drainedDownloads, drainedBytes);
+
+        assertThat(drainedDownloads.get()).isEqualTo((long) threads * perThread);
+        assertThat(drainedBytes.get()).isEqualTo(10L * threads * perThread);
+    }
+
+    // Pending counts show until drained; links idle for evictIdleAfter are dropped.
+    @Test
+    void reportsPendingCountsAndDropsIdleLinks() {
+        MutableClock clock = new MutableClock(NOW);
+        ShareDownloadCounters counters = new ShareDownloadCounters(clock, Duration.ofMinutes(5));
+        UUID share = UUID.randomUUID();
+        counters.record(share, 100, true);
+        clock.advance(Duration.ofSeconds(5));
+        counters.record(share, 50, true);
+
+        ShareDownloadCounters.Delta expected = new ShareDownloadCounters.Delta(share, 2, 150, NOW.plusSeconds(5));
+        assertThat(counters.pending(share)).contains(expected);
+        assertThat(counters.drain()).containsExactly(expected);
+        assertThat(counters.pending(share)).isEmpty();
+
+        clock.advance(Duration.ofMinutes(5));
+        assertThat(counters.drain()).isEmpty();
+        assertThat(counters.size()).isEqualTo(1);
+
+        clock.advance(Duration.ofSeconds(1));
+        assertThat(counters.drain()).isEmpty();
+        assertThat(counters.size()).isZero();
+    }
+
+    // Deltas that failed to flush come back in the next drain, merged with newer downloads.
+    @Test
+    void restoredDeltasAreDrainedAgain() {
+        MutableClock clock = new MutableClock(NOW);
+        ShareDownloadCounters counters = new ShareDownloadCounters(clock, Duration.ofMinutes(5));
+        UUID share = UUID.randomUUID();
+        counters.record(share, 100, true);
+        List<ShareDownloadCounters.Delta> failed = counters.drain();
+
+        clock.advance(Duration.ofSeconds(1));
+        counters.record(share, 1, true);
+        counters.restore(failed);
+
+        assertThat(counters.drain()).containsExactly(new ShareDownloadCounters.Delta(share, 2, 101, NOW.plusSeconds(1)));
+    }
+
+    // Ranges after the first add their bytes without counting another download.
+    @Test
+    void laterRangesAddBytesOnly() {
+        MutableClock clock = new MutableClock(NOW);
+        ShareDownloadCounters counters = new ShareDownloadCounters(clock, Duration.ofMinutes(5));
+        UUID share = UUID.randomUUID();
+        counters.record(share, 100, true);
+        List<ShareDownloadCounters.Delta> first = counters.drain();
+
+        clock.advance(Duration.ofSeconds(1));
+        counters.record(share, 40, false);
+
+        assertThat(first).containsExactly(new ShareDownloadCounters.Delta(share, 1, 100, NOW));
+        ShareDownloadCounters.Delta rangeOnly = new ShareDownloadCounters.Delta(share, 0, 40, NOW.plusSeconds(1));
+        assertThat(counters.pending(share)).contains(rangeOnly);
+        assertThat(counters.drain()).containsExactly(rangeOnly);
+    }
+
+    private static void add(List<ShareDownloadCounters.Delta> deltas, AtomicLong downloads, AtomicLong bytes) {
+        for (ShareDownloadCounters.Delta delta : deltas) {
+            downloads.addAndGet(delta.downloads());
+            bytes.addAndGet(delta.bytes());
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.teuportal.core.share;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.teuportal.core.storage.FileDownload;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ShareLinkCacheTest {
+
+    private ShareLinkRepository repository;
+    private MutableClock clock;
+    private ShareProperties.Cache properties;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ShareLinkRepository.class);
+        when(repository.resolve(anyString())).thenReturn(Optional.empty());
+        clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+        properties = new ShareProperties.Cache();
+        properties.setTtl(Duration.ofMinutes(10));
+        properties.setNegativeTtl(Duration.ofSeconds(30));
+    }
+
+    // A resolved link is served from memory until it expires, even when that is before the TTL.
+    @Test
+    void positiveEntriesLastUntilTheLinkExpires() {
+        SharedFile share = share(clock.instant().plus(Duration.ofMinutes(2)));
+        when(repository.resolve("hot")).thenReturn(Optional.of(share));
+        ShareLinkCache cache = new ShareLinkCache(repository, clock, properties);
+
+        assertThat(cache.find("hot")).contains(share);
+        clock.advance(Duration.ofSeconds(119));
+        assertThat(cache.find("hot")).contains(share);
+        verify(repository, times(1)).resolve("hot");
+
+        clock.advance(Duration.ofSeconds(1));
+        when(repository.resolve("hot")).thenReturn(Optional.empty());
+        assertThat(cache.find("hot")).isEmpty();
+        verify(repository, times(2)).resolve("hot");
+    }
+
+    // Unknown tokens are remembered for the negative TTL or until invalidated.
+    @Test
+    void missesAreCachedUntilTheyExpireOrAreInvalidated() {
+        ShareLinkCache cache = new ShareLinkCache(repository, clock, properties);
+
+        assertThat(cache.find("ghost")).isEmpty();
+        assertThat(cache.find("ghost")).isEmpty();
+        verify(repository, times(1)).resolve("ghost");
+
+        clock.advance(Duration.ofSeconds(30));
+        assertThat(cache.find("ghost")).isEmpty();
+        verify(repository, times(2)).resolve("ghost");
+
+        cache.invalidate("ghost");
+        assertThat(cache.find("ghost")).isEmpty();
+        verify(repository, times(3)).resolve("ghost");
+    }
+
+    // A full cache drops expired entries first, then those closest to expiring.
+    @Test
+    void evictsExpiredThenSoonestToExpire() {
+        properties.setMaxEntries(10);
+        ShareLinkCache cache = new ShareLinkCache(repository, clock, properties);
+        SharedFile lasting = share(null);
+        when(repository.resolve("lasting")).thenReturn(Optional.of(lasting));
+
+        cache.find("lasting");
+        for (int i = 0; i < 9; i++) {
+            cache.find("miss-" + i);
+        }
+        cache.find("one-more");
+        assertThat(cache.size()).isEqualTo(10);
+
+        cache.find("lasting");
+        verify(repository, times(1)).resolve("lasting");
+
+        clock.advance(Duration.ofSeconds(31));
+        cache.find("after-expiry");
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    private static SharedFile share(Instant expiresAt) {
+        FileDownload file = new FileDownload(UUID.randomUUID(), "report.pdf", 10, "application/pdf", "ab".repeat(32),
+                "key", OffsetDateTime.now(ZoneOffset.UTC));
+        return new SharedFile(UUID.randomUUID(), UUID.randomUUID(),
+                expiresAt == null ? null : OffsetDateTime.ofInstant(expiresAt, ZoneOffset.UTC), null, file);
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.teuportal.core.share;
+
+import static org.mockito.Mockito.mock;
+
+import com.teuportal.core.datasource.DataSourceRouteHolder;
+import com.teuportal.core.tenancy.TenantAwareTransactionManager;
+import com.teuportal.core.tenancy.TenantContext;
+import com.teuportal.core.tenancy.TenantContextHolder;
+import com.teuportal.core.tenancy.TenantContextService;
+import com.teuportal.core.tenancy.TenantTransactions;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Download totals of share links of two companies, flushed through {@code app.record_share_downloads}
+ * and read back under row level security. Set up like {@code RowLevelSecurityIntegrationTest}.
+ */
+@Testcontainers
+class ShareStatsIntegrationTest {
+
+    private static final String APP_USER = "app_user";
+    private static final String APP_PASSWORD = "app_password";
+    private static final Instant NOW = Instant.parse("2026-03-01T12:00:00Z");
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:17-alpine")
+            .withDatabaseName("teuportal")
+            .withUsername("postgres")
+            .withPassword("postgres");
+
+    private HikariDataSource dataSource;
+    private TenantContextHolder contextHolder;
+    private TenantTransactions tenantTransactions;
+    private TransactionTemplate transactionTemplate;
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    private ShareLinkRepository repository;
+    private ShareDownloadCounters counters;
+    private ShareLinkService shareLinkService;
+
+    @BeforeAll
+    static void configureDatabaseRole() throws SQLException {
+        POSTGRES.start();
+        try (Connection connection = superuserConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE EXTENSION IF NOT EXISTS pgcrypto");
+            statement.execute("DO $$\nBEGIN\n    IF NOT EXISTS (SELECT 1 FROM pg_roles WHERE rolname = '" + APP_USER + "') THEN\n        CREATE ROLE " + APP_USER + " LOGIN PASSWORD '" + APP_PASSWORD + "';\n    END IF;\nEND;\n$$;");
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        Flyway flyway = Flyway.configure()
+                .dataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword())
+                .schemas("public", "app")
+                .cleanDisabled(false)
+                .locations("classpath:db/migration")
+                .load();
+        flyway.clean();
+        flyway.migrate();
+        grantApplicationPrivileges();
+
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(POSTGRES.getJdbcUrl());
+        config.setUsername(APP_USER);
+        config.setPassword(APP_PASSWORD);
+        config.setMaximumPoolSize(4);
+        dataSource = new HikariDataSource(config);
+
+        contextHolder = new TenantContextHolder();
+        TenantAwareTransactionManager transactionManager =
+                new TenantAwareTransactionManager(dataSource, contextHolder, new DataSourceRouteHolder());
+        tenantTransactions = new TenantTransactions(contextHolder, transactionManager);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+
+        Clock clock = Clock.fixed(NOW, ZoneOffset.UTC);
+        repository = new ShareLinkRepository(jdbcTemplate);
+        counters = new ShareDownloadCounters(clock, Duration.ofMinutes(5));
+        shareLinkService = new ShareLinkService(repository, mock(ShareLinkCache.class), mock(PasscodeVerifier.class),
+                mock(ShareAttemptLimiter.class), counters, new TenantContextService(contextHolder),
+                transactionManager, clock, new ShareProperties(), "http://localhost");
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    // One flush carries the counts of both companies' links; each company reads only its own
+    // totals, and later flushes add to them.
+    @Test
+    void flushedCountsAddUpPerCompany() throws Exception {
+        TenantContext acme = insertCompany("acme");
+        TenantContext globex = insertCompany("globex");
+        UUID acmeShare = insertShare(acme, "acme.pdf");
+        UUID globexShare = insertShare(globex, "globex.pdf");
+
+        flush(List.of(
+                new ShareDownloadCounters.Delta(acmeShare, 3, 300, NOW.minusSeconds(60)),
+                new ShareDownloadCounters.Delta(globexShare, 1, 50, NOW.minusSeconds(30))));
+        flush(List.of(
+                new ShareDownloadCounters.Delta(acmeShare, 0, 40, NOW.minusSeconds(10)),
+                new ShareDownloadCounters.Delta(UUID.randomUUID(), 7, 700, NOW)));
+
+        Assertions.assertEquals(new ShareStats(acmeShare, 3, 340, NOW.minusSeconds(10).atOffset(ZoneOffset.UTC)),
+                normalized(stats(acme, acmeShare)));
+        Assertions.assertEquals(new ShareStats(globexShare, 1, 50, NOW.minusSeconds(30).atOffset(ZoneOffset.UTC)),
+                normalized(stats(globex, globexShare)));
+        Assertions.assertThrows(ShareLinkService.ShareNotFoundException.class, () -> stats(acme, globexShare));
+        Assertions.assertEquals(List.of(acmeShare), statsRows(acme));
+        Assertions.assertEquals(List.of(globexShare), statsRows(globex));
+    }
+
+    // The stats endpoint adds this node's unflushed counts to the stored totals, and a flush moves
+    // them into the table without counting them twice.
+    @Test
+    void statsMergePendingCountsUntilFlushed() throws Exception {
+        TenantContext acme = insertCompany("acme");
+        TenantContext globex = insertCompany("globex");
+        UUID acmeShare = insertShare(acme, "acme.pdf");
+        UUID globexShare = insertShare(globex, "globex.pdf");
+        flush(List.of(new ShareDownloadCounters.Delta(acmeShare, 2, 200, NOW.minusSeconds(60))));
+
+        counters.record(acmeShare, 100, true);
+        counters.record(acmeShare, 25, false);
+        counters.record(globexShare, 10, true);
+        ShareStats expectedAcme = new ShareStats(acmeShare, 3, 325, NOW.atOffset(ZoneOffset.UTC));
+        ShareStats expectedGlobex = new ShareStats(globexShare, 1, 10, NOW.atOffset(ZoneOffset.UTC));
+        Assertions.assertEquals(expectedAcme, normalized(stats(acme, acmeShare)));
+        Assertions.assertEquals(expectedGlobex, normalized(stats(globex, globexShare)));
+
+        flush(counters.drain());
+
+        Assertions.assertEquals(expectedAcme, normalized(stats(acme, acmeShare)));
+        Assertions.assertEquals(expectedGlobex, normalized(stats(globex, globexShare)));
+    }
+
+    private void flush(List<ShareDownloadCounters.Delta> deltas) {
+        // Like ShareStatsFlusher: one statement, no tenant context
+        transactionTemplate.executeWithoutResult(status -> repository.recordDownloads(deltas));
+    }
+
+    private ShareStats stats(TenantContext context, UUID shareId) {
+        return contextHolder.callWith(context, () -> shareLinkService.stats(shareId));
+    }
+
+    private List<UUID> statsRows(TenantContext context) {
+        return tenantTransactions.read(context, status -> jdbcTemplate.queryForList(
+                "SELECT share_id FROM file_share_stats", new MapSqlParameterSource(), UUID.class));
+    }
+
+    private static ShareStats normalized(ShareStats stats) {
+        return new ShareStats(stats.shareId(), stats.downloads(), stats.bytesServed(),
+                stats.lastAccessedAt() == null ? null : stats.lastAccessedAt().withOffsetSameInstant(ZoneOffset.UTC));
+    }
+
+    private UUID insertShare(TenantContext context, String fileName) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("companyId", context.getCompanyId())
+                .addValue("name", fileName);
+        return tenantTransactions.execute(context, status -> {
+            UUID fileId = jdbcTemplate.queryForObject("""
+                    INSERT INTO file (company_id, name, size_bytes, mime_type, checksum, storage_key)
+                    VALUES (:companyId, :name, 100, 'application/pdf', 'checksum', :name)
+                    RETURNING id
+                    """, params, UUID.class);
+            return repository.insert(fileId, UUID.randomUUID().toString(), null, null, context.getUserId())
+                    .orElseThrow()
+                    .id();
+        });
+    }
+
+    private TenantContext insertCompany(String slug) throws SQLException {
+        UUID companyId = UUID.randomUUID();
+        UUID ownerId = UUID.randomUUID();
+        try (Connection connection = superuserConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO company (id, name, slug, is_active) VALUES (?, ?, ?, true)")) {
+                ps.setObject(1, companyId);
+                ps.setString(2, slug);
+                ps.setString(3, slug);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO company_user (id, company_id, email, display_name, role, created_at, updated_at) VALUES (?, ?, ?, ?, 'OWNER', now(), now())")) {
+                ps.setObject(1, ownerId);
+                ps.setObject(2, companyId);
+                ps.setString(3, slug + "@example.com");
+                ps.setString(4, slug + " Owner");
+                ps.executeUpdate();
+            }
+            connection.commit();
+        }
+        return new TenantContext(companyId, ownerId, Set.of("ROLE_OWNER"));
+    }
+
+    private static Connection superuserConnection() throws SQLException {
+        return DriverManager.getConnection(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+    }
+
+    private static void grantApplicationPrivileges() throws SQLException {
+        try (Connection connection = superuserConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("GRANT USAGE ON SCHEMA public TO " + APP_USER);
+            statement.execute("GRANT USAGE ON SCHEMA app TO " + APP_USER);
+            statement.execute("GRANT SELECT, INSERT, UPDATE, DELETE ON ALL TABLES IN SCHEMA public TO " + APP_USER);
+            statement.execute("GRANT EXECUTE ON ALL FUNCTIONS IN SCHEMA app TO " + APP_USER);
+            statement.execute("GRANT USAGE, SELECT ON ALL SEQUENCES IN SCHEMA public TO " + APP_USER);
+        }
+    }
+}
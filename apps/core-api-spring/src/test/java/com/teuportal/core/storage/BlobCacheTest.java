@@ -0,0 +1,90 @@
+package com.teuportal.core.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BlobCacheTest {
+
+    @TempDir
+    Path dir;
+
+    // A file read twice survives a scan of one-off entries that overflows the cache.
+    @Test
+    void repeatedReadsSurviveScans() throws Exception {
+        BlobCache cache = new BlobCache(dir.resolve("cache"), 1000);
+        cache.admit("c/hot", source("hot", 100));
+        assertThat(cache.get("c/hot")).isNotNull();
+
+        for (int i = 0; i < 20; i++) {
+            cache.admit("c/scan" + i, source("scan" + i, 100));
+        }
+
+        assertThat(cache.contains("c/hot")).isTrue();
+        assertThat(cache.contains("c/scan0")).isFalse();
+        assertThat(cache.contains("c/scan19")).isTrue();
+        assertThat(cache.sizeBytes()).isLessThanOrEqualTo(1000);
+        assertThat(Files.exists(dir.resolve("cache/c/scan0"))).isFalse();
+    }
+
+    // Concurrent misses for one key run a single fetch and all see its file.
+    @Test
+    void concurrentMissesShareOneFetch() throws Exception {
+        BlobCache cache = new BlobCache(dir.resolve("cache"), 1000);
+        AtomicInteger fetches = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Path>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cache.getOrFetch("c/shared", target -> {
+                    fetches.incrementAndGet();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    Files.write(target, new byte[42]);
+                })));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<Path> result : results) {
+                assertThat(Files.size(result.get(5, TimeUnit.SECONDS))).isEqualTo(42);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(fetches).hasValue(1);
+        assertThat(cache.missCount()).isEqualTo(1);
+    }
+
+    // Entries on disk from an earlier run are indexed again and count towards the limit.
+    @Test
+    void resumesEntriesAfterRestart() throws Exception {
+        BlobCache first = new BlobCache(dir.resolve("cache"), 1000);
+        first.admit("c/aa/kept", source("kept", 300));
+
+        BlobCache second = new BlobCache(dir.resolve("cache"), 1000);
+
+        assertThat(second.contains("c/aa/kept")).isTrue();
+        assertThat(second.sizeBytes()).isEqualTo(300);
+    }
+
+    private Path source(String name, int size) throws Exception {
+        Path file = dir.resolve(name + ".src");
+        Files.write(file, new byte[size]);
+        return file;
+    }
+}
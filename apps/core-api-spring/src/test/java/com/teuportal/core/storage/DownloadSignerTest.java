@@ -0,0 +1,104 @@
+package com.teuportal.core.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class DownloadSignerTest {
+
+    private static final String OLD_KEY = "old:" + Base64.getEncoder().encodeToString(new byte[32]);
+    private static final String NEW_KEY = "new:" + Base64.getEncoder().encodeToString("n".repeat(32).getBytes());
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    // A token carries the whole grant, including the range, and verifies until it expires.
+    @Test
+    void roundTripsUntilExpiry() {
+        DownloadSigner signer = signer(NOW, OLD_KEY);
+        SignedDownload download = download(NOW.plusSeconds(300), new FileDownloadWriter.Region(10, 90));
+
+        String token = signer.sign(download);
+
+        assertThat(signer.verify(token)).contains(download);
+        assertThat(signer(NOW.plusSeconds(299), OLD_KEY).verify(token)).contains(download);
+        assertThat(signer(NOW.plusSeconds(300), OLD_KEY).verify(token)).isEmpty();
+    }
+
+    // Any change to the grant or the signature invalidates the token.
+    @Test
+    void rejectsTamperedTokens() {
+        DownloadSigner signer = signer(NOW, OLD_KEY);
+        String token = signer.sign(download(NOW.plusSeconds(300), null));
+        int dot = token.indexOf('.');
+        char flipped = token.charAt(dot - 2) == 'A' ? 'B' : 'A';
+
+        assertThat(signer.verify(token.substring(0, dot - 2) + flipped + token.substring(dot - 1))).isEmpty();
+        assertThat(signer.verify(token.substring(0, dot + 1) + "AAAA" + token.substring(dot + 5))).isEmpty();
+        assertThat(signer.verify(token.substring(0, dot))).isEmpty();
+        assertThat(signer.verify("not a token")).isEmpty();
+    }
+
+    // After rotation old tokens still verify while their key is configured; new ones use the new key.
+    @Test
+    void verifiesWithEveryConfiguredKey() {
+        String oldToken = signer(NOW, OLD_KEY).sign(download(NOW.plusSeconds(300), null));
+        DownloadSigner rotated = signer(NOW, NEW_KEY, OLD_KEY);
+        String newToken = rotated.sign(download(NOW.plusSeconds(300), null));
+
+        assertThat(rotated.verify(oldToken)).isPresent();
+        assertThat(rotated.verify(newToken)).isPresent();
+        assertThat(signer(NOW, OLD_KEY).verify(newToken)).isEmpty();
+        assertThat(signer(NOW, NEW_KEY).verify(oldToken)).isEmpty();
+    }
+
+    // Tokens stay under the verify limit: content keys are derived, long names shortened, and the rest refused.
+    @Test
+    void keepsTokensWithinTheLengthLimit() {
+        DownloadSigner signer = signer(NOW, OLD_KEY);
+        UUID companyId = UUID.randomUUID();
+        String checksum = "cd".repeat(32);
+        String name = "x".repeat(2000) + ".pdf";
+        FileDownload file = new FileDownload(UUID.randomUUID(), name, 100, "application/pdf", checksum,
+                LocalBlobStore.contentKey(companyId, checksum), OffsetDateTime.of(2025, 6, 1, 12, 0, 0, 0, ZoneOffset.UTC));
+
+        String token = signer.sign(new SignedDownload(companyId, file, false, NOW.plusSeconds(300), null));
+        SignedDownload verified = signer.verify(token).orElseThrow();
+
+        assertThat(new String(Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.'))))).doesNotContain(companyId + "/");
+        assertThat(verified.file().storageKey()).isEqualTo(file.storageKey());
+        assertThat(verified.file().name()).hasSize(255).endsWith(".pdf");
+        FileDownload oversized = new FileDownload(file.id(), "a.pdf", 100, "x".repeat(5000), checksum,
+                file.storageKey(), file.createdAt());
+        assertThatThrownBy(() -> signer.sign(new SignedDownload(companyId, oversized, false, NOW.plusSeconds(300), null)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // Short or malformed keys fail at startup rather than signing weakly.
+    @Test
+    void rejectsWeakKeys() {
+        assertThatThrownBy(() -> signer(NOW, "short:" + Base64.getEncoder().encodeToString(new byte[16])))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> signer(NOW, "no-separator")).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static DownloadSigner signer(Instant now, String... keys) {
+        StorageProperties.SignedUrls properties = new StorageProperties.SignedUrls();
+        properties.setKeys(List.of(keys));
+        return new DownloadSigner(new SigningKeys(properties), Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private static SignedDownload download(Instant expiresAt, FileDownloadWriter.Region range) {
+        FileDownload file = new FileDownload(UUID.randomUUID(), "Übersicht 2026.pdf", 100, "application/pdf",
+                "ab".repeat(32), "company/ab/cd/" + "ab".repeat(32),
+                OffsetDateTime.of(2025, 6, 1, 12, 0, 0, 0, ZoneOffset.UTC));
+        return new SignedDownload(UUID.randomUUID(), file, true, expiresAt, range);
+    }
+}
@@ -0,0 +1,161 @@
+package com.teuportal.core.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class FileDownloadWriterTest {
+
+    private static final byte[] CONTENT = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path root;
+
+    private FileDownloadWriter writer;
+    private FileDownload file;
+
+    @BeforeEach
+    void setUp() {
+        StorageProperties properties = new StorageProperties();
+        properties.getLocal().setRoot(root);
+        LocalBlobStore store = new LocalBlobStore(properties);
+        StagedBlob staged = store.stage(new ByteArrayInputStream(CONTENT), Long.MAX_VALUE);
+        String key = store.keyFor(UUID.randomUUID(), staged.sha256());
+        store.promote(staged, key);
+        writer = new FileDownloadWriter(store);
+        file = new FileDownload(UUID.randomUUID(), "notes.txt", CONTENT.length, "text/plain", staged.sha256(), key,
+                OffsetDateTime.of(2025, 1, 2, 3, 4, 5, 0, ZoneOffset.UTC));
+    }
+
+    // Without a Range header the whole file is sent with a 200.
+    @Test
+    void writesWholeFile() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        writer.write(file, false, new MockHttpServletRequest("GET", "/"), response);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsByteArray()).isEqualTo(CONTENT);
+        assertThat(response.getHeader(HttpHeaders.ACCEPT_RANGES)).isEqualTo("bytes");
+        assertThat(response.getHeader(HttpHeaders.CONTENT_DISPOSITION)).startsWith("attachment");
+    }
+
+    // A single range is served as 206 with a matching Content-Range.
+    @Test
+    void writesSingleRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader(HttpHeaders.RANGE, "bytes=5-9");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        writer.write(file, false, request, response);
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 5-9/20");
+        assertThat(response.getContentAsString()).isEqualTo("56789");
+        assertThat(response.getContentLengthLong()).isEqualTo(5);
+    }
+
+    // A signed window is served as a partial response, and ranges outside it are refused.
+    @Test
+    void confinesRangesToWindow() throws Exception {
+        FileDownloadWriter.Region window = new FileDownloadWriter.Region(4, 6);
+        MockHttpServletResponse whole = new MockHttpServletResponse();
+
+        writer.write(file, false, window, new MockHttpServletRequest("GET", "/"), whole);
+
+        assertThat(whole.getStatus()).isEqualTo(206);
+        assertThat(whole.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 4-9/20");
+        assertThat(whole.getContentAsString()).isEqualTo("456789");
+
+        MockHttpServletRequest outside = new MockHttpServletRequest("GET", "/");
+        outside.addHeader(HttpHeaders.RANGE, "bytes=8-12");
+        MockHttpServletResponse refused = new MockHttpServletResponse();
+
+        writer.write(file, false, window, outside, refused);
+
+        assertThat(refused.getStatus()).isEqualTo(416);
+        assertThat(refused.getContentAsByteArray()).isEmpty();
+    }
+
+    // When the connector supports sendfile the region is handed over instead of written.
+    @Test
+    void delegatesToSendfileWhenSupported() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.setAttribute(FileDownloadWriter.SENDFILE_SUPPORTED_ATTR, Boolean.TRUE);
+        request.addHeader(HttpHeaders.RANGE, "bytes=-4");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        writer.write(file, false, request, response);
+
+        assertThat(response.getContentAsByteArray()).isEmpty();
+        assertThat(request.getAttribute(FileDownloadWriter.SENDFILE_START_ATTR)).isEqualTo(16L);
+        assertThat(request.getAttribute(FileDownloadWriter.SENDFILE_END_ATTR)).isEqualTo(20L);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 16-19/20");
+    }
+
+    // Several ranges produce a multipart/byteranges body whose length is declared up front.
+    @Test
+    void writesMultipartRanges() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-1,10-12");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        writer.write(file, true, request, response);
+
+        String body = response.getContentAsString();
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getContentType()).startsWith("multipart/byteranges; boundary=");
+        assertThat(response.getContentLengthLong()).isEqualTo(response.getContentAsByteArray().length);
+        assertThat(body).contains("Content-Range: bytes 0-1/20\r\n\r\n01\r\n");
+        assertThat(body).contains("Content-Range: bytes 10-12/20\r\n\r\nabc\r\n");
+        assertThat(body).endsWith("--\r\n");
+    }
+
+    // A range starting past the end is rejected with 416.
+    @Test
+    void rejectsUnsatisfiableRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader(HttpHeaders.RANGE, "bytes=50-60");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        writer.write(file, false, request, response);
+
+        assertThat(response.getStatus()).isEqualTo(416);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes */20");
+    }
+
+    // A stale If-Range validator downgrades the request to a full 200 response.
+    @Test
+    void ignoresRangeWhenIfRangeDoesNotMatch() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-3");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"stale\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        writer.write(file, false, request, response);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsByteArray()).isEqualTo(CONTENT);
+    }
+
+    // Overlapping ranges that add up to more than the file are answered with the file once.
+    @Test
+    void collapsesAmplifyingRanges() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-19,0-19");
+        request.addHeader(HttpHeaders.IF_RANGE, file.etag());
+
+        assertThat(writer.requestedRegions(request, file)).isEmpty();
+    }
+}
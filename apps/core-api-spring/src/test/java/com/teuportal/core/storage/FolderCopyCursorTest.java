@@ -0,0 +1,30 @@
+package com.teuportal.core.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class FolderCopyCursorTest {
+
+    // Both phases round-trip, and file names may contain the separator.
+    @Test
+    void encodeDecodeRoundTrip() {
+        FolderCopyCursor folders = FolderCopyCursor.afterFolder(3, UUID.randomUUID());
+        FolderCopyCursor files = FolderCopyCursor.filesOf(UUID.randomUUID()).afterFile("q1: report.pdf", UUID.randomUUID());
+
+        assertThat(FolderCopyCursor.decode(folders.encode())).isEqualTo(folders);
+        assertThat(FolderCopyCursor.decode(files.encode())).isEqualTo(files);
+        assertThat(FolderCopyCursor.decode(FolderCopyCursor.filesOf(null).encode())).isEqualTo(FolderCopyCursor.filesOf(null));
+    }
+
+    // A job that has not run yet has no cursor and starts with the folders.
+    @Test
+    void missingCursorStartsWithFolders() {
+        assertThat(FolderCopyCursor.decode(null)).isEqualTo(FolderCopyCursor.start());
+        assertThat(FolderCopyCursor.start().phase()).isEqualTo(FolderCopyCursor.Phase.FOLDERS);
+        assertThatThrownBy(() -> FolderCopyCursor.decode("FILES:0:nope::")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> FolderCopyCursor.decode("FOLDERS:1")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
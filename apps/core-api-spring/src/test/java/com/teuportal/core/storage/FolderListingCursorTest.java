@@ -0,0 +1,42 @@
+package com.teuportal.core.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class FolderListingCursorTest {
+
+    // A cursor survives the round trip, including keys that contain the separator.
+    @Test
+    void encodeDecodeRoundTrip() {
+        FolderListingCursor cursor = new FolderListingCursor(FolderListingCursor.Phase.FOLDERS,
+                FolderContentsSort.NAME, true, "reports: 2024/q1", UUID.randomUUID());
+
+        assertThat(FolderListingCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    // The start-of-files marker carries no key.
+    @Test
+    void startOfFilesRoundTrip() {
+        FolderListingCursor decoded = FolderListingCursor.decode(
+                FolderListingCursor.startOfFiles(FolderContentsSort.SIZE, false).encode());
+
+        assertThat(decoded.phase()).isEqualTo(FolderListingCursor.Phase.FILES);
+        assertThat(decoded.hasKey()).isFalse();
+    }
+
+    // Tampered or foreign values are rejected rather than producing a half-valid position.
+    @Test
+    void decodeRejectsMalformedValues() {
+        String foreign = Base64.getUrlEncoder().encodeToString("2:FILES:NAME:a::x".getBytes(StandardCharsets.UTF_8));
+        String keylessFolders = Base64.getUrlEncoder().encodeToString("1:FOLDERS:NAME:a::".getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> FolderListingCursor.decode("not base64!")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> FolderListingCursor.decode(foreign)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> FolderListingCursor.decode(keylessFolders)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
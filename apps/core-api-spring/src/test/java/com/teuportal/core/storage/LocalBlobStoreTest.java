@@ -0,0 +1,235 @@
+package com.teuportal.core.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+class LocalBlobStoreTest {
+
+    @TempDir
+    Path root;
+
+    private LocalBlobStore store;
+
+    @BeforeEach
+    void setUp() {
+        StorageProperties properties = new StorageProperties();
+        properties.getLocal().setRoot(root);
+        properties.getLocal().setBufferSize(DataSize.ofBytes(16));
+        store = new LocalBlobStore(properties);
+    }
+
+    // Staging hashes the bytes in the same pass that writes them, across many buffer refills.
+    @Test
+    void stageComputesSha256WhileStreaming() throws Exception {
+        byte[] content = "hello blob store, streamed in small chunks".repeat(10).getBytes(StandardCharsets.UTF_8);
+
+        StagedBlob staged = store.stage(new ByteArrayInputStream(content), Long.MAX_VALUE);
+
+        String expected = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        assertThat(staged.sha256()).isEqualTo(expected);
+        assertThat(staged.sizeBytes()).isEqualTo(content.length);
+        assertThat(Files.readAllBytes(staged.path())).isEqualTo(content);
+    }
+
+    // Identical content promoted twice is stored once under its content key.
+    @Test
+    void promoteDeduplicatesIdenticalContent() throws Exception {
+        UUID companyId = UUID.randomUUID();
+        byte[] content = "same bytes".getBytes(StandardCharsets.UTF_8);
+
+        StagedBlob first = store.stage(new ByteArrayInputStream(content), Long.MAX_VALUE);
+        StagedBlob second = store.stage(new ByteArrayInputStream(content), Long.MAX_VALUE);
+        String key = store.keyFor(companyId, first.sha256());
+
+        assertThat(store.promote(first, key)).isTrue();
+        assertThat(store.promote(second, key)).isFalse();
+        assertThat(Files.exists(second.path())).isFalse();
+        assertThat(key).startsWith(companyId + "/" + first.sha256().substring(0, 2) + "/");
+        assertThat(Files.readAllBytes(store.resolve(key))).isEqualTo(content);
+    }
+
+    // Oversized uploads fail fast and leave no staging file behind.
+    @Test
+    void stageRejectsOversizedContent() throws Exception {
+        byte[] content = new byte[100];
+
+        assertThatThrownBy(() -> store.stage(new ByteArrayInputStream(content), 50))
+                .isInstanceOf(LocalBlobStore.BlobTooLargeException.class);
+        try (var staged = Files.list(root.resolve(".staging"))) {
+            assertThat(staged).isEmpty();
+        }
+    }
+
+    // Keys cannot escape the storage root.
+    @Test
+    void resolveRejectsTraversal() {
+        assertThatThrownBy(() -> store.resolve("../outside")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // Chunks written out of order land at their offsets and hash like a single-stream upload.
+    @Test
+    void chunksAssembleInPlaceInAnyOrder() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        byte[] content = "0123456789abcdefghijklmnopqrstuvwxyz".getBytes(StandardCharsets.US_ASCII);
+        store.createUpload(sessionId);
+
+        store.writeChunk(sessionId, 30, 6, new ByteArrayInputStream(content, 30, 6));
+        store.writeChunk(sessionId, 0, 15, new ByteArrayInputStream(content, 0, 15));
+        store.writeChunk(sessionId, 15, 15, new ByteArrayInputStream(content, 15, 15));
+        StagedBlob staged = store.stageUpload(sessionId, content.length);
+
+        String expected = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        assertThat(staged.sha256()).isEqualTo(expected);
+        assertThat(Files.readAllBytes(staged.path())).isEqualTo(content);
+    }
+
+    // A chunk written after staging finds no part file, so it never changes the hashed staged blob.
+    @Test
+    void stagedUploadIsIndependentOfThePartFile() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        byte[] content = "0123456789".getBytes(StandardCharsets.US_ASCII);
+        store.createUpload(sessionId);
+        store.writeChunk(sessionId, 0, 10, new ByteArrayInputStream(content));
+        StagedBlob staged = store.stageUpload(sessionId, content.length);
+
+        assertThatThrownBy(() -> store.writeChunk(sessionId, 0, 10,
+                new ByteArrayInputStream("XXXXXXXXXX".getBytes(StandardCharsets.US_ASCII))))
+                .isInstanceOf(LocalBlobStore.UploadNotFoundException.class);
+
+        assertThat(Files.readAllBytes(staged.path())).isEqualTo(content);
+        assertThat(staged.sha256())
+                .isEqualTo(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content)));
+        assertThat(Files.exists(root.resolve(".uploads").resolve(sessionId + ".part"))).isFalse();
+    }
+
+    // Staging waits for a chunk write already in flight and hashes the bytes it leaves behind.
+    @Test
+    void stageUploadWaitsForChunkWritesInFlight() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        byte[] content = "0123456789".getBytes(StandardCharsets.US_ASCII);
+        store.createUpload(sessionId);
+        store.writeChunk(sessionId, 0, 10, new ByteArrayInputStream(content));
+        byte[] rewritten = "abcdefghij".getBytes(StandardCharsets.US_ASCII);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        InputStream slowBody = new SequenceInputStream(new ByteArrayInputStream(rewritten, 0, 5),
+                new InputStream() {
+                    private final InputStream rest = new ByteArrayInputStream(rewritten, 5, 5);
+
+                    @Override
+                    public int read() throws IOException {
+                        writing.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return rest.read();
+                    }
+                });
+        CompletableFuture<Void> write = CompletableFuture.runAsync(
+                () -> store.writeChunk(sessionId, 0, 10, slowBody));
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<StagedBlob> staging = CompletableFuture.supplyAsync(
+                () -> store.stageUpload(sessionId, content.length));
+        Thread.sleep(200);
+        assertThat(staging).isNotDone();
+        release.countDown();
+        write.get(5, TimeUnit.SECONDS);
+        StagedBlob staged = staging.get(5, TimeUnit.SECONDS);
+
+        assertThat(Files.readAllBytes(staged.path())).isEqualTo(rewritten);
+        assertThat(staged.sha256())
+                .isEqualTo(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(rewritten)));
+    }
+
+    // A staged upload handed back becomes the part file again, so the client can retry.
+    @Test
+    void returnUploadRestoresThePartFile() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        byte[] content = "0123456789".getBytes(StandardCharsets.US_ASCII);
+        store.createUpload(sessionId);
+        store.writeChunk(sessionId, 0, 10, new ByteArrayInputStream(content));
+        StagedBlob staged = store.stageUpload(sessionId, content.length);
+
+        assertThat(store.returnUpload(sessionId, staged)).isTrue();
+
+        assertThat(Files.exists(staged.path())).isFalse();
+        assertThat(store.stageUpload(sessionId, content.length).sha256()).isEqualTo(staged.sha256());
+    }
+
+    // A truncated or oversized chunk body is rejected so it is never recorded as stored.
+    @Test
+    void writeChunkRequiresExactLength() {
+        UUID sessionId = UUID.randomUUID();
+        store.createUpload(sessionId);
+
+        assertThatThrownBy(() -> store.writeChunk(sessionId, 0, 10, new ByteArrayInputStream(new byte[4])))
+                .isInstanceOf(LocalBlobStore.ChunkLengthException.class);
+        assertThatThrownBy(() -> store.writeChunk(sessionId, 0, 10, new ByteArrayInputStream(new byte[40])))
+                .isInstanceOf(LocalBlobStore.ChunkLengthException.class);
+    }
+
+    // Listing resumes after the last key seen, in key order across company directories.
+    @Test
+    void listPagesThroughKeysInOrder() throws Exception {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            UUID companyId = i < 4 ? new UUID(0, 1) : new UUID(0, 2);
+            StagedBlob staged = store.stage(new ByteArrayInputStream(("blob " + i).getBytes(StandardCharsets.UTF_8)), Long.MAX_VALUE);
+            String key = store.keyFor(companyId, staged.sha256());
+            store.promote(staged, key);
+            keys.add(key);
+        }
+        store.createUpload(UUID.randomUUID());
+
+        List<String> listed = new ArrayList<>();
+        String after = null;
+        List<BlobEntry> page;
+        do {
+            page = store.list(after, 3);
+            page.forEach(entry -> listed.add(entry.key()));
+            after = page.isEmpty() ? after : page.getLast().key();
+        } while (page.size() == 3);
+
+        assertThat(listed).isEqualTo(keys.stream().sorted().toList());
+        assertThat(store.stat(keys.getFirst())).get().extracting(BlobEntry::sizeBytes).isEqualTo(6L);
+        assertThat(store.stat(store.keyFor(new UUID(0, 3), "ab".repeat(32)))).isEmpty();
+    }
+
+    // The staging sweep removes files left by dead requests and spares ones still being written.
+    @Test
+    void sweepStagingRemovesOnlyStaleFiles() throws Exception {
+        StagedBlob stale = store.stage(new ByteArrayInputStream(new byte[10]), Long.MAX_VALUE);
+        StagedBlob fresh = store.stage(new ByteArrayInputStream(new byte[20]), Long.MAX_VALUE);
+        Files.setLastModifiedTime(stale.path(), FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+
+        assertThat(store.sweepStaging(Instant.now().minus(Duration.ofDays(1)))).isEqualTo(10);
+        assertThat(Files.exists(stale.path())).isFalse();
+        assertThat(Files.exists(fresh.path())).isTrue();
+    }
+}
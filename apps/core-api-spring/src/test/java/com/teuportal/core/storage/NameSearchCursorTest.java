@@ -0,0 +1,33 @@
+package com.teuportal.core.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class NameSearchCursorTest {
+
+    // Scores round-trip exactly, and names may contain the separator.
+    @Test
+    void encodeDecodeRoundTrip() {
+        NameSearchCursor cursor = new NameSearchCursor(-42, NameSearchCursor.Phase.SIMILAR,
+                0.61904764f, "q1: report.pdf", UUID.randomUUID());
+
+        assertThat(NameSearchCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    // The start-of-similar marker carries no key; only that phase may omit it.
+    @Test
+    void startOfSimilarRoundTrip() {
+        NameSearchCursor decoded = NameSearchCursor.decode(NameSearchCursor.startOfSimilar(7).encode());
+        String keylessPrefix = Base64.getUrlEncoder().encodeToString("1:7:PREFIX:0.0::".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(decoded.phase()).isEqualTo(NameSearchCursor.Phase.SIMILAR);
+        assertThat(decoded.hasKey()).isFalse();
+        assertThatThrownBy(() -> NameSearchCursor.decode(keylessPrefix)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> NameSearchCursor.decode("not base64!")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,484 @@
+package com.teuportal.core.storage;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import com.teuportal.core.datasource.DataSourceRouteHolder;
+import com.teuportal.core.tenancy.TenantAwareTransactionManager;
+import com.teuportal.core.tenancy.TenantContext;
+import com.teuportal.core.tenancy.TenantContextHolder;
+import com.teuportal.core.tenancy.TenantContextService;
+import com.teuportal.core.tenancy.TenantTransactions;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Trash, restore, purge, copy and move against a real database, through the services and
+ * repositories the job worker uses. Set up like {@code RowLevelSecurityIntegrationTest}.
+ */
+@Testcontainers
+class StorageJobsIntegrationTest {
+
+    private static final String APP_USER = "app_user";
+    private static final String APP_PASSWORD = "app_password";
+    private static final int BATCH_SIZE = 2;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:17-alpine")
+            .withDatabaseName("teuportal")
+            .withUsername("postgres")
+            .withPassword("postgres");
+
+    private HikariDataSource dataSource;
+    private TenantContextHolder contextHolder;
+    private TenantTransactions tenantTransactions;
+    private TransactionTemplate transactionTemplate;
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    private StorageJobRepository jobRepository;
+    private BlobStorageBackend storageBackend;
+    private TrashService trashService;
+    private FolderService folderService;
+    private FolderCopyService copyService;
+
+    @BeforeAll
+    static void configureDatabaseRole() throws SQLException {
+        POSTGRES.start();
+        try (Connection connection = superuserConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE EXTENSION IF NOT EXISTS pgcrypto");
+            statement.execute("DO $$\nBEGIN\n    IF NOT EXISTS (SELECT 1 FROM pg_roles WHERE rolname = '" + APP_USER + "') THEN\n        CREATE ROLE " + APP_USER + " LOGIN PASSWORD '" + APP_PASSWORD + "';\n    END IF;\nEND;\n$$;");
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        Flyway flyway = Flyway.configure()
+                .dataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword())
+                .schemas("public", "app")
+                .cleanDisabled(false)
+                .locations("classpath:db/migration")
+                .load();
+        flyway.clean();
+        flyway.migrate();
+        grantApplicationPrivileges();
+
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(POSTGRES.getJdbcUrl());
+        config.setUsername(APP_USER);
+        config.setPassword(APP_PASSWORD);
+        config.setMaximumPoolSize(4);
+        dataSource = new HikariDataSource(config);
+
+        contextHolder = new TenantContextHolder();
+        TenantAwareTransactionManager transactionManager =
+                new TenantAwareTransactionManager(dataSource, contextHolder, new DataSourceRouteHolder());
+        TenantContextService tenantContextService = new TenantContextService(contextHolder);
+        tenantTransactions = new TenantTransactions(contextHolder, transactionManager);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+
+        StorageProperties properties = new StorageProperties();
+        properties.getJobs().setBatchSize(BATCH_SIZE);
+        FolderRepository folderRepository = new FolderRepository(jdbcTemplate);
+        FileRepository fileRepository = new FileRepository(jdbcTemplate);
+        StorageUsageRepository usageRepository = new StorageUsageRepository(jdbcTemplate);
+        jobRepository = new StorageJobRepository(jdbcTemplate);
+        storageBackend = mock(BlobStorageBackend.class);
+        StorageQuotaService quotaService = new StorageQuotaService(new StorageQuotaRepository(jdbcTemplate),
+                usageRepository, tenantContextService, transactionManager, Clock.systemUTC(), properties);
+        trashService = new TrashService(new TrashRepository(jdbcTemplate), folderRepository, fileRepository,
+                jobRepository, storageBackend, tenantContextService, tenantTransactions, transactionManager, properties);
+        folderService = new FolderService(folderRepository, fileRepository, usageRepository, tenantContextService,
+                transactionManager, properties);
+        copyService = new FolderCopyService(folderRepository, fileRepository, jobRepository, quotaService,
+                tenantContextService, tenantTransactions, transactionManager, properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    // A restored folder brings back what was trashed with it; a subfolder trashed on its own, and
+    // the files in it, stay in the trash until it is restored too.
+    @Test
+    void restoresTrashedSubtree() throws Exception {
+        TenantContext company = insertCompany("company");
+        UUID root = createFolder(company, "Root", null);
+        UUID child = createFolder(company, "Child", root);
+        UUID grandchild = createFolder(company, "Grandchild", child);
+        UUID rootFile = insertFile(company, root, "root.txt");
+        UUID grandchildFile = insertFile(company, grandchild, "grandchild.txt");
+
+        as(company, () -> {
+            trashService.trash(new ItemSelection(List.of(child), null));
+            trashService.trash(new ItemSelection(List.of(root), List.of(rootFile)));
+            return null;
+        });
+        Assertions.assertEquals(List.of(false, false, false), liveFolders(company, root, child, grandchild));
+
+        Assertions.assertThrows(TrashService.RestoreConflictException.class,
+                () -> as(company, () -> restore(List.of(child), null)),
+                "a folder cannot be restored into a trashed parent");
+        as(company, () -> restore(List.of(root), List.of(rootFile)));
+        Assertions.assertEquals(List.of(true, false, false), liveFolders(company, root, child, grandchild),
+                "a subfolder trashed on its own stays in the trash");
+        Assertions.assertTrue(liveFile(company, rootFile));
+
+        Assertions.assertThrows(TrashService.ItemNotFoundException.class,
+                () -> as(company, () -> restore(null, List.of(grandchildFile))),
+                "a file cannot be restored while its folder is in the trash");
+        as(company, () -> restore(List.of(child), null));
+        Assertions.assertEquals(List.of(true, true, true), liveFolders(company, root, child, grandchild));
+        Assertions.assertTrue(liveFile(company, grandchildFile));
+    }
+
+    // A purge runs in bounded batches: files first, then folders deepest first, the root last.
+    @Test
+    void purgesInBatchesEndingWithRoot() throws Exception {
+        TenantContext company = insertCompany("company");
+        UUID root = createFolder(company, "Root", null);
+        UUID child = createFolder(company, "Child", root);
+        UUID sibling = createFolder(company, "Sibling", root);
+        UUID grandchild = createFolder(company, "Grandchild", child);
+        List<UUID> files = List.of(
+                insertFile(company, root, "a.txt"),
+                insertFile(company, root, "b.txt"),
+                insertFile(company, child, "c.txt"),
+                insertFile(company, child, "d.txt"),
+                insertFile(company, grandchild, "e.txt"));
+        List<UUID> below = List.of(child, sibling, grandchild);
+
+        as(company, () -> {
+            trashService.trash(new ItemSelection(List.of(root), null));
+            return null;
+        });
+        StorageJob job = purgeJob(company, as(company, () -> trashService.purgeNow(new ItemSelection(List.of(root), null))));
+
+        int batches = 0;
+        boolean done = false;
+        while (!done) {
+            Assertions.assertTrue(batches < 20, "the purge should finish");
+            done = trashService.purgeBatch(job, company);
+            batches++;
+            long left = countRows(company, "file", files) + countRows(company, "folder", below);
+            Assertions.assertTrue(left == 0 || countRows(company, "folder", List.of(root)) == 1,
+                    "the root folder goes last");
+            Assertions.assertEquals(0, countRootFolders(company, below), "no folder is ever re-rooted");
+        }
+
+        Assertions.assertEquals(0, countRows(company, "folder", List.of(root)));
+        Assertions.assertTrue(batches >= (files.size() + below.size() + 1) / BATCH_SIZE,
+                "each batch handles at most " + BATCH_SIZE + " rows");
+        Assertions.assertEquals(files.size() + below.size() + 1, findJob(company, job.id()).processed());
+        for (String key : List.of("a.txt", "b.txt", "c.txt", "d.txt", "e.txt")) {
+            verify(storageBackend).delete(key);
+        }
+    }
+
+    // A purge batch waits for a restore of its root to commit, then finds nothing left to purge.
+    @Test
+    void purgeWaitsForConcurrentRestore() throws Exception {
+        TenantContext company = insertCompany("company");
+        UUID root = createFolder(company, "Root", null);
+        UUID child = createFolder(company, "Child", root);
+        UUID file = insertFile(company, child, "a.txt");
+        as(company, () -> {
+            trashService.trash(new ItemSelection(List.of(root), null));
+            return null;
+        });
+        StorageJob job = purgeJob(company, as(company, () -> trashService.purgeNow(new ItemSelection(List.of(root), null))));
+
+        CompletableFuture<Boolean> purge;
+        try (Connection restore = dataSource.getConnection()) {
+            restore.setAutoCommit(false);
+            bindContext(restore, company);
+            try (PreparedStatement ps = restore.prepareStatement(
+                    "UPDATE folder SET deleted_at = NULL, deleted_by = NULL, trash_root = NULL WHERE trash_root = ?")) {
+                ps.setObject(1, root);
+                ps.executeUpdate();
+            }
+            purge = CompletableFuture.supplyAsync(() -> trashService.purgeBatch(job, company));
+            Thread.sleep(300);
+            Assertions.assertFalse(purge.isDone(), "the purge waits for the restore holding its root");
+            restore.commit();
+        }
+
+        Assertions.assertTrue(purge.get(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(List.of(true, true), liveFolders(company, root, child));
+        Assertions.assertTrue(liveFile(company, file), "nothing of the restored folder is purged");
+    }
+
+    // A copy job picked up again after its lease ran out, from an older cursor, copies nothing twice.
+    @Test
+    void copyJobIsIdempotentAfterLeaseExpires() throws Exception {
+        TenantContext company = insertCompany("company");
+        UUID source = createFolder(company, "Source", null);
+        UUID sub = createFolder(company, "Sub", source);
+        UUID subSub = createFolder(company, "SubSub", sub);
+        UUID target = createFolder(company, "Target", null);
+        insertFile(company, source, "a.txt");
+        insertFile(company, source, "b.txt");
+        insertFile(company, source, "c.txt");
+        insertFile(company, sub, "d.txt");
+        insertFile(company, subSub, "e.txt");
+
+        FolderCopyService.CopyResult result = as(company,
+                () -> copyService.copy(new ItemSelection(List.of(source), null), target));
+        UUID jobId = result.folders().getFirst().jobId();
+        UUID copy = result.folders().getFirst().folder().id();
+
+        StorageJob first = claim().orElseThrow();
+        Assertions.assertEquals(jobId, first.id());
+        Assertions.assertFalse(copyService.copyBatch(first, company));
+        Assertions.assertFalse(copyService.copyBatch(first, company));
+        Assertions.assertTrue(claim().isEmpty(), "a leased job is not handed out twice");
+        // The first worker stalls until its lease runs out; the second read the cursor before its batches
+        executeAsSuperuser("UPDATE storage_job SET cursor = NULL, processed = 0, locked_until = now() - interval '1 second' "
+                + "WHERE id = '" + jobId + "'");
+
+        StorageJob second = claim().orElseThrow();
+        Assertions.assertEquals(jobId, second.id());
+        int batches = 0;
+        while (!copyService.copyBatch(second, company)) {
+            Assertions.assertTrue(++batches < 20, "the copy should finish");
+        }
+
+        Assertions.assertEquals(3, countSubtreeFolders(company, copy));
+        Assertions.assertEquals(List.of("a.txt", "b.txt", "c.txt", "d.txt", "e.txt"), subtreeFileNames(company, copy));
+        Assertions.assertEquals(10, countAllFiles(company), "each file is copied once");
+    }
+
+    // A bulk move into a folder below one of the moved folders is rejected and moves nothing.
+    @Test
+    void moveItemsRejectsMoveIntoOwnSubtree() throws Exception {
+        TenantContext company = insertCompany("company");
+        UUID root = createFolder(company, "Root", null);
+        UUID child = createFolder(company, "Child", root);
+        UUID other = createFolder(company, "Other", null);
+        UUID file = insertFile(company, null, "a.txt");
+
+        Assertions.assertThrows(FolderService.InvalidFolderMoveException.class,
+                () -> as(company, () -> {
+                    folderService.moveItems(new ItemSelection(List.of(other, root), List.of(file)), child);
+                    return null;
+                }));
+
+        Assertions.assertEquals(2, countRootFolders(company, List.of(root, other)), "nothing was moved");
+        Assertions.assertEquals(List.of(root, child), ancestors(company, child));
+        Assertions.assertEquals(1, countRootFiles(company, List.of(file)));
+    }
+
+    // Each company sees and purges only its own jobs; only the worker's claim spans companies.
+    @Test
+    void jobQueueIsTenantIsolated() throws Exception {
+        TenantContext companyA = insertCompany("company-a");
+        TenantContext companyB = insertCompany("company-b");
+        UUID folderB = createFolder(companyB, "Shared", null);
+        as(companyB, () -> {
+            trashService.trash(new ItemSelection(List.of(folderB), null));
+            return null;
+        });
+        UUID jobB = as(companyB, () -> trashService.purgeNow(new ItemSelection(List.of(folderB), null))).getFirst();
+
+        Assertions.assertTrue(as(companyA, () -> trashService.findJob(jobB)).isEmpty(),
+                "another company's job is invisible");
+        Assertions.assertThrows(RuntimeException.class,
+                () -> tenantTransactions.execute(companyA, status -> jobRepository.insertPurge(
+                        companyB.getCompanyId(), null, null, companyA.getUserId(), Duration.ZERO)),
+                "a job cannot be queued for another company");
+
+        StorageJob claimed = claim().orElseThrow();
+        Assertions.assertEquals(jobB, claimed.id());
+        Assertions.assertTrue(trashService.purgeBatch(claimed, companyA),
+                "run under the wrong company, a purge finds nothing to do");
+        Assertions.assertEquals(1, countRows(companyB, "folder", List.of(folderB)));
+        Assertions.assertEquals(0, findJob(companyB, jobB).processed());
+    }
+
+    private <T> T as(TenantContext context, Supplier<T> action) {
+        return contextHolder.callWith(context, action);
+    }
+
+    private Void restore(List<UUID> folderIds, List<UUID> fileIds) {
+        trashService.restore(new ItemSelection(folderIds, fileIds));
+        return null;
+    }
+
+    private Optional<StorageJob> claim() {
+        return transactionTemplate.execute(status -> jobRepository.claim(Duration.ofMinutes(1), Duration.ofDays(1)));
+    }
+
+    private StorageJob purgeJob(TenantContext context, List<UUID> jobIds) {
+        Assertions.assertEquals(1, jobIds.size());
+        return findJob(context, jobIds.getFirst());
+    }
+
+    private StorageJob findJob(TenantContext context, UUID jobId) {
+        return tenantTransactions.read(context, status -> jobRepository.findById(jobId)).orElseThrow();
+    }
+
+    private UUID createFolder(TenantContext context, String name, UUID parentId) {
+        return as(context, () -> folderService.create(name, parentId)).id();
+    }
+
+    private UUID insertFile(TenantContext context, UUID folderId, String name) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("companyId", context.getCompanyId())
+                .addValue("folderId", folderId)
+                .addValue("name", name);
+        return tenantTransactions.execute(context, status -> jdbcTemplate.queryForObject("""
+                INSERT INTO file (company_id, folder_id, name, size_bytes, mime_type, checksum, storage_key)
+                VALUES (:companyId, :folderId, :name, 10, 'text/plain', 'checksum', :name)
+                RETURNING id
+                """, params, UUID.class));
+    }
+
+    private List<Boolean> liveFolders(TenantContext context, UUID... folderIds) {
+        List<Boolean> live = new ArrayList<>();
+        for (UUID folderId : folderIds) {
+            live.add(tenantTransactions.read(context, status -> jdbcTemplate.queryForObject(
+                    "SELECT deleted_at IS NULL FROM folder WHERE id = :id",
+                    new MapSqlParameterSource("id", folderId), Boolean.class)));
+        }
+        return live;
+    }
+
+    private boolean liveFile(TenantContext context, UUID fileId) {
+        return Boolean.TRUE.equals(tenantTransactions.read(context, status -> jdbcTemplate.queryForObject(
+                "SELECT deleted_at IS NULL FROM file WHERE id = :id",
+                new MapSqlParameterSource("id", fileId), Boolean.class)));
+    }
+
+    private long countRows(TenantContext context, String table, List<UUID> ids) {
+        return tenantTransactions.read(context, status -> jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM " + table + " WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", ids), Long.class));
+    }
+
+    private long countRootFolders(TenantContext context, List<UUID> ids) {
+        return tenantTransactions.read(context, status -> jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM folder WHERE id IN (:ids) AND parent_id IS NULL",
+                new MapSqlParameterSource("ids", ids), Long.class));
+    }
+
+    private long countRootFiles(TenantContext context, List<UUID> ids) {
+        return tenantTransactions.read(context, status -> jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM file WHERE id IN (:ids) AND folder_id IS NULL",
+                new MapSqlParameterSource("ids", ids), Long.class));
+    }
+
+    private long countSubtreeFolders(TenantContext context, UUID rootId) {
+        return tenantTransactions.read(context, status -> jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM folder_closure WHERE ancestor_id = :rootId",
+                new MapSqlParameterSource("rootId", rootId), Long.class));
+    }
+
+    private List<String> subtreeFileNames(TenantContext context, UUID rootId) {
+        return tenantTransactions.read(context, status -> jdbcTemplate.queryForList("""
+                SELECT f.name
+                FROM folder_closure c
+                JOIN file f ON f.folder_id = c.descendant_id
+                WHERE c.ancestor_id = :rootId
+                ORDER BY f.name
+                """, new MapSqlParameterSource("rootId", rootId), String.class));
+    }
+
+    private long countAllFiles(TenantContext context) {
+        return tenantTransactions.read(context, status -> jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM file", new MapSqlParameterSource(), Long.class));
+    }
+
+    private List<UUID> ancestors(TenantContext context, UUID folderId) {
+        return tenantTransactions.read(context, status -> jdbcTemplate.queryForList(
+                "SELECT ancestor_id FROM folder_closure WHERE descendant_id = :folderId ORDER BY depth DESC",
+                new MapSqlParameterSource("folderId", folderId), UUID.class));
+    }
+
+    private static void bindContext(Connection connection, TenantContext context) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET LOCAL app.company_id = '" + context.getCompanyId() + "'");
+            statement.execute("SET LOCAL app.user_id = '" + context.getUserId() + "'");
+        }
+    }
+
+    private TenantContext insertCompany(String slug) throws SQLException {
+        UUID companyId = UUID.randomUUID();
+        UUID ownerId = UUID.randomUUID();
+        try (Connection connection = superuserConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO company (id, name, slug, is_active) VALUES (?, ?, ?, true)")) {
+                ps.setObject(1, companyId);
+                ps.setString(2, slug);
+                ps.setString(3, slug);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO settings (company_id, configured, preferences) VALUES (?, false, '{}'::jsonb)")) {
+                ps.setObject(1, companyId);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO company_user (id, company_id, email, display_name, role, created_at, updated_at) VALUES (?, ?, ?, ?, 'OWNER', now(), now())")) {
+                ps.setObject(1, ownerId);
+                ps.setObject(2, companyId);
+                ps.setString(3, slug + "@example.com");
+                ps.setString(4, slug + " Owner");
+                ps.executeUpdate();
+            }
+            connection.commit();
+        }
+        return new TenantContext(companyId, ownerId, Set.of("ROLE_OWNER"));
+    }
+
+    private static void executeAsSuperuser(String sql) throws SQLException {
+        try (Connection connection = superuserConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static Connection superuserConnection() throws SQLException {
+        return DriverManager.getConnection(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+    }
+
+    private static void grantApplicationPrivileges() throws SQLException {
+        try (Connection connection = superuserConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("GRANT USAGE ON SCHEMA public TO " + APP_USER);
+            statement.execute("GRANT USAGE ON SCHEMA app TO " + APP_USER);
+            statement.execute("GRANT SELECT, INSERT, UPDATE, DELETE ON ALL TABLES IN SCHEMA public TO " + APP_USER);
+            statement.execute("GRANT EXECUTE ON ALL FUNCTIONS IN SCHEMA app TO " + APP_USER);
+            statement.execute("GRANT USAGE, SELECT ON ALL SEQUENCES IN SCHEMA public TO " + APP_USER);
+        }
+    }
+}
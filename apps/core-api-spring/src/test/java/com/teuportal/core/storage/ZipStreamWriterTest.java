@@ -0,0 +1,87 @@
+package com.teuportal.core.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ZipStreamWriterTest {
+
+    private static final Instant MODIFIED = Instant.parse("2024-05-06T07:08:10Z");
+
+    @TempDir
+    Path dir;
+
+    // Stored and deflated entries written in one pass read back with their content and CRC.
+    @Test
+    void writesStoredAndDeflatedEntries() throws Exception {
+        byte[] text = "compress me ".repeat(1000).getBytes(StandardCharsets.UTF_8);
+        byte[] image = new byte[5000];
+        new java.util.Random(7).nextBytes(image);
+        Path archive = dir.resolve("export.zip");
+
+        try (OutputStream out = Files.newOutputStream(archive);
+             ZipStreamWriter zip = new ZipStreamWriter(out, 64)) {
+            zip.addDirectory("Reports", MODIFIED);
+            zip.addFile("Reports/notes.txt", MODIFIED, true, new ByteArrayInputStream(text));
+            zip.addFile("Reports/photo ü.jpg", MODIFIED, false, new ByteArrayInputStream(image));
+            zip.finish();
+        }
+
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            assertThat(zip.size()).isEqualTo(3);
+            assertThat(zip.getEntry("Reports/").isDirectory()).isTrue();
+            ZipEntry notes = zip.getEntry("Reports/notes.txt");
+            assertThat(notes.getMethod()).isEqualTo(ZipEntry.DEFLATED);
+            assertThat(notes.getCompressedSize()).isLessThan(text.length);
+            assertThat(zip.getInputStream(notes).readAllBytes()).isEqualTo(text);
+            ZipEntry photo = zip.getEntry("Reports/photo ü.jpg");
+            assertThat(photo.getMethod()).isEqualTo(ZipEntry.STORED);
+            assertThat(photo.getCompressedSize()).isEqualTo(image.length);
+            assertThat(zip.getInputStream(photo).readAllBytes()).isEqualTo(image);
+            assertThat(photo.getLastModifiedTime().toInstant()).isEqualTo(MODIFIED);
+        }
+    }
+
+    // Past 65535 entries the archive switches to ZIP64 end records.
+    @Test
+    void writesZip64EndRecordsForManyEntries() throws Exception {
+        Path archive = dir.resolve("many.zip");
+        int count = 70_000;
+
+        try (OutputStream out = Files.newOutputStream(archive);
+             ZipStreamWriter zip = new ZipStreamWriter(out, 64)) {
+            for (int i = 0; i < count; i++) {
+                zip.addDirectory("d" + i, MODIFIED);
+            }
+            zip.finish();
+        }
+
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            assertThat(zip.size()).isEqualTo(count);
+            assertThat(zip.getEntry("d69999/")).isNotNull();
+        }
+    }
+
+    // Duplicate names get a numbered suffix, compared case-insensitively.
+    @Test
+    void uniqueNameNumbersDuplicates() {
+        Set<String> used = new HashSet<>();
+
+        assertThat(ZipExportService.uniqueName("Report.pdf", used)).isEqualTo("Report.pdf");
+        assertThat(ZipExportService.uniqueName("report.PDF", used)).isEqualTo("report (2).PDF");
+        assertThat(ZipExportService.uniqueName("Report.pdf", used)).isEqualTo("Report (3).pdf");
+        assertThat(ZipExportService.safeSegment("../a/b")).isEqualTo(".._a_b");
+        assertThat(ZipExportService.safeSegment("..")).isEqualTo("_");
+    }
+}
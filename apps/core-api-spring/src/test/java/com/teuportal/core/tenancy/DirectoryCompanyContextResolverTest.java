@@ -0,0 +1,101 @@
+package com.teuportal.core.tenancy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+class DirectoryCompanyContextResolverTest {
+
+    private static final UUID ACME = UUID.randomUUID();
+
+    private JdbcTemplate jdbcTemplate;
+    private CompanyDirectory directory;
+    private TenancyProperties properties;
+    private DirectoryCompanyContextResolver resolver;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(anyString(), eq(UUID.class), eq("acme"))).thenReturn(ACME);
+        directory = new CompanyDirectory(jdbcTemplate, Clock.systemUTC(), Duration.ofMinutes(1));
+        properties = new TenancyProperties();
+        properties.setMode(TenancyProperties.Mode.MULTI);
+        properties.setBaseDomain("teuportal.test");
+        resolver = new DirectoryCompanyContextResolver(directory, properties);
+    }
+
+    // The slug header takes precedence over the host name.
+    @Test
+    void resolvesFromHeaderBeforeHost() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setServerName("other.teuportal.test");
+        request.addHeader("X-Company-Slug", "ACME");
+
+        assertThat(resolver.resolveCompanyId(request)).isEqualTo(ACME);
+    }
+
+    // A single-label subdomain of the base domain names the company; repeat lookups hit the cache.
+    @Test
+    void resolvesFromHostAndCachesResult() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setServerName("acme.teuportal.test");
+
+        assertThat(resolver.resolveCompanyId(request)).isEqualTo(ACME);
+        assertThat(resolver.resolveCompanyId(request)).isEqualTo(ACME);
+
+        verify(jdbcTemplate, times(1)).queryForObject(anyString(), eq(UUID.class), eq("acme"));
+    }
+
+    // Unknown slugs are rejected and the miss is cached until invalidated.
+    @Test
+    void cachesMissesUntilInvalidated() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setServerName("ghost.teuportal.test");
+
+        assertThatThrownBy(() -> resolver.resolveCompanyId(request)).isInstanceOf(UnknownCompanyException.class);
+        assertThatThrownBy(() -> resolver.resolveCompanyId(request)).isInstanceOf(UnknownCompanyException.class);
+        verify(jdbcTemplate, times(1)).queryForObject(anyString(), eq(UUID.class), eq("ghost"));
+
+        directory.invalidate("ghost");
+        assertThatThrownBy(() -> resolver.resolveCompanyId(request)).isInstanceOf(UnknownCompanyException.class);
+        verify(jdbcTemplate, times(2)).queryForObject(anyString(), eq(UUID.class), eq("ghost"));
+    }
+
+    // Random slugs cannot grow the directory past its bound, and known companies outlive misses.
+    @Test
+    void boundsCachedMisses() {
+        directory.find("acme");
+        for (int i = 0; i < 3 * CompanyDirectory.MAX_ENTRIES; i++) {
+            assertThat(directory.find("random-" + i)).isEmpty();
+        }
+
+        assertThat(directory.size()).isLessThanOrEqualTo(CompanyDirectory.MAX_ENTRIES);
+        assertThat(directory.find("acme")).contains(ACME);
+        verify(jdbcTemplate, times(1)).queryForObject(anyString(), eq(UUID.class), eq("acme"));
+    }
+
+    // Hosts outside the base domain fall back to the default slug when one is configured.
+    @Test
+    void fallsBackToDefaultSlug() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setServerName("localhost");
+
+        assertThatThrownBy(() -> resolver.resolveCompanyId(request)).isInstanceOf(UnknownCompanyException.class);
+
+        properties.setDefaultSlug("acme");
+        assertThat(resolver.resolveCompanyId(request)).isEqualTo(ACME);
+    }
+}
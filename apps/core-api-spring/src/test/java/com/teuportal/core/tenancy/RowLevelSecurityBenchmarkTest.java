@@ -0,0 +1,196 @@
+package com.teuportal.core.tenancy;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.postgresql.util.PSQLException;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Seeds a few million tenant rows and checks that RLS predicates stay index-driven. Excluded
+ * from the default build; run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@Testcontainers
+class RowLevelSecurityBenchmarkTest {
+
+    private static final String APP_USER = "app_user";
+    private static final String APP_PASSWORD = "app_password";
+    private static final int TENANTS = 500;
+    private static final int CLIENTS_PER_TENANT = 4_000;
+    private static final int SAMPLES = 200;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:17-alpine")
+            .withDatabaseName("teuportal")
+            .withUsername("postgres")
+            .withPassword("postgres");
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static List<UUID> companyIds;
+
+    @BeforeAll
+    static void seed() throws SQLException {
+        POSTGRES.start();
+        try (Connection connection = superuserConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE EXTENSION IF NOT EXISTS pgcrypto");
+            statement.execute("CREATE ROLE " + APP_USER + " LOGIN PASSWORD '" + APP_PASSWORD + "'");
+        }
+        Flyway.configure()
+                .dataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword())
+                .schemas("public", "app")
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+
+        try (Connection connection = superuserConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("GRANT USAGE ON SCHEMA public TO " + APP_USER);
+            statement.execute("GRANT USAGE ON SCHEMA app TO " + APP_USER);
+            statement.execute("GRANT SELECT, INSERT, UPDATE, DELETE ON ALL TABLES IN SCHEMA public TO " + APP_USER);
+            statement.execute("INSERT INTO company (name, slug) SELECT 'Tenant ' || g, 'tenant-' || g "
+                    + "FROM generate_series(1, " + TENANTS + ") g");
+            statement.execute("INSERT INTO client (company_id, name) SELECT c.id, 'client-' || g "
+                    + "FROM company c CROSS JOIN generate_series(1, " + CLIENTS_PER_TENANT + ") g");
+            statement.execute("VACUUM ANALYZE client");
+            companyIds = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery("SELECT id FROM company")) {
+                while (rs.next()) {
+                    companyIds.add(rs.getObject(1, UUID.class));
+                }
+            }
+        }
+    }
+
+    // A tenant-wide scan is bounded by the (company_id, ...) index rather than a sequential scan.
+    @Test
+    void tenantScanUsesCompanyIndex() throws Exception {
+        JsonNode plan = explain(companyIds.getFirst(), "SELECT count(*) FROM client");
+
+        List<String> nodeTypes = nodeTypes(plan);
+        Assertions.assertFalse(nodeTypes.contains("Seq Scan"), "policy predicate should not force a sequential scan: " + nodeTypes);
+        Assertions.assertTrue(plan.toString().contains("idx_client_company_name") || plan.toString().contains("ux_client_company_name"),
+                "tenant scan should use a company_id index: " + plan);
+    }
+
+    // The inlined policy and the query predicate combine into one composite index condition.
+    @Test
+    void pointLookupUsesCompositeIndexCondition() throws Exception {
+        JsonNode plan = explain(companyIds.getFirst(), "SELECT id FROM client WHERE name = 'client-42'");
+
+        String indexCond = findField(plan, "Index Cond");
+        Assertions.assertNotNull(indexCond, "point lookup should be an index scan: " + plan);
+        Assertions.assertTrue(indexCond.contains("company_id") && indexCond.contains("name"),
+                "index condition should cover company_id and name: " + indexCond);
+        Assertions.assertTrue(indexCond.contains("current_setting"),
+                "app.require_company_id() should be inlined into the index condition: " + indexCond);
+    }
+
+    // Point lookups across random tenants stay well within interactive latency budgets.
+    @Test
+    void pointLookupLatencyStaysLow() throws Exception {
+        Random random = new Random(42);
+        long[] nanos = new long[SAMPLES];
+        try (Connection connection = appConnection()) {
+            connection.setAutoCommit(false);
+            for (int i = 0; i < SAMPLES; i++) {
+                UUID companyId = companyIds.get(random.nextInt(companyIds.size()));
+                long start = System.nanoTime();
+                bindCompany(connection, companyId);
+                try (PreparedStatement ps = connection.prepareStatement("SELECT id FROM client WHERE name = ?")) {
+                    ps.setString(1, "client-" + (1 + random.nextInt(CLIENTS_PER_TENANT)));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        Assertions.assertTrue(rs.next(), "each tenant owns every client name");
+                        Assertions.assertFalse(rs.next(), "lookups must only see the current tenant's row");
+                    }
+                }
+                connection.commit();
+                nanos[i] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(nanos);
+        double p95Millis = nanos[(int) (SAMPLES * 0.95)] / 1_000_000.0;
+        Assertions.assertTrue(p95Millis < 20.0, "p95 point lookup latency was " + p95Millis + " ms");
+    }
+
+    // Inlining must not weaken the hard failure when the tenant GUC is missing.
+    @Test
+    void missingCompanyStillFails() {
+        Assertions.assertThrows(PSQLException.class, () -> {
+            try (Connection connection = appConnection();
+                 PreparedStatement ps = connection.prepareStatement("SELECT count(*) FROM client")) {
+                ps.executeQuery();
+            }
+        });
+    }
+
+    private JsonNode explain(UUID companyId, String sql) throws Exception {
+        try (Connection connection = appConnection()) {
+            connection.setAutoCommit(false);
+            bindCompany(connection, companyId);
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("EXPLAIN (ANALYZE, FORMAT JSON) " + sql)) {
+                rs.next();
+                JsonNode plan = MAPPER.readTree(rs.getString(1)).get(0).get("Plan");
+                connection.rollback();
+                return plan;
+            }
+        }
+    }
+
+    private static void bindCompany(Connection connection, UUID companyId) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT set_config('app.company_id', ?, true)")) {
+            ps.setString(1, companyId.toString());
+            ps.execute();
+        }
+    }
+
+    private static List<String> nodeTypes(JsonNode plan) {
+        List<String> types = new ArrayList<>();
+        types.add(plan.path("Node Type").asText());
+        for (JsonNode child : plan.path("Plans")) {
+            types.addAll(nodeTypes(child));
+        }
+        return types;
+    }
+
+    private static String findField(JsonNode plan, String field) {
+        if (plan.has(field)) {
+            return plan.get(field).asText();
+        }
+        for (JsonNode child : plan.path("Plans")) {
+            String found = findField(child, field);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    private static Connection superuserConnection() throws SQLException {
+        return DriverManager.getConnection(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+    }
+
+    private static Connection appConnection() throws SQLException {
+        return DriverManager.getConnection(POSTGRES.getJdbcUrl(), APP_USER, APP_PASSWORD);
+    }
+}
@@ -1,5 +1,6 @@
 package com.teuportal.core.tenancy;
 
+import com.teuportal.core.datasource.DataSourceRouteHolder;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import org.flywaydb.core.Flyway;
@@ -9,6 +10,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Assertions;
 import org.postgresql.util.PSQLException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
@@ -22,6 +25,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 @Testcontainers
@@ -135,6 +139,92 @@ class RowLevelSecurityIntegrationTest {
         });
     }
 
+    @Test
+    void shouldRejectFolderParentFromAnotherTenant() throws Exception {
+        CompanyContext companyA = insertCompanyWithContext("Company A", "company-a");
+        CompanyContext companyB = insertCompanyWithContext("Company B", "company-b");
+
+        UUID folderA = insertFolder(companyA, null, "Projects");
+
+        Assertions.assertTrue(executeExpectingPsqlException(() -> insertFolder(companyB, folderA, "Intruder")),
+                "a parent folder owned by another tenant should be rejected");
+    }
+
+    @Test
+    void shouldMaintainFolderAncestryWhenMovingSubtrees() throws Exception {
+        CompanyContext company = insertCompanyWithContext("Company", "company");
+        UUID root = insertFolder(company, null, "Root");
+        UUID child = insertFolder(company, root, "Child");
+        UUID grandchild = insertFolder(company, child, "Grandchild");
+        UUID other = insertFolder(company, null, "Other");
+
+        Assertions.assertEquals(List.of(root, child, grandchild), selectAncestors(company, grandchild));
+
+        moveFolder(company, child, other);
+
+        Assertions.assertEquals(List.of(other, child, grandchild), selectAncestors(company, grandchild),
+                "moving a folder should re-root its whole subtree");
+        Assertions.assertTrue(executeExpectingPsqlException(() -> moveFolder(company, other, grandchild)),
+                "a folder cannot be moved below its own descendant");
+    }
+
+    @Test
+    void shouldRollUpStorageUsageThroughMovesAndDeletes() throws Exception {
+        CompanyContext company = insertCompanyWithContext("Company", "company");
+        UUID root = insertFolder(company, null, "Root");
+        UUID child = insertFolder(company, root, "Child");
+        UUID other = insertFolder(company, null, "Other");
+        insertFile(company, root, "a.txt", 10);
+        insertFile(company, child, "b.txt", 20);
+        insertFile(company, child, "c.txt", 30);
+
+        Assertions.assertEquals(List.of(3L, 60L), selectFolderUsage(company, root));
+        Assertions.assertEquals(List.of(2L, 50L), selectFolderUsage(company, child));
+
+        moveFolder(company, child, other);
+
+        Assertions.assertEquals(List.of(1L, 10L), selectFolderUsage(company, root),
+                "a moved subtree should leave its old ancestors' totals");
+        Assertions.assertEquals(List.of(2L, 50L), selectFolderUsage(company, other));
+
+        deleteFolder(company, child);
+
+        Assertions.assertEquals(List.of(0L, 0L), selectFolderUsage(company, other),
+                "a deleted folder's files should leave its ancestors' totals");
+        Assertions.assertEquals(List.of(3L, 60L), selectCompanyUsage(company),
+                "files re-rooted by a folder delete still count for the company");
+    }
+
+    @Test
+    void shouldEnforceStorageQuotaWithReservations() throws Exception {
+        CompanyContext company = insertCompanyWithContext("Company", "company");
+        insertFile(company, null, "a.txt", 40);
+        setStorageQuota(company, 100);
+
+        UUID reservation = reserveStorage(company, 50);
+        Assertions.assertNotNull(reservation);
+        Assertions.assertNull(reserveStorage(company, 20), "stored and reserved bytes count against the quota");
+
+        insertFile(company, null, "b.txt", 30);
+        finishReservation(company, reservation, 30);
+
+        Assertions.assertNotNull(reserveStorage(company, 30), "unused reserved bytes should be freed again");
+        Assertions.assertNull(reserveStorage(company, 1));
+    }
+
+    @Test
+    void shouldSearchSimilarNamesWithinTenantOnly() throws Exception {
+        CompanyContext companyA = insertCompanyWithContext("Company A", "company-a");
+        CompanyContext companyB = insertCompanyWithContext("Company B", "company-b");
+        insertFile(companyA, null, "Annual Report 2024.pdf", 10);
+        insertFile(companyA, null, "Report draft.pdf", 10);
+        insertFile(companyB, null, "Annual Report 2023.pdf", 10);
+
+        Assertions.assertEquals(List.of("Annual Report 2024.pdf"), selectSimilarNames(companyA, "Report"),
+                "prefix matches are left to the prefix phase and other tenants stay invisible");
+        Assertions.assertEquals(List.of("Annual Report 2023.pdf"), selectSimilarNames(companyB, "repotr"));
+    }
+
     private CompanyContext insertCompanyWithContext(String name, String slug) throws SQLException {
         UUID companyId = UUID.randomUUID();
         UUID ownerId = UUID.randomUUID();
@@ -169,6 +259,40 @@ class RowLevelSecurityIntegrationTest {
         return new CompanyContext(companyId, ownerId);
     }
 
+    private UUID insertCompanyUser(UUID companyId, String email, String role) throws SQLException {
+        UUID userId = UUID.randomUUID();
+        executeAsSuperuser("INSERT INTO company_user (id, company_id, email, display_name, role, created_at, updated_at) "
+                + "VALUES ('" + userId + "', '" + companyId + "', '" + email + "', '" + email + "', '" + role + "', now(), now())");
+        return userId;
+    }
+
+    /**
+     * One pooled connection, so consecutive transactions run in the same database session.
+     */
+    private HikariDataSource singleConnectionDataSource() {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(POSTGRES.getJdbcUrl());
+        config.setUsername(APP_USER);
+        config.setPassword(APP_PASSWORD);
+        config.setMaximumPoolSize(1);
+        return new HikariDataSource(config);
+    }
+
+    private static TenantTransactions tenantTransactions(DataSource session) {
+        TenantContextHolder contextHolder = new TenantContextHolder();
+        return new TenantTransactions(contextHolder,
+                new TenantAwareTransactionManager(session, contextHolder, new DataSourceRouteHolder()));
+    }
+
+    private static void executeAsSuperuser(String sql) {
+        try (Connection connection = DriverManager.getConnection(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        } catch (SQLException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
     private UUID insertClient(CompanyContext context, UUID targetCompanyId, String name) throws SQLException {
         UUID clientId = UUID.randomUUID();
         withCompanyContext(context.companyId(), context.ownerId(), connection -> {
@@ -183,6 +307,63 @@ class RowLevelSecurityIntegrationTest {
         return clientId;
     }
 
+    // A write transaction binds the caller's manage rights once; policies read them through
+    // app.company_user_can_manage, so an owner may write clients and a member may not.
+    @Test
+    void shouldHonourBoundManageRightsInWriteTransactions() throws Exception {
+        CompanyContext company = insertCompanyWithContext("Company", "company");
+        UUID memberId = insertCompanyUser(company.companyId(), "member@example.com", "MEMBER");
+        TenantContext owner = new TenantContext(company.companyId(), company.ownerId(), Set.of("ROLE_OWNER"));
+        TenantContext member = new TenantContext(company.companyId(), memberId, Set.of("ROLE_MEMBER"));
+
+        try (HikariDataSource session = singleConnectionDataSource()) {
+            TenantTransactions transactions = tenantTransactions(session);
+            JdbcTemplate jdbc = new JdbcTemplate(session);
+
+            List<Object> bound = transactions.execute(owner, status -> List.of(
+                    jdbc.queryForObject("SELECT current_setting('app.manage_rights')", String.class),
+                    jdbc.queryForObject("SELECT app.company_user_can_manage(?)", Boolean.class, company.companyId()),
+                    jdbc.update("INSERT INTO client (company_id, name) VALUES (?, 'By owner')", company.companyId())));
+            Assertions.assertEquals(List.of(company.companyId() + ":" + company.ownerId() + ":1", true, 1), bound);
+
+            Assertions.assertEquals(company.companyId() + ":" + memberId + ":0", transactions.execute(member,
+                    status -> jdbc.queryForObject("SELECT current_setting('app.manage_rights')", String.class)));
+            Assertions.assertThrows(DataAccessException.class, () -> transactions.execute(member,
+                    status -> jdbc.update("INSERT INTO client (company_id, name) VALUES (?, 'By member')",
+                            company.companyId())));
+        }
+        Assertions.assertEquals(List.of("By owner"), selectClientNames(company));
+    }
+
+    // Rights are bound per transaction: an admin demoted mid-session keeps them for the transaction
+    // already running, and the next transaction on the same connection no longer sees them, even
+    // though the session still claims the admin role.
+    @Test
+    void shouldDropRevokedManageRightsInNextTransaction() throws Exception {
+        CompanyContext company = insertCompanyWithContext("Company", "company");
+        UUID adminId = insertCompanyUser(company.companyId(), "admin@example.com", "ADMIN");
+        TenantContext admin = new TenantContext(company.companyId(), adminId, Set.of("ROLE_ADMIN"));
+
+        try (HikariDataSource session = singleConnectionDataSource()) {
+            TenantTransactions transactions = tenantTransactions(session);
+            JdbcTemplate jdbc = new JdbcTemplate(session);
+
+            transactions.execute(admin, status -> {
+                jdbc.update("INSERT INTO client (company_id, name) VALUES (?, 'Before')", company.companyId());
+                executeAsSuperuser("UPDATE company_user SET role = 'MEMBER' WHERE id = '" + adminId + "'");
+                return jdbc.update("INSERT INTO client (company_id, name) VALUES (?, 'Same transaction')",
+                        company.companyId());
+            });
+
+            Assertions.assertEquals(company.companyId() + ":" + adminId + ":0", transactions.execute(admin,
+                    status -> jdbc.queryForObject("SELECT current_setting('app.manage_rights')", String.class)));
+            Assertions.assertThrows(DataAccessException.class, () -> transactions.execute(admin,
+                    status -> jdbc.update("INSERT INTO client (company_id, name) VALUES (?, 'After')",
+                            company.companyId())));
+        }
+        Assertions.assertEquals(List.of("Before", "Same transaction"), selectClientNames(company));
+    }
+
     private void updateClientName(CompanyContext context, UUID targetCompanyId, String targetName, String newName) throws SQLException {
         withCompanyContext(context.companyId(), context.ownerId(), connection -> {
             try (PreparedStatement ps = connection.prepareStatement(
@@ -204,6 +385,149 @@ class RowLevelSecurityIntegrationTest {
         });
     }
 
+    private UUID insertFolder(CompanyContext context, UUID parentId, String name) throws SQLException {
+        UUID folderId = UUID.randomUUID();
+        withCompanyContext(context.companyId(), context.ownerId(), connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO folder (id, company_id, parent_id, name) VALUES (?, ?, ?, ?)")) {
+                ps.setObject(1, folderId);
+                ps.setObject(2, context.companyId());
+                ps.setObject(3, parentId);
+                ps.setString(4, name);
+                ps.executeUpdate();
+            }
+        });
+        return folderId;
+    }
+
+    private void moveFolder(CompanyContext context, UUID folderId, UUID parentId) throws SQLException {
+        withCompanyContext(context.companyId(), context.ownerId(), connection -> {
+            try (PreparedStatement ps = connection.prepareStatement("UPDATE folder SET parent_id = ? WHERE id = ?")) {
+                ps.setObject(1, parentId);
+                ps.setObject(2, folderId);
+                ps.executeUpdate();
+            }
+        });
+    }
+
+    private void deleteFolder(CompanyContext context, UUID folderId) throws SQLException {
+        withCompanyContext(context.companyId(), context.ownerId(), connection -> {
+            try (PreparedStatement ps = connection.prepareStatement("DELETE FROM folder WHERE id = ?")) {
+                ps.setObject(1, folderId);
+                ps.executeUpdate();
+            }
+        });
+    }
+
+    private void insertFile(CompanyContext context, UUID folderId, String name, long sizeBytes) throws SQLException {
+        withCompanyContext(context.companyId(), context.ownerId(), connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO file (company_id, folder_id, name, size_bytes, mime_type, checksum, storage_key) VALUES (?, ?, ?, ?, 'text/plain', 'checksum', ?)")) {
+                ps.setObject(1, context.companyId());
+                ps.setObject(2, folderId);
+                ps.setString(3, name);
+                ps.setLong(4, sizeBytes);
+                ps.setString(5, name);
+                ps.executeUpdate();
+            }
+        });
+    }
+
+    private void setStorageQuota(CompanyContext context, long quotaBytes) throws SQLException {
+        withCompanyContext(context.companyId(), context.ownerId(), connection -> {
+            try (PreparedStatement ps = connection.prepareStatement("UPDATE settings SET storage_quota_bytes = ? WHERE company_id = ?")) {
+                ps.setLong(1, quotaBytes);
+                ps.setObject(2, context.companyId());
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = connection.prepareStatement("SELECT app.rebalance_storage_quota(?, 0)")) {
+                ps.setObject(1, context.companyId());
+                ps.executeQuery().close();
+            }
+        });
+    }
+
+    private UUID reserveStorage(CompanyContext context, long bytes) throws SQLException {
+        List<UUID> results = new ArrayList<>();
+        withCompanyContext(context.companyId(), context.ownerId(), connection -> {
+            try (PreparedStatement ps = connection.prepareStatement("SELECT app.reserve_storage(?, ?, now() + interval '1 hour')")) {
+                ps.setObject(1, context.companyId());
+                ps.setLong(2, bytes);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    results.add(rs.getObject(1, UUID.class));
+                }
+            }
+        });
+        return results.get(0);
+    }
+
+    private void finishReservation(CompanyContext context, UUID reservationId, long usedBytes) throws SQLException {
+        withCompanyContext(context.companyId(), context.ownerId(), connection -> {
+            try (PreparedStatement ps = connection.prepareStatement("SELECT app.finish_storage_reservation(?, ?)")) {
+                ps.setObject(1, reservationId);
+                ps.setLong(2, usedBytes);
+                ps.executeQuery().close();
+            }
+        });
+    }
+
+    private List<Long> selectFolderUsage(CompanyContext context, UUID folderId) throws SQLException {
+        return selectUsage(context, "SELECT COALESCE(sum(file_count), 0), COALESCE(sum(total_bytes), 0) FROM folder_usage WHERE folder_id = ?", folderId);
+    }
+
+    private List<Long> selectCompanyUsage(CompanyContext context) throws SQLException {
+        return selectUsage(context, "SELECT COALESCE(sum(file_count), 0), COALESCE(sum(total_bytes), 0) FROM company_usage WHERE company_id = ?", context.companyId());
+    }
+
+    private List<Long> selectUsage(CompanyContext context, String sql, UUID id) throws SQLException {
+        List<Long> results = new ArrayList<>();
+        withCompanyContext(context.companyId(), context.ownerId(), connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setObject(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    results.add(rs.getLong(1));
+                    results.add(rs.getLong(2));
+                }
+            }
+        });
+        return results;
+    }
+
+    private List<String> selectSimilarNames(CompanyContext context, String query) throws SQLException {
+        List<String> results = new ArrayList<>();
+        withCompanyContext(context.companyId(), context.ownerId(), connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "SELECT f.name FROM app.search_similar_names(?, NULL, NULL, NULL, NULL, NULL, NULL, 10, 100) s "
+                            + "JOIN file f ON f.id = s.id ORDER BY s.score DESC, f.name")) {
+                ps.setString(1, query);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        results.add(rs.getString(1));
+                    }
+                }
+            }
+        });
+        return results;
+    }
+
+    private List<UUID> selectAncestors(CompanyContext context, UUID folderId) throws SQLException {
+        List<UUID> results = new ArrayList<>();
+        withCompanyContext(context.companyId(), context.ownerId(), connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "SELECT ancestor_id FROM folder_closure WHERE descendant_id = ? ORDER BY depth DESC")) {
+                ps.setObject(1, folderId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        results.add(rs.getObject(1, UUID.class));
+                    }
+                }
+            }
+        });
+        return results;
+    }
+
     private List<String> selectClientNames(CompanyContext context) throws SQLException {
         List<String> results = new ArrayList<>();
         withCompanyContext(context.companyId(), context.ownerId(), connection -> {
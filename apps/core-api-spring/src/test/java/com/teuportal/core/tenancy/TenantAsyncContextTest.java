@@ -0,0 +1,197 @@
+package com.teuportal.core.tenancy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.teuportal.core.datasource.DataSourceRouteHolder;
+import com.teuportal.core.datasource.ReadOnlyRequestInterceptor;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+class TenantAsyncContextTest {
+
+    private static final UUID COMPANY = UUID.randomUUID();
+
+    private AnnotationConfigWebApplicationContext context;
+    private TenantContextHolder contextHolder;
+    private DataSourceRouteHolder routeHolder;
+    private AsyncController controller;
+    private DispatchRecorder dispatch;
+    private ExecutorService worker;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigWebApplicationContext();
+        context.setServletContext(new MockServletContext());
+        context.register(AsyncWebConfiguration.class);
+        context.refresh();
+        contextHolder = context.getBean(TenantContextHolder.class);
+        routeHolder = context.getBean(DataSourceRouteHolder.class);
+        controller = context.getBean(AsyncController.class);
+        dispatch = context.getBean(DispatchRecorder.class);
+        worker = context.getBean(ExecutorService.class);
+        mockMvc = MockMvcBuilders.webAppContextSetup(context)
+                .addFilters(new TenantContextFilter(request -> COMPANY, contextHolder))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    // A Callable runs with the request's tenant, which is unbound from every thread once it is done.
+    @Test
+    void callableSeesTenantOnWorkerAndDispatch() throws Exception {
+        MvcResult result = mockMvc.perform(get("/callable")).andExpect(request().asyncStarted()).andReturn();
+        assertThat(contextHolder.get()).isEmpty();
+        assertThat(routeHolder.isReadOnlyRequest()).isFalse();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(COMPANY.toString()));
+
+        assertThat(controller.onWorker.get()).map(TenantContext::getCompanyId).contains(COMPANY);
+        assertThat(worker.submit(contextHolder::get).get()).isEmpty();
+        assertThat(dispatch.context.get()).map(TenantContext::getCompanyId).contains(COMPANY);
+        assertThat(dispatch.readOnly.get()).isTrue();
+        assertThat(contextHolder.get()).isEmpty();
+        assertThat(routeHolder.isReadOnlyRequest()).isFalse();
+    }
+
+    // A future completed on another thread is rendered with the tenant re-bound by the filter.
+    @Test
+    void futureDispatchRebindsTenant() throws Exception {
+        MvcResult result = mockMvc.perform(get("/future")).andExpect(request().asyncStarted()).andReturn();
+        assertThat(contextHolder.get()).isEmpty();
+
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk()).andExpect(content().string("done"));
+
+        assertThat(dispatch.context.get()).map(TenantContext::getCompanyId).contains(COMPANY);
+        assertThat(contextHolder.get()).isEmpty();
+    }
+
+    @Configuration
+    @EnableWebMvc
+    @Import(TenantAsyncConfiguration.class)
+    static class AsyncWebConfiguration implements WebMvcConfigurer {
+
+        @Bean
+        TenantContextHolder tenantContextHolder() {
+            return new TenantContextHolder();
+        }
+
+        @Bean
+        DataSourceRouteHolder dataSourceRouteHolder() {
+            return new DataSourceRouteHolder();
+        }
+
+        @Bean(destroyMethod = "shutdownNow")
+        ExecutorService asyncWorker() {
+            // One thread, so the test can check what the worker is left holding
+            return Executors.newSingleThreadExecutor();
+        }
+
+        @Bean
+        AsyncController asyncController(TenantContextHolder contextHolder) {
+            return new AsyncController(contextHolder);
+        }
+
+        @Bean
+        DispatchRecorder dispatchRecorder(TenantContextHolder contextHolder, DataSourceRouteHolder routeHolder) {
+            return new DispatchRecorder(contextHolder, routeHolder);
+        }
+
+        @Override
+        public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+            configurer.setTaskExecutor(new TaskExecutorAdapter(asyncWorker()));
+        }
+
+        @Override
+        public void addInterceptors(InterceptorRegistry registry) {
+            registry.addInterceptor(new ReadOnlyRequestInterceptor(dataSourceRouteHolder()));
+            registry.addInterceptor(dispatchRecorder(tenantContextHolder(), dataSourceRouteHolder()));
+        }
+    }
+
+    @RestController
+    static class AsyncController {
+
+        private final TenantContextHolder contextHolder;
+        private final AtomicReference<Optional<TenantContext>> onWorker = new AtomicReference<>();
+
+        AsyncController(TenantContextHolder contextHolder) {
+            this.contextHolder = contextHolder;
+        }
+
+        @GetMapping("/callable")
+        Callable<String> callable() {
+            return () -> {
+                Optional<TenantContext> context = contextHolder.get();
+                onWorker.set(context);
+                return context.map(TenantContext::getCompanyId).map(UUID::toString).orElse("none");
+            };
+        }
+
+        @GetMapping("/future")
+        CompletableFuture<String> future() {
+            return CompletableFuture.supplyAsync(() -> "done");
+        }
+    }
+
+    static class DispatchRecorder implements HandlerInterceptor {
+
+        private final TenantContextHolder contextHolder;
+        private final DataSourceRouteHolder routeHolder;
+        private final AtomicReference<Optional<TenantContext>> context = new AtomicReference<>();
+        private final AtomicReference<Boolean> readOnly = new AtomicReference<>();
+
+        DispatchRecorder(TenantContextHolder contextHolder, DataSourceRouteHolder routeHolder) {
+            this.contextHolder = contextHolder;
+            this.routeHolder = routeHolder;
+        }
+
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+            if (request.getDispatcherType() == DispatcherType.ASYNC) {
+                context.set(contextHolder.get());
+                readOnly.set(routeHolder.isReadOnlyRequest());
+            }
+            return true;
+        }
+    }
+}
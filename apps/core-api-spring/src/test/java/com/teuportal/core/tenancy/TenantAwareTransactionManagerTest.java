@@ -0,0 +1,81 @@
+package com.teuportal.core.tenancy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.teuportal.core.datasource.DataSourceRoute;
+import com.teuportal.core.datasource.DataSourceRouteHolder;
+import com.teuportal.core.datasource.Workload;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionTemplate;
+
+class TenantAwareTransactionManagerTest {
+
+    private DataSourceRouteHolder routeHolder;
+    private Connection connection;
+    private List<DataSourceRoute> routes;
+    private TransactionTemplate template;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        routeHolder = new DataSourceRouteHolder();
+        connection = mock(Connection.class);
+        routes = new ArrayList<>();
+        DataSource dataSource = mock(DataSource.class);
+        // Record the route the routing data source would see when the connection is drawn
+        when(dataSource.getConnection()).thenAnswer(invocation -> {
+            routes.add(routeHolder.transactionRoute().orElse(null));
+            return connection;
+        });
+        template = new TransactionTemplate(
+                new TenantAwareTransactionManager(dataSource, new TenantContextHolder(), routeHolder));
+    }
+
+    // Write transactions of a normal request go to the primary as read-write.
+    @Test
+    void writeTransactionUsesPrimary() throws Exception {
+        template.executeWithoutResult(status -> { });
+
+        assertThat(routes).containsExactly(DataSourceRoute.PRIMARY);
+        verify(connection, never()).setReadOnly(true);
+        assertThat(routeHolder.transactionRoute()).isEmpty();
+    }
+
+    // A read-only request forces every transaction read-only, so it is served by the replica.
+    @Test
+    void readOnlyRequestForcesReplica() throws Exception {
+        routeHolder.setReadOnlyRequest(true);
+
+        template.executeWithoutResult(status -> { });
+
+        assertThat(routes).containsExactly(DataSourceRoute.REPLICA);
+        verify(connection).setReadOnly(true);
+        assertThat(routeHolder.transactionRoute()).isEmpty();
+    }
+
+    // Workload pools win over the read-only split.
+    @Test
+    void workloadPoolWinsOverReadOnly() {
+        routeHolder.setReadOnlyRequest(true);
+
+        routeHolder.callAs(Workload.BACKGROUND, () -> {
+            template.executeWithoutResult(status -> { });
+            return null;
+        });
+        routeHolder.callAs(Workload.AUTH, () -> {
+            template.executeWithoutResult(status -> { });
+            return null;
+        });
+
+        assertThat(routes).containsExactly(DataSourceRoute.BACKGROUND, DataSourceRoute.AUTH);
+    }
+}